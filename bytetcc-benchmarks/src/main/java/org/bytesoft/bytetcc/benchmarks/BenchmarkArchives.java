@@ -0,0 +1,72 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.benchmarks;
+
+import javax.transaction.Status;
+
+import org.bytesoft.compensable.CompensableBeanFactory;
+import org.bytesoft.compensable.archive.CompensableArchive;
+import org.bytesoft.compensable.archive.TransactionArchive;
+import org.bytesoft.transaction.xa.TransactionXid;
+import org.bytesoft.transaction.xa.XidFactory;
+
+/**
+ * Builds archives which look like the ones written by a coordinator during the try phase.
+ */
+public final class BenchmarkArchives {
+
+	private BenchmarkArchives() {
+	}
+
+	public static TransactionArchive createTransactionArchive(CompensableBeanFactory beanFactory, int compensables) {
+		XidFactory compensableXidFactory = beanFactory.getCompensableXidFactory();
+
+		TransactionArchive archive = new TransactionArchive();
+		archive.setXid(compensableXidFactory.createGlobalXid());
+		archive.setStatus(Status.STATUS_ACTIVE);
+		archive.setCompensableStatus(Status.STATUS_ACTIVE);
+		archive.setCoordinator(true);
+		archive.setCompensable(true);
+		archive.setPropagatedBy(BenchmarkEnvironment.ENDPOINT);
+
+		TransactionXid globalXid = (TransactionXid) archive.getXid();
+		for (int i = 0; i < compensables; i++) {
+			archive.getCompensableResourceList().add(createCompensableArchive(beanFactory, globalXid, i));
+		}
+
+		return archive;
+	}
+
+	public static CompensableArchive createCompensableArchive(CompensableBeanFactory beanFactory, TransactionXid xid,
+			int index) {
+		XidFactory transactionXidFactory = beanFactory.getTransactionXidFactory();
+
+		TransactionXid globalXid = transactionXidFactory.createGlobalXid(xid.getGlobalTransactionId());
+		TransactionXid branchXid = transactionXidFactory.createBranchXid(globalXid);
+		TransactionXid transactionXid = transactionXidFactory.createBranchXid(globalXid);
+
+		CompensableArchive archive = new CompensableArchive();
+		archive.setIdentifier(branchXid);
+		archive.setTransactionXid(transactionXid);
+		archive.setTransactionResourceKey("dataSource");
+		archive.setCompensable(new SimpleCompensableInvocation(String.format("acct-%s", index), 1.0d * index));
+		archive.setTried(true);
+		archive.setCoordinator(true);
+
+		return archive;
+	}
+
+}
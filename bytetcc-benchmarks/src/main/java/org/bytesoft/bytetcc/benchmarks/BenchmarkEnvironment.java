@@ -0,0 +1,159 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.benchmarks;
+
+import org.bytesoft.bytejta.TransactionRepositoryImpl;
+import org.bytesoft.bytetcc.CompensableCoordinator;
+import org.bytesoft.bytetcc.CompensableManagerImpl;
+import org.bytesoft.bytetcc.TransactionBeanFactoryImpl;
+import org.bytesoft.bytetcc.logging.ArchiveDeserializerImpl;
+import org.bytesoft.bytetcc.logging.deserializer.CompensableArchiveDeserializer;
+import org.bytesoft.bytetcc.logging.deserializer.TransactionArchiveDeserializer;
+import org.bytesoft.bytetcc.logging.deserializer.XAResourceArchiveDeserializer;
+import org.bytesoft.bytetcc.supports.CompensableSynchronization;
+import org.bytesoft.bytetcc.xa.XidFactoryImpl;
+import org.bytesoft.compensable.CompensableBeanFactory;
+import org.bytesoft.compensable.CompensableInvocation;
+import org.bytesoft.compensable.ContainerContext;
+import org.bytesoft.transaction.Transaction;
+import org.bytesoft.transaction.archive.TransactionArchive;
+import org.bytesoft.transaction.archive.XAResourceArchive;
+import org.bytesoft.transaction.logging.TransactionLogger;
+import org.bytesoft.transaction.recovery.TransactionRecoveryCallback;
+
+/**
+ * Wires the bean factories of ByteTCC and ByteJTA the same way as bytetcc-supports-standalone.xml does, except that the
+ * logger, the lock and the container context are replaced with in-memory stand-ins.
+ */
+public final class BenchmarkEnvironment {
+	public static final String ENDPOINT = "127.0.0.1:bytetcc-benchmarks:8080";
+
+	private static volatile boolean initialized;
+
+	private BenchmarkEnvironment() {
+	}
+
+	public static synchronized CompensableBeanFactory initialize() {
+		TransactionBeanFactoryImpl beanFactory = TransactionBeanFactoryImpl.getInstance();
+		if (initialized) {
+			return beanFactory;
+		}
+
+		org.bytesoft.bytejta.TransactionBeanFactoryImpl jtaBeanFactory = org.bytesoft.bytejta.TransactionBeanFactoryImpl
+				.getInstance();
+
+		org.bytesoft.bytejta.TransactionManagerImpl transactionManager = new org.bytesoft.bytejta.TransactionManagerImpl();
+		org.bytesoft.bytejta.xa.XidFactoryImpl transactionXidFactory = new org.bytesoft.bytejta.xa.XidFactoryImpl();
+		TransactionRepositoryImpl transactionRepository = new TransactionRepositoryImpl();
+		org.bytesoft.bytejta.TransactionCoordinator transactionCoordinator = new org.bytesoft.bytejta.TransactionCoordinator();
+
+		transactionManager.setBeanFactory(jtaBeanFactory);
+		transactionCoordinator.setBeanFactory(jtaBeanFactory);
+		transactionCoordinator.setEndpoint(ENDPOINT);
+
+		jtaBeanFactory.setTransactionManager(transactionManager);
+		jtaBeanFactory.setXidFactory(transactionXidFactory);
+		jtaBeanFactory.setTransactionTimer(transactionManager);
+		jtaBeanFactory.setTransactionRepository(transactionRepository);
+		jtaBeanFactory.setTransactionCoordinator(transactionCoordinator);
+		jtaBeanFactory.setTransactionLogger(new VacantTransactionLogger());
+		jtaBeanFactory.setTransactionLock(new org.bytesoft.bytejta.VacantTransactionLock());
+
+		CompensableManagerImpl compensableManager = new CompensableManagerImpl();
+		CompensableCoordinator compensableCoordinator = new CompensableCoordinator();
+
+		compensableManager.setBeanFactory(beanFactory);
+		compensableManager.setEndpoint(ENDPOINT);
+		compensableCoordinator.setBeanFactory(beanFactory);
+		compensableCoordinator.setEndpoint(ENDPOINT);
+
+		CompensableArchiveDeserializer compensableArchiveDeserializer = new CompensableArchiveDeserializer();
+		compensableArchiveDeserializer.setBeanFactory(beanFactory);
+		XAResourceArchiveDeserializer resourceArchiveDeserializer = new XAResourceArchiveDeserializer();
+		resourceArchiveDeserializer.setBeanFactory(beanFactory);
+		TransactionArchiveDeserializer transactionArchiveDeserializer = new TransactionArchiveDeserializer();
+		transactionArchiveDeserializer.setCompensableArchiveDeserializer(compensableArchiveDeserializer);
+		transactionArchiveDeserializer.setResourceArchiveDeserializer(resourceArchiveDeserializer);
+
+		ArchiveDeserializerImpl archiveDeserializer = new ArchiveDeserializerImpl();
+		archiveDeserializer.setCompensableArchiveDeserializer(compensableArchiveDeserializer);
+		archiveDeserializer.setXaResourceArchiveDeserializer(resourceArchiveDeserializer);
+		archiveDeserializer.setTransactionArchiveDeserializer(transactionArchiveDeserializer);
+
+		beanFactory.setTransactionManager(transactionManager);
+		beanFactory.setCompensableManager(compensableManager);
+		beanFactory.setTransactionXidFactory(transactionXidFactory);
+		beanFactory.setCompensableXidFactory(new XidFactoryImpl());
+		beanFactory.setTransactionRepository(transactionRepository);
+		beanFactory.setCompensableRepository(new TransactionRepositoryImpl());
+		beanFactory.setTransactionCoordinator(transactionCoordinator);
+		beanFactory.setCompensableCoordinator(compensableCoordinator);
+		beanFactory.setContainerContext(new VacantContainerContext());
+		beanFactory.setCompensableLogger(new MemoryCompensableLogger());
+		beanFactory.setArchiveDeserializer(archiveDeserializer);
+		beanFactory.setCompensableLock(new MemoryTransactionLock());
+		beanFactory.setCompensableSynchronization(new VacantCompensableSynchronization());
+
+		initialized = true;
+		return beanFactory;
+	}
+
+	static class VacantContainerContext implements ContainerContext {
+		public void confirm(CompensableInvocation compensable) throws RuntimeException {
+		}
+
+		public void cancel(CompensableInvocation compensable) throws RuntimeException {
+		}
+	}
+
+	static class VacantCompensableSynchronization implements CompensableSynchronization {
+		public void afterBegin(Transaction transaction, boolean createFlag) {
+		}
+	}
+
+	static class VacantTransactionLogger implements TransactionLogger {
+		public void createTransaction(TransactionArchive archive) {
+		}
+
+		public void updateTransaction(TransactionArchive archive) {
+		}
+
+		public void deleteTransaction(TransactionArchive archive) {
+		}
+
+		public void createResource(XAResourceArchive archive) {
+		}
+
+		public void updateResource(XAResourceArchive archive) {
+		}
+
+		public void deleteResource(XAResourceArchive archive) {
+		}
+
+		public void createParticipant(XAResourceArchive archive) {
+		}
+
+		public void updateParticipant(XAResourceArchive archive) {
+		}
+
+		public void deleteParticipant(XAResourceArchive archive) {
+		}
+
+		public void recover(TransactionRecoveryCallback callback) {
+		}
+	}
+
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.bytesoft.bytetcc.work.vfs.CleanupFile;
+import org.bytesoft.compensable.CompensableBeanFactory;
+import org.bytesoft.transaction.xa.TransactionXid;
+import org.bytesoft.transaction.xa.XidFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures CleanupFile.forget, the file is recreated for each iteration since every invocation appends a record. The
+ * cleanup file is not thread-safe(CleanupWork serializes the access), so this benchmark must run with one thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CleanupFileBenchmark {
+	static final int XID_POOL_SIZE = 4096;
+	static final String RESOURCE_ID = "dataSource";
+
+	@Param({ "false", "true" })
+	private boolean flyweight;
+
+	private final TransactionXid[] xids = new TransactionXid[XID_POOL_SIZE];
+	private CompensableBeanFactory beanFactory;
+	private File directory;
+	private CleanupFile cleanupFile;
+	private int index;
+
+	@Setup(Level.Trial)
+	public void setupTrial() throws IOException {
+		this.beanFactory = BenchmarkEnvironment.initialize();
+
+		XidFactory xidFactory = this.beanFactory.getTransactionXidFactory();
+		for (int i = 0; i < XID_POOL_SIZE; i++) {
+			TransactionXid globalXid = xidFactory.createGlobalXid();
+			this.xids[i] = xidFactory.createBranchXid(globalXid);
+		}
+
+		File tempFile = File.createTempFile("bytetcc-benchmarks", "");
+		tempFile.delete();
+		this.directory = tempFile;
+	}
+
+	@Setup(Level.Iteration)
+	public void setupIteration() {
+		this.directory.mkdirs();
+
+		this.cleanupFile = new CleanupFile("resource1.log");
+		this.cleanupFile.setDirectory(this.directory);
+		this.cleanupFile.setBeanFactory(this.beanFactory);
+		this.cleanupFile.setEndpoint(BenchmarkEnvironment.ENDPOINT);
+		this.cleanupFile.setFlyweightEnabled(this.flyweight);
+		this.cleanupFile.initialize(true);
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDownIteration() {
+		this.cleanupFile.destroy();
+		FileUtils.deleteQuietly(this.directory);
+	}
+
+	@Benchmark
+	public void forget() {
+		this.cleanupFile.forget(this.xids[this.index++ & (XID_POOL_SIZE - 1)], RESOURCE_ID);
+	}
+
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.bytesoft.bytetcc.logging.SampleCompensableLogger;
+import org.bytesoft.common.utils.ByteUtils;
+import org.bytesoft.compensable.CompensableBeanFactory;
+import org.bytesoft.compensable.archive.CompensableArchive;
+import org.bytesoft.compensable.archive.TransactionArchive;
+import org.bytesoft.transaction.logging.ArchiveDeserializer;
+import org.bytesoft.transaction.logging.store.VirtualLoggingRecord;
+import org.bytesoft.transaction.logging.store.VirtualLoggingSystem;
+import org.bytesoft.transaction.xa.TransactionXid;
+import org.bytesoft.transaction.xa.XidFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures SampleCompensableLogger.compressIfNecessary over a log which contains, for each transaction, the
+ * create-record of the transaction followed by one create-record and one update-record per compensable service.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompensableLoggerCompressBenchmark {
+
+	@Param({ "64", "1024" })
+	private int transactions;
+
+	@Param({ "4" })
+	private int compensables;
+
+	private SampleCompensableLogger compensableLogger;
+	private List<VirtualLoggingRecord> recordList;
+
+	@Setup
+	public void setup() {
+		CompensableBeanFactory beanFactory = BenchmarkEnvironment.initialize();
+		ArchiveDeserializer deserializer = beanFactory.getArchiveDeserializer();
+
+		this.compensableLogger = new SampleCompensableLogger();
+		this.compensableLogger.setBeanFactory(beanFactory);
+		this.compensableLogger.setEndpoint(BenchmarkEnvironment.ENDPOINT);
+
+		this.recordList = new ArrayList<VirtualLoggingRecord>();
+		for (int i = 0; i < this.transactions; i++) {
+			TransactionArchive archive = BenchmarkArchives.createTransactionArchive(beanFactory, 0);
+			TransactionXid xid = (TransactionXid) archive.getXid();
+			this.recordList.add(this.createRecord(xid, deserializer.serialize(xid, archive)));
+
+			for (int j = 0; j < this.compensables; j++) {
+				CompensableArchive compensable = BenchmarkArchives.createCompensableArchive(beanFactory, xid, j);
+				compensable.setTried(false);
+				this.recordList.add(this.createRecord(xid, deserializer.serialize(xid, compensable)));
+
+				compensable.setTried(true);
+				this.recordList.add(this.createRecord(xid, deserializer.serialize(xid, compensable)));
+			}
+		}
+	}
+
+	private VirtualLoggingRecord createRecord(TransactionXid xid, byte[] valueByteArray) {
+		byte[] sizeByteArray = ByteUtils.intToByteArray(valueByteArray.length);
+		byte[] byteArray = new byte[XidFactory.GLOBAL_TRANSACTION_LENGTH + 1 + 4 + valueByteArray.length];
+
+		System.arraycopy(xid.getGlobalTransactionId(), 0, byteArray, 0, XidFactory.GLOBAL_TRANSACTION_LENGTH);
+		byteArray[XidFactory.GLOBAL_TRANSACTION_LENGTH] = VirtualLoggingSystem.OPERATOR_CREATE;
+		System.arraycopy(sizeByteArray, 0, byteArray, XidFactory.GLOBAL_TRANSACTION_LENGTH + 1, sizeByteArray.length);
+		System.arraycopy(valueByteArray, 0, byteArray, XidFactory.GLOBAL_TRANSACTION_LENGTH + 1 + 4,
+				valueByteArray.length);
+
+		VirtualLoggingRecord record = new VirtualLoggingRecord();
+		record.setIdentifier(xid);
+		record.setOperator(VirtualLoggingSystem.OPERATOR_CREATE);
+		record.setValue(valueByteArray);
+		record.setContent(byteArray);
+		return record;
+	}
+
+	@Benchmark
+	public List<VirtualLoggingRecord> compressIfNecessary() {
+		return this.compensableLogger.compressIfNecessary(this.recordList);
+	}
+
+}
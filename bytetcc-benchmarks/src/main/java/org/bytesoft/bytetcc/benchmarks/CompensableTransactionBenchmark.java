@@ -0,0 +1,78 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.bytesoft.bytetcc.CompensableManagerImpl;
+import org.bytesoft.compensable.CompensableBeanFactory;
+import org.bytesoft.compensable.CompensableTransaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs a complete begin -> try -> commit cycle of a compensable transaction through CompensableManagerImpl, the try
+ * phase registers the given number of compensable services and the confirm phase invokes them through a vacant
+ * container context.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class CompensableTransactionBenchmark {
+
+	@Param({ "1", "4" })
+	private int compensables;
+
+	private CompensableManagerImpl compensableManager;
+
+	@Setup
+	public void setup() {
+		CompensableBeanFactory beanFactory = BenchmarkEnvironment.initialize();
+		this.compensableManager = (CompensableManagerImpl) beanFactory.getCompensableManager();
+	}
+
+	@Benchmark
+	public CompensableTransaction beginTryCommit() throws Exception {
+		this.compensableManager.compensableBegin();
+		CompensableTransaction compensable = this.compensableManager.getCompensableTransactionQuietly();
+		try {
+			for (int i = 0; i < this.compensables; i++) {
+				compensable.registerCompensable(new SimpleCompensableInvocation("acct", i));
+			}
+		} catch (RuntimeException ex) {
+			this.compensableManager.compensableRollback();
+			throw ex;
+		}
+
+		this.compensableManager.compensableCommit();
+		return compensable;
+	}
+
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.benchmarks;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.transaction.xa.Xid;
+
+import org.bytesoft.compensable.archive.CompensableArchive;
+import org.bytesoft.compensable.archive.TransactionArchive;
+import org.bytesoft.compensable.logging.CompensableLogger;
+import org.bytesoft.transaction.archive.XAResourceArchive;
+import org.bytesoft.transaction.recovery.TransactionRecoveryCallback;
+
+/**
+ * In-memory stand-in of the compensable logger, keeps the transaction archives in a map so that the benchmarks measure
+ * the transaction manager rather than the storage.
+ */
+public class MemoryCompensableLogger implements CompensableLogger {
+
+	private final Map<Xid, TransactionArchive> archives = new ConcurrentHashMap<Xid, TransactionArchive>();
+
+	public void createTransaction(TransactionArchive archive) {
+		this.archives.put(archive.getXid(), archive);
+	}
+
+	public void updateTransactionVariables(TransactionArchive archive) {
+	}
+
+	public void updateTransactionStatus(TransactionArchive archive) {
+	}
+
+	public void updateTransactionRecoveryStatus(TransactionArchive archive) {
+	}
+
+	public void deleteTransaction(TransactionArchive archive) {
+		this.archives.remove(archive.getXid());
+	}
+
+	public void createParticipant(XAResourceArchive archive) {
+	}
+
+	public void updateParticipantStatus(XAResourceArchive archive) {
+	}
+
+	public void deleteParticipant(XAResourceArchive archive) {
+	}
+
+	public void createCompensable(CompensableArchive archive) {
+	}
+
+	public void updateCompensableInvocationResource(CompensableArchive archive) {
+	}
+
+	public void updateCompensableInvocationStatus(CompensableArchive archive) {
+	}
+
+	public void updateCompensableCompletionResource(CompensableArchive archive) {
+	}
+
+	public void updateCompensableCompletionStatus(CompensableArchive archive) {
+	}
+
+	public void recover(TransactionRecoveryCallback callback) {
+		for (Iterator<TransactionArchive> itr = this.archives.values().iterator(); itr.hasNext();) {
+			callback.recover(itr.next());
+		}
+	}
+
+	public int size() {
+		return this.archives.size();
+	}
+
+}
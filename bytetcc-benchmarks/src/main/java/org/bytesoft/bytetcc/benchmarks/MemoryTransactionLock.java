@@ -0,0 +1,41 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.benchmarks;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang3.StringUtils;
+import org.bytesoft.transaction.TransactionLock;
+import org.bytesoft.transaction.xa.TransactionXid;
+
+/**
+ * In-memory stand-in of the compensable lock, the lock is re-entrant for the same identifier.
+ */
+public class MemoryTransactionLock implements TransactionLock {
+
+	private final ConcurrentMap<TransactionXid, String> locks = new ConcurrentHashMap<TransactionXid, String>();
+
+	public boolean lockTransaction(TransactionXid transactionXid, String identifier) {
+		String current = this.locks.putIfAbsent(transactionXid, identifier);
+		return current == null || StringUtils.equals(current, identifier);
+	}
+
+	public void unlockTransaction(TransactionXid transactionXid, String identifier) {
+		this.locks.remove(transactionXid, identifier);
+	}
+
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.benchmarks;
+
+import java.lang.reflect.Method;
+
+import org.bytesoft.compensable.CompensableInvocation;
+
+public class SimpleCompensableInvocation implements CompensableInvocation {
+	private static final long serialVersionUID = 1L;
+
+	private String declaringClass = "org.bytesoft.bytetcc.sample.AccountService";
+	private String methodName = "increaseAmount";
+	private String[] parameterTypeArray = new String[] { String.class.getName(), double.class.getName() };
+	private transient Method method;
+	private Object[] args;
+	private String confirmableKey = "accountServiceConfirm";
+	private String cancellableKey = "accountServiceCancel";
+	private Object identifier = "accountService";
+	private boolean simplified;
+	private boolean enlisted;
+
+	public SimpleCompensableInvocation() {
+	}
+
+	public SimpleCompensableInvocation(String acctId, double amount) {
+		this.args = new Object[] { acctId, amount };
+	}
+
+	public String getDeclaringClass() {
+		return this.declaringClass;
+	}
+
+	public String getMethodName() {
+		return this.methodName;
+	}
+
+	public String[] getParameterTypeArray() {
+		return this.parameterTypeArray;
+	}
+
+	public Method getMethod() {
+		return this.method;
+	}
+
+	public void setMethod(Method method) {
+		this.method = method;
+	}
+
+	public Object[] getArgs() {
+		return this.args;
+	}
+
+	public String getConfirmableKey() {
+		return this.confirmableKey;
+	}
+
+	public String getCancellableKey() {
+		return this.cancellableKey;
+	}
+
+	public boolean isSimplified() {
+		return this.simplified;
+	}
+
+	public Object getIdentifier() {
+		return this.identifier;
+	}
+
+	public void setIdentifier(Object identifier) {
+		this.identifier = identifier;
+	}
+
+	public boolean isEnlisted() {
+		return this.enlisted;
+	}
+
+	public void setEnlisted(boolean enlisted) {
+		this.enlisted = enlisted;
+	}
+
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.bytesoft.bytetcc.logging.ArchiveDeserializerImpl;
+import org.bytesoft.compensable.CompensableBeanFactory;
+import org.bytesoft.compensable.archive.TransactionArchive;
+import org.bytesoft.transaction.logging.ArchiveDeserializer;
+import org.bytesoft.transaction.xa.TransactionXid;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransactionArchiveDeserializerBenchmark {
+
+	@Param({ "1", "4", "16" })
+	private int compensables;
+
+	private ArchiveDeserializer deserializer;
+	private TransactionXid xid;
+	private TransactionArchive archive;
+	private byte[] byteArray;
+
+	@Setup
+	public void setup() {
+		CompensableBeanFactory beanFactory = BenchmarkEnvironment.initialize();
+		ArchiveDeserializerImpl archiveDeserializer = (ArchiveDeserializerImpl) beanFactory.getArchiveDeserializer();
+
+		this.deserializer = archiveDeserializer.getTransactionArchiveDeserializer();
+		this.archive = BenchmarkArchives.createTransactionArchive(beanFactory, this.compensables);
+		this.xid = (TransactionXid) this.archive.getXid();
+		this.byteArray = this.deserializer.serialize(this.xid, this.archive);
+	}
+
+	@Benchmark
+	public byte[] serialize() {
+		return this.deserializer.serialize(this.xid, this.archive);
+	}
+
+	@Benchmark
+	public Object deserialize() {
+		return this.deserializer.deserialize(this.xid, this.byteArray);
+	}
+
+}
@@ -33,6 +33,7 @@ import org.bytesoft.bytetcc.supports.CompensableSynchronization;
 import org.bytesoft.common.utils.ByteUtils;
 import org.bytesoft.compensable.CompensableBeanFactory;
 import org.bytesoft.compensable.CompensableManager;
+import org.bytesoft.compensable.CompensableStatistic;
 import org.bytesoft.compensable.CompensableTransaction;
 import org.bytesoft.compensable.TransactionContext;
 import org.bytesoft.compensable.archive.CompensableArchive;
@@ -63,7 +64,11 @@ public class CompensableManagerImpl implements CompensableManager, CompensableBe
     private String endpoint;
     private transient boolean statefully;
 
-    private final Map<Thread, Transaction> thread2txMap = new ConcurrentHashMap<Thread, Transaction>();
+    /**
+     * The transaction bound to the current thread. Only associateThread/desociateThread and the accessors below touch it,
+     * so that it can be replaced by a ScopedValue binding once the baseline allows it.
+     */
+    private final ThreadLocal<CompensableTransaction> associated = new ThreadLocal<CompensableTransaction>();
     private final Map<Xid, Transaction> xid2txMap = new ConcurrentHashMap<Xid, Transaction>();
 
     /**
@@ -76,7 +81,7 @@ public class CompensableManagerImpl implements CompensableManager, CompensableBe
         TransactionContext transactionContext = (TransactionContext) transaction.getTransactionContext();
         TransactionXid transactionXid = transactionContext.getXid();
         this.xid2txMap.put(transactionXid, (CompensableTransaction) transaction);
-        this.thread2txMap.put(Thread.currentThread(), (CompensableTransaction) transaction);
+        this.associated.set((CompensableTransaction) transaction);
     }
 
     /**
@@ -85,7 +90,8 @@ public class CompensableManagerImpl implements CompensableManager, CompensableBe
      * @return
      */
     public CompensableTransaction desociateThread() {
-        CompensableTransaction transaction = (CompensableTransaction) this.thread2txMap.remove(Thread.currentThread());
+        CompensableTransaction transaction = this.associated.get();
+        this.associated.remove();
         if (transaction == null) {
             return null;
         }
@@ -148,17 +154,17 @@ public class CompensableManagerImpl implements CompensableManager, CompensableBe
      * @return
      */
     public CompensableTransaction getCompensableTransactionQuietly() {
-        return (CompensableTransaction) this.thread2txMap.get(Thread.currentThread());
+        return this.associated.get();
     }
 
     /**
-     * 从缓存中获取TCC事务
+     * 从缓存中获取TCC事务, 仅支持当前线程; 其他线程的事务需由调用方显式传递(如CompensableHystrixInvocation).
      *
      * @param thread
      * @return
      */
     public CompensableTransaction getCompensableTransaction(Thread thread) {
-        return (CompensableTransaction) this.thread2txMap.get(thread);
+        return Thread.currentThread() == thread ? this.associated.get() : null;
     }
 
     /**
@@ -194,7 +200,7 @@ public class CompensableManagerImpl implements CompensableManager, CompensableBe
      * @throws SystemException
      */
     public Transaction suspend() throws SystemException {
-        CompensableTransaction compensable = (CompensableTransaction) this.thread2txMap.get(Thread.currentThread());
+        CompensableTransaction compensable = this.associated.get();
         if (compensable == null) {
             throw new SystemException(XAException.XAER_NOTA);
         }
@@ -348,6 +354,11 @@ public class CompensableManagerImpl implements CompensableManager, CompensableBe
             throw new SystemException(XAException.XAER_PROTO); // should never happen
         }
 
+        CompensableStatistic compensableStatistic = this.beanFactory.getCompensableStatistic();
+        if (compensableStatistic != null) {
+            compensableStatistic.fireBeginTransaction(compensableXid);
+        }
+
     }
 
     public void commit() throws RollbackException, HeuristicMixedException, HeuristicRollbackException, SecurityException,
@@ -570,7 +581,12 @@ public class CompensableManagerImpl implements CompensableManager, CompensableBe
         }
 
         TransactionLock compensableLock = this.beanFactory.getCompensableLock();
+        CompensableStatistic compensableStatistic = this.beanFactory.getCompensableStatistic();
         TransactionXid xid = transactionContext.getXid();
+        if (compensableStatistic != null) {
+            compensableStatistic.fireCommitTransactionStart(xid);
+        }
+
         boolean success = false;
         try {
             this.desociateThread();
@@ -578,6 +594,11 @@ public class CompensableManagerImpl implements CompensableManager, CompensableBe
             success = true;
         } finally {
             compensableLock.unlockTransaction(xid, this.endpoint);
+            if (compensableStatistic != null && success) {
+                compensableStatistic.fireCommitTransactionSuccess(xid);
+            } else if (compensableStatistic != null) {
+                compensableStatistic.fireCommitTransactionFailure(xid);
+            }
             if (success) {
                 transaction.forgetQuietly(); // forget transaction
             } // end-if (success)
@@ -617,6 +638,13 @@ public class CompensableManagerImpl implements CompensableManager, CompensableBe
             compensable.setTransactionalExtra(null);
         }
 
+        CompensableStatistic compensableStatistic = this.beanFactory.getCompensableStatistic();
+        if (compensableStatistic != null && commitExists) {
+            compensableStatistic.fireTryPhaseSuccess(compensableContext.getXid());
+        } else if (compensableStatistic != null) {
+            compensableStatistic.fireTryPhaseFailure(compensableContext.getXid());
+        }
+
         boolean failure = true;
         try {
             if (errorExists) {
@@ -715,7 +743,12 @@ public class CompensableManagerImpl implements CompensableManager, CompensableBe
         }
 
         TransactionLock compensableLock = this.beanFactory.getCompensableLock();
+        CompensableStatistic compensableStatistic = this.beanFactory.getCompensableStatistic();
         TransactionXid xid = transactionContext.getXid();
+        if (compensableStatistic != null) {
+            compensableStatistic.fireRollbackTransactionStart(xid);
+        }
+
         boolean success = false;
         try {
             this.desociateThread();
@@ -723,6 +756,11 @@ public class CompensableManagerImpl implements CompensableManager, CompensableBe
             success = true;
         } finally {
             compensableLock.unlockTransaction(xid, this.endpoint);
+            if (compensableStatistic != null && success) {
+                compensableStatistic.fireRollbackTransactionSuccess(xid);
+            } else if (compensableStatistic != null) {
+                compensableStatistic.fireRollbackTransactionFailure(xid);
+            }
             if (success) {
                 transaction.forgetQuietly(); // forget transaction
             } // end-if (success)
@@ -751,6 +789,11 @@ public class CompensableManagerImpl implements CompensableManager, CompensableBe
             compensable.setTransactionalExtra(null);
         }
 
+        CompensableStatistic compensableStatistic = this.beanFactory.getCompensableStatistic();
+        if (compensableStatistic != null) {
+            compensableStatistic.fireTryPhaseFailure(compensableContext.getXid());
+        }
+
         boolean failure = true;
         try {
             this.fireCompensableRollback(compensable);
@@ -22,7 +22,10 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -39,15 +42,19 @@ import javax.transaction.xa.Xid;
 import org.apache.commons.lang3.StringUtils;
 import org.bytesoft.bytejta.supports.jdbc.RecoveredResource;
 import org.bytesoft.bytejta.supports.resource.RemoteResourceDescriptor;
+import org.bytesoft.bytetcc.supports.CompensableParticipantExecutor;
 import org.bytesoft.bytetcc.supports.CompensableRolledbackMarker;
 import org.bytesoft.bytetcc.supports.resource.LocalResourceCleaner;
 import org.bytesoft.common.utils.ByteUtils;
 import org.bytesoft.common.utils.CommonUtils;
+import org.bytesoft.compensable.AsyncRemoteCoordinator;
 import org.bytesoft.compensable.CompensableBeanFactory;
 import org.bytesoft.compensable.CompensableInvocation;
+import org.bytesoft.compensable.CompensableStatistic;
 import org.bytesoft.compensable.CompensableTransaction;
 import org.bytesoft.compensable.ContainerContext;
 import org.bytesoft.compensable.TransactionContext;
+import org.bytesoft.compensable.archive.ArchiveSnapshot;
 import org.bytesoft.compensable.archive.CompensableArchive;
 import org.bytesoft.compensable.archive.TransactionArchive;
 import org.bytesoft.compensable.logging.CompensableLogger;
@@ -92,6 +99,7 @@ public class CompensableTransactionImpl extends TransactionListenerAdapter
 	private transient final Map<Xid, TransactionBranch> xidToBranchMap = new HashMap<Xid, TransactionBranch>();
 
 	private Map<String, Serializable> variables = new HashMap<String, Serializable>();
+	private transient ArchiveSnapshot archiveSnapshot = new ArchiveSnapshot();
 
 	private Thread currentThread;
 	private final Lock lock = new ReentrantLock();
@@ -116,6 +124,7 @@ public class CompensableTransactionImpl extends TransactionListenerAdapter
 		transactionArchive.setPropagatedBy(this.transactionContext.getPropagatedBy());
 		transactionArchive.setRecoveredAt(this.transactionContext.getCreatedTime());
 		transactionArchive.setRecoveredTimes(this.transactionContext.getRecoveredTimes());
+		transactionArchive.setSnapshot(this.archiveSnapshot);
 		return transactionArchive;
 	}
 
@@ -151,6 +160,27 @@ public class CompensableTransactionImpl extends TransactionListenerAdapter
 
 	private void fireCommit() throws RollbackException, HeuristicMixedException, HeuristicRollbackException, SecurityException,
 			IllegalStateException, SystemException {
+		CompensableStatistic compensableStatistic = this.beanFactory.getCompensableStatistic();
+		TransactionXid xid = this.transactionContext.getXid();
+		if (compensableStatistic != null) {
+			compensableStatistic.fireConfirmPhaseStart(xid);
+		}
+
+		boolean success = false;
+		try {
+			this.fireConfirmPhase();
+			success = true;
+		} finally {
+			if (compensableStatistic != null && success) {
+				compensableStatistic.fireConfirmPhaseSuccess(xid);
+			} else if (compensableStatistic != null) {
+				compensableStatistic.fireConfirmPhaseFailure(xid);
+			}
+		}
+	}
+
+	private void fireConfirmPhase() throws RollbackException, HeuristicMixedException, HeuristicRollbackException,
+			SecurityException, IllegalStateException, SystemException {
 		CompensableLogger compensableLogger = this.beanFactory.getCompensableLogger();
 
 		this.transactionContext.setCompensating(true);
@@ -206,8 +236,10 @@ public class CompensableTransactionImpl extends TransactionListenerAdapter
 	public synchronized void recoveryCommit() throws CommitRequiredException, SystemException {
 		this.recoverIfNecessary(); // Recover if transaction is recovered from tx-log.
 
+		long recoveredAt = System.currentTimeMillis();
 		this.transactionContext.setRecoveredTimes(this.transactionContext.getRecoveredTimes() + 1);
-		this.transactionContext.setCreatedTime(System.currentTimeMillis());
+		this.transactionContext.setRecoveredAt(recoveredAt);
+		this.transactionContext.setCreatedTime(recoveredAt);
 
 		try {
 			this.fireCommit();
@@ -243,6 +275,8 @@ public class CompensableTransactionImpl extends TransactionListenerAdapter
 		boolean errorExists = false;
 
 		ContainerContext container = this.beanFactory.getContainerContext();
+		CompensableStatistic compensableStatistic = this.beanFactory.getCompensableStatistic();
+		TransactionXid xid = this.transactionContext.getXid();
 		for (int i = this.archiveList.size() - 1; i >= 0; i--) {
 			CompensableArchive current = this.archiveList.get(i);
 			if (current.isConfirmed()) {
@@ -260,7 +294,13 @@ public class CompensableTransactionImpl extends TransactionListenerAdapter
 							ByteUtils.byteArrayToString(this.transactionContext.getXid().getGlobalTransactionId()),
 							ByteUtils.byteArrayToString(current.getIdentifier().getGlobalTransactionId()));
 				} else if (StringUtils.isNotBlank(invocation.getConfirmableKey())) {
+					if (compensableStatistic != null) {
+						compensableStatistic.fireConfirmCompensableStart(xid, current);
+					}
 					container.confirm(invocation);
+					if (compensableStatistic != null) {
+						compensableStatistic.fireConfirmCompensableSuccess(xid, current);
+					}
 				} else {
 					current.setConfirmed(true);
 					logger.info("{}| confirm: identifier= {}, resourceKey= {}, resourceXid= {}.",
@@ -270,6 +310,9 @@ public class CompensableTransactionImpl extends TransactionListenerAdapter
 				}
 			} catch (RuntimeException rex) {
 				errorExists = true;
+				if (compensableStatistic != null) {
+					compensableStatistic.fireConfirmCompensableFailure(xid, current);
+				}
 				logger.error("{}| error occurred while confirming service: {}",
 						ByteUtils.byteArrayToString(this.transactionContext.getXid().getGlobalTransactionId()), current, rex);
 			} finally {
@@ -291,6 +334,7 @@ public class CompensableTransactionImpl extends TransactionListenerAdapter
 		boolean unFinishExists = false;
 		boolean errorExists = false;
 
+		Future<?>[] futures = this.fireRemoteParticipantsInParallel(true);
 		for (int i = 0; i < this.resourceList.size(); i++) {
 			XAResourceArchive current = this.resourceList.get(i);
 			if (current.isCommitted()) {
@@ -308,7 +352,7 @@ public class CompensableTransactionImpl extends TransactionListenerAdapter
 			TransactionXid branchXid = (TransactionXid) current.getXid();
 			TransactionXid globalXid = xidFactory.createGlobalXid(branchXid.getGlobalTransactionId());
 			try {
-				current.commit(globalXid, true);
+				this.completeRemoteParticipant(current, globalXid, true, futures[i]);
 				committedExists = true;
 
 				current.setCommitted(true);
@@ -417,6 +461,124 @@ public class CompensableTransactionImpl extends TransactionListenerAdapter
 		// else if (committedExists == false) { throw new XAException(XAException.XA_RDONLY); }
 	}
 
+	/**
+	 * Submit the uncompleted remote participants to the participant-executor if the parallel mode is enabled. Only the
+	 * remote invocation is executed by the worker thread, the result is still handled (and logged) by the current thread.
+	 * If the async mode is enabled, the participants supporting AsyncRemoteCoordinator are invoked without a worker.
+	 */
+	private Future<?>[] fireRemoteParticipantsInParallel(final boolean commit) {
+		Future<?>[] futures = new Future<?>[this.resourceList.size()];
+
+		CompensableParticipantExecutor participantExecutor = this.beanFactory.getParticipantExecutor();
+		if (participantExecutor == null) {
+			return futures;
+		} else if (participantExecutor.isParallelEnabled() == false && participantExecutor.isAsyncEnabled() == false) {
+			return futures;
+		}
+
+		List<Integer> indexList = new ArrayList<Integer>();
+		for (int i = 0; i < this.resourceList.size(); i++) {
+			XAResourceArchive current = this.resourceList.get(i);
+			if (current.isCommitted() || current.isRolledback() || current.isReadonly()) {
+				continue;
+			}
+			indexList.add(i);
+		}
+
+		if (indexList.size() <= 1) {
+			return futures; // there is no need to use the worker thread
+		}
+
+		XidFactory xidFactory = this.beanFactory.getCompensableXidFactory();
+		for (int i = 0; i < indexList.size(); i++) {
+			int index = indexList.get(i);
+			final XAResourceArchive current = this.resourceList.get(index);
+
+			AsyncRemoteCoordinator asyncCoordinator = //
+					participantExecutor.isAsyncEnabled() ? this.getAsyncRemoteCoordinator(current) : null;
+			if (asyncCoordinator != null) {
+				futures[index] = this.fireRemoteParticipantAsync(asyncCoordinator, current, commit);
+				continue;
+			} else if (participantExecutor.isParallelEnabled() == false) {
+				continue;
+			}
+
+			TransactionXid branchXid = (TransactionXid) current.getXid();
+			final TransactionXid globalXid = xidFactory.createGlobalXid(branchXid.getGlobalTransactionId());
+			futures[index] = participantExecutor.submit(new Callable<Void>() {
+				public Void call() throws XAException {
+					if (commit) {
+						current.commit(globalXid, true);
+					} else {
+						current.rollback(globalXid);
+					}
+					return null;
+				}
+			});
+		}
+
+		return futures;
+	}
+
+	/**
+	 * Invoke the remote participant by the AsyncRemoteCoordinator only when XAResourceArchive.commit/rollback would
+	 * invoke its descriptor. Otherwise no future is returned and the archive is invoked by the current thread, so that
+	 * its guards(readonly/committed/rolledback) and heuristic errors still apply. In both cases the flags and the
+	 * participant status are updated by the caller once the result is known.
+	 */
+	private Future<?> fireRemoteParticipantAsync(AsyncRemoteCoordinator asyncCoordinator, XAResourceArchive current,
+			boolean commit) {
+		if (current.isReadonly() || current.isCommitted() || current.isRolledback()) {
+			return null;
+		} else if (current.isCompleted() || current.isHeuristic()) {
+			return null;
+		}
+
+		Xid branchXid = current.getXid();
+		return commit ? asyncCoordinator.commitAsync(branchXid, true) : asyncCoordinator.rollbackAsync(branchXid);
+	}
+
+	private AsyncRemoteCoordinator getAsyncRemoteCoordinator(XAResourceArchive archive) {
+		XAResourceDescriptor descriptor = archive.getDescriptor();
+		if (RemoteResourceDescriptor.class.isInstance(descriptor) == false) {
+			return null;
+		}
+
+		RemoteCoordinator delegate = ((RemoteResourceDescriptor) descriptor).getDelegate();
+		return AsyncRemoteCoordinator.class.isInstance(delegate) ? (AsyncRemoteCoordinator) delegate : null;
+	}
+
+	private void completeRemoteParticipant(XAResourceArchive current, TransactionXid globalXid, boolean commit,
+			Future<?> future) throws XAException {
+		if (future == null && commit) {
+			current.commit(globalXid, true);
+			return;
+		} else if (future == null) {
+			current.rollback(globalXid);
+			return;
+		}
+
+		try {
+			future.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			XAException xaex = new XAException(XAException.XAER_RMFAIL); // the result is unknown
+			xaex.initCause(ex);
+			throw xaex;
+		} catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (XAException.class.isInstance(cause)) {
+				throw (XAException) cause;
+			} else if (RuntimeException.class.isInstance(cause)) {
+				throw (RuntimeException) cause;
+			} else if (Error.class.isInstance(cause)) {
+				throw (Error) cause;
+			} else {
+				throw new IllegalStateException(cause);
+			}
+		}
+	}
+
 	public int participantPrepare() throws RollbackRequiredException, CommitRequiredException {
 		throw new RuntimeException("Not supported!");
 	}
@@ -477,6 +639,26 @@ public class CompensableTransactionImpl extends TransactionListenerAdapter
 	}
 
 	private void fireRollback() throws IllegalStateException, SystemException {
+		CompensableStatistic compensableStatistic = this.beanFactory.getCompensableStatistic();
+		TransactionXid xid = this.transactionContext.getXid();
+		if (compensableStatistic != null) {
+			compensableStatistic.fireCancelPhaseStart(xid);
+		}
+
+		boolean success = false;
+		try {
+			this.fireCancelPhase();
+			success = true;
+		} finally {
+			if (compensableStatistic != null && success) {
+				compensableStatistic.fireCancelPhaseSuccess(xid);
+			} else if (compensableStatistic != null) {
+				compensableStatistic.fireCancelPhaseFailure(xid);
+			}
+		}
+	}
+
+	private void fireCancelPhase() throws IllegalStateException, SystemException {
 		CompensableLogger compensableLogger = this.beanFactory.getCompensableLogger();
 
 		this.transactionStatus = Status.STATUS_ROLLING_BACK;
@@ -530,8 +712,10 @@ public class CompensableTransactionImpl extends TransactionListenerAdapter
 	public synchronized void recoveryRollback() throws RollbackRequiredException, SystemException {
 		this.recoverIfNecessary(); // Recover if transaction is recovered from tx-log.
 
+		long recoveredAt = System.currentTimeMillis();
 		this.transactionContext.setRecoveredTimes(this.transactionContext.getRecoveredTimes() + 1);
-		this.transactionContext.setCreatedTime(System.currentTimeMillis());
+		this.transactionContext.setRecoveredAt(recoveredAt);
+		this.transactionContext.setCreatedTime(recoveredAt);
 
 		this.fireRollback();
 	}
@@ -540,6 +724,8 @@ public class CompensableTransactionImpl extends TransactionListenerAdapter
 		boolean errorExists = false;
 
 		ContainerContext container = this.beanFactory.getContainerContext();
+		CompensableStatistic compensableStatistic = this.beanFactory.getCompensableStatistic();
+		TransactionXid xid = this.transactionContext.getXid();
 		for (int i = this.archiveList.size() - 1; i >= 0; i--) {
 			CompensableArchive current = this.archiveList.get(i);
 			if (current.isTried() == false) {
@@ -563,7 +749,13 @@ public class CompensableTransactionImpl extends TransactionListenerAdapter
 							ByteUtils.byteArrayToString(this.transactionContext.getXid().getGlobalTransactionId()),
 							ByteUtils.byteArrayToString(current.getIdentifier().getGlobalTransactionId()));
 				} else if (StringUtils.isNotBlank(invocation.getCancellableKey())) {
+					if (compensableStatistic != null) {
+						compensableStatistic.fireCancelCompensableStart(xid, current);
+					}
 					container.cancel(invocation);
+					if (compensableStatistic != null) {
+						compensableStatistic.fireCancelCompensableSuccess(xid, current);
+					}
 				} else {
 					current.setCancelled(true);
 					logger.info("{}| cancel: identifier= {}, resourceKey= {}, resourceXid= {}.",
@@ -573,6 +765,9 @@ public class CompensableTransactionImpl extends TransactionListenerAdapter
 				}
 			} catch (RuntimeException rex) {
 				errorExists = true;
+				if (compensableStatistic != null) {
+					compensableStatistic.fireCancelCompensableFailure(xid, current);
+				}
 				logger.error("{}| error occurred while cancelling service: {}",
 						ByteUtils.byteArrayToString(this.transactionContext.getXid().getGlobalTransactionId()), current, rex);
 			} finally {
@@ -593,6 +788,7 @@ public class CompensableTransactionImpl extends TransactionListenerAdapter
 		boolean unFinishExists = false;
 		boolean errorExists = false;
 
+		Future<?>[] futures = this.fireRemoteParticipantsInParallel(false);
 		for (int i = 0; i < this.resourceList.size(); i++) {
 			XAResourceArchive current = this.resourceList.get(i);
 			if (current.isCommitted()) {
@@ -610,7 +806,7 @@ public class CompensableTransactionImpl extends TransactionListenerAdapter
 			TransactionXid branchXid = (TransactionXid) current.getXid();
 			TransactionXid globalXid = xidFactory.createGlobalXid(branchXid.getGlobalTransactionId());
 			try {
-				current.rollback(globalXid);
+				this.completeRemoteParticipant(current, globalXid, false, futures[i]);
 				rolledbackExists = true;
 
 				current.setRolledback(true);
@@ -818,6 +1014,11 @@ public class CompensableTransactionImpl extends TransactionListenerAdapter
 
 		this.archiveList.add(compensableArchive);
 
+		CompensableStatistic compensableStatistic = this.beanFactory.getCompensableStatistic();
+		if (compensableStatistic != null) {
+			compensableStatistic.fireTryCompensableStart(this.transactionContext.getXid(), compensableArchive);
+		}
+
 		List<CompensableArchive> archiveList = this.xidToArchivesMap.get(transactionXid);
 		if (archiveList == null) {
 			archiveList = new ArrayList<CompensableArchive>();
@@ -936,12 +1137,16 @@ public class CompensableTransactionImpl extends TransactionListenerAdapter
 	}
 
 	private void onInvocationPhaseCoordinatorCommitSuccess(Xid xid) {
+		CompensableStatistic compensableStatistic = this.beanFactory.getCompensableStatistic();
 		List<CompensableArchive> archiveList = this.xidToArchivesMap.get(xid);
 		for (Iterator<CompensableArchive> itr = (archiveList == null) ? null : archiveList.iterator(); itr != null
 				&& itr.hasNext();) {
 			CompensableArchive compensableArchive = itr.next();
 			itr.remove(); // remove
 			compensableArchive.setTried(true);
+			if (compensableStatistic != null) {
+				compensableStatistic.fireTryCompensableSuccess(this.transactionContext.getXid(), compensableArchive);
+			}
 			// compensableLogger.updateCompensable(compensableArchive);
 
 			logger.info("{}| try: identifier= {}, resourceKey= {}, resourceXid= {}.",
@@ -960,12 +1165,16 @@ public class CompensableTransactionImpl extends TransactionListenerAdapter
 
 	private void onInvocationPhaseParticipantCommitSuccess(Xid xid) {
 		CompensableLogger compensableLogger = this.beanFactory.getCompensableLogger();
+		CompensableStatistic compensableStatistic = this.beanFactory.getCompensableStatistic();
 		List<CompensableArchive> archiveList = this.xidToArchivesMap.get(xid);
 		for (Iterator<CompensableArchive> itr = (archiveList == null) ? null : archiveList.iterator(); itr != null
 				&& itr.hasNext();) {
 			CompensableArchive compensableArchive = itr.next();
 			itr.remove(); // remove
 			compensableArchive.setTried(true);
+			if (compensableStatistic != null) {
+				compensableStatistic.fireTryCompensableSuccess(this.transactionContext.getXid(), compensableArchive);
+			}
 			compensableLogger.updateCompensableInvocationStatus(compensableArchive); // compensableLogger.updateCompensable(compensableArchive);
 
 			logger.info("{}| try: identifier= {}, resourceKey= {}, resourceXid= {}.",
@@ -1216,6 +1425,8 @@ public class CompensableTransactionImpl extends TransactionListenerAdapter
 			compensableRepository.removeErrorTransaction(this.transactionContext.getXid());
 			compensableRepository.removeTransaction(this.transactionContext.getXid());
 
+			this.fireCleanupStatistic();
+
 			logger.info("{}| forget transaction.",
 					ByteUtils.byteArrayToString(this.transactionContext.getXid().getGlobalTransactionId()));
 		} else {
@@ -1224,6 +1435,22 @@ public class CompensableTransactionImpl extends TransactionListenerAdapter
 
 	}
 
+	private void fireCleanupStatistic() {
+		CompensableStatistic compensableStatistic = this.beanFactory.getCompensableStatistic();
+		if (compensableStatistic == null) {
+			return;
+		}
+
+		TransactionXid xid = this.transactionContext.getXid();
+		for (int i = 0; i < this.archiveList.size(); i++) {
+			CompensableArchive current = this.archiveList.get(i);
+			if (current.isTried() == false) {
+				compensableStatistic.fireTryCompensableFailure(xid, current); // the try operation is rolled back
+			}
+		}
+		compensableStatistic.fireCleanupTransaction(xid);
+	}
+
 	public XAResourceDescriptor getResourceDescriptor(String beanId) {
 		Transaction transaction = this.getTransaction();
 		return transaction.getResourceDescriptor(beanId);
@@ -1438,6 +1665,14 @@ public class CompensableTransactionImpl extends TransactionListenerAdapter
 		this.variables = variables;
 	}
 
+	public ArchiveSnapshot getArchiveSnapshot() {
+		return archiveSnapshot;
+	}
+
+	public void setArchiveSnapshot(ArchiveSnapshot archiveSnapshot) {
+		this.archiveSnapshot = archiveSnapshot;
+	}
+
 	private static class TransactionBranch {
 		public TransactionXid branchXid;
 		public String resourceKey;
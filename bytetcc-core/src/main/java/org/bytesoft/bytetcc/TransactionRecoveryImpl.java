@@ -15,9 +15,23 @@
  */
 package org.bytesoft.bytetcc;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.transaction.Status;
 import javax.transaction.SystemException;
@@ -28,10 +42,12 @@ import org.apache.commons.lang3.StringUtils;
 import org.bytesoft.bytejta.supports.jdbc.RecoveredResource;
 import org.bytesoft.bytejta.supports.resource.LocalXAResourceDescriptor;
 import org.bytesoft.bytejta.supports.resource.RemoteResourceDescriptor;
+import org.bytesoft.bytetcc.supports.CompensableBatchLock;
 import org.bytesoft.common.utils.ByteUtils;
 import org.bytesoft.common.utils.CommonUtils;
 import org.bytesoft.compensable.CompensableBeanFactory;
 import org.bytesoft.compensable.CompensableManager;
+import org.bytesoft.compensable.CompensableStatistic;
 import org.bytesoft.compensable.TransactionContext;
 import org.bytesoft.compensable.archive.CompensableArchive;
 import org.bytesoft.compensable.aware.CompensableBeanFactoryAware;
@@ -62,12 +78,22 @@ public class TransactionRecoveryImpl
 
 	static final long SECOND_MILLIS = 1000L;
 
+	private static final ThreadLocal<Boolean> recovering = new ThreadLocal<Boolean>();
+
 	@javax.inject.Inject
 	protected CompensableBeanFactory beanFactory;
 	protected String endpoint;
 	protected transient boolean statefully;
 
 	protected final Map<TransactionXid, Transaction> recovered = new HashMap<TransactionXid, Transaction>();
+	protected final Set<TransactionXid> batchLocked = Collections
+			.newSetFromMap(new ConcurrentHashMap<TransactionXid, Boolean>());
+
+	private int recoveryThreads = 4;
+	private long recoveryInterval = SECOND_MILLIS * 60L;
+	private int maxBackoffTimes = 10;
+	private volatile ExecutorService recoveryExecutor;
+	private volatile boolean destroyed;
 
 	public void onRecovery(Transaction transaction) {
 		org.bytesoft.transaction.TransactionContext transactionContext = transaction.getTransactionContext();
@@ -144,6 +170,7 @@ public class TransactionRecoveryImpl
 		transactionContext.setXid(xidFactory.createGlobalXid(archive.getXid().getGlobalTransactionId()));
 		transactionContext.setPropagatedBy(transactionArchive.getPropagatedBy());
 		transactionContext.setRecoveredTimes(transactionArchive.getRecoveredTimes());
+		transactionContext.setRecoveredAt(transactionArchive.getRecoveredAt());
 		transactionContext.setCreatedTime(transactionArchive.getRecoveredAt());
 
 		CompensableTransactionImpl transaction = new CompensableTransactionImpl(transactionContext);
@@ -151,6 +178,9 @@ public class TransactionRecoveryImpl
 		transaction.setTransactionVote(archive.getVote());
 		transaction.setTransactionStatus(transactionStatus);
 		transaction.setVariables(archive.getVariables());
+		if (archive.getSnapshot() != null) {
+			transaction.setArchiveSnapshot(archive.getSnapshot());
+		} // end-if (archive.getSnapshot() != null)
 
 		List<XAResourceArchive> participantList = archive.getRemoteResources();
 		for (int i = 0; i < participantList.size(); i++) {
@@ -292,61 +322,250 @@ public class TransactionRecoveryImpl
 		return null;
 	}
 
+	/**
+	 * Recovers the error transactions which are due in this round on the recovery executor, a transaction is retried
+	 * after an exponential backoff based on its recovered times, so an unreachable participant only delays the
+	 * transactions it is involved in.
+	 */
 	public synchronized void timingRecover() {
 		TransactionRepository transactionRepository = beanFactory.getCompensableRepository();
 		List<Transaction> transactions = transactionRepository.getErrorTransactionList();
-		int total = transactions == null ? 0 : transactions.size(), value = 0;
+		int total = transactions == null ? 0 : transactions.size();
+
+		List<Transaction> recoveryList = new ArrayList<Transaction>();
 		for (int i = 0; transactions != null && i < transactions.size(); i++) {
 			Transaction transaction = transactions.get(i);
-			org.bytesoft.transaction.TransactionContext transactionContext = transaction.getTransactionContext();
-			TransactionXid xid = transactionContext.getXid();
-			try {
-				this.recoverTransactionIfNecessary(transaction);
-			} catch (CommitRequiredException ex) {
-				logger.debug("{}| recover: branch={}, message= commit-required",
-						ByteUtils.byteArrayToString(xid.getGlobalTransactionId()),
-						ByteUtils.byteArrayToString(xid.getBranchQualifier()));
-				continue;
-			} catch (RollbackRequiredException ex) {
-				logger.debug("{}| recover: branch={}, message= rollback-required",
-						ByteUtils.byteArrayToString(xid.getGlobalTransactionId()),
-						ByteUtils.byteArrayToString(xid.getBranchQualifier()));
-				continue;
-			} catch (SystemException ex) {
-				logger.debug("{}| recover: branch={}, message= {}", ByteUtils.byteArrayToString(xid.getGlobalTransactionId()),
-						ByteUtils.byteArrayToString(xid.getBranchQualifier()), ex.getMessage(), ex);
-				continue;
-			} catch (RuntimeException ex) {
-				logger.debug("{}| recover: branch={}, message= {}", ByteUtils.byteArrayToString(xid.getGlobalTransactionId()),
-						ByteUtils.byteArrayToString(xid.getBranchQualifier()), ex.getMessage(), ex);
-				continue;
+			if (this.isRecoveryRequired(transaction)) {
+				recoveryList.add(transaction);
 			}
 		}
-		logger.debug("transaction-recovery: total= {}, success= {}", total, value);
+
+		int success = 0, failure = 0;
+		this.lockTransactionsInBatch(recoveryList);
+		try {
+			if (this.recoveryThreads <= 1 || recoveryList.size() <= 1) {
+				for (int i = 0; i < recoveryList.size(); i++) {
+					if (this.recoverTransactionQuietly(recoveryList.get(i))) {
+						success++;
+					} else {
+						failure++;
+					}
+				}
+			} else {
+				List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+				for (int i = 0; i < recoveryList.size(); i++) {
+					final Transaction transaction = recoveryList.get(i);
+					tasks.add(new Callable<Boolean>() {
+						public Boolean call() {
+							return recoverTransactionQuietly(transaction);
+						}
+					});
+				}
+
+				List<Future<Boolean>> futures = this.getRecoveryExecutor().invokeAll(tasks);
+				for (int i = 0; i < futures.size(); i++) {
+					if (Boolean.TRUE.equals(futures.get(i).get())) {
+						success++;
+					} else {
+						failure++;
+					}
+				}
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			logger.warn("transaction-recovery: interrupted!");
+		} catch (ExecutionException ex) {
+			logger.error("transaction-recovery: error occurred while recovering transactions!", ex.getCause());
+		} finally {
+			this.unlockTransactionsInBatch();
+		}
+
+		logger.debug("transaction-recovery: total= {}, recovered= {}, success= {}, failure= {}", total,
+				recoveryList.size(), success, failure);
 	}
 
-	public void recoverTransactionIfNecessary(Transaction transaction)
-			throws CommitRequiredException, RollbackRequiredException, SystemException {
+	private boolean recoverTransactionQuietly(Transaction transaction) {
 		org.bytesoft.transaction.TransactionContext transactionContext = transaction.getTransactionContext();
-		int recoveredTimes = transactionContext.getRecoveredTimes() > 10 ? 10 : transactionContext.getRecoveredTimes();
-		long recoverMillis = transactionContext.getCreatedTime() + SECOND_MILLIS * 60L * (long) Math.pow(2, recoveredTimes);
+		TransactionXid xid = transactionContext.getXid();
+		try {
+			this.recoverTransaction(transaction);
+			return true;
+		} catch (CommitRequiredException ex) {
+			logger.debug("{}| recover: branch={}, message= commit-required",
+					ByteUtils.byteArrayToString(xid.getGlobalTransactionId()),
+					ByteUtils.byteArrayToString(xid.getBranchQualifier()));
+		} catch (RollbackRequiredException ex) {
+			logger.debug("{}| recover: branch={}, message= rollback-required",
+					ByteUtils.byteArrayToString(xid.getGlobalTransactionId()),
+					ByteUtils.byteArrayToString(xid.getBranchQualifier()));
+		} catch (SystemException ex) {
+			logger.debug("{}| recover: branch={}, message= {}", ByteUtils.byteArrayToString(xid.getGlobalTransactionId()),
+					ByteUtils.byteArrayToString(xid.getBranchQualifier()), ex.getMessage(), ex);
+		} catch (RuntimeException ex) {
+			logger.debug("{}| recover: branch={}, message= {}", ByteUtils.byteArrayToString(xid.getGlobalTransactionId()),
+					ByteUtils.byteArrayToString(xid.getBranchQualifier()), ex.getMessage(), ex);
+		}
+		return false;
+	}
+
+	private ExecutorService getRecoveryExecutor() {
+		if (this.recoveryExecutor == null) {
+			synchronized (this) {
+				if (this.destroyed) {
+					throw new IllegalStateException("The transaction recovery has been destroyed!");
+				} else if (this.recoveryExecutor == null) {
+					ThreadPoolExecutor executor = new ThreadPoolExecutor(this.recoveryThreads, this.recoveryThreads,
+							SECOND_MILLIS * 60L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+							new RecoveryThreadFactory());
+					executor.allowCoreThreadTimeOut(true);
+					this.recoveryExecutor = executor;
+				}
+			}
+		}
+		return this.recoveryExecutor;
+	}
 
-		if (System.currentTimeMillis() > recoverMillis) {
+	/**
+	 * Stops the recovery threads, the recoveries in progress are allowed to complete within 15 seconds.
+	 */
+	public void destroy() {
+		ExecutorService executor = null;
+		synchronized (this) {
+			executor = this.recoveryExecutor;
+			this.recoveryExecutor = null;
+			this.destroyed = true;
+		}
+
+		if (executor == null) {
+			return;
+		}
+
+		executor.shutdown();
+		try {
+			if (executor.awaitTermination(SECOND_MILLIS * 15L, TimeUnit.MILLISECONDS) == false) {
+				executor.shutdownNow();
+			}
+		} catch (InterruptedException ex) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Settles the locks of the coordinator transactions to be recovered in this round with one batch request, only the
+	 * transactions which recoverCoordinator will lock are included, and the locks which are not consumed by it will be
+	 * released by unlockTransactionsInBatch.
+	 */
+	private void lockTransactionsInBatch(List<Transaction> transactions) {
+		TransactionLock compensableLock = this.beanFactory.getCompensableLock();
+		if (CompensableBatchLock.class.isInstance(compensableLock) == false) {
+			return;
+		}
+
+		List<TransactionXid> xidList = new ArrayList<TransactionXid>();
+		for (int i = 0; i < transactions.size(); i++) {
+			Transaction transaction = transactions.get(i);
+			if (this.isLockRequired(transaction)) {
+				xidList.add(transaction.getTransactionContext().getXid());
+			} // end-if (this.isLockRequired(transaction))
+		}
+
+		if (xidList.isEmpty() == false) {
+			CompensableBatchLock batchLock = (CompensableBatchLock) compensableLock;
+			this.batchLocked.addAll(batchLock.lockTransactions(xidList, this.endpoint));
+		}
+	}
+
+	/**
+	 * @return true if recoverCoordinator will lock the transaction, see the status switch of it.
+	 */
+	private boolean isLockRequired(Transaction transaction) {
+		org.bytesoft.transaction.TransactionContext transactionContext = transaction.getTransactionContext();
+		if (transactionContext.isCoordinator() == false) {
+			return false;
+		}
+
+		switch (transaction.getTransactionStatus()) {
+		case Status.STATUS_ACTIVE:
+		case Status.STATUS_MARKED_ROLLBACK:
+		case Status.STATUS_PREPARING:
+		case Status.STATUS_UNKNOWN:
+			return transactionContext.isPropagated() == false;
+		case Status.STATUS_ROLLING_BACK:
+		case Status.STATUS_PREPARED:
+		case Status.STATUS_COMMITTING:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	private void unlockTransactionsInBatch() {
+		TransactionLock compensableLock = this.beanFactory.getCompensableLock();
+		for (Iterator<TransactionXid> itr = this.batchLocked.iterator(); itr.hasNext();) {
+			TransactionXid xid = itr.next();
+			if (this.batchLocked.remove(xid)) {
+				compensableLock.unlockTransaction(xid, this.endpoint);
+			} // end-if (this.batchLocked.remove(xid))
+		}
+	}
+
+	private boolean lockTransaction(TransactionXid xid) {
+		TransactionLock compensableLock = this.beanFactory.getCompensableLock();
+		return this.batchLocked.remove(xid) || compensableLock.lockTransaction(xid, this.endpoint);
+	}
+
+	/**
+	 * The backoff starts at the time the transaction was last recovered at, or at its created time if it has never been
+	 * recovered.
+	 */
+	private boolean isRecoveryRequired(Transaction transaction) {
+		TransactionContext transactionContext = (TransactionContext) transaction.getTransactionContext();
+		long recoveredAt = transactionContext.getRecoveredAt();
+		long startMillis = recoveredAt > 0 ? recoveredAt : transactionContext.getCreatedTime();
+		int recoveredTimes = Math.min(transactionContext.getRecoveredTimes(), this.maxBackoffTimes);
+		return System.currentTimeMillis() > startMillis + this.recoveryInterval * (1L << recoveredTimes);
+	}
+
+	public void recoverTransactionIfNecessary(Transaction transaction)
+			throws CommitRequiredException, RollbackRequiredException, SystemException {
+		if (this.isRecoveryRequired(transaction)) {
 			this.recoverTransaction(transaction);
-		} // end-if (System.currentTimeMillis() > recoverMillis)
+		} // end-if (this.isRecoveryRequired(transaction))
 
 	}
 
+	/**
+	 * @return true if the current thread is recovering a transaction, the remote calls of the recovery may be batched
+	 *         by the coordinators while the ones of the live transactions are sent directly.
+	 */
+	public static boolean isRecovering() {
+		return Boolean.TRUE.equals(recovering.get());
+	}
+
 	public void recoverTransaction(Transaction transaction)
 			throws CommitRequiredException, RollbackRequiredException, SystemException {
 		org.bytesoft.transaction.TransactionContext transactionContext = transaction.getTransactionContext();
 
-		if (transactionContext.isCoordinator()) {
-			transaction.recover();
-			this.recoverCoordinator(transaction);
-		} else {
-			transaction.recover();
-			this.recoverParticipant(transaction);
+		CompensableStatistic compensableStatistic = this.beanFactory.getCompensableStatistic();
+		if (compensableStatistic != null) {
+			compensableStatistic.fireRecoverTransaction(transactionContext.getXid());
+		}
+
+		boolean nested = isRecovering();
+		recovering.set(Boolean.TRUE);
+		try {
+			if (transactionContext.isCoordinator()) {
+				transaction.recover();
+				this.recoverCoordinator(transaction);
+			} else {
+				transaction.recover();
+				this.recoverParticipant(transaction);
+			}
+		} finally {
+			if (nested == false) {
+				recovering.remove();
+			} // end-if (nested == false)
 		}
 
 	}
@@ -370,7 +589,7 @@ public class TransactionRecoveryImpl
 			case Status.STATUS_PREPARING:
 			case Status.STATUS_UNKNOWN: /* TODO */ {
 				if (transactionContext.isPropagated() == false) {
-					if ((locked = compensableLock.lockTransaction(xid, this.endpoint)) == false) {
+					if ((locked = this.lockTransaction(xid)) == false) {
 						throw new SystemException(XAException.XAER_PROTO);
 					}
 
@@ -380,7 +599,7 @@ public class TransactionRecoveryImpl
 				break;
 			}
 			case Status.STATUS_ROLLING_BACK: {
-				if ((locked = compensableLock.lockTransaction(xid, this.endpoint)) == false) {
+				if ((locked = this.lockTransaction(xid)) == false) {
 					throw new SystemException(XAException.XAER_PROTO);
 				}
 
@@ -390,7 +609,7 @@ public class TransactionRecoveryImpl
 			}
 			case Status.STATUS_PREPARED:
 			case Status.STATUS_COMMITTING: {
-				if ((locked = compensableLock.lockTransaction(xid, this.endpoint)) == false) {
+				if ((locked = this.lockTransaction(xid)) == false) {
 					throw new SystemException(XAException.XAER_PROTO);
 				}
 
@@ -436,6 +655,30 @@ public class TransactionRecoveryImpl
 
 	}
 
+	public int getRecoveryThreads() {
+		return recoveryThreads;
+	}
+
+	public void setRecoveryThreads(int recoveryThreads) {
+		this.recoveryThreads = recoveryThreads;
+	}
+
+	public long getRecoveryInterval() {
+		return recoveryInterval;
+	}
+
+	public void setRecoveryInterval(long recoveryInterval) {
+		this.recoveryInterval = recoveryInterval;
+	}
+
+	public int getMaxBackoffTimes() {
+		return maxBackoffTimes;
+	}
+
+	public void setMaxBackoffTimes(int maxBackoffTimes) {
+		this.maxBackoffTimes = maxBackoffTimes;
+	}
+
 	public boolean isStatefully() {
 		return statefully;
 	}
@@ -460,6 +703,16 @@ public class TransactionRecoveryImpl
 		this.beanFactory = tbf;
 	}
 
+	static class RecoveryThreadFactory implements ThreadFactory {
+		private final AtomicInteger index = new AtomicInteger();
+
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, String.format("bytetcc-recovery-%s", this.index.incrementAndGet()));
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
 	private static class TransactionBranchKey {
 		public Xid xid;
 		public String resource;
@@ -25,6 +25,8 @@ import org.bytesoft.compensable.CompensableBeanFactory;
 import org.bytesoft.compensable.CompensableInvocation;
 import org.bytesoft.compensable.archive.CompensableArchive;
 import org.bytesoft.compensable.aware.CompensableBeanFactoryAware;
+import org.bytesoft.compensable.logging.CompensableInvocationCodec;
+import org.bytesoft.compensable.logging.LazyCompensableInvocation;
 import org.bytesoft.transaction.logging.ArchiveDeserializer;
 import org.bytesoft.transaction.xa.TransactionXid;
 import org.bytesoft.transaction.xa.XidFactory;
@@ -37,6 +39,8 @@ public class CompensableArchiveDeserializer implements ArchiveDeserializer, Comp
 
 	@javax.inject.Inject
 	private CompensableBeanFactory beanFactory;
+	private CompensableInvocationCodec invocationCodec;
+	private boolean codecEnabled;
 
 	public byte[] serialize(TransactionXid xid, Object obj) {
 		CompensableArchive archive = (CompensableArchive) obj;
@@ -44,9 +48,19 @@ public class CompensableArchiveDeserializer implements ArchiveDeserializer, Comp
 		CompensableInvocation compensable = archive.getCompensable();
 		byte[] byteArray = new byte[0];
 		try {
-			byteArray = SerializeUtils.serializeObject(compensable);
+			if (SerializedCompensableInvocation.class.isInstance(compensable)
+					&& ((SerializedCompensableInvocation) compensable).isDecoded() == false) {
+				byteArray = ((SerializedCompensableInvocation) compensable).byteArray; // not changed since it was read
+			} else {
+				if (LazyCompensableInvocation.class.isInstance(compensable)) {
+					compensable = ((LazyCompensableInvocation) compensable).getInvocation(); // kryo ignores writeReplace
+				} // end-if (LazyCompensableInvocation.class.isInstance(compensable))
+
+				byteArray = this.codecEnabled && this.invocationCodec != null ? this.invocationCodec.encode(compensable)
+						: SerializeUtils.serializeObject(compensable);
+			}
 		} catch (Exception ex) {
-			if (compensable == null) {
+			if (compensable == null || LazyCompensableInvocation.class.isInstance(compensable)) {
 				logger.error("Error occurred while serializing compensable: {}", compensable, ex);
 			} else {
 				logger.error("Error occurred while serializing args: {}", compensable.getArgs(), ex);
@@ -190,10 +204,10 @@ public class CompensableArchiveDeserializer implements ArchiveDeserializer, Comp
 		System.arraycopy(array, index, byteArray, 0, byteArray.length);
 
 		CompensableInvocation compensable = null;
-		try {
-			compensable = (CompensableInvocation) SerializeUtils.deserializeObject(byteArray);
-		} catch (Exception ex) {
-			logger.error("Error occurred while deserializing object: {}", byteArray, ex);
+		if (byteArray.length > 0) {
+			compensable = new SerializedCompensableInvocation(this.invocationCodec, byteArray);
+		} else {
+			logger.error("Error occurred while deserializing object: {}", byteArray);
 		}
 
 		XidFactory xidFactory = this.beanFactory.getTransactionXidFactory();
@@ -228,6 +242,50 @@ public class CompensableArchiveDeserializer implements ArchiveDeserializer, Comp
 		return archive;
 	}
 
+	/**
+	 * The invocation is decoded when it is accessed for the first time, the records which are written back before then
+	 * reuse the original byte array. The decoding is chosen by the version byte of the record, regardless of whether
+	 * the encoding by the codec is enabled, so that the compact records remain readable once it's disabled.
+	 */
+	static class SerializedCompensableInvocation extends LazyCompensableInvocation {
+		private static final long serialVersionUID = 1L;
+
+		private transient final CompensableInvocationCodec invocationCodec;
+		private final byte[] byteArray;
+
+		public SerializedCompensableInvocation(CompensableInvocationCodec invocationCodec, byte[] byteArray) {
+			this.invocationCodec = invocationCodec;
+			this.byteArray = byteArray;
+		}
+
+		protected CompensableInvocation decode() throws Exception {
+			if (this.invocationCodec != null && this.byteArray[0] == this.invocationCodec.getVersion()) {
+				return this.invocationCodec.decode(this.byteArray);
+			} else if (this.byteArray[0] >= 0x0 && this.byteArray[0] <= 0x2) {
+				return (CompensableInvocation) SerializeUtils.deserializeObject(this.byteArray);
+			} else {
+				throw new IllegalStateException(String.format(
+						"No invocation codec is configured for the record(version= %s).", this.byteArray[0]));
+			}
+		}
+	}
+
+	public CompensableInvocationCodec getInvocationCodec() {
+		return invocationCodec;
+	}
+
+	public void setInvocationCodec(CompensableInvocationCodec invocationCodec) {
+		this.invocationCodec = invocationCodec;
+	}
+
+	public boolean isCodecEnabled() {
+		return codecEnabled;
+	}
+
+	public void setCodecEnabled(boolean codecEnabled) {
+		this.codecEnabled = codecEnabled;
+	}
+
 	public CompensableBeanFactory getBeanFactory() {
 		return this.beanFactory;
 	}
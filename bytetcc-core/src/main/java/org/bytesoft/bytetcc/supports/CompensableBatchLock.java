@@ -0,0 +1,34 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports;
+
+import java.util.Collection;
+import java.util.Set;
+
+import org.bytesoft.transaction.TransactionLock;
+import org.bytesoft.transaction.xa.TransactionXid;
+
+public interface CompensableBatchLock extends TransactionLock {
+
+	/**
+	 * Acquires the locks of a batch of transactions, each acquired lock must be released by unlockTransaction.
+	 *
+	 * @return the transactions which have been locked by the identifier, the others can still be locked one by one
+	 *         through lockTransaction.
+	 */
+	public Set<TransactionXid> lockTransactions(Collection<TransactionXid> transactionXids, String identifier);
+
+}
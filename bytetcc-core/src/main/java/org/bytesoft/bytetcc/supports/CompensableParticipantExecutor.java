@@ -0,0 +1,139 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded executor used to confirm/cancel the remote participants of a compensable transaction in parallel. When
+ * the executor is saturated, the task is executed by the calling thread. If the async mode is enabled, the remote
+ * participants whose transport implements AsyncRemoteCoordinator are confirmed/cancelled without using the executor.
+ */
+public class CompensableParticipantExecutor {
+	static final Logger logger = LoggerFactory.getLogger(CompensableParticipantExecutor.class);
+
+	static final long SECOND_MILLIS = 1000L;
+
+	private boolean parallelEnabled = false;
+	private boolean asyncEnabled = false;
+	private int corePoolSize = 4;
+	private int maximumPoolSize = 16;
+	private int queueCapacity = 256;
+	private long keepAliveTime = SECOND_MILLIS * 60;
+
+	private volatile ThreadPoolExecutor executor;
+	private volatile boolean destroyed;
+
+	/**
+	 * @return null if the parallel mode is disabled, the caller should execute the task by itself.
+	 */
+	public <T> Future<T> submit(Callable<T> task) {
+		if (this.parallelEnabled == false || this.destroyed) {
+			return null;
+		}
+		return this.getExecutorIfNecessary().submit(task);
+	}
+
+	private ThreadPoolExecutor getExecutorIfNecessary() {
+		if (this.executor == null) {
+			synchronized (this) {
+				if (this.executor == null) {
+					this.executor = new ThreadPoolExecutor(this.corePoolSize, this.maximumPoolSize, this.keepAliveTime,
+							TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(this.queueCapacity),
+							new ParticipantThreadFactory(), new ThreadPoolExecutor.CallerRunsPolicy());
+					this.executor.allowCoreThreadTimeOut(true);
+				}
+			}
+		}
+		return this.executor;
+	}
+
+	public synchronized void destroy() {
+		this.destroyed = true;
+		if (this.executor != null) {
+			this.executor.shutdown();
+			logger.debug("The participant executor has been shut down.");
+		}
+	}
+
+	static class ParticipantThreadFactory implements ThreadFactory {
+		private final AtomicInteger index = new AtomicInteger();
+
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, String.format("bytetcc-participant-%s", this.index.incrementAndGet()));
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+	public boolean isParallelEnabled() {
+		return parallelEnabled;
+	}
+
+	public void setParallelEnabled(boolean parallelEnabled) {
+		this.parallelEnabled = parallelEnabled;
+	}
+
+	public boolean isAsyncEnabled() {
+		return asyncEnabled;
+	}
+
+	public void setAsyncEnabled(boolean asyncEnabled) {
+		this.asyncEnabled = asyncEnabled;
+	}
+
+	public int getCorePoolSize() {
+		return corePoolSize;
+	}
+
+	public void setCorePoolSize(int corePoolSize) {
+		this.corePoolSize = corePoolSize;
+	}
+
+	public int getMaximumPoolSize() {
+		return maximumPoolSize;
+	}
+
+	public void setMaximumPoolSize(int maximumPoolSize) {
+		this.maximumPoolSize = maximumPoolSize;
+	}
+
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	public void setQueueCapacity(int queueCapacity) {
+		this.queueCapacity = queueCapacity;
+	}
+
+	public long getKeepAliveTime() {
+		return keepAliveTime;
+	}
+
+	public void setKeepAliveTime(long keepAliveTime) {
+		this.keepAliveTime = keepAliveTime;
+	}
+
+}
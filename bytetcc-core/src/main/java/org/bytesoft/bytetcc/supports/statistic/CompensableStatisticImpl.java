@@ -0,0 +1,416 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports.statistic;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import javax.transaction.xa.Xid;
+
+import org.bytesoft.compensable.CompensableInvocation;
+import org.bytesoft.compensable.CompensableStatistic;
+import org.bytesoft.compensable.archive.CompensableArchive;
+import org.bytesoft.transaction.xa.TransactionXid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class CompensableStatisticImpl implements CompensableStatistic, CompensableStatisticMBean {
+	static final Logger logger = LoggerFactory.getLogger(CompensableStatisticImpl.class);
+
+	static final String PHASE_TRANSACTION_COMMIT = "transaction-commit";
+	static final String PHASE_TRANSACTION_ROLLBACK = "transaction-rollback";
+	static final String PHASE_TRY = "try";
+	static final String PHASE_CONFIRM = "confirm";
+	static final String PHASE_CANCEL = "cancel";
+
+	private final LongAdder beginCounter = new LongAdder();
+	private final LongAdder commitCounter = new LongAdder();
+	private final LongAdder commitFailureCounter = new LongAdder();
+	private final LongAdder rollbackCounter = new LongAdder();
+	private final LongAdder rollbackFailureCounter = new LongAdder();
+	private final LongAdder recoverCounter = new LongAdder();
+	private final LongAdder cleanupCounter = new LongAdder();
+
+	private final ConcurrentMap<String, LatencyHistogram> phaseHistograms = new ConcurrentHashMap<String, LatencyHistogram>();
+	private final ConcurrentMap<String, LatencyHistogram> compensableHistograms = new ConcurrentHashMap<String, LatencyHistogram>();
+	/*
+	 * start time(nano) of the uncompleted phases, it's cleared once the phase is completed or the tx is cleaned up. The
+	 * phases which are never completed locally(e.g. crashed, or recovered by another node) expire after
+	 * pendingExpireMillis.
+	 */
+	private final ConcurrentMap<StartKey, Long> startTimes = new ConcurrentHashMap<StartKey, Long>();
+	private final AtomicLong nextEvictNanos = new AtomicLong(System.nanoTime());
+	private final AtomicLong nextWarnNanos = new AtomicLong(System.nanoTime());
+
+	private int maxPendingSize = 1024 * 64;
+	private long pendingExpireMillis = 1000L * 60 * 10;
+	private String objectName = "org.bytesoft.bytetcc:type=CompensableStatistic";
+	private boolean jmxEnabled = true;
+
+	/* transaction */
+	public void fireBeginTransaction(TransactionXid xid) {
+		this.beginCounter.increment();
+		this.markStart(PHASE_TRY, xid);
+	}
+
+	public void fireCommitTransactionStart(TransactionXid xid) {
+		this.markStart(PHASE_TRANSACTION_COMMIT, xid);
+	}
+
+	public void fireCommitTransactionSuccess(TransactionXid xid) {
+		this.commitCounter.increment();
+		this.markFinish(this.phaseHistograms, PHASE_TRANSACTION_COMMIT, PHASE_TRANSACTION_COMMIT, xid, true);
+	}
+
+	public void fireCommitTransactionFailure(TransactionXid xid) {
+		this.commitFailureCounter.increment();
+		this.markFinish(this.phaseHistograms, PHASE_TRANSACTION_COMMIT, PHASE_TRANSACTION_COMMIT, xid, false);
+	}
+
+	public void fireRollbackTransactionStart(TransactionXid xid) {
+		this.markStart(PHASE_TRANSACTION_ROLLBACK, xid);
+	}
+
+	public void fireRollbackTransactionSuccess(TransactionXid xid) {
+		this.rollbackCounter.increment();
+		this.markFinish(this.phaseHistograms, PHASE_TRANSACTION_ROLLBACK, PHASE_TRANSACTION_ROLLBACK, xid, true);
+	}
+
+	public void fireRollbackTransactionFailure(TransactionXid xid) {
+		this.rollbackFailureCounter.increment();
+		this.markFinish(this.phaseHistograms, PHASE_TRANSACTION_ROLLBACK, PHASE_TRANSACTION_ROLLBACK, xid, false);
+	}
+
+	public void fireCleanupTransaction(TransactionXid xid) {
+		this.cleanupCounter.increment();
+		this.startTimes.remove(new StartKey(PHASE_TRY, xid));
+		this.startTimes.remove(new StartKey(PHASE_CONFIRM, xid));
+		this.startTimes.remove(new StartKey(PHASE_CANCEL, xid));
+		this.startTimes.remove(new StartKey(PHASE_TRANSACTION_COMMIT, xid));
+		this.startTimes.remove(new StartKey(PHASE_TRANSACTION_ROLLBACK, xid));
+	}
+
+	public void fireRecoverTransaction(TransactionXid xid) {
+		this.recoverCounter.increment();
+	}
+
+	/* phase */
+	public void fireCancelPhaseStart(TransactionXid xid) {
+		this.markStart(PHASE_CANCEL, xid);
+	}
+
+	public void fireConfirmPhaseStart(TransactionXid xid) {
+		this.markStart(PHASE_CONFIRM, xid);
+	}
+
+	public void fireTryPhaseSuccess(TransactionXid xid) {
+		this.markFinish(this.phaseHistograms, PHASE_TRY, PHASE_TRY, xid, true);
+	}
+
+	public void fireTryPhaseFailure(TransactionXid xid) {
+		this.markFinish(this.phaseHistograms, PHASE_TRY, PHASE_TRY, xid, false);
+	}
+
+	public void fireCancelPhaseSuccess(TransactionXid xid) {
+		this.markFinish(this.phaseHistograms, PHASE_CANCEL, PHASE_CANCEL, xid, true);
+	}
+
+	public void fireCancelPhaseFailure(TransactionXid xid) {
+		this.markFinish(this.phaseHistograms, PHASE_CANCEL, PHASE_CANCEL, xid, false);
+	}
+
+	public void fireConfirmPhaseSuccess(TransactionXid xid) {
+		this.markFinish(this.phaseHistograms, PHASE_CONFIRM, PHASE_CONFIRM, xid, true);
+	}
+
+	public void fireConfirmPhaseFailure(TransactionXid xid) {
+		this.markFinish(this.phaseHistograms, PHASE_CONFIRM, PHASE_CONFIRM, xid, false);
+	}
+
+	/* compensable */
+	public void fireTryCompensableStart(TransactionXid xid, CompensableArchive compensable) {
+		this.markStart(PHASE_TRY, compensable.getIdentifier());
+	}
+
+	public void fireCancelCompensableStart(TransactionXid xid, CompensableArchive compensable) {
+		this.markStart(PHASE_CANCEL, compensable.getIdentifier());
+	}
+
+	public void fireConfirmCompensableStart(TransactionXid xid, CompensableArchive compensable) {
+		this.markStart(PHASE_CONFIRM, compensable.getIdentifier());
+	}
+
+	public void fireTryCompensableSuccess(TransactionXid xid, CompensableArchive compensable) {
+		this.fireCompensableFinish(PHASE_TRY, compensable, true);
+	}
+
+	public void fireTryCompensableFailure(TransactionXid xid, CompensableArchive compensable) {
+		this.fireCompensableFinish(PHASE_TRY, compensable, false);
+	}
+
+	public void fireCancelCompensableSuccess(TransactionXid xid, CompensableArchive compensable) {
+		this.fireCompensableFinish(PHASE_CANCEL, compensable, true);
+	}
+
+	public void fireCancelCompensableFailure(TransactionXid xid, CompensableArchive compensable) {
+		this.fireCompensableFinish(PHASE_CANCEL, compensable, false);
+	}
+
+	public void fireConfirmCompensableSuccess(TransactionXid xid, CompensableArchive compensable) {
+		this.fireCompensableFinish(PHASE_CONFIRM, compensable, true);
+	}
+
+	public void fireConfirmCompensableFailure(TransactionXid xid, CompensableArchive compensable) {
+		this.fireCompensableFinish(PHASE_CONFIRM, compensable, false);
+	}
+
+	private void fireCompensableFinish(String phase, CompensableArchive compensable, boolean success) {
+		CompensableInvocation invocation = compensable.getCompensable();
+		Object identifier = invocation == null ? null : invocation.getIdentifier();
+		String key = String.format("%s:%s", identifier, phase);
+		this.markFinish(this.compensableHistograms, key, phase, compensable.getIdentifier(), success);
+	}
+
+	private void markStart(String phase, Xid xid) {
+		if (xid == null) {
+			return;
+		}
+
+		long current = System.nanoTime();
+		this.evictExpiredIfNecessary(current);
+
+		if (this.startTimes.size() >= this.maxPendingSize) {
+			long nextWarn = this.nextWarnNanos.get();
+			long warnAfter = current + TimeUnit.MINUTES.toNanos(1);
+			if (current - nextWarn >= 0 && this.nextWarnNanos.compareAndSet(nextWarn, warnAfter)) {
+				logger.warn("Too many uncompleted phases(size= {}), the latency of phase {} will not be recorded.",
+						this.startTimes.size(), phase);
+			} // end-if (current - nextWarn >= 0 && ...)
+			return;
+		}
+		this.startTimes.put(new StartKey(phase, xid), current);
+	}
+
+	/**
+	 * Removes the start times which are older than pendingExpireMillis, at most once per second unless the map is full.
+	 */
+	private void evictExpiredIfNecessary(long current) {
+		long nextEvict = this.nextEvictNanos.get();
+		boolean full = this.startTimes.size() >= this.maxPendingSize;
+		if (full == false && current - nextEvict < 0) {
+			return;
+		} else if (this.nextEvictNanos.compareAndSet(nextEvict, current + TimeUnit.SECONDS.toNanos(1)) == false) {
+			return;
+		}
+
+		long expiredBefore = current - TimeUnit.MILLISECONDS.toNanos(this.pendingExpireMillis);
+		Iterator<Long> itr = this.startTimes.values().iterator();
+		while (itr.hasNext()) {
+			if (itr.next() - expiredBefore < 0) {
+				itr.remove();
+			}
+		} // end-while (itr.hasNext())
+	}
+
+	private void markFinish(ConcurrentMap<String, LatencyHistogram> histograms, String key, String phase, Xid xid,
+			boolean success) {
+		Long started = xid == null ? null : this.startTimes.remove(new StartKey(phase, xid));
+		if (started == null) {
+			return; // the start event was not recorded, such as the transaction is recovered from tx-log.
+		}
+
+		LatencyHistogram histogram = histograms.get(key);
+		if (histogram == null) {
+			LatencyHistogram created = new LatencyHistogram();
+			LatencyHistogram existed = histograms.putIfAbsent(key, created);
+			histogram = existed == null ? created : existed;
+		}
+		histogram.record((System.nanoTime() - started) / 1000L, success);
+	}
+
+	/* pull api */
+	public Map<String, LatencyHistogram> getPhaseHistograms() {
+		return new TreeMap<String, LatencyHistogram>(this.phaseHistograms);
+	}
+
+	public Map<String, LatencyHistogram> getCompensableHistograms() {
+		return new TreeMap<String, LatencyHistogram>(this.compensableHistograms);
+	}
+
+	public long getBeginCount() {
+		return this.beginCounter.sum();
+	}
+
+	public long getCommitCount() {
+		return this.commitCounter.sum();
+	}
+
+	public long getCommitFailureCount() {
+		return this.commitFailureCounter.sum();
+	}
+
+	public long getRollbackCount() {
+		return this.rollbackCounter.sum();
+	}
+
+	public long getRollbackFailureCount() {
+		return this.rollbackFailureCounter.sum();
+	}
+
+	public long getRecoverCount() {
+		return this.recoverCounter.sum();
+	}
+
+	public long getCleanupCount() {
+		return this.cleanupCounter.sum();
+	}
+
+	public String[] getPhaseStatistics() {
+		return this.toStringArray(this.getPhaseHistograms());
+	}
+
+	public String[] getCompensableStatistics() {
+		return this.toStringArray(this.getCompensableHistograms());
+	}
+
+	private String[] toStringArray(Map<String, LatencyHistogram> histograms) {
+		List<String> resultList = new ArrayList<String>();
+		for (Iterator<Map.Entry<String, LatencyHistogram>> itr = histograms.entrySet().iterator(); itr.hasNext();) {
+			Map.Entry<String, LatencyHistogram> entry = itr.next();
+			resultList.add(String.format("%s: %s", entry.getKey(), entry.getValue()));
+		}
+		return resultList.toArray(new String[resultList.size()]);
+	}
+
+	public void reset() {
+		this.beginCounter.reset();
+		this.commitCounter.reset();
+		this.commitFailureCounter.reset();
+		this.rollbackCounter.reset();
+		this.rollbackFailureCounter.reset();
+		this.recoverCounter.reset();
+		this.cleanupCounter.reset();
+		this.phaseHistograms.clear();
+		this.compensableHistograms.clear();
+	}
+
+	/* jmx */
+	public void registerMBean() {
+		if (this.jmxEnabled == false) {
+			return;
+		}
+
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(this.objectName);
+			if (server.isRegistered(name)) {
+				logger.warn("The mbean {} has already been registered!", this.objectName);
+				return;
+			}
+			server.registerMBean(new StandardMBean(this, CompensableStatisticMBean.class), name);
+		} catch (Exception ex) {
+			logger.error("Error occurred while registering mbean {}.", this.objectName, ex);
+		}
+	}
+
+	public void unregisterMBean() {
+		if (this.jmxEnabled == false) {
+			return;
+		}
+
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(this.objectName);
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+		} catch (Exception ex) {
+			logger.error("Error occurred while unregistering mbean {}.", this.objectName, ex);
+		}
+	}
+
+	private static class StartKey {
+		private final String phase;
+		private final Xid xid;
+
+		public StartKey(String phase, Xid xid) {
+			this.phase = phase;
+			this.xid = xid;
+		}
+
+		public int hashCode() {
+			int hash = 3;
+			hash += 7 * this.phase.hashCode();
+			hash += 11 * this.xid.hashCode();
+			return hash;
+		}
+
+		public boolean equals(Object obj) {
+			if (obj == null) {
+				return false;
+			} else if (StartKey.class.isInstance(obj) == false) {
+				return false;
+			}
+			StartKey that = (StartKey) obj;
+			return this.phase.equals(that.phase) && this.xid.equals(that.xid);
+		}
+	}
+
+	public int getMaxPendingSize() {
+		return maxPendingSize;
+	}
+
+	public void setMaxPendingSize(int maxPendingSize) {
+		this.maxPendingSize = maxPendingSize;
+	}
+
+	public long getPendingExpireMillis() {
+		return pendingExpireMillis;
+	}
+
+	public void setPendingExpireMillis(long pendingExpireMillis) {
+		this.pendingExpireMillis = pendingExpireMillis;
+	}
+
+	public String getObjectName() {
+		return objectName;
+	}
+
+	public void setObjectName(String objectName) {
+		this.objectName = objectName;
+	}
+
+	public boolean isJmxEnabled() {
+		return jmxEnabled;
+	}
+
+	public void setJmxEnabled(boolean jmxEnabled) {
+		this.jmxEnabled = jmxEnabled;
+	}
+
+}
@@ -0,0 +1,40 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports.statistic;
+
+public interface CompensableStatisticMBean {
+
+	public long getBeginCount();
+
+	public long getCommitCount();
+
+	public long getCommitFailureCount();
+
+	public long getRollbackCount();
+
+	public long getRollbackFailureCount();
+
+	public long getRecoverCount();
+
+	public long getCleanupCount();
+
+	public String[] getPhaseStatistics();
+
+	public String[] getCompensableStatistics();
+
+	public void reset();
+
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports.statistic;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * Lock-free latency histogram, the values(in microseconds) are recorded into power-of-two buckets, so the percentiles
+ * are approximations(upper bound of the bucket).
+ */
+public class LatencyHistogram {
+	static final int BUCKET_COUNT = 40;
+
+	private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+	private final LongAdder count = new LongAdder();
+	private final LongAdder failure = new LongAdder();
+	private final LongAdder total = new LongAdder();
+	private final LongAccumulator maximum = new LongAccumulator(new LongBinaryOperator() {
+		public long applyAsLong(long left, long right) {
+			return Math.max(left, right);
+		}
+	}, 0L);
+
+	public LatencyHistogram() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			this.buckets[i] = new LongAdder();
+		}
+	}
+
+	public void record(long micros, boolean success) {
+		long value = micros < 0 ? 0 : micros;
+		int index = value == 0 ? 0 : 64 - Long.numberOfLeadingZeros(value);
+		this.buckets[index >= BUCKET_COUNT ? BUCKET_COUNT - 1 : index].increment();
+		this.count.increment();
+		this.total.add(value);
+		this.maximum.accumulate(value);
+		if (success == false) {
+			this.failure.increment();
+		}
+	}
+
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			this.buckets[i].reset();
+		}
+		this.count.reset();
+		this.failure.reset();
+		this.total.reset();
+		this.maximum.reset();
+	}
+
+	public long getCount() {
+		return this.count.sum();
+	}
+
+	public long getFailureCount() {
+		return this.failure.sum();
+	}
+
+	public double getMeanMillis() {
+		long number = this.count.sum();
+		return number == 0 ? 0 : this.total.sum() / 1000.0 / number;
+	}
+
+	public double getMaxMillis() {
+		return this.maximum.get() / 1000.0;
+	}
+
+	/**
+	 * @param percentile in range (0, 100]
+	 */
+	public double getPercentileMillis(double percentile) {
+		long[] snapshot = new long[BUCKET_COUNT];
+		long number = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			snapshot[i] = this.buckets[i].sum();
+			number += snapshot[i];
+		}
+
+		if (number == 0) {
+			return 0;
+		}
+
+		long threshold = (long) Math.ceil(number * percentile / 100.0);
+		long accumulated = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			accumulated += snapshot[i];
+			if (accumulated >= threshold) {
+				return Math.min(i == 0 ? 0 : (1L << i), this.maximum.get()) / 1000.0;
+			}
+		}
+		return this.getMaxMillis();
+	}
+
+	public String toString() {
+		return String.format("count= %s, failure= %s, mean= %.3fms, p50= %.3fms, p99= %.3fms, max= %.3fms",
+				this.getCount(), this.getFailureCount(), this.getMeanMillis(), this.getPercentileMillis(50),
+				this.getPercentileMillis(99), this.getMaxMillis());
+	}
+
+}
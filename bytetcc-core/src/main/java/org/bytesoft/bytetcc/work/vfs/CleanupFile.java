@@ -26,6 +26,7 @@ import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -68,6 +69,12 @@ public class CleanupFile implements CompensableEndpointAware, CompensableBeanFac
 	private final List<CleanupRecord> recordList = new ArrayList<CleanupRecord>();
 	private final Map<String, Set<CleanupRecord>> recordMap = new HashMap<String, Set<CleanupRecord>>();
 
+	/* flyweight mode: the records are accessed through the mapped file, only a slot bitmap is kept per resource. */
+	private boolean flyweightEnabled = false;
+	private MappedByteBuffer records;
+	private final Map<String, BitSet> slotMap = new HashMap<String, BitSet>();
+	private final Map<ByteBuffer, String> resourceCache = new HashMap<ByteBuffer, String>();
+
 	public CleanupFile(String resourceName) {
 		this.resourceName = resourceName;
 	}
@@ -92,6 +99,10 @@ public class CleanupFile implements CompensableEndpointAware, CompensableBeanFac
 			this.header = this.channel.map(MapMode.READ_WRITE, 0, CONSTANTS_START_INDEX);
 			this.header.put((ByteBuffer) byteBuffer.rewind());
 
+			if (this.flyweightEnabled) {
+				this.records = this.channel.map(MapMode.READ_WRITE, 0, this.sizeOfRaf);
+			} // end-if (this.flyweightEnabled)
+
 			return masterFlag;
 		} catch (FileNotFoundException ex) {
 			throw new RuntimeException(String.format("File not found: %s.", new File(this.directory, this.resourceName)), ex);
@@ -218,6 +229,11 @@ public class CleanupFile implements CompensableEndpointAware, CompensableBeanFac
 	}
 
 	public void startupRecover() throws RuntimeException {
+		if (this.flyweightEnabled) {
+			this.startupRecoverInFlyweight();
+			return;
+		}
+
 		XidFactory xidFactory = this.beanFactory.getTransactionXidFactory();
 
 		for (int current = CONSTANTS_START_INDEX; current < this.endIndex; current = current + CONSTANTS_RECORD_SIZE + 1) {
@@ -259,7 +275,24 @@ public class CleanupFile implements CompensableEndpointAware, CompensableBeanFac
 		}
 	}
 
+	private void startupRecoverInFlyweight() throws RuntimeException {
+		ByteBuffer probe = this.records.duplicate();
+		int slot = 0;
+		for (int current = CONSTANTS_START_INDEX; current < this.endIndex; current = current + CONSTANTS_RECORD_SIZE + 1) {
+			byte recordFlag = this.records.get(current);
+			if ((recordFlag & 0x1) == 0x1) {
+				this.registerSlot(this.readResource(probe, current), slot);
+			} // end-if ((recordFlag & 0x1) == 0x1)
+			slot++;
+		}
+	}
+
 	public void timingCompress() throws RuntimeException {
+		if (this.flyweightEnabled) {
+			this.timingCompressInFlyweight();
+			return;
+		}
+
 		LinkedList<CleanupRecord> removedList = new LinkedList<CleanupRecord>();
 
 		CleanupRecord lastEnabledRecord = null;
@@ -306,6 +339,70 @@ public class CleanupFile implements CompensableEndpointAware, CompensableBeanFac
 		this.updateEndIndex(lastRecordEndIndex);
 	}
 
+	/**
+	 * Moves the enabled records which have not been forgotten to the front of the file, and rebuilds the slot bitmaps.
+	 * A moved record is written to its new slot before its original slot is disabled.
+	 */
+	private void timingCompressInFlyweight() throws RuntimeException {
+		int recordUnit = CONSTANTS_RECORD_SIZE + 1;
+		ByteBuffer probe = this.records.duplicate();
+
+		this.slotMap.clear();
+
+		int target = CONSTANTS_START_INDEX;
+		for (int current = CONSTANTS_START_INDEX; current < this.endIndex; current = current + recordUnit) {
+			byte recordFlag = this.records.get(current);
+			boolean enabled = (recordFlag & 0x1) == 0x1;
+			boolean forgetFlag = (recordFlag & 0x2) == 0x2;
+			if (enabled == false || forgetFlag) {
+				continue;
+			}
+
+			if (target != current) {
+				ByteBuffer source = this.records.duplicate();
+				source.limit(current + recordUnit);
+				source.position(current);
+
+				ByteBuffer buffer = this.records.duplicate();
+				buffer.position(target);
+				buffer.put(source);
+
+				this.records.put(current, (byte) 0x0);
+			} // end-if (target != current)
+
+			int slot = (target - CONSTANTS_START_INDEX) / recordUnit;
+			this.registerSlot(this.readResource(probe, target), slot);
+
+			target = target + recordUnit;
+		} // end-for
+
+		this.updateEndIndex(target);
+	}
+
+	private String readResource(ByteBuffer probe, int position) {
+		int offset = position + 1 + XidFactory.GLOBAL_TRANSACTION_LENGTH + XidFactory.BRANCH_QUALIFIER_LENGTH;
+		probe.limit(offset + CONSTANTS_RES_ID_MAX_SIZE);
+		probe.position(offset);
+
+		String resourceId = this.resourceCache.get(probe);
+		if (resourceId == null) {
+			byte[] resourceByteArray = new byte[CONSTANTS_RES_ID_MAX_SIZE];
+			probe.get(resourceByteArray);
+			resourceId = StringUtils.trimToNull(new String(resourceByteArray));
+			this.resourceCache.put(ByteBuffer.wrap(resourceByteArray), resourceId);
+		}
+		return resourceId;
+	}
+
+	private void registerSlot(String resourceId, int slot) {
+		BitSet slots = this.slotMap.get(resourceId);
+		if (slots == null) {
+			slots = new BitSet();
+			this.slotMap.put(resourceId, slots);
+		}
+		slots.set(slot);
+	}
+
 	public void forget(CleanupRecord record) throws RuntimeException {
 		Xid xid = record.getXid();
 		String resourceId = record.getResource();
@@ -362,7 +459,25 @@ public class CleanupFile implements CompensableEndpointAware, CompensableBeanFac
 
 		buffer.flip();
 
-		this.invokeForget(xid, resourceId, buffer);
+		if (this.flyweightEnabled) {
+			this.invokeForgetInFlyweight(resourceId, buffer);
+		} else {
+			this.invokeForget(xid, resourceId, buffer);
+		}
+	}
+
+	private void invokeForgetInFlyweight(String resourceId, ByteBuffer buffer) throws IllegalStateException {
+		this.increaseCapacityIfNecessary();
+
+		int recordIndex = this.endIndex;
+		ByteBuffer target = this.records.duplicate();
+		target.position(recordIndex);
+		target.put(buffer);
+
+		int slot = (recordIndex - CONSTANTS_START_INDEX) / (CONSTANTS_RECORD_SIZE + 1);
+		this.registerSlot(StringUtils.trimToNull(resourceId), slot);
+
+		this.updateEndIndex(buffer.capacity() + this.endIndex); // update endIndex
 	}
 
 	private void invokeForget(Xid xid, String resource, ByteBuffer buffer) throws IllegalStateException {
@@ -479,6 +594,9 @@ public class CleanupFile implements CompensableEndpointAware, CompensableBeanFac
 			try {
 				this.raf.setLength(this.sizeOfRaf + incremental);
 				this.sizeOfRaf = this.sizeOfRaf + incremental;
+				if (this.flyweightEnabled) {
+					this.records = this.channel.map(MapMode.READ_WRITE, 0, this.sizeOfRaf);
+				} // end-if (this.flyweightEnabled)
 			} catch (IOException ex) {
 				throw new IllegalStateException(ex);
 			}
@@ -523,6 +641,25 @@ public class CleanupFile implements CompensableEndpointAware, CompensableBeanFac
 		return recordMap;
 	}
 
+	/**
+	 * @return the slots of the enabled records for each resource, available in flyweight mode.
+	 */
+	public Map<String, BitSet> getSlotMap() {
+		return slotMap;
+	}
+
+	public RecordView getRecordView() {
+		return new RecordView();
+	}
+
+	public boolean isFlyweightEnabled() {
+		return flyweightEnabled;
+	}
+
+	public void setFlyweightEnabled(boolean flyweightEnabled) {
+		this.flyweightEnabled = flyweightEnabled;
+	}
+
 	public CompensableBeanFactory getBeanFactory() {
 		return this.beanFactory;
 	}
@@ -547,4 +684,43 @@ public class CleanupFile implements CompensableEndpointAware, CompensableBeanFac
 		this.directory = directory;
 	}
 
+	/**
+	 * Flyweight view of a record in the mapped file, it is moved from slot to slot instead of materializing a
+	 * CleanupRecord for each one.
+	 */
+	public class RecordView {
+		private int position;
+
+		public void moveTo(int slot) {
+			this.position = CONSTANTS_START_INDEX + slot * (CONSTANTS_RECORD_SIZE + 1);
+		}
+
+		public int getRecordFlag() {
+			return records.get(this.position);
+		}
+
+		public void setRecordFlag(int recordFlag) {
+			records.put(this.position, (byte) recordFlag);
+		}
+
+		public Xid getXid() {
+			XidFactory xidFactory = beanFactory.getTransactionXidFactory();
+
+			byte[] globalByteArray = new byte[XidFactory.GLOBAL_TRANSACTION_LENGTH];
+			byte[] branchByteArray = new byte[XidFactory.BRANCH_QUALIFIER_LENGTH];
+
+			ByteBuffer buffer = records.duplicate();
+			buffer.position(this.position + 1);
+			buffer.get(globalByteArray);
+			buffer.get(branchByteArray);
+
+			TransactionXid globalXid = xidFactory.createGlobalXid(globalByteArray);
+			return xidFactory.createBranchXid(globalXid, branchByteArray);
+		}
+
+		public String getResource() {
+			return readResource(records.duplicate(), this.position);
+		}
+	}
+
 }
@@ -17,11 +17,21 @@ package org.bytesoft.bytetcc.work.vfs;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -56,9 +66,28 @@ public class CleanupWork implements Work, LocalResourceCleaner, CompensableEndpo
 	private final Condition startCond = this.startLock.newCondition();
 	private boolean started;
 
+	private final Lock scheduleLock = new ReentrantLock();
+	private final Condition scheduleCond = this.scheduleLock.newCondition();
+
+	private long swapInterval = SECOND_MILLIS * 30;
+	private int swapRecords = 10000;
+	private long swapBytes = 0;
+
+	private final AtomicInteger masterRecords = new AtomicInteger();
+	private volatile int slaverRecords;
+	private volatile long masterPendingSince;
+	private volatile long slaverPendingSince;
+
+	private int cleanupThreads = 4;
+	private long retryInterval = SECOND_MILLIS * 30;
+	private long maxRetryInterval = SECOND_MILLIS * 60 * 10;
+	private final Map<String, CleanupLane> lanes = new ConcurrentHashMap<String, CleanupLane>();
+	private ExecutorService cleanupExecutor;
+
 	private File directory;
-	private boolean released;
+	private volatile boolean released;
 	private String endpoint;
+	private boolean flyweightEnabled = false;
 
 	private final CleanupFile resourceOne = new CleanupFile("cleanup-1.log");
 	private final CleanupFile resourceTwo = new CleanupFile("cleanup-2.log");
@@ -70,10 +99,12 @@ public class CleanupWork implements Work, LocalResourceCleaner, CompensableEndpo
 		this.resourceOne.setDirectory(this.directory);
 		this.resourceOne.setBeanFactory(this.beanFactory);
 		this.resourceOne.setEndpoint(this.endpoint);
+		this.resourceOne.setFlyweightEnabled(this.flyweightEnabled);
 
 		this.resourceTwo.setDirectory(this.directory);
 		this.resourceTwo.setBeanFactory(this.beanFactory);
 		this.resourceTwo.setEndpoint(this.endpoint);
+		this.resourceTwo.setFlyweightEnabled(this.flyweightEnabled);
 
 		byte masterFlagOne = this.resourceOne.initialize(true);
 		byte masterFlagTwo = this.resourceTwo.initialize(false);
@@ -119,6 +150,9 @@ public class CleanupWork implements Work, LocalResourceCleaner, CompensableEndpo
 	}
 
 	public void destroy() {
+		if (this.cleanupExecutor != null) {
+			this.cleanupExecutor.shutdown();
+		}
 		this.resourceOne.destroy();
 		this.resourceTwo.destroy();
 	}
@@ -128,23 +162,69 @@ public class CleanupWork implements Work, LocalResourceCleaner, CompensableEndpo
 
 		this.markStartupDone();
 
-		long swapMillis = System.currentTimeMillis() + 1000L * 30;
+		long swapMillis = System.currentTimeMillis() + this.swapInterval;
 
 		while (this.released == false) {
-			if (System.currentTimeMillis() < swapMillis) {
-				this.waitingFor(100);
-			} else {
-				this.switchMasterAndSlaver();
-				swapMillis = System.currentTimeMillis() + 1000L * 30;
-
-				this.cleanupSlaver();
-				this.compressSlaver();
+			this.waitForSwapRequired(swapMillis);
+			if (this.released) {
+				break;
 			}
+
+			this.switchMasterAndSlaver();
+			swapMillis = System.currentTimeMillis() + this.swapInterval;
+
+			long startMillis = System.currentTimeMillis();
+			this.cleanupSlaver();
+			this.compressSlaver();
+
+			logger.debug("cleanup: records= {}, cost= {} ms, behind= {} ms, pending= {}", this.slaverRecords,
+					System.currentTimeMillis() - startMillis, this.getCleanupDelayMillis(), this.masterRecords.get());
+
+			this.slaverRecords = 0;
+			this.slaverPendingSince = 0;
 		}
 
 		this.destroy();
 	}
 
+	/**
+	 * Waits until the swap interval elapses or the records forgotten into the master file since the last swap exceed the
+	 * high-water mark, the waiting thread is woken up by forget in the latter case.
+	 */
+	private void waitForSwapRequired(long swapMillis) {
+		try {
+			this.scheduleLock.lock();
+			long waitMillis = swapMillis - System.currentTimeMillis();
+			while (this.released == false && waitMillis > 0 && this.isHighWaterMarkReached() == false) {
+				try {
+					this.scheduleCond.await(waitMillis, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException ex) {
+					logger.debug(ex.getMessage());
+				}
+				waitMillis = swapMillis - System.currentTimeMillis();
+			}
+		} finally {
+			this.scheduleLock.unlock();
+		}
+	}
+
+	private boolean isHighWaterMarkReached() {
+		int records = this.masterRecords.get();
+		if (this.swapRecords > 0 && records >= this.swapRecords) {
+			return true;
+		}
+		return this.swapBytes > 0 && (long) records * (CleanupFile.CONSTANTS_RECORD_SIZE + 1) >= this.swapBytes;
+	}
+
+	private void fireHighWaterMarkReached() {
+		try {
+			this.scheduleLock.lock();
+			this.scheduleCond.signalAll();
+		} finally {
+			this.scheduleLock.unlock();
+		}
+	}
+
 	protected void waitingFor(long millis) {
 		try {
 			Thread.sleep(millis);
@@ -157,22 +237,134 @@ public class CleanupWork implements Work, LocalResourceCleaner, CompensableEndpo
 		this.slaver.timingCompress(); // compress
 	}
 
+	/**
+	 * Cleans up the records of each resource in its own lane, the lanes run concurrently on the cleanup executor. A lane
+	 * which failed is skipped until its backoff expires, its records are kept and retried in a later cycle.
+	 */
 	private void cleanupSlaver() {
-		Map<String, Set<CleanupRecord>> recordMap = this.slaver.getRecordMap();
-		Set<Map.Entry<String, Set<CleanupRecord>>> entrySet = recordMap.entrySet();
-		Iterator<Map.Entry<String, Set<CleanupRecord>>> itr = entrySet.iterator();
+		final CleanupFile cleanupFile = this.slaver;
+		for (Iterator<CleanupLane> itr = this.lanes.values().iterator(); itr.hasNext();) {
+			itr.next().retained.remove(cleanupFile); // the records kept in the slaver are counted again below
+		}
 
-		while (itr.hasNext()) {
-			Map.Entry<String, Set<CleanupRecord>> entry = itr.next();
-			String resourceId = entry.getKey();
-			Set<CleanupRecord> records = entry.getValue();
+		List<Runnable> tasks = new ArrayList<Runnable>();
+		if (this.flyweightEnabled) {
+			Map<String, BitSet> slotMap = this.slaver.getSlotMap();
+			for (Iterator<Map.Entry<String, BitSet>> itr = slotMap.entrySet().iterator(); itr.hasNext();) {
+				Map.Entry<String, BitSet> entry = itr.next();
+				final String resourceId = entry.getKey();
+				final BitSet slots = entry.getValue();
+				final CleanupFile.RecordView view = this.slaver.getRecordView();
+				int cardinality = slots.cardinality();
+				this.addCleanupTaskIfNecessary(tasks, resourceId, cleanupFile, cardinality, new Callable<Integer>() {
+					public Integer call() {
+						return cleanupByResource(resourceId, slots, view);
+					}
+				});
+			}
+		} else {
+			Map<String, Set<CleanupRecord>> recordMap = this.slaver.getRecordMap();
+			for (Iterator<Map.Entry<String, Set<CleanupRecord>>> itr = recordMap.entrySet().iterator(); itr.hasNext();) {
+				Map.Entry<String, Set<CleanupRecord>> entry = itr.next();
+				final String resourceId = entry.getKey();
+				final Set<CleanupRecord> records = entry.getValue();
+				this.addCleanupTaskIfNecessary(tasks, resourceId, cleanupFile, records.size(), new Callable<Integer>() {
+					public Integer call() {
+						return cleanupByResource(resourceId, records);
+					}
+				});
+			}
+		}
+
+		if (this.cleanupThreads <= 1 || tasks.size() <= 1) {
+			for (int i = 0; i < tasks.size(); i++) {
+				tasks.get(i).run();
+			}
+			return;
+		}
+
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		ExecutorService executor = this.getCleanupExecutor();
+		for (int i = 0; i < tasks.size(); i++) {
+			futures.add(executor.submit(tasks.get(i)));
+		}
+
+		for (int i = 0; i < futures.size(); i++) {
+			try {
+				futures.get(i).get();
+			} catch (InterruptedException ex) {
+				logger.debug(ex.getMessage());
+			} catch (ExecutionException ex) {
+				logger.error("Error occurred while cleaning up resources.", ex.getCause());
+			}
+		}
+	}
+
+	/**
+	 * @param task returns the number of the records which have not been cleaned up.
+	 */
+	private void addCleanupTaskIfNecessary(List<Runnable> tasks, final String resourceId, final CleanupFile cleanupFile,
+			final int records, final Callable<Integer> task) {
+		final CleanupLane lane = this.getCleanupLane(resourceId);
+		if (System.currentTimeMillis() < lane.retryMillis) {
+			logger.debug("cleanup: resource= {}, failures= {}, skipped until {}", resourceId, lane.failures,
+					lane.retryMillis);
+			lane.retained.put(cleanupFile, records);
+			return;
+		}
 
-			this.cleanupByResource(resourceId, records);
+		tasks.add(new Runnable() {
+			public void run() {
+				int remain = records;
+				try {
+					remain = task.call();
+				} catch (Exception ex) {
+					logger.error("Error occurred while cleaning up resource: {}.", resourceId, ex);
+				} finally {
+					completeCleanupLane(lane, remain == 0);
+					if (remain > 0) {
+						lane.retained.put(cleanupFile, remain);
+					} // end-if (remain > 0)
+				}
+			}
+		});
+	}
+
+	private CleanupLane getCleanupLane(String resourceId) {
+		CleanupLane lane = this.lanes.get(resourceId);
+		if (lane == null) {
+			lane = new CleanupLane();
+			this.lanes.put(resourceId, lane);
+		}
+		return lane;
+	}
+
+	private void completeCleanupLane(CleanupLane lane, boolean success) {
+		if (success) {
+			lane.failures = 0;
+			lane.retryMillis = 0;
+		} else {
+			lane.failures++;
+			long interval = this.retryInterval << Math.min(lane.failures - 1, 16);
+			lane.retryMillis = System.currentTimeMillis() + Math.min(interval, this.maxRetryInterval);
 		}
+	}
 
+	private ExecutorService getCleanupExecutor() {
+		if (this.cleanupExecutor == null) {
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(this.cleanupThreads, this.cleanupThreads,
+					SECOND_MILLIS * 60, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+					new CleanupThreadFactory());
+			executor.allowCoreThreadTimeOut(true);
+			this.cleanupExecutor = executor;
+		}
+		return this.cleanupExecutor;
 	}
 
-	private void cleanupByResource(String resourceId, Set<CleanupRecord> records) {
+	/**
+	 * @return the number of the records which have not been cleaned up.
+	 */
+	private int cleanupByResource(String resourceId, Set<CleanupRecord> records) {
 		int remain = records.size();
 		Iterator<CleanupRecord> recordItr = records.iterator();
 		while (recordItr.hasNext()) {
@@ -193,7 +385,7 @@ public class CleanupWork implements Work, LocalResourceCleaner, CompensableEndpo
 			} catch (RuntimeException rex) {
 				logger.error("forget-transaction: error occurred while forgetting branch: resource= {}, xids= {}", resourceId,
 						xidList, rex);
-				return; // continue;
+				return remain + recordList.size();
 			}
 
 			for (int i = 0; i < recordList.size(); i++) {
@@ -203,6 +395,45 @@ public class CleanupWork implements Work, LocalResourceCleaner, CompensableEndpo
 			}
 
 		} // end-while (recordItr.hasNext())
+
+		return 0;
+	}
+
+	/**
+	 * @return the number of the records which have not been cleaned up.
+	 */
+	private int cleanupByResource(String resourceId, BitSet slots, CleanupFile.RecordView view) {
+		int remain = slots.cardinality();
+		int slot = slots.nextSetBit(0);
+		while (slot >= 0) {
+			int defaultBatchSize = 2000;
+			int maxBatchSize = defaultBatchSize * 5 / 4;
+			int batchSize = remain > defaultBatchSize && remain < maxBatchSize ? remain : defaultBatchSize;
+
+			int[] slotArray = new int[batchSize];
+			List<Xid> xidList = new ArrayList<Xid>();
+			for (int i = 0; i < batchSize && slot >= 0; i++, remain--, slot = slots.nextSetBit(slot + 1)) {
+				view.moveTo(slot);
+				slotArray[i] = slot;
+				xidList.add(view.getXid());
+			} // end-for (int i = 0; i < batchSize && slot >= 0; i++, remain--, slot = slots.nextSetBit(slot + 1))
+
+			try {
+				this.cleanup(resourceId, xidList);
+			} catch (RuntimeException rex) {
+				logger.error("forget-transaction: error occurred while forgetting branch: resource= {}, xids= {}", resourceId,
+						xidList, rex);
+				return remain + xidList.size();
+			}
+
+			for (int i = 0; i < xidList.size(); i++) {
+				view.moveTo(slotArray[i]);
+				view.setRecordFlag(view.getRecordFlag() | 0x2);
+			}
+
+		} // end-while (slot >= 0)
+
+		return 0;
 	}
 
 	public void switchMasterAndSlaver() {
@@ -215,6 +446,10 @@ public class CleanupWork implements Work, LocalResourceCleaner, CompensableEndpo
 			CleanupFile cleanupFile = this.master;
 			this.master = this.slaver;
 			this.slaver = cleanupFile;
+
+			this.slaverRecords = this.masterRecords.getAndSet(0);
+			this.slaverPendingSince = this.masterPendingSince;
+			this.masterPendingSince = 0;
 		} finally {
 			this.lock.unlock();
 		}
@@ -250,13 +485,47 @@ public class CleanupWork implements Work, LocalResourceCleaner, CompensableEndpo
 	public void forget(Xid xid, String resourceId) throws RuntimeException {
 		this.waitForStartup();
 
+		boolean highWaterMarkReached = false;
 		try {
 			this.lock.lock();
 			this.master.forget(xid, resourceId);
+
+			if (this.masterRecords.incrementAndGet() == 1) {
+				this.masterPendingSince = System.currentTimeMillis();
+			} // end-if (this.masterRecords.incrementAndGet() == 1)
+			highWaterMarkReached = this.isHighWaterMarkReached();
 		} finally {
 			this.lock.unlock();
 		}
 
+		if (highWaterMarkReached) {
+			this.fireHighWaterMarkReached();
+		} // end-if (highWaterMarkReached)
+
+	}
+
+	/**
+	 * @return the number of forgotten records which have not been cleaned up yet, including the records which the lanes
+	 *         have kept in the cleanup files after failing or being skipped.
+	 */
+	public int getCleanupBacklog() {
+		int backlog = this.masterRecords.get() + this.slaverRecords;
+		for (Iterator<CleanupLane> itr = this.lanes.values().iterator(); itr.hasNext();) {
+			CleanupLane lane = itr.next();
+			for (Iterator<Integer> retainedItr = lane.retained.values().iterator(); retainedItr.hasNext();) {
+				backlog += retainedItr.next();
+			}
+		}
+		return backlog;
+	}
+
+	/**
+	 * @return how long the oldest forgotten record, which has not been cleaned up yet, has been waiting.
+	 */
+	public long getCleanupDelayMillis() {
+		long slaverSince = this.slaverPendingSince;
+		long pendingSince = slaverSince > 0 ? slaverSince : this.masterPendingSince;
+		return pendingSince > 0 ? System.currentTimeMillis() - pendingSince : 0;
 	}
 
 	public void markStartupDone() {
@@ -288,6 +557,7 @@ public class CleanupWork implements Work, LocalResourceCleaner, CompensableEndpo
 
 	public void release() {
 		this.released = true;
+		this.fireHighWaterMarkReached();
 	}
 
 	public String getEndpoint() {
@@ -306,6 +576,79 @@ public class CleanupWork implements Work, LocalResourceCleaner, CompensableEndpo
 		this.beanFactory = tbf;
 	}
 
+	static class CleanupLane {
+		private volatile int failures;
+		private volatile long retryMillis;
+		/* the number of the records of the resource which are still kept in each cleanup file */
+		private final Map<CleanupFile, Integer> retained = new ConcurrentHashMap<CleanupFile, Integer>();
+	}
+
+	static class CleanupThreadFactory implements ThreadFactory {
+		private final AtomicInteger index = new AtomicInteger();
+
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, String.format("bytetcc-cleanup-%s", this.index.incrementAndGet()));
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+	public int getCleanupThreads() {
+		return cleanupThreads;
+	}
+
+	public void setCleanupThreads(int cleanupThreads) {
+		this.cleanupThreads = cleanupThreads;
+	}
+
+	public long getRetryInterval() {
+		return retryInterval;
+	}
+
+	public void setRetryInterval(long retryInterval) {
+		this.retryInterval = retryInterval;
+	}
+
+	public long getMaxRetryInterval() {
+		return maxRetryInterval;
+	}
+
+	public void setMaxRetryInterval(long maxRetryInterval) {
+		this.maxRetryInterval = maxRetryInterval;
+	}
+
+	public long getSwapInterval() {
+		return swapInterval;
+	}
+
+	public void setSwapInterval(long swapInterval) {
+		this.swapInterval = swapInterval;
+	}
+
+	public int getSwapRecords() {
+		return swapRecords;
+	}
+
+	public void setSwapRecords(int swapRecords) {
+		this.swapRecords = swapRecords;
+	}
+
+	public long getSwapBytes() {
+		return swapBytes;
+	}
+
+	public void setSwapBytes(long swapBytes) {
+		this.swapBytes = swapBytes;
+	}
+
+	public boolean isFlyweightEnabled() {
+		return flyweightEnabled;
+	}
+
+	public void setFlyweightEnabled(boolean flyweightEnabled) {
+		this.flyweightEnabled = flyweightEnabled;
+	}
+
 	public File getDirectory() {
 		return directory;
 	}
@@ -0,0 +1,37 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.compensable;
+
+import java.util.concurrent.CompletableFuture;
+
+import javax.transaction.xa.Xid;
+
+/**
+ * Non-blocking variant of the RemoteCoordinator, implemented by the transports which are able to send the request
+ * without holding the calling thread until the response is received. The returned future is completed exceptionally
+ * with an XAException whose errorCode has the same meaning as the one thrown by the blocking operation.
+ */
+public interface AsyncRemoteCoordinator {
+
+	public CompletableFuture<Void> commitAsync(Xid xid, boolean onePhase);
+
+	public CompletableFuture<Void> rollbackAsync(Xid xid);
+
+	public CompletableFuture<Void> forgetAsync(Xid xid);
+
+	public CompletableFuture<Xid[]> recoverAsync(int flag);
+
+}
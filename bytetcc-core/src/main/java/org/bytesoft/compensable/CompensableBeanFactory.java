@@ -15,6 +15,7 @@
  */
 package org.bytesoft.compensable;
 
+import org.bytesoft.bytetcc.supports.CompensableParticipantExecutor;
 import org.bytesoft.bytetcc.supports.CompensableRolledbackMarker;
 import org.bytesoft.bytetcc.supports.CompensableSynchronization;
 import org.bytesoft.bytetcc.supports.resource.LocalResourceCleaner;
@@ -71,4 +72,8 @@ public interface CompensableBeanFactory {
 
 	public CompensableRolledbackMarker getCompensableRolledbackMarker();
 
+	public CompensableParticipantExecutor getParticipantExecutor();
+
+	public CompensableStatistic getCompensableStatistic();
+
 }
@@ -15,18 +15,15 @@
  */
 package org.bytesoft.compensable;
 
-import java.util.Map;
-import java.util.Stack;
-import java.util.concurrent.ConcurrentHashMap;
-
 /**
  * Compensable代理类注册管理
  * 1、基于线程为一个调度单位，管理Compensable代理类的注册和取消注册、以及代理类的获取
+ * 2、注册信息保存在ThreadLocal中, 栈为空时即清除, 不会因线程数量增长而在全局表中累积
  */
 public final class CompensableInvocationRegistry {
 	static final CompensableInvocationRegistry instance = new CompensableInvocationRegistry();
 
-	private Map<Thread, Stack<CompensableInvocation>> invocationMap = new ConcurrentHashMap<Thread, Stack<CompensableInvocation>>();
+	private final ThreadLocal<InvocationFrame> frames = new ThreadLocal<InvocationFrame>();
 
 	private CompensableInvocationRegistry() {
 	}
@@ -36,13 +33,7 @@ public final class CompensableInvocationRegistry {
 	 * @param invocation
 	 */
 	public void register(CompensableInvocation invocation) {
-		Thread current = Thread.currentThread();
-		Stack<CompensableInvocation> stack = this.invocationMap.get(current);
-		if (stack == null) {
-			stack = new Stack<CompensableInvocation>();
-			this.invocationMap.put(current, stack);
-		}
-		stack.push(invocation);
+		this.frames.set(new InvocationFrame(invocation, this.frames.get()));
 	}
 
 	/**
@@ -50,12 +41,8 @@ public final class CompensableInvocationRegistry {
 	 * @return
 	 */
 	public CompensableInvocation getCurrent() {
-		Thread current = Thread.currentThread();
-		Stack<CompensableInvocation> stack = this.invocationMap.get(current);
-		if (stack == null || stack.isEmpty()) {
-			return null;
-		}
-		return stack.peek();
+		InvocationFrame frame = this.frames.get();
+		return frame == null ? null : frame.invocation;
 	}
 
 	/**
@@ -63,23 +50,32 @@ public final class CompensableInvocationRegistry {
 	 * @return
 	 */
 	public CompensableInvocation unRegister() {
-		Thread current = Thread.currentThread();
-		Stack<CompensableInvocation> stack = this.invocationMap.get(current);
-		if (stack == null || stack.isEmpty()) {
+		InvocationFrame frame = this.frames.get();
+		if (frame == null) {
 			// 如果当前线程没有注册到任何一个Compensable代理类
 			return null;
 		}
 
-		// 获取当前线程注册的代理类的顶层代理类
-		CompensableInvocation invocation = stack.pop();
-		if (stack.isEmpty()) {
+		if (frame.previous == null) {
 			// 如果当前线程Compensable注册表为空，删除注册表
-			this.invocationMap.remove(current);
+			this.frames.remove();
+		} else {
+			this.frames.set(frame.previous);
 		}
-		return invocation;
+		return frame.invocation;
 	}
 
 	public static CompensableInvocationRegistry getInstance() {
 		return instance;
 	}
+
+	static final class InvocationFrame {
+		final CompensableInvocation invocation;
+		final InvocationFrame previous;
+
+		InvocationFrame(CompensableInvocation invocation, InvocationFrame previous) {
+			this.invocation = invocation;
+			this.previous = previous;
+		}
+	}
 }
@@ -40,6 +40,10 @@ public interface CompensableStatistic {
 	public void fireRecoverTransaction(TransactionXid xid);
 
 	/* phase */
+	public void fireCancelPhaseStart(TransactionXid xid);
+
+	public void fireConfirmPhaseStart(TransactionXid xid);
+
 	public void fireTryPhaseSuccess(TransactionXid xid);
 
 	public void fireTryPhaseFailure(TransactionXid xid);
@@ -53,6 +57,12 @@ public interface CompensableStatistic {
 	public void fireConfirmPhaseFailure(TransactionXid xid);
 
 	/* compensable */
+	public void fireTryCompensableStart(TransactionXid xid, CompensableArchive compensable);
+
+	public void fireCancelCompensableStart(TransactionXid xid, CompensableArchive compensable);
+
+	public void fireConfirmCompensableStart(TransactionXid xid, CompensableArchive compensable);
+
 	public void fireTryCompensableSuccess(TransactionXid xid, CompensableArchive compensable);
 
 	public void fireTryCompensableFailure(TransactionXid xid, CompensableArchive compensable);
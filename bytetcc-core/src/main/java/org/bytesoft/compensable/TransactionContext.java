@@ -22,6 +22,7 @@ public class TransactionContext extends org.bytesoft.transaction.TransactionCont
 
 	private transient boolean compensating;
 	private transient int propagationLevel;
+	private transient long recoveredAt;
 
 	private boolean compensable;
 	private boolean statefully;
@@ -64,6 +65,14 @@ public class TransactionContext extends org.bytesoft.transaction.TransactionCont
 		this.compensable = compensable;
 	}
 
+	public long getRecoveredAt() {
+		return recoveredAt;
+	}
+
+	public void setRecoveredAt(long recoveredAt) {
+		this.recoveredAt = recoveredAt;
+	}
+
 	public int getPropagationLevel() {
 		return propagationLevel;
 	}
@@ -0,0 +1,99 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.compensable.archive;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The field values of a transaction which have been written by the logger, kept for the lifetime of the transaction
+ * so that the logger is able to write the changed fields only. The participants and compensables are keyed by their
+ * branch qualifiers. A snapshot which is not complete does not mirror the whole record, the logger should write the
+ * whole record then.
+ */
+public class ArchiveSnapshot {
+
+	private boolean complete;
+	private final Map<String, Object> transaction = new HashMap<String, Object>();
+	private final Map<String, Map<String, Object>> participants = new HashMap<String, Map<String, Object>>();
+	private final Map<String, Map<String, Object>> compensables = new HashMap<String, Map<String, Object>>();
+
+	public synchronized boolean isComplete() {
+		return this.complete;
+	}
+
+	public synchronized void reset(boolean complete) {
+		this.complete = complete;
+		this.transaction.clear();
+		this.participants.clear();
+		this.compensables.clear();
+	}
+
+	public synchronized Map<String, Object> getTransaction() {
+		return new HashMap<String, Object>(this.transaction);
+	}
+
+	public synchronized void putTransaction(Map<String, Object> fields) {
+		this.transaction.putAll(fields);
+	}
+
+	public synchronized Set<String> getParticipantKeys() {
+		return new HashSet<String>(this.participants.keySet());
+	}
+
+	public synchronized Map<String, Object> getParticipant(String key) {
+		Map<String, Object> fields = this.participants.get(key);
+		return fields == null ? null : new HashMap<String, Object>(fields);
+	}
+
+	public synchronized void putParticipant(String key, Map<String, Object> fields) {
+		Map<String, Object> original = this.participants.get(key);
+		if (original == null) {
+			this.participants.put(key, new HashMap<String, Object>(fields));
+		} else {
+			original.putAll(fields);
+		}
+	}
+
+	public synchronized void removeParticipant(String key) {
+		this.participants.remove(key);
+	}
+
+	public synchronized Set<String> getCompensableKeys() {
+		return new HashSet<String>(this.compensables.keySet());
+	}
+
+	public synchronized Map<String, Object> getCompensable(String key) {
+		Map<String, Object> fields = this.compensables.get(key);
+		return fields == null ? null : new HashMap<String, Object>(fields);
+	}
+
+	public synchronized void putCompensable(String key, Map<String, Object> fields) {
+		Map<String, Object> original = this.compensables.get(key);
+		if (original == null) {
+			this.compensables.put(key, new HashMap<String, Object>(fields));
+		} else {
+			original.putAll(fields);
+		}
+	}
+
+	public synchronized void removeCompensable(String key) {
+		this.compensables.remove(key);
+	}
+
+}
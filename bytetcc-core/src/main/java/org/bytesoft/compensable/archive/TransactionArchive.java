@@ -28,6 +28,7 @@ public class TransactionArchive extends org.bytesoft.transaction.archive.Transac
 	private boolean propagated;
 	private Map<String, Serializable> variables = new HashMap<String, Serializable>();
 	private final List<CompensableArchive> compensableResourceList = new ArrayList<CompensableArchive>();
+	private transient ArchiveSnapshot snapshot;
 
 	public int getCompensableStatus() {
 		return compensableStatus;
@@ -57,6 +58,14 @@ public class TransactionArchive extends org.bytesoft.transaction.archive.Transac
 		this.variables = variables;
 	}
 
+	public ArchiveSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	public void setSnapshot(ArchiveSnapshot snapshot) {
+		this.snapshot = snapshot;
+	}
+
 	public boolean isPropagated() {
 		return propagated;
 	}
@@ -0,0 +1,34 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.compensable.logging;
+
+import java.io.IOException;
+
+import org.bytesoft.compensable.CompensableInvocation;
+
+public interface CompensableInvocationCodec {
+
+	/**
+	 * The first byte of every encoded invocation, it must not collide with the serializer flags(0x0, 0x1, 0x2) written
+	 * by SerializeUtils, so that the records written before the codec was enabled are still readable.
+	 */
+	public byte getVersion();
+
+	public byte[] encode(CompensableInvocation invocation) throws IOException;
+
+	public CompensableInvocation decode(byte[] byteArray) throws IOException;
+
+}
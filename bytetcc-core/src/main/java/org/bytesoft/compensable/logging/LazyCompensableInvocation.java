@@ -0,0 +1,126 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.compensable.logging;
+
+import java.io.ObjectStreamException;
+import java.lang.reflect.Method;
+
+import org.bytesoft.compensable.CompensableInvocation;
+
+/**
+ * Holder of an invocation which has been read from the transaction log but not decoded yet. Most of the recovered
+ * transactions are skipped or only have their status inspected, so the class loading and the deserialization of the
+ * args are deferred until the invocation is accessed, which normally happens when it is confirmed/cancelled.
+ */
+public abstract class LazyCompensableInvocation implements CompensableInvocation {
+	private static final long serialVersionUID = 1L;
+
+	private transient volatile CompensableInvocation invocation;
+
+	/**
+	 * @return the decoded invocation, it is invoked once at most unless it fails.
+	 */
+	protected abstract CompensableInvocation decode() throws Exception;
+
+	public CompensableInvocation getInvocation() {
+		CompensableInvocation current = this.invocation;
+		if (current != null) {
+			return current;
+		}
+
+		synchronized (this) {
+			if (this.invocation != null) {
+				return this.invocation;
+			}
+
+			try {
+				current = this.decode();
+			} catch (RuntimeException rex) {
+				throw rex;
+			} catch (Exception ex) {
+				throw new IllegalStateException("Error occurred while decoding compensable invocation.", ex);
+			}
+
+			if (current == null) {
+				throw new IllegalStateException("Error occurred while decoding compensable invocation: null.");
+			} // end-if (current == null)
+
+			this.invocation = current;
+			return current;
+		}
+	}
+
+	public boolean isDecoded() {
+		return this.invocation != null;
+	}
+
+	protected Object writeReplace() throws ObjectStreamException {
+		return this.getInvocation();
+	}
+
+	public String getDeclaringClass() {
+		return this.getInvocation().getDeclaringClass();
+	}
+
+	public String getMethodName() {
+		return this.getInvocation().getMethodName();
+	}
+
+	public String[] getParameterTypeArray() {
+		return this.getInvocation().getParameterTypeArray();
+	}
+
+	public void setMethod(Method method) {
+		this.getInvocation().setMethod(method);
+	}
+
+	public Method getMethod() {
+		return this.getInvocation().getMethod();
+	}
+
+	public Object[] getArgs() {
+		return this.getInvocation().getArgs();
+	}
+
+	public String getConfirmableKey() {
+		return this.getInvocation().getConfirmableKey();
+	}
+
+	public String getCancellableKey() {
+		return this.getInvocation().getCancellableKey();
+	}
+
+	public boolean isSimplified() {
+		return this.getInvocation().isSimplified();
+	}
+
+	public Object getIdentifier() {
+		return this.getInvocation().getIdentifier();
+	}
+
+	public void setIdentifier(Object identifier) {
+		this.getInvocation().setIdentifier(identifier);
+	}
+
+	public boolean isEnlisted() {
+		return this.getInvocation().isEnlisted();
+	}
+
+	public void setEnlisted(boolean enlisted) {
+		this.getInvocation().setEnlisted(enlisted);
+	}
+
+}
@@ -34,6 +34,7 @@ import org.bytesoft.bytejta.supports.rpc.TransactionResponseImpl;
 import org.bytesoft.bytetcc.supports.dubbo.CompensableBeanRegistry;
 import org.bytesoft.common.utils.ByteUtils;
 import org.bytesoft.common.utils.CommonUtils;
+import org.bytesoft.compensable.AsyncRemoteCoordinator;
 import org.bytesoft.compensable.CompensableBeanFactory;
 import org.bytesoft.compensable.CompensableManager;
 import org.bytesoft.compensable.CompensableTransaction;
@@ -593,8 +594,12 @@ public class CompensableSecondaryFilter implements Filter {
 		dubboCoordinator.setRemoteCoordinator(remoteCoordinator);
 		dubboCoordinator.setCoordinatorType(DubboRemoteCoordinator.KEY_PARTICIPANT_TYPE_EXACT);
 
-		RemoteCoordinator participant = (RemoteCoordinator) Proxy.newProxyInstance(
-				DubboRemoteCoordinator.class.getClassLoader(), new Class[] { RemoteCoordinator.class }, dubboCoordinator);
+		DubboAsyncRemoteCoordinator asyncCoordinator = new DubboAsyncRemoteCoordinator();
+		asyncCoordinator.setDelegate(dubboCoordinator);
+		asyncCoordinator.setRemoteCoordinator(remoteCoordinator);
+
+		RemoteCoordinator participant = (RemoteCoordinator) Proxy.newProxyInstance(DubboRemoteCoordinator.class.getClassLoader(),
+				new Class[] { RemoteCoordinator.class, AsyncRemoteCoordinator.class }, asyncCoordinator);
 		dubboCoordinator.setProxyCoordinator(participant);
 
 		return participant;
@@ -0,0 +1,145 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports.dubbo.spi;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.Xid;
+
+import org.bytesoft.compensable.AsyncRemoteCoordinator;
+import org.bytesoft.transaction.remote.RemoteCoordinator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.remoting.exchange.ResponseCallback;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcContext;
+import com.alibaba.dubbo.rpc.protocol.dubbo.FutureAdapter;
+
+/**
+ * Invocation handler of the remote participant which supports AsyncRemoteCoordinator. The async operations are sent by
+ * the physical coordinator reference in dubbo async mode and completed by the response callback, the others are
+ * delegated to the DubboRemoteCoordinator.
+ */
+public class DubboAsyncRemoteCoordinator implements InvocationHandler {
+	static final Logger logger = LoggerFactory.getLogger(DubboAsyncRemoteCoordinator.class);
+
+	private InvocationHandler delegate;
+	private RemoteCoordinator remoteCoordinator;
+
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		if (AsyncRemoteCoordinator.class.equals(method.getDeclaringClass())) {
+			return this.invokeAsync(method.getName(), args);
+		} else {
+			return this.delegate.invoke(proxy, method, args);
+		}
+	}
+
+	private CompletableFuture<Object> invokeAsync(String methodName, Object[] args) {
+		final CompletableFuture<Object> future = new CompletableFuture<Object>();
+
+		RpcContext context = RpcContext.getContext();
+		Object value = null;
+		Future<?> rpcFuture = null;
+		try {
+			context.setAttachment(Constants.ASYNC_KEY, Boolean.TRUE.toString());
+			if ("commitAsync".equals(methodName)) {
+				this.remoteCoordinator.commit((Xid) args[0], (Boolean) args[1]);
+			} else if ("rollbackAsync".equals(methodName)) {
+				this.remoteCoordinator.rollback((Xid) args[0]);
+			} else if ("forgetAsync".equals(methodName)) {
+				this.remoteCoordinator.forget((Xid) args[0]);
+			} else if ("recoverAsync".equals(methodName)) {
+				value = this.remoteCoordinator.recover((Integer) args[0]);
+			} else {
+				throw new XAException(XAException.XAER_RMFAIL);
+			}
+			rpcFuture = context.getFuture();
+		} catch (Throwable error) {
+			future.completeExceptionally(this.getXAException(error, XAException.XAER_RMFAIL));
+			return future;
+		} finally {
+			context.removeAttachment(Constants.ASYNC_KEY);
+			context.setFuture(null);
+		}
+
+		if (FutureAdapter.class.isInstance(rpcFuture) == false) {
+			future.complete(value); // the invocation has been completed synchronously
+			return future;
+		}
+
+		((FutureAdapter<?>) rpcFuture).getFuture().setCallback(new ResponseCallback() {
+			public void done(Object response) {
+				Result result = (Result) response;
+				if (result.hasException()) {
+					future.completeExceptionally(getXAException(result.getException(), XAException.XAER_RMERR));
+					return;
+				}
+
+				Object resultValue = result.getValue();
+				if (CompensableServiceFilter.InvocationResult.class.isInstance(resultValue) == false) {
+					future.complete(resultValue);
+					return;
+				}
+
+				CompensableServiceFilter.InvocationResult wrapped = (CompensableServiceFilter.InvocationResult) resultValue;
+				if (wrapped.isFailure()) {
+					future.completeExceptionally(getXAException(wrapped.getError(), XAException.XAER_RMERR));
+				} else {
+					future.complete(wrapped.getValue());
+				}
+			}
+
+			public void caught(Throwable error) {
+				future.completeExceptionally(getXAException(error, XAException.XAER_RMFAIL));
+			}
+		});
+
+		return future;
+	}
+
+	private XAException getXAException(Throwable error, int errorCode) {
+		if (XAException.class.isInstance(error)) {
+			return (XAException) error;
+		}
+
+		XAException xaex = new XAException(errorCode);
+		xaex.initCause(error);
+		return xaex;
+	}
+
+	public InvocationHandler getDelegate() {
+		return delegate;
+	}
+
+	public void setDelegate(InvocationHandler delegate) {
+		this.delegate = delegate;
+	}
+
+	public RemoteCoordinator getRemoteCoordinator() {
+		return remoteCoordinator;
+	}
+
+	public void setRemoteCoordinator(RemoteCoordinator remoteCoordinator) {
+		this.remoteCoordinator = remoteCoordinator;
+	}
+
+}
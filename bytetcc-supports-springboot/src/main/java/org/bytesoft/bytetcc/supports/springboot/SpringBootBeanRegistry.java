@@ -20,6 +20,7 @@ import java.lang.reflect.Proxy;
 import org.apache.commons.lang3.StringUtils;
 import org.bytesoft.bytejta.supports.internal.RemoteCoordinatorRegistry;
 import org.bytesoft.common.utils.CommonUtils;
+import org.bytesoft.compensable.AsyncRemoteCoordinator;
 import org.bytesoft.compensable.CompensableBeanFactory;
 import org.bytesoft.compensable.aware.CompensableBeanFactoryAware;
 import org.bytesoft.transaction.remote.RemoteAddr;
@@ -37,6 +38,8 @@ public final class SpringBootBeanRegistry implements CompensableBeanFactoryAware
 	@javax.inject.Inject
 	private CompensableBeanFactory beanFactory;
 	private RestTemplate restTemplate;
+	@SuppressWarnings("deprecation")
+	private org.springframework.web.client.AsyncRestTemplate asyncRestTemplate;
 	private Environment environment;
 
 	private SpringBootBeanRegistry() {
@@ -63,8 +66,8 @@ public final class SpringBootBeanRegistry implements CompensableBeanFactoryAware
 			handler.setIdentifier(identifier);
 			handler.setEnvironment(this.environment);
 
-			RemoteCoordinator participant = (RemoteCoordinator) Proxy.newProxyInstance(
-					SpringBootCoordinator.class.getClassLoader(), new Class[] { RemoteCoordinator.class }, handler);
+			RemoteCoordinator participant = (RemoteCoordinator) Proxy.newProxyInstance(SpringBootCoordinator.class.getClassLoader(),
+					new Class[] { RemoteCoordinator.class, AsyncRemoteCoordinator.class }, handler);
 
 			registry.putPhysicalInstance(remoteAddr, participant);
 			registry.putRemoteNode(remoteAddr, CommonUtils.getRemoteNode(identifier));
@@ -82,6 +85,16 @@ public final class SpringBootBeanRegistry implements CompensableBeanFactoryAware
 		this.restTemplate = restTemplate;
 	}
 
+	@SuppressWarnings("deprecation")
+	public org.springframework.web.client.AsyncRestTemplate getAsyncRestTemplate() {
+		return asyncRestTemplate;
+	}
+
+	@SuppressWarnings("deprecation")
+	public void setAsyncRestTemplate(org.springframework.web.client.AsyncRestTemplate asyncRestTemplate) {
+		this.asyncRestTemplate = asyncRestTemplate;
+	}
+
 	public void setBeanFactory(CompensableBeanFactory tbf) {
 		this.beanFactory = tbf;
 	}
@@ -19,6 +19,7 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
 
 import javax.transaction.xa.XAException;
 import javax.transaction.xa.XAResource;
@@ -26,9 +27,15 @@ import javax.transaction.xa.Xid;
 
 import org.apache.commons.lang3.StringUtils;
 import org.bytesoft.bytejta.supports.internal.RemoteCoordinatorRegistry;
+import org.bytesoft.bytetcc.TransactionRecoveryImpl;
+import org.bytesoft.bytetcc.supports.rpc.CoordinatorAsyncInvoker;
+import org.bytesoft.bytetcc.supports.rpc.CoordinatorBatch;
+import org.bytesoft.bytetcc.supports.rpc.CoordinatorBatchDispatcher;
+import org.bytesoft.bytetcc.supports.rpc.CoordinatorRequestFactory;
 import org.bytesoft.common.utils.ByteUtils;
 import org.bytesoft.common.utils.CommonUtils;
 import org.bytesoft.common.utils.SerializeUtils;
+import org.bytesoft.compensable.AsyncRemoteCoordinator;
 import org.bytesoft.transaction.TransactionParticipant;
 import org.bytesoft.transaction.remote.RemoteAddr;
 import org.bytesoft.transaction.remote.RemoteCoordinator;
@@ -37,6 +44,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.env.Environment;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
@@ -72,19 +81,21 @@ public class SpringBootCoordinator implements InvocationHandler {
 			} else {
 				throw new XAException(XAException.XAER_RMFAIL);
 			}
+		} else if (AsyncRemoteCoordinator.class.equals(clazz)) {
+			return this.invokeAsyncCoordinator(proxy, method, args);
 		} else if (XAResource.class.equals(clazz)) {
 			if ("start".equals(methodName)) {
 				return null;
 			} else if ("prepare".equals(methodName)) {
 				return this.invokePostCoordinator(proxy, method, args);
 			} else if ("commit".equals(methodName)) {
-				return this.invokePostCoordinator(proxy, method, args);
+				return this.invokeBatchCoordinator(proxy, method, args);
 			} else if ("rollback".equals(methodName)) {
-				return this.invokePostCoordinator(proxy, method, args);
+				return this.invokeBatchCoordinator(proxy, method, args);
 			} else if ("recover".equals(methodName)) {
 				return this.invokeGetCoordinator(proxy, method, args);
 			} else if ("forget".equals(methodName)) {
-				return this.invokePostCoordinator(proxy, method, args);
+				return this.invokeBatchCoordinator(proxy, method, args);
 			} else {
 				throw new XAException(XAException.XAER_RMFAIL);
 			}
@@ -98,7 +109,7 @@ public class SpringBootCoordinator implements InvocationHandler {
 		Class<?> returnType = method.getReturnType();
 		try {
 			RestTemplate transactionRestTemplate = SpringBootBeanRegistry.getInstance().getRestTemplate();
-			RestTemplate restTemplate = transactionRestTemplate == null ? new RestTemplate() : transactionRestTemplate;
+			RestTemplate restTemplate = transactionRestTemplate == null ? CoordinatorRequestFactory.getRestTemplate() : transactionRestTemplate;
 
 			RemoteAddr remoteAddr = CommonUtils.getRemoteAddr(this.identifier);
 
@@ -151,12 +162,102 @@ public class SpringBootCoordinator implements InvocationHandler {
 
 	}
 
+	public Object invokeBatchCoordinator(Object proxy, Method method, Object[] args) throws Throwable {
+		if (TransactionRecoveryImpl.isRecovering() == false) {
+			return this.invokePostCoordinator(proxy, method, args); // the second phase of a live transaction
+		} // end-if (TransactionRecoveryImpl.isRecovering() == false)
+
+		String methodName = method.getName();
+		Xid xid = (Xid) args[0];
+
+		CoordinatorBatch.Operation operation = null;
+		if ("commit".equals(methodName)) {
+			operation = new CoordinatorBatch.Operation(CoordinatorBatch.OPERATION_COMMIT, xid, (Boolean) args[1]);
+		} else if ("rollback".equals(methodName)) {
+			operation = new CoordinatorBatch.Operation(CoordinatorBatch.OPERATION_ROLLBACK, xid, false);
+		} else {
+			operation = new CoordinatorBatch.Operation(CoordinatorBatch.OPERATION_FORGET, xid, false);
+		}
+
+		CoordinatorBatchDispatcher dispatcher = CoordinatorBatchDispatcher.getInstance(this.identifier);
+		boolean executed = dispatcher.invoke(operation, new CoordinatorBatchDispatcher.BatchTransport() {
+			public byte[] execute(byte[] request) throws XAException {
+				return invokeBatch(request);
+			}
+		});
+
+		return executed ? null : this.invokePostCoordinator(proxy, method, args);
+	}
+
+	private byte[] invokeBatch(byte[] request) throws XAException {
+		try {
+			RestTemplate transactionRestTemplate = SpringBootBeanRegistry.getInstance().getRestTemplate();
+			RestTemplate restTemplate = transactionRestTemplate == null ? CoordinatorRequestFactory.getRestTemplate() : transactionRestTemplate;
+
+			RemoteAddr remoteAddr = CommonUtils.getRemoteAddr(this.identifier);
+
+			StringBuilder ber = new StringBuilder();
+			ber.append("http://");
+			ber.append(remoteAddr.getServerHost()).append(":").append(remoteAddr.getServerPort());
+			ber.append("/org/bytesoft/bytetcc/batch");
+
+			ResponseEntity<byte[]> response = restTemplate.postForEntity(ber.toString(), request, byte[].class);
+
+			return response.getBody();
+		} catch (HttpClientErrorException ex) {
+			if (HttpStatus.NOT_FOUND.equals(ex.getStatusCode()) || HttpStatus.METHOD_NOT_ALLOWED.equals(ex.getStatusCode())) {
+				return null; // the batch endpoint is not supported by the peer
+			}
+			XAException xaEx = new XAException(XAException.XAER_RMFAIL);
+			xaEx.initCause(ex);
+			throw xaEx;
+		} catch (Exception ex) {
+			XAException xaEx = new XAException(XAException.XAER_RMERR);
+			xaEx.initCause(ex);
+			throw xaEx;
+		}
+	}
+
+	@SuppressWarnings("deprecation")
+	public CompletableFuture<?> invokeAsyncCoordinator(Object proxy, Method method, Object[] args) {
+		org.springframework.web.client.AsyncRestTemplate asyncRestTemplate = //
+				SpringBootBeanRegistry.getInstance().getAsyncRestTemplate();
+		if (asyncRestTemplate == null) {
+			return CoordinatorAsyncInvoker.invokeBlocking(this, proxy, method, args);
+		}
+
+		try {
+			Method blockingMethod = CoordinatorAsyncInvoker.getBlockingMethod(method);
+			boolean recover = "recover".equals(blockingMethod.getName());
+
+			RemoteAddr remoteAddr = CommonUtils.getRemoteAddr(this.identifier);
+
+			StringBuilder ber = new StringBuilder();
+			ber.append("http://");
+			ber.append(remoteAddr.getServerHost()).append(":").append(remoteAddr.getServerPort());
+			ber.append("/org/bytesoft/bytetcc/");
+			ber.append(blockingMethod.getName());
+			for (int i = 0; i < args.length; i++) {
+				Serializable arg = (Serializable) args[i];
+				ber.append("/").append(this.serialize(arg));
+			}
+
+			return recover //
+					? CoordinatorAsyncInvoker.invoke(asyncRestTemplate, HttpMethod.GET, ber.toString(), Xid[].class)
+					: CoordinatorAsyncInvoker.invoke(asyncRestTemplate, HttpMethod.POST, ber.toString(), Void.class);
+		} catch (Exception ex) {
+			CompletableFuture<Void> future = new CompletableFuture<Void>();
+			future.completeExceptionally(CoordinatorAsyncInvoker.toXAException(ex));
+			return future;
+		}
+	}
+
 	public Object invokeGetCoordinator(Object proxy, Method method, Object[] args) throws Throwable {
 
 		Class<?> returnType = method.getReturnType();
 		try {
 			RestTemplate transactionRestTemplate = SpringBootBeanRegistry.getInstance().getRestTemplate();
-			RestTemplate restTemplate = transactionRestTemplate == null ? new RestTemplate() : transactionRestTemplate;
+			RestTemplate restTemplate = transactionRestTemplate == null ? CoordinatorRequestFactory.getRestTemplate() : transactionRestTemplate;
 
 			RemoteAddr remoteAddr = CommonUtils.getRemoteAddr(this.identifier);
 
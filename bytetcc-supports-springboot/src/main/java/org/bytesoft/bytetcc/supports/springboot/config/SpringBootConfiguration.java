@@ -20,6 +20,8 @@ import java.util.List;
 import org.apache.commons.lang3.StringUtils;
 import org.bytesoft.bytetcc.TransactionManagerImpl;
 import org.bytesoft.bytetcc.UserCompensableImpl;
+import org.bytesoft.bytetcc.supports.rpc.CoordinatorAsyncRestTemplate;
+import org.bytesoft.bytetcc.supports.rpc.CoordinatorRestTemplate;
 import org.bytesoft.bytetcc.supports.spring.SpringContextRegistry;
 import org.bytesoft.bytetcc.supports.springboot.SpringBootBeanRegistry;
 import org.bytesoft.bytetcc.supports.springboot.web.CompensableHandlerInterceptor;
@@ -134,15 +136,22 @@ public class SpringBootConfiguration implements TransactionManagementConfigurer,
 	}
 
 	@org.springframework.context.annotation.Bean
-	public SpringBootBeanRegistry springBootBeanRegistry(@Autowired ClientHttpRequestFactory requestFactory) {
-		SpringBootBeanRegistry springBootBeanRegistry = SpringBootBeanRegistry.getInstance();
-
-		RestTemplate restTemplate = new RestTemplate();
-		restTemplate.setRequestFactory(requestFactory);
+	public SpringBootBeanRegistry springBootBeanRegistry() {
+		return SpringBootBeanRegistry.getInstance();
+	}
 
-		springBootBeanRegistry.setRestTemplate(restTemplate);
+	@org.springframework.context.annotation.Bean("compensableRestTemplate")
+	public CoordinatorRestTemplate transactionTemplate() {
+		CoordinatorRestTemplate restTemplate = CoordinatorRestTemplate.create(this.environment);
+		SpringBootBeanRegistry.getInstance().setRestTemplate(restTemplate);
+		return restTemplate;
+	}
 
-		return springBootBeanRegistry;
+	@org.springframework.context.annotation.Bean("compensableAsyncRestTemplate")
+	public CoordinatorAsyncRestTemplate transactionAsyncTemplate() {
+		CoordinatorAsyncRestTemplate asyncRestTemplate = CoordinatorAsyncRestTemplate.create(this.environment);
+		SpringBootBeanRegistry.getInstance().setAsyncRestTemplate(asyncRestTemplate);
+		return asyncRestTemplate;
 	}
 
 	@org.springframework.context.annotation.Primary
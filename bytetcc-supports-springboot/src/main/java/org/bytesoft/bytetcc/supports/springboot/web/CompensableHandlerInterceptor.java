@@ -16,7 +16,6 @@
 package org.bytesoft.bytetcc.supports.springboot.web;
 
 import java.lang.reflect.Method;
-import java.util.Base64;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -24,9 +23,9 @@ import javax.servlet.http.HttpServletResponse;
 import org.apache.commons.lang3.StringUtils;
 import org.bytesoft.bytejta.supports.rpc.TransactionRequestImpl;
 import org.bytesoft.bytejta.supports.rpc.TransactionResponseImpl;
+import org.bytesoft.bytetcc.supports.TransactionContextCodec;
 import org.bytesoft.bytetcc.supports.springboot.SpringBootBeanRegistry;
 import org.bytesoft.bytetcc.supports.springboot.controller.CompensableCoordinatorController;
-import org.bytesoft.common.utils.SerializeUtils;
 import org.bytesoft.compensable.Compensable;
 import org.bytesoft.compensable.CompensableBeanFactory;
 import org.bytesoft.compensable.CompensableManager;
@@ -92,11 +91,8 @@ public class CompensableHandlerInterceptor implements HandlerInterceptor, Compen
 		CompensableBeanFactory beanFactory = beanRegistry.getBeanFactory();
 		TransactionInterceptor transactionInterceptor = beanFactory.getTransactionInterceptor();
 
-		byte[] byteArray = transactionText == null ? new byte[0] : Base64.getDecoder().decode(transactionText);
-
-		TransactionContext transactionContext = null;
-		if (byteArray != null && byteArray.length > 0) {
-			transactionContext = (TransactionContext) SerializeUtils.deserializeObject(byteArray);
+		TransactionContext transactionContext = TransactionContextCodec.decode(transactionText);
+		if (transactionContext != null) {
 			transactionContext.setPropagated(true);
 			transactionContext.setPropagatedBy(propagationText);
 		}
@@ -111,9 +107,11 @@ public class CompensableHandlerInterceptor implements HandlerInterceptor, Compen
 		CompensableTransaction compensable = compensableManager.getCompensableTransactionQuietly();
 		String propagatedBy = (String) compensable.getTransactionContext().getPropagatedBy();
 
-		byte[] responseByteArray = SerializeUtils.serializeObject(compensable.getTransactionContext());
-		String compensableStr = Base64.getEncoder().encodeToString(responseByteArray);
-		response.setHeader(HEADER_TRANCACTION_KEY, compensableStr);
+		TransactionContext responseContext = compensable.getTransactionContext();
+		if (TransactionContextCodec.isModified(transactionText, responseContext)) {
+			boolean compact = TransactionContextCodec.isCompact(transactionText);
+			response.setHeader(HEADER_TRANCACTION_KEY, TransactionContextCodec.encode(responseContext, compact));
+		} // end-if (TransactionContextCodec.isModified(transactionText, responseContext))
 		response.setHeader(HEADER_PROPAGATION_KEY, this.identifier);
 		response.setHeader(HEADER_RECURSIVELY_KEY,
 				String.valueOf(StringUtils.equalsIgnoreCase(propagatedBy, propagationText) == false));
@@ -161,9 +159,11 @@ public class CompensableHandlerInterceptor implements HandlerInterceptor, Compen
 		CompensableTransaction compensable = compensableManager.getCompensableTransactionQuietly();
 		TransactionContext transactionContext = compensable.getTransactionContext();
 
-		byte[] byteArray = SerializeUtils.serializeObject(transactionContext);
-		String compensableStr = Base64.getEncoder().encodeToString(byteArray);
-		response.setHeader(HEADER_TRANCACTION_KEY, compensableStr);
+		String transactionText = StringUtils.trimToNull(transactionStr);
+		if (TransactionContextCodec.isModified(transactionText, transactionContext)) {
+			boolean compact = TransactionContextCodec.isCompact(transactionText);
+			response.setHeader(HEADER_TRANCACTION_KEY, TransactionContextCodec.encode(transactionContext, compact));
+		} // end-if (TransactionContextCodec.isModified(transactionText, transactionContext))
 		response.setHeader(HEADER_PROPAGATION_KEY, this.identifier);
 
 		TransactionResponseImpl resp = new TransactionResponseImpl();
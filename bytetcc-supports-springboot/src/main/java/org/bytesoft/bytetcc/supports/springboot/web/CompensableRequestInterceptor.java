@@ -17,17 +17,17 @@ package org.bytesoft.bytetcc.supports.springboot.web;
 
 import java.io.IOException;
 import java.lang.reflect.Proxy;
-import java.util.Base64;
 
 import org.apache.commons.lang3.StringUtils;
 import org.bytesoft.bytejta.supports.internal.RemoteCoordinatorRegistry;
 import org.bytesoft.bytejta.supports.rpc.TransactionRequestImpl;
 import org.bytesoft.bytejta.supports.rpc.TransactionResponseImpl;
 import org.bytesoft.bytetcc.CompensableTransactionImpl;
+import org.bytesoft.bytetcc.supports.TransactionContextCodec;
 import org.bytesoft.bytetcc.supports.springboot.SpringBootBeanRegistry;
 import org.bytesoft.bytetcc.supports.springboot.SpringBootCoordinator;
 import org.bytesoft.common.utils.CommonUtils;
-import org.bytesoft.common.utils.SerializeUtils;
+import org.bytesoft.compensable.AsyncRemoteCoordinator;
 import org.bytesoft.compensable.CompensableBeanFactory;
 import org.bytesoft.compensable.CompensableManager;
 import org.bytesoft.compensable.TransactionContext;
@@ -59,6 +59,8 @@ public class CompensableRequestInterceptor
 
 	private String identifier;
 	private ApplicationContext applicationContext;
+	/** opt-in, see TransactionContextCodec: enable it after all of the servers have been upgraded. */
+	private boolean compactContextEnabled = false;
 
 	public ClientHttpResponse intercept(final HttpRequest httpRequest, byte[] body, ClientHttpRequestExecution execution)
 			throws IOException {
@@ -94,7 +96,7 @@ public class CompensableRequestInterceptor
 			throw clientEx;
 		} finally {
 			if (httpResponse != null) {
-				this.invokeAfterRecvResponse(httpResponse, serverFlag);
+				this.invokeAfterRecvResponse(httpRequest, httpResponse, serverFlag);
 			} // end-if (httpResponse != null)
 
 		}
@@ -113,8 +115,7 @@ public class CompensableRequestInterceptor
 
 		TransactionContext transactionContext = compensable.getTransactionContext();
 
-		byte[] reqByteArray = SerializeUtils.serializeObject(transactionContext);
-		String reqTransactionStr = Base64.getEncoder().encodeToString(reqByteArray);
+		String reqTransactionStr = TransactionContextCodec.encode(transactionContext, this.compactContextEnabled);
 
 		HttpHeaders reqHeaders = httpRequest.getHeaders();
 		reqHeaders.add(HEADER_TRANCACTION_KEY, reqTransactionStr);
@@ -136,7 +137,7 @@ public class CompensableRequestInterceptor
 			handler.setIdentifier(String.format("%s:%s:%s", targetHost, null, targetPort));
 			handler.setEnvironment(beanRegistry.getEnvironment());
 			participant = (RemoteCoordinator) Proxy.newProxyInstance(SpringBootCoordinator.class.getClassLoader(),
-					new Class[] { RemoteCoordinator.class }, handler);
+					new Class[] { RemoteCoordinator.class, AsyncRemoteCoordinator.class }, handler);
 		}
 
 		request.setTargetTransactionCoordinator(participant);
@@ -144,7 +145,8 @@ public class CompensableRequestInterceptor
 		transactionInterceptor.beforeSendRequest(request);
 	}
 
-	private void invokeAfterRecvResponse(ClientHttpResponse httpResponse, boolean serverFlag) throws IOException {
+	private void invokeAfterRecvResponse(HttpRequest httpRequest, ClientHttpResponse httpResponse, boolean serverFlag)
+			throws IOException {
 		RemoteCoordinatorRegistry participantRegistry = RemoteCoordinatorRegistry.getInstance();
 		SpringBootBeanRegistry beanRegistry = SpringBootBeanRegistry.getInstance();
 		CompensableBeanFactory beanFactory = beanRegistry.getBeanFactory();
@@ -163,11 +165,12 @@ public class CompensableRequestInterceptor
 			participantRegistry.putRemoteNode(remoteAddr, remoteNode);
 		}
 
-		String transactionText = StringUtils.trimToNull(respTransactionStr);
-		byte[] byteArray = StringUtils.isBlank(transactionText) ? null : Base64.getDecoder().decode(transactionText);
-		TransactionContext serverContext = byteArray == null || byteArray.length == 0 //
-				? null
-				: (TransactionContext) SerializeUtils.deserializeObject(byteArray);
+		// the server omits the unchanged context of a compact request, reuse the one which has been sent.
+		String reqTransactionStr = httpRequest.getHeaders().getFirst(HEADER_TRANCACTION_KEY);
+		String transactionText = StringUtils.isBlank(respTransactionStr) && StringUtils.isNotBlank(respPropagationStr)
+				? StringUtils.trimToNull(reqTransactionStr)
+				: StringUtils.trimToNull(respTransactionStr);
+		TransactionContext serverContext = TransactionContextCodec.decode(transactionText);
 
 		TransactionResponseImpl txResp = new TransactionResponseImpl();
 		txResp.setTransactionContext(serverContext);
@@ -186,6 +189,14 @@ public class CompensableRequestInterceptor
 		this.applicationContext = applicationContext;
 	}
 
+	public boolean isCompactContextEnabled() {
+		return compactContextEnabled;
+	}
+
+	public void setCompactContextEnabled(boolean compactContextEnabled) {
+		this.compactContextEnabled = compactContextEnabled;
+	}
+
 	public String getEndpoint() {
 		return this.identifier;
 	}
@@ -21,6 +21,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.bytesoft.bytejta.supports.internal.RemoteCoordinatorRegistry;
 import org.bytesoft.bytetcc.supports.springcloud.loadbalancer.CompensableLoadBalancerInterceptor;
 import org.bytesoft.common.utils.CommonUtils;
+import org.bytesoft.compensable.AsyncRemoteCoordinator;
 import org.bytesoft.compensable.CompensableBeanFactory;
 import org.bytesoft.compensable.aware.CompensableBeanFactoryAware;
 import org.bytesoft.transaction.remote.RemoteAddr;
@@ -39,6 +40,8 @@ public final class SpringCloudBeanRegistry implements CompensableBeanFactoryAwar
 	@javax.inject.Inject
 	private CompensableBeanFactory beanFactory;
 	private RestTemplate restTemplate;
+	@SuppressWarnings("deprecation")
+	private org.springframework.web.client.AsyncRestTemplate asyncRestTemplate;
 	private ThreadLocal<CompensableLoadBalancerInterceptor> interceptors = new ThreadLocal<CompensableLoadBalancerInterceptor>();
 	private Environment environment;
 	private transient boolean statefully;
@@ -75,8 +78,8 @@ public final class SpringCloudBeanRegistry implements CompensableBeanFactoryAwar
 		handler.setIdentifier(identifier);
 		handler.setEnvironment(this.environment);
 
-		RemoteCoordinator participant = (RemoteCoordinator) Proxy.newProxyInstance(
-				SpringCloudCoordinator.class.getClassLoader(), new Class[] { RemoteCoordinator.class }, handler);
+		RemoteCoordinator participant = (RemoteCoordinator) Proxy.newProxyInstance(SpringCloudCoordinator.class.getClassLoader(),
+				new Class[] { RemoteCoordinator.class, AsyncRemoteCoordinator.class }, handler);
 
 		registry.putRemoteNode(remoteAddr, remoteNode);
 
@@ -104,7 +107,7 @@ public final class SpringCloudBeanRegistry implements CompensableBeanFactoryAwar
 		handler.setEnvironment(this.environment);
 
 		participant = (RemoteCoordinator) Proxy.newProxyInstance(SpringCloudCoordinator.class.getClassLoader(),
-				new Class[] { RemoteCoordinator.class }, handler);
+				new Class[] { RemoteCoordinator.class, AsyncRemoteCoordinator.class }, handler);
 
 		registry.putRemoteNode(remoteAddr, remoteNode);
 		registry.putParticipant(application, participant);
@@ -132,6 +135,16 @@ public final class SpringCloudBeanRegistry implements CompensableBeanFactoryAwar
 		this.restTemplate = restTemplate;
 	}
 
+	@SuppressWarnings("deprecation")
+	public org.springframework.web.client.AsyncRestTemplate getAsyncRestTemplate() {
+		return asyncRestTemplate;
+	}
+
+	@SuppressWarnings("deprecation")
+	public void setAsyncRestTemplate(org.springframework.web.client.AsyncRestTemplate asyncRestTemplate) {
+		this.asyncRestTemplate = asyncRestTemplate;
+	}
+
 	public void setBeanFactory(CompensableBeanFactory tbf) {
 		this.beanFactory = tbf;
 	}
@@ -23,6 +23,8 @@ import java.util.Set;
 import org.apache.commons.lang3.StringUtils;
 import org.bytesoft.bytetcc.TransactionManagerImpl;
 import org.bytesoft.bytetcc.UserCompensableImpl;
+import org.bytesoft.bytetcc.supports.rpc.CoordinatorAsyncRestTemplate;
+import org.bytesoft.bytetcc.supports.rpc.CoordinatorRestTemplate;
 import org.bytesoft.bytetcc.supports.spring.SpringContextRegistry;
 import org.bytesoft.bytetcc.supports.springcloud.SpringCloudBeanRegistry;
 import org.bytesoft.bytetcc.supports.springcloud.feign.CompensableClientRegistry;
@@ -227,9 +229,8 @@ public class SpringCloudConfiguration implements TransactionManagementConfigurer
 
 	@org.springframework.context.annotation.Bean("compensableRestTemplate")
 	@org.springframework.cloud.client.loadbalancer.LoadBalanced
-	public RestTemplate transactionTemplate(@Autowired ClientHttpRequestFactory requestFactory) {
-		RestTemplate restTemplate = new RestTemplate();
-		restTemplate.setRequestFactory(requestFactory);
+	public CoordinatorRestTemplate transactionTemplate() {
+		CoordinatorRestTemplate restTemplate = CoordinatorRestTemplate.create(this.environment);
 
 		SpringCloudBeanRegistry registry = SpringCloudBeanRegistry.getInstance();
 		registry.setRestTemplate(restTemplate);
@@ -237,6 +238,14 @@ public class SpringCloudConfiguration implements TransactionManagementConfigurer
 		return restTemplate;
 	}
 
+	@org.springframework.context.annotation.Bean("compensableAsyncRestTemplate")
+	@org.springframework.cloud.client.loadbalancer.LoadBalanced
+	public CoordinatorAsyncRestTemplate transactionAsyncTemplate() {
+		CoordinatorAsyncRestTemplate asyncRestTemplate = CoordinatorAsyncRestTemplate.create(this.environment);
+		SpringCloudBeanRegistry.getInstance().setAsyncRestTemplate(asyncRestTemplate);
+		return asyncRestTemplate;
+	}
+
 	@org.springframework.context.annotation.Primary
 	@org.springframework.cloud.client.loadbalancer.LoadBalanced
 	@org.springframework.context.annotation.Bean
@@ -25,6 +25,8 @@ import org.bytesoft.bytetcc.CompensableManagerImpl;
 import org.bytesoft.bytetcc.TransactionManagerImpl;
 import org.bytesoft.bytetcc.TransactionRecoveryImpl;
 import org.bytesoft.bytetcc.UserCompensableImpl;
+import org.bytesoft.bytetcc.supports.rpc.CoordinatorAsyncRestTemplate;
+import org.bytesoft.bytetcc.supports.rpc.CoordinatorRestTemplate;
 import org.bytesoft.bytetcc.supports.spring.SpringContextRegistry;
 import org.bytesoft.bytetcc.supports.springcloud.SpringCloudBeanRegistry;
 import org.bytesoft.bytetcc.supports.springcloud.feign.CompensableClientRegistry;
@@ -216,9 +218,8 @@ public class SpringCloudSecondaryConfiguration
 	}
 
 	@org.springframework.context.annotation.Bean("compensableRestTemplate")
-	public RestTemplate transactionTemplate(@Autowired ClientHttpRequestFactory requestFactory) {
-		RestTemplate restTemplate = new RestTemplate();
-		restTemplate.setRequestFactory(requestFactory);
+	public CoordinatorRestTemplate transactionTemplate() {
+		CoordinatorRestTemplate restTemplate = CoordinatorRestTemplate.create(this.environment);
 
 		SpringCloudBeanRegistry registry = SpringCloudBeanRegistry.getInstance();
 		registry.setRestTemplate(restTemplate);
@@ -226,6 +227,14 @@ public class SpringCloudSecondaryConfiguration
 		return restTemplate;
 	}
 
+	@org.springframework.context.annotation.Bean("compensableAsyncRestTemplate")
+	@org.springframework.cloud.client.loadbalancer.LoadBalanced
+	public CoordinatorAsyncRestTemplate transactionAsyncTemplate() {
+		CoordinatorAsyncRestTemplate asyncRestTemplate = CoordinatorAsyncRestTemplate.create(this.environment);
+		SpringCloudBeanRegistry.getInstance().setAsyncRestTemplate(asyncRestTemplate);
+		return asyncRestTemplate;
+	}
+
 	@org.springframework.context.annotation.Primary
 	@org.springframework.cloud.client.loadbalancer.LoadBalanced
 	@org.springframework.context.annotation.Bean
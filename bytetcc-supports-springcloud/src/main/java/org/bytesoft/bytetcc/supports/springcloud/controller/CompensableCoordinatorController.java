@@ -16,12 +16,15 @@
 package org.bytesoft.bytetcc.supports.springcloud.controller;
 
 import java.beans.PropertyEditorSupport;
+import java.io.IOException;
+import java.util.List;
 
 import javax.servlet.http.HttpServletResponse;
 import javax.transaction.xa.XAException;
 import javax.transaction.xa.Xid;
 
 import org.bytesoft.bytetcc.CompensableCoordinator;
+import org.bytesoft.bytetcc.supports.rpc.CoordinatorBatch;
 import org.bytesoft.common.utils.ByteUtils;
 import org.bytesoft.compensable.CompensableBeanFactory;
 import org.bytesoft.compensable.aware.CompensableBeanFactoryAware;
@@ -31,6 +34,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.ResponseBody;
@@ -116,6 +120,45 @@ public class CompensableCoordinatorController extends PropertyEditorSupport impl
 		}
 	}
 
+	@RequestMapping(value = "/org/bytesoft/bytetcc/batch", method = RequestMethod.POST)
+	@ResponseBody
+	public byte[] batch(@RequestBody byte[] body, HttpServletResponse response) {
+		try {
+			XidFactory xidFactory = this.beanFactory.getCompensableXidFactory();
+			List<CoordinatorBatch.Operation> operations = CoordinatorBatch.decodeRequest(body);
+			for (int i = 0; i < operations.size(); i++) {
+				CoordinatorBatch.Operation operation = operations.get(i);
+				Xid xid = xidFactory.createGlobalXid(operation.getGlobalTransactionId());
+				try {
+					if (operation.getOperation() == CoordinatorBatch.OPERATION_COMMIT) {
+						this.compensableCoordinator.commit(xid, operation.isOnePhase());
+					} else if (operation.getOperation() == CoordinatorBatch.OPERATION_ROLLBACK) {
+						this.compensableCoordinator.rollback(xid);
+					} else if (operation.getOperation() == CoordinatorBatch.OPERATION_FORGET) {
+						this.compensableCoordinator.forget(xid);
+					} else {
+						operation.setErrorCode(XAException.XAER_INVAL);
+					}
+				} catch (XAException ex) {
+					logger.error("Error occurred while executing batch operation {} of transaction: {}.",
+							operation.getOperation(), xid, ex);
+					operation.setErrorCode(ex.errorCode);
+				} catch (RuntimeException ex) {
+					logger.error("Error occurred while executing batch operation {} of transaction: {}.",
+							operation.getOperation(), xid, ex);
+					operation.setErrorCode(XAException.XAER_RMERR);
+				}
+			}
+			return CoordinatorBatch.encodeResponse(operations);
+		} catch (IOException ex) {
+			logger.error("Error occurred while executing batch operations.", ex);
+
+			response.addHeader("failure", "true");
+			response.setStatus(500);
+			return new byte[0];
+		}
+	}
+
 	@RequestMapping(value = "/org/bytesoft/bytetcc/recover/{flag}", method = RequestMethod.GET)
 	@ResponseBody
 	public Xid[] recover(@PathVariable("flag") int flag, HttpServletResponse response) {
@@ -16,13 +16,12 @@
 package org.bytesoft.bytetcc.supports.springcloud.feign;
 
 import java.io.IOException;
-import java.util.Base64;
 import java.util.Collection;
 import java.util.Map;
 
 import org.apache.commons.lang3.StringUtils;
+import org.bytesoft.bytetcc.supports.TransactionContextCodec;
 import org.bytesoft.bytetcc.supports.springcloud.SpringCloudBeanRegistry;
-import org.bytesoft.common.utils.SerializeUtils;
 import org.bytesoft.compensable.TransactionContext;
 import org.bytesoft.transaction.remote.RemoteCoordinator;
 import org.slf4j.Logger;
@@ -105,8 +104,7 @@ public class CompensableFeignErrorDecoder implements feign.codec.ErrorDecoder, I
 			String transactionStr = StringUtils.isBlank(respTransactionStr) ? reqTransactionStr : respTransactionStr;
 			String propagationStr = StringUtils.isBlank(respPropagationStr) ? reqPropagationStr : respPropagationStr;
 
-			byte[] byteArray = Base64.getDecoder().decode(transactionStr); // ByteUtils.stringToByteArray(transactionStr);
-			TransactionContext transactionContext = (TransactionContext) SerializeUtils.deserializeObject(byteArray);
+			TransactionContext transactionContext = TransactionContextCodec.decode(transactionStr);
 
 			SpringCloudBeanRegistry beanRegistry = SpringCloudBeanRegistry.getInstance();
 			RemoteCoordinator remoteCoordinator = beanRegistry.getConsumeCoordinator(propagationStr);
@@ -16,12 +16,11 @@
 package org.bytesoft.bytetcc.supports.springcloud.feign;
 
 import java.io.IOException;
-import java.util.Base64;
 import java.util.Collection;
 import java.util.Map;
 
+import org.bytesoft.bytetcc.supports.TransactionContextCodec;
 import org.bytesoft.bytetcc.supports.springcloud.SpringCloudBeanRegistry;
-import org.bytesoft.common.utils.SerializeUtils;
 import org.bytesoft.compensable.CompensableBeanFactory;
 import org.bytesoft.compensable.CompensableManager;
 import org.bytesoft.compensable.CompensableTransaction;
@@ -38,6 +37,8 @@ public class CompensableFeignInterceptor
 
 	private String identifier;
 	private ApplicationContext applicationContext;
+	/** opt-in, see TransactionContextCodec: enable it after all of the servers have been upgraded. */
+	private boolean compactContextEnabled = false;
 
 	public void apply(feign.RequestTemplate template) {
 		final SpringCloudBeanRegistry beanRegistry = SpringCloudBeanRegistry.getInstance();
@@ -50,9 +51,7 @@ public class CompensableFeignInterceptor
 
 		try {
 			TransactionContext transactionContext = compensable.getTransactionContext();
-			byte[] byteArray = SerializeUtils.serializeObject(transactionContext);
-
-			String transactionText = Base64.getEncoder().encodeToString(byteArray);
+			String transactionText = TransactionContextCodec.encode(transactionContext, this.compactContextEnabled);
 
 			Map<String, Collection<String>> headers = template.headers();
 			if (headers.containsKey(HEADER_TRANCACTION_KEY) == false) {
@@ -68,6 +67,14 @@ public class CompensableFeignInterceptor
 		}
 	}
 
+	public boolean isCompactContextEnabled() {
+		return compactContextEnabled;
+	}
+
+	public void setCompactContextEnabled(boolean compactContextEnabled) {
+		this.compactContextEnabled = compactContextEnabled;
+	}
+
 	public String getEndpoint() {
 		return this.identifier;
 	}
@@ -56,6 +56,7 @@ public class CompensableHystrixFeignHandler implements InvocationHandler {
 				new Class<?>[] { CompensableHystrixInvocation.class });
 		CompensableHystrixInvocation invocation = new CompensableHystrixInvocation();
 		invocation.setThread(Thread.currentThread());
+		invocation.setCompensable(compensable);
 		invocation.setMethod(method);
 		invocation.setArgs(args);
 		Object[] targetArgs = new Object[] { invocation };
@@ -17,9 +17,12 @@ package org.bytesoft.bytetcc.supports.springcloud.hystrix;
 
 import java.lang.reflect.Method;
 
+import org.bytesoft.compensable.CompensableTransaction;
+
 public class CompensableHystrixInvocation {
 
 	private Thread thread;
+	private CompensableTransaction compensable;
 	private Method method;
 	private Object[] args;
 
@@ -31,6 +34,14 @@ public class CompensableHystrixInvocation {
 		this.thread = thread;
 	}
 
+	public CompensableTransaction getCompensable() {
+		return compensable;
+	}
+
+	public void setCompensable(CompensableTransaction compensable) {
+		this.compensable = compensable;
+	}
+
 	public Method getMethod() {
 		return method;
 	}
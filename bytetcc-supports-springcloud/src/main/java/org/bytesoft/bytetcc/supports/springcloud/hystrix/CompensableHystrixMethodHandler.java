@@ -53,12 +53,11 @@ public class CompensableHystrixMethodHandler implements MethodHandler {
 		final TransactionInterceptor transactionInterceptor = beanFactory.getTransactionInterceptor();
 
 		CompensableHystrixInvocation invocation = (CompensableHystrixInvocation) argv[0];
-		Thread thread = invocation.getThread(); // (Thread) argv[0];
 		Method method = invocation.getMethod(); // (Method) argv[1];
 		Object[] args = invocation.getArgs(); // (Object[]) argv[2];
 
-		final CompensableTransactionImpl compensable = //
-				(CompensableTransactionImpl) compensableManager.getCompensableTransaction(thread);
+		// the hystrix command runs in another thread, the transaction is captured by the caller thread.
+		final CompensableTransactionImpl compensable = (CompensableTransactionImpl) invocation.getCompensable();
 		if (compensable == null) {
 			return this.dispatch.get(method).invoke(args);
 		}
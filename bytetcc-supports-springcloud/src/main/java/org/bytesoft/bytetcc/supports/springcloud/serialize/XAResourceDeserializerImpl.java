@@ -23,6 +23,7 @@ import org.bytesoft.bytejta.supports.internal.RemoteCoordinatorRegistry;
 import org.bytesoft.bytejta.supports.resource.RemoteResourceDescriptor;
 import org.bytesoft.bytetcc.supports.springcloud.SpringCloudCoordinator;
 import org.bytesoft.common.utils.CommonUtils;
+import org.bytesoft.compensable.AsyncRemoteCoordinator;
 import org.bytesoft.transaction.remote.RemoteAddr;
 import org.bytesoft.transaction.remote.RemoteCoordinator;
 import org.bytesoft.transaction.remote.RemoteNode;
@@ -64,9 +65,8 @@ public class XAResourceDeserializerImpl implements XAResourceDeserializer, Appli
 			springCloudCoordinator.setIdentifier(identifier);
 			springCloudCoordinator.setEnvironment(this.environment);
 			springCloudCoordinator.setStatefully(this.statefully);
-			RemoteCoordinator participant = (RemoteCoordinator) Proxy.newProxyInstance(
-					SpringCloudCoordinator.class.getClassLoader(), new Class[] { RemoteCoordinator.class },
-					springCloudCoordinator);
+			RemoteCoordinator participant = (RemoteCoordinator) Proxy.newProxyInstance(SpringCloudCoordinator.class.getClassLoader(),
+					new Class[] { RemoteCoordinator.class, AsyncRemoteCoordinator.class }, springCloudCoordinator);
 
 			RemoteAddr remoteAddr = CommonUtils.getRemoteAddr(identifier);
 			RemoteNode remoteNode = CommonUtils.getRemoteNode(identifier);
@@ -16,7 +16,6 @@
 package org.bytesoft.bytetcc.supports.springcloud.web;
 
 import java.lang.reflect.Method;
-import java.util.Base64;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -24,6 +23,7 @@ import javax.servlet.http.HttpServletResponse;
 import org.apache.commons.lang.StringUtils;
 import org.bytesoft.bytejta.supports.rpc.TransactionRequestImpl;
 import org.bytesoft.bytejta.supports.rpc.TransactionResponseImpl;
+import org.bytesoft.bytetcc.supports.TransactionContextCodec;
 import org.bytesoft.bytetcc.supports.springcloud.SpringCloudBeanRegistry;
 import org.bytesoft.bytetcc.supports.springcloud.controller.CompensableCoordinatorController;
 import org.bytesoft.common.utils.CommonUtils;
@@ -96,11 +96,8 @@ public class CompensableHandlerInterceptor implements HandlerInterceptor, Compen
 		CompensableBeanFactory beanFactory = beanRegistry.getBeanFactory();
 		TransactionInterceptor transactionInterceptor = beanFactory.getTransactionInterceptor();
 
-		byte[] byteArray = transactionText == null ? new byte[0] : Base64.getDecoder().decode(transactionText);
-
-		TransactionContext transactionContext = null;
-		if (byteArray != null && byteArray.length > 0) {
-			transactionContext = (TransactionContext) SerializeUtils.deserializeObject(byteArray);
+		TransactionContext transactionContext = TransactionContextCodec.decode(transactionText);
+		if (transactionContext != null) {
 			transactionContext.setPropagated(true);
 			transactionContext.setPropagatedBy(propagationText);
 		}
@@ -115,9 +112,11 @@ public class CompensableHandlerInterceptor implements HandlerInterceptor, Compen
 		CompensableTransaction compensable = compensableManager.getCompensableTransactionQuietly();
 		String propagatedBy = (String) compensable.getTransactionContext().getPropagatedBy();
 
-		byte[] responseByteArray = SerializeUtils.serializeObject(compensable.getTransactionContext());
-		String compensableStr = Base64.getEncoder().encodeToString(responseByteArray);
-		response.setHeader(HEADER_TRANCACTION_KEY, compensableStr);
+		TransactionContext responseContext = compensable.getTransactionContext();
+		if (TransactionContextCodec.isModified(transactionText, responseContext)) {
+			boolean compact = TransactionContextCodec.isCompact(transactionText);
+			response.setHeader(HEADER_TRANCACTION_KEY, TransactionContextCodec.encode(responseContext, compact));
+		} // end-if (TransactionContextCodec.isModified(transactionText, responseContext))
 		response.setHeader(HEADER_PROPAGATION_KEY, this.identifier);
 
 		String sourceApplication = CommonUtils.getApplication(propagatedBy);
@@ -16,15 +16,14 @@
 package org.bytesoft.bytetcc.supports.springcloud.web;
 
 import java.io.IOException;
-import java.util.Base64;
 
 import org.apache.commons.lang3.StringUtils;
 import org.bytesoft.bytejta.supports.rpc.TransactionRequestImpl;
 import org.bytesoft.bytejta.supports.rpc.TransactionResponseImpl;
 import org.bytesoft.bytetcc.CompensableTransactionImpl;
+import org.bytesoft.bytetcc.supports.TransactionContextCodec;
 import org.bytesoft.bytetcc.supports.springcloud.SpringCloudBeanRegistry;
 import org.bytesoft.bytetcc.supports.springcloud.loadbalancer.CompensableLoadBalancerInterceptor;
-import org.bytesoft.common.utils.SerializeUtils;
 import org.bytesoft.compensable.CompensableBeanFactory;
 import org.bytesoft.compensable.CompensableManager;
 import org.bytesoft.compensable.TransactionContext;
@@ -56,6 +55,8 @@ public class CompensableRequestInterceptor
 
 	private String identifier;
 	private ApplicationContext applicationContext;
+	/** opt-in, see TransactionContextCodec: enable it after all of the servers have been upgraded. */
+	private boolean compactContextEnabled = false;
 	private volatile boolean statefully;
 
 	public ClientHttpResponse intercept(final HttpRequest httpRequest, byte[] body, ClientHttpRequestExecution execution)
@@ -111,7 +112,7 @@ public class CompensableRequestInterceptor
 			beanRegistry.removeLoadBalancerInterceptor();
 
 			if (httpResponse != null) {
-				this.invokeAfterRecvResponse(httpResponse, serverFlag);
+				this.invokeAfterRecvResponse(httpRequest, httpResponse, serverFlag);
 			} // end-if (httpResponse != null)
 
 		}
@@ -129,8 +130,7 @@ public class CompensableRequestInterceptor
 
 		TransactionContext transactionContext = compensable.getTransactionContext();
 
-		byte[] reqByteArray = SerializeUtils.serializeObject(transactionContext);
-		String reqTransactionStr = Base64.getEncoder().encodeToString(reqByteArray);
+		String reqTransactionStr = TransactionContextCodec.encode(transactionContext, this.compactContextEnabled);
 
 		HttpHeaders reqHeaders = httpRequest.getHeaders();
 		reqHeaders.add(HEADER_TRANCACTION_KEY, reqTransactionStr);
@@ -144,7 +144,8 @@ public class CompensableRequestInterceptor
 		transactionInterceptor.beforeSendRequest(request);
 	}
 
-	private void invokeAfterRecvResponse(ClientHttpResponse httpResponse, boolean serverFlag) throws IOException {
+	private void invokeAfterRecvResponse(HttpRequest httpRequest, ClientHttpResponse httpResponse, boolean serverFlag)
+			throws IOException {
 		SpringCloudBeanRegistry beanRegistry = SpringCloudBeanRegistry.getInstance();
 		CompensableBeanFactory beanFactory = beanRegistry.getBeanFactory();
 		TransactionInterceptor transactionInterceptor = beanFactory.getTransactionInterceptor();
@@ -154,11 +155,12 @@ public class CompensableRequestInterceptor
 		String respPropagationStr = respHeaders.getFirst(HEADER_PROPAGATION_KEY);
 		String respRecursivelyStr = respHeaders.getFirst(HEADER_RECURSIVELY_KEY);
 
-		String transactionText = StringUtils.trimToNull(respTransactionStr);
-		byte[] byteArray = StringUtils.isBlank(transactionText) ? null : Base64.getDecoder().decode(transactionText);
-		TransactionContext serverContext = byteArray == null || byteArray.length == 0 //
-				? null
-				: (TransactionContext) SerializeUtils.deserializeObject(byteArray);
+		// the server omits the unchanged context of a compact request, reuse the one which has been sent.
+		String reqTransactionStr = httpRequest.getHeaders().getFirst(HEADER_TRANCACTION_KEY);
+		String transactionText = StringUtils.isBlank(respTransactionStr) && StringUtils.isNotBlank(respPropagationStr)
+				? StringUtils.trimToNull(reqTransactionStr)
+				: StringUtils.trimToNull(respTransactionStr);
+		TransactionContext serverContext = TransactionContextCodec.decode(transactionText);
 
 		TransactionResponseImpl txResp = new TransactionResponseImpl();
 		txResp.setTransactionContext(serverContext);
@@ -185,6 +187,14 @@ public class CompensableRequestInterceptor
 		this.statefully = statefully;
 	}
 
+	public boolean isCompactContextEnabled() {
+		return compactContextEnabled;
+	}
+
+	public void setCompactContextEnabled(boolean compactContextEnabled) {
+		this.compactContextEnabled = compactContextEnabled;
+	}
+
 	public String getEndpoint() {
 		return this.identifier;
 	}
@@ -0,0 +1,42 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Fast serializer of a compensable argument type, registered to the CompactInvocationCodec.
+ */
+public interface ArgumentSerializer {
+
+	/**
+	 * @return the tag written before the argument, in range [64, 127]. It is persisted, so it must not be changed once
+	 *         the records have been written.
+	 */
+	public int getTag();
+
+	/**
+	 * @return the exact class of the arguments handled by this serializer.
+	 */
+	public Class<?> getType();
+
+	public void write(DataOutput output, Object value) throws IOException;
+
+	public Object read(DataInput input) throws IOException;
+
+}
@@ -0,0 +1,398 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.StringUtils;
+import org.bytesoft.common.utils.SerializeUtils;
+import org.bytesoft.compensable.CompensableInvocation;
+import org.bytesoft.compensable.logging.CompensableInvocationCodec;
+
+/**
+ * Compact encoding of the compensable invocation:
+ *
+ * <pre>
+ * version(1) | flags(1) | declaringClass | methodName | parameterTypes | confirmableKey | cancellableKey | identifier | args
+ * </pre>
+ *
+ * The descriptor part(from flags to identifier) is the same for every invocation of a compensable method, it is encoded
+ * once and kept in an in-process dictionary. The descriptor is still written into each record(instead of a dictionary
+ * id), since the records must be readable after a restart and by the other nodes during recovery. The arguments are
+ * written with a type tag, the common jdk types and the registered ArgumentSerializers are encoded directly, the other
+ * types fall back to SerializeUtils. The codec is opt-in(CompensableArchiveDeserializer.invocationCodec), since the
+ * records written by it can not be read by the nodes which have not been upgraded.
+ */
+public class CompactInvocationCodec implements CompensableInvocationCodec {
+	static final byte VERSION_1 = 0x10;
+
+	static final int FLAG_SIMPLIFIED = 0x1;
+	static final int FLAG_DECLARING_CLASS = 0x2;
+	static final int FLAG_METHOD_NAME = 0x4;
+	static final int FLAG_PARAMETER_TYPES = 0x8;
+	static final int FLAG_CONFIRMABLE_KEY = 0x10;
+	static final int FLAG_CANCELLABLE_KEY = 0x20;
+
+	static final int TAG_NULL = 0;
+	static final int TAG_STRING = 1;
+	static final int TAG_INTEGER = 2;
+	static final int TAG_LONG = 3;
+	static final int TAG_SHORT = 4;
+	static final int TAG_BYTE = 5;
+	static final int TAG_BOOLEAN = 6;
+	static final int TAG_DOUBLE = 7;
+	static final int TAG_FLOAT = 8;
+	static final int TAG_CHARACTER = 9;
+	static final int TAG_BIG_DECIMAL = 10;
+	static final int TAG_BIG_INTEGER = 11;
+	static final int TAG_BYTE_ARRAY = 12;
+	static final int TAG_DATE = 13;
+	static final int TAG_SERIALIZABLE = 63;
+	static final int TAG_CUSTOM_MIN = 64;
+	static final int TAG_CUSTOM_MAX = 127;
+
+	private final Map<DescriptorKey, byte[]> dictionary = new ConcurrentHashMap<DescriptorKey, byte[]>();
+	private final Map<Class<?>, ArgumentSerializer> typeToSerializerMap = new ConcurrentHashMap<Class<?>, ArgumentSerializer>();
+	private final ArgumentSerializer[] tagToSerializerArray = new ArgumentSerializer[TAG_CUSTOM_MAX + 1];
+	private int maxDictionarySize = 1024;
+
+	public byte getVersion() {
+		return VERSION_1;
+	}
+
+	public byte[] encode(CompensableInvocation invocation) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream(128);
+		DataOutputStream output = new DataOutputStream(baos);
+
+		output.writeByte(VERSION_1);
+		output.write(this.getDescriptor(invocation));
+
+		Object[] args = invocation.getArgs();
+		output.writeShort(args == null ? -1 : args.length);
+		for (int i = 0; args != null && i < args.length; i++) {
+			this.writeValue(output, args[i]);
+		}
+
+		output.flush();
+		return baos.toByteArray();
+	}
+
+	private byte[] getDescriptor(CompensableInvocation invocation) throws IOException {
+		Object identifier = invocation.getIdentifier();
+		if (identifier != null && String.class.equals(identifier.getClass()) == false) {
+			return this.encodeDescriptor(invocation); // only the immutable identifiers can be used as dictionary key
+		}
+
+		DescriptorKey key = new DescriptorKey(invocation);
+		byte[] descriptor = this.dictionary.get(key);
+		if (descriptor == null) {
+			descriptor = this.encodeDescriptor(invocation);
+			if (this.dictionary.size() < this.maxDictionarySize) {
+				this.dictionary.put(key, descriptor);
+			}
+		}
+		return descriptor;
+	}
+
+	private byte[] encodeDescriptor(CompensableInvocation invocation) throws IOException {
+		String declaringClass = invocation.getDeclaringClass();
+		String methodName = invocation.getMethodName();
+		String[] parameterTypeArray = invocation.getParameterTypeArray();
+		String confirmableKey = invocation.getConfirmableKey();
+		String cancellableKey = invocation.getCancellableKey();
+
+		int flags = invocation.isSimplified() ? FLAG_SIMPLIFIED : 0;
+		flags = declaringClass == null ? flags : flags | FLAG_DECLARING_CLASS;
+		flags = methodName == null ? flags : flags | FLAG_METHOD_NAME;
+		flags = parameterTypeArray == null ? flags : flags | FLAG_PARAMETER_TYPES;
+		flags = confirmableKey == null ? flags : flags | FLAG_CONFIRMABLE_KEY;
+		flags = cancellableKey == null ? flags : flags | FLAG_CANCELLABLE_KEY;
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream(64);
+		DataOutputStream output = new DataOutputStream(baos);
+		output.writeByte(flags);
+		if (declaringClass != null) {
+			output.writeUTF(declaringClass);
+		}
+		if (methodName != null) {
+			output.writeUTF(methodName);
+		}
+		if (parameterTypeArray != null) {
+			output.writeShort(parameterTypeArray.length); // a jvm method takes at most 255 parameters
+			for (int i = 0; i < parameterTypeArray.length; i++) {
+				output.writeUTF(parameterTypeArray[i]);
+			}
+		}
+		if (confirmableKey != null) {
+			output.writeUTF(confirmableKey);
+		}
+		if (cancellableKey != null) {
+			output.writeUTF(cancellableKey);
+		}
+		this.writeValue(output, invocation.getIdentifier());
+
+		output.flush();
+		return baos.toByteArray();
+	}
+
+	public CompensableInvocation decode(byte[] byteArray) throws IOException {
+		DataInputStream input = new DataInputStream(new ByteArrayInputStream(byteArray));
+
+		int version = input.readByte();
+		if (version != VERSION_1) {
+			throw new IOException(String.format("Unsupported version of compensable invocation: %s", version));
+		}
+
+		int flags = input.readUnsignedByte();
+
+		CompensableInvocationImpl invocation = new CompensableInvocationImpl();
+		invocation.setSimplified((flags & FLAG_SIMPLIFIED) == FLAG_SIMPLIFIED);
+		if ((flags & FLAG_DECLARING_CLASS) == FLAG_DECLARING_CLASS) {
+			invocation.setDeclaringClass(input.readUTF());
+		}
+		if ((flags & FLAG_METHOD_NAME) == FLAG_METHOD_NAME) {
+			invocation.setMethodName(input.readUTF());
+		}
+		if ((flags & FLAG_PARAMETER_TYPES) == FLAG_PARAMETER_TYPES) {
+			String[] parameterTypeArray = new String[input.readUnsignedShort()];
+			for (int i = 0; i < parameterTypeArray.length; i++) {
+				parameterTypeArray[i] = input.readUTF();
+			}
+			invocation.setParameterTypeArray(parameterTypeArray);
+		}
+		if ((flags & FLAG_CONFIRMABLE_KEY) == FLAG_CONFIRMABLE_KEY) {
+			invocation.setConfirmableKey(input.readUTF());
+		}
+		if ((flags & FLAG_CANCELLABLE_KEY) == FLAG_CANCELLABLE_KEY) {
+			invocation.setCancellableKey(input.readUTF());
+		}
+		invocation.setIdentifier(this.readValue(input));
+
+		int length = input.readShort();
+		if (length >= 0) {
+			Object[] args = new Object[length];
+			for (int i = 0; i < length; i++) {
+				args[i] = this.readValue(input);
+			}
+			invocation.setArgs(args);
+		}
+
+		return invocation;
+	}
+
+	private void writeValue(DataOutput output, Object value) throws IOException {
+		if (value == null) {
+			output.writeByte(TAG_NULL);
+			return;
+		}
+
+		Class<?> clazz = value.getClass();
+		ArgumentSerializer serializer = this.typeToSerializerMap.get(clazz);
+		if (serializer != null) {
+			output.writeByte(serializer.getTag());
+			serializer.write(output, value);
+		} else if (String.class.equals(clazz)) {
+			output.writeByte(TAG_STRING);
+			this.writeByteArray(output, ((String) value).getBytes(StandardCharsets.UTF_8));
+		} else if (Integer.class.equals(clazz)) {
+			output.writeByte(TAG_INTEGER);
+			output.writeInt((Integer) value);
+		} else if (Long.class.equals(clazz)) {
+			output.writeByte(TAG_LONG);
+			output.writeLong((Long) value);
+		} else if (Short.class.equals(clazz)) {
+			output.writeByte(TAG_SHORT);
+			output.writeShort((Short) value);
+		} else if (Byte.class.equals(clazz)) {
+			output.writeByte(TAG_BYTE);
+			output.writeByte((Byte) value);
+		} else if (Boolean.class.equals(clazz)) {
+			output.writeByte(TAG_BOOLEAN);
+			output.writeBoolean((Boolean) value);
+		} else if (Double.class.equals(clazz)) {
+			output.writeByte(TAG_DOUBLE);
+			output.writeDouble((Double) value);
+		} else if (Float.class.equals(clazz)) {
+			output.writeByte(TAG_FLOAT);
+			output.writeFloat((Float) value);
+		} else if (Character.class.equals(clazz)) {
+			output.writeByte(TAG_CHARACTER);
+			output.writeChar((Character) value);
+		} else if (BigDecimal.class.equals(clazz)) {
+			output.writeByte(TAG_BIG_DECIMAL);
+			output.writeInt(((BigDecimal) value).scale());
+			this.writeByteArray(output, ((BigDecimal) value).unscaledValue().toByteArray());
+		} else if (BigInteger.class.equals(clazz)) {
+			output.writeByte(TAG_BIG_INTEGER);
+			this.writeByteArray(output, ((BigInteger) value).toByteArray());
+		} else if (byte[].class.equals(clazz)) {
+			output.writeByte(TAG_BYTE_ARRAY);
+			this.writeByteArray(output, (byte[]) value);
+		} else if (Date.class.equals(clazz)) {
+			output.writeByte(TAG_DATE);
+			output.writeLong(((Date) value).getTime());
+		} else if (Serializable.class.isInstance(value)) {
+			output.writeByte(TAG_SERIALIZABLE);
+			this.writeByteArray(output, SerializeUtils.serializeObject((Serializable) value));
+		} else {
+			throw new IOException(String.format("The argument is not serializable: %s", clazz.getName()));
+		}
+	}
+
+	private Object readValue(DataInput input) throws IOException {
+		int tag = input.readUnsignedByte();
+		switch (tag) {
+		case TAG_NULL:
+			return null;
+		case TAG_STRING:
+			return new String(this.readByteArray(input), StandardCharsets.UTF_8);
+		case TAG_INTEGER:
+			return input.readInt();
+		case TAG_LONG:
+			return input.readLong();
+		case TAG_SHORT:
+			return input.readShort();
+		case TAG_BYTE:
+			return input.readByte();
+		case TAG_BOOLEAN:
+			return input.readBoolean();
+		case TAG_DOUBLE:
+			return input.readDouble();
+		case TAG_FLOAT:
+			return input.readFloat();
+		case TAG_CHARACTER:
+			return input.readChar();
+		case TAG_BIG_DECIMAL:
+			int scale = input.readInt();
+			return new BigDecimal(new BigInteger(this.readByteArray(input)), scale);
+		case TAG_BIG_INTEGER:
+			return new BigInteger(this.readByteArray(input));
+		case TAG_BYTE_ARRAY:
+			return this.readByteArray(input);
+		case TAG_DATE:
+			return new Date(input.readLong());
+		case TAG_SERIALIZABLE:
+			return SerializeUtils.deserializeObject(this.readByteArray(input));
+		default:
+			ArgumentSerializer serializer = tag <= TAG_CUSTOM_MAX ? this.tagToSerializerArray[tag] : null;
+			if (serializer == null) {
+				throw new IOException(String.format("No argument serializer is registered for tag: %s", tag));
+			}
+			return serializer.read(input);
+		}
+	}
+
+	private void writeByteArray(DataOutput output, byte[] byteArray) throws IOException {
+		output.writeInt(byteArray.length);
+		output.write(byteArray);
+	}
+
+	private byte[] readByteArray(DataInput input) throws IOException {
+		byte[] byteArray = new byte[input.readInt()];
+		input.readFully(byteArray);
+		return byteArray;
+	}
+
+	public synchronized void registerSerializer(ArgumentSerializer serializer) {
+		int tag = serializer.getTag();
+		if (tag < TAG_CUSTOM_MIN || tag > TAG_CUSTOM_MAX) {
+			throw new IllegalArgumentException(String.format("The tag of argument serializer must be in range [%s, %s]: %s",
+					TAG_CUSTOM_MIN, TAG_CUSTOM_MAX, tag));
+		} else if (this.tagToSerializerArray[tag] != null) {
+			throw new IllegalStateException(String.format("Duplicated tag of argument serializer: %s", tag));
+		}
+
+		this.tagToSerializerArray[tag] = serializer;
+		this.typeToSerializerMap.put(serializer.getType(), serializer);
+	}
+
+	public void setSerializers(List<ArgumentSerializer> serializers) {
+		for (int i = 0; serializers != null && i < serializers.size(); i++) {
+			this.registerSerializer(serializers.get(i));
+		}
+	}
+
+	public int getMaxDictionarySize() {
+		return maxDictionarySize;
+	}
+
+	public void setMaxDictionarySize(int maxDictionarySize) {
+		this.maxDictionarySize = maxDictionarySize;
+	}
+
+	static class DescriptorKey {
+		private final String declaringClass;
+		private final String methodName;
+		private final String[] parameterTypeArray;
+		private final String confirmableKey;
+		private final String cancellableKey;
+		private final Object identifier;
+		private final boolean simplified;
+		private final int hashCode;
+
+		DescriptorKey(CompensableInvocation invocation) {
+			this.declaringClass = invocation.getDeclaringClass();
+			this.methodName = invocation.getMethodName();
+			String[] parameterTypeArray = invocation.getParameterTypeArray();
+			this.parameterTypeArray = parameterTypeArray == null ? null : parameterTypeArray.clone();
+			this.confirmableKey = invocation.getConfirmableKey();
+			this.cancellableKey = invocation.getCancellableKey();
+			this.identifier = invocation.getIdentifier();
+			this.simplified = invocation.isSimplified();
+
+			int hash = 23;
+			hash += 29 * (this.declaringClass == null ? 0 : this.declaringClass.hashCode());
+			hash += 31 * (this.methodName == null ? 0 : this.methodName.hashCode());
+			hash += 37 * Arrays.hashCode(this.parameterTypeArray);
+			hash += 41 * (this.identifier == null ? 0 : this.identifier.hashCode());
+			this.hashCode = hash;
+		}
+
+		public int hashCode() {
+			return this.hashCode;
+		}
+
+		public boolean equals(Object obj) {
+			if (obj == null || DescriptorKey.class.isInstance(obj) == false) {
+				return false;
+			}
+			DescriptorKey that = (DescriptorKey) obj;
+			return this.hashCode == that.hashCode && this.simplified == that.simplified
+					&& StringUtils.equals(this.declaringClass, that.declaringClass)
+					&& StringUtils.equals(this.methodName, that.methodName)
+					&& Arrays.equals(this.parameterTypeArray, that.parameterTypeArray)
+					&& StringUtils.equals(this.confirmableKey, that.confirmableKey)
+					&& StringUtils.equals(this.cancellableKey, that.cancellableKey)
+					&& (this.identifier == null ? that.identifier == null : this.identifier.equals(that.identifier));
+		}
+	}
+
+}
@@ -96,6 +96,17 @@ public class CompensableInvocationImpl implements CompensableInvocation {
 		this.method = method;
 	}
 
+	/**
+	 * @param parameterTypeArray the names of the parameter types which have been resolved in advance, it is shared and
+	 *            must not be modified.
+	 */
+	public void setMethod(Method method, String[] parameterTypeArray) {
+		this.declaringClass = method.getDeclaringClass().getName();
+		this.methodName = method.getName();
+		this.parameterTypeArray = parameterTypeArray;
+		this.method = method;
+	}
+
 	public Object[] getArgs() {
 		return args;
 	}
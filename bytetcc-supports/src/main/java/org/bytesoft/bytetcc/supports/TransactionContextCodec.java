@@ -0,0 +1,178 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+import org.apache.commons.lang3.StringUtils;
+import org.bytesoft.common.utils.SerializeUtils;
+import org.bytesoft.compensable.TransactionContext;
+import org.bytesoft.transaction.xa.TransactionXid;
+
+/**
+ * Header encoding of the transaction context exchanged by the http transports:
+ *
+ * <pre>
+ * version(1) | flags(1) | formatId(4) | createdTime(8) | expiredTime(8) | configFlags(8) | gtrid(1+n) | bqual(1+n)
+ * </pre>
+ *
+ * The bytes are encoded as unpadded Base64URL. The contexts written by SerializeUtils (and encoded by the standard Base64)
+ * are still accepted, and a server replies in the same encoding as the request, so that the nodes can be upgraded one by
+ * one. The clients keep sending the SerializeUtils form by default(compactContextEnabled=false) since the nodes which
+ * have not been upgraded can not decode the compact one, turn it on once the whole fleet has been upgraded. The
+ * propagatedBy field is transient and travels in its own header.
+ */
+public final class TransactionContextCodec {
+	static final byte VERSION_1 = 0x10;
+
+	static final int FLAG_ROLLBACK_ONLY = 0x1;
+	static final int FLAG_COMPENSABLE = 0x2;
+	static final int FLAG_STATEFULLY = 0x4;
+
+	static final int OFFSET_CREATED_TIME = 6;
+	static final int FIXED_LENGTH = 30;
+
+	private TransactionContextCodec() {
+	}
+
+	public static String encode(TransactionContext transactionContext, boolean compact) throws IOException {
+		if (compact) {
+			return Base64.getUrlEncoder().withoutPadding().encodeToString(encodeContext(transactionContext));
+		} else {
+			return Base64.getEncoder().encodeToString(SerializeUtils.serializeObject(transactionContext));
+		}
+	}
+
+	public static TransactionContext decode(String transactionText) throws IOException {
+		byte[] byteArray = decodeText(transactionText);
+		if (byteArray == null || byteArray.length == 0) {
+			return null;
+		} else if (byteArray[0] == VERSION_1) {
+			return decodeContext(byteArray);
+		} else {
+			return (TransactionContext) SerializeUtils.deserializeObject(byteArray);
+		}
+	}
+
+	public static boolean isCompact(String transactionText) {
+		byte[] byteArray = decodeText(transactionText);
+		return byteArray != null && byteArray.length > 0 && byteArray[0] == VERSION_1;
+	}
+
+	/**
+	 * @return false if the request was compact and the context differs from it in nothing but the created time, in
+	 *         which case the response header can be omitted and the caller reuses the context it has sent.
+	 */
+	public static boolean isModified(String requestText, TransactionContext transactionContext) throws IOException {
+		byte[] request = decodeText(requestText);
+		if (request == null || request.length == 0 || request[0] != VERSION_1) {
+			return true;
+		}
+
+		byte[] response = encodeContext(transactionContext);
+		if (request.length != response.length) {
+			return true;
+		}
+		for (int i = 0; i < response.length; i++) {
+			if (i >= OFFSET_CREATED_TIME && i < OFFSET_CREATED_TIME + 8) {
+				continue;
+			} else if (request[i] != response[i]) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	static byte[] decodeText(String transactionText) {
+		String text = StringUtils.trimToNull(transactionText);
+		if (text == null) {
+			return null;
+		} else if (text.indexOf('-') >= 0 || text.indexOf('_') >= 0) {
+			return Base64.getUrlDecoder().decode(text);
+		} else {
+			return Base64.getDecoder().decode(text); // accepts the unpadded text as well
+		}
+	}
+
+	static byte[] encodeContext(TransactionContext transactionContext) throws IOException {
+		TransactionXid xid = transactionContext.getXid();
+		byte[] globalTransactionId = xid.getGlobalTransactionId();
+		byte[] branchQualifier = xid.getBranchQualifier();
+		int gtridLength = globalTransactionId == null ? 0 : globalTransactionId.length;
+		int bqualLength = branchQualifier == null ? 0 : branchQualifier.length;
+		if (gtridLength > 0xFF || bqualLength > 0xFF) {
+			throw new IOException(String.format("Invalid xid: %s", xid));
+		}
+
+		int flags = 0;
+		flags = transactionContext.isRollbackOnly() ? flags | FLAG_ROLLBACK_ONLY : flags;
+		flags = transactionContext.isCompensable() ? flags | FLAG_COMPENSABLE : flags;
+		flags = transactionContext.isStatefully() ? flags | FLAG_STATEFULLY : flags;
+
+		ByteBuffer buffer = ByteBuffer.allocate(FIXED_LENGTH + 2 + gtridLength + bqualLength);
+		buffer.put(VERSION_1);
+		buffer.put((byte) flags);
+		buffer.putInt(xid.getFormatId());
+		buffer.putLong(transactionContext.getCreatedTime());
+		buffer.putLong(transactionContext.getExpiredTime());
+		buffer.putLong(transactionContext.getConfigFlags());
+		buffer.put((byte) gtridLength);
+		if (gtridLength > 0) {
+			buffer.put(globalTransactionId);
+		}
+		buffer.put((byte) bqualLength);
+		if (bqualLength > 0) {
+			buffer.put(branchQualifier);
+		}
+		return buffer.array();
+	}
+
+	static TransactionContext decodeContext(byte[] byteArray) throws IOException {
+		if (byteArray.length < FIXED_LENGTH + 2) {
+			throw new IOException("Invalid transaction context: truncated!");
+		}
+
+		ByteBuffer buffer = ByteBuffer.wrap(byteArray);
+		buffer.get(); // version
+		int flags = buffer.get();
+		int formatId = buffer.getInt();
+
+		TransactionContext transactionContext = new TransactionContext();
+		transactionContext.setRollbackOnly((flags & FLAG_ROLLBACK_ONLY) != 0);
+		transactionContext.setCompensable((flags & FLAG_COMPENSABLE) != 0);
+		transactionContext.setStatefully((flags & FLAG_STATEFULLY) != 0);
+		transactionContext.setCreatedTime(buffer.getLong());
+		transactionContext.setExpiredTime(buffer.getLong());
+		transactionContext.setConfigFlags(buffer.getLong());
+
+		byte[] globalTransactionId = new byte[buffer.get() & 0xFF];
+		if (buffer.remaining() < globalTransactionId.length + 1) {
+			throw new IOException("Invalid transaction context: truncated!");
+		}
+		buffer.get(globalTransactionId);
+		byte[] branchQualifier = new byte[buffer.get() & 0xFF];
+		if (buffer.remaining() != branchQualifier.length) {
+			throw new IOException("Invalid transaction context: truncated!");
+		}
+		buffer.get(branchQualifier);
+
+		transactionContext.setXid(new TransactionXid(formatId, globalTransactionId, branchQualifier));
+		return transactionContext;
+	}
+
+}
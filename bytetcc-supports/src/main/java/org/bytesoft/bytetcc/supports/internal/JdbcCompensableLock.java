@@ -0,0 +1,498 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports.internal;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.resource.spi.work.Work;
+import javax.sql.DataSource;
+
+import org.apache.commons.lang3.StringUtils;
+import org.bytesoft.bytetcc.supports.CompensableBatchLock;
+import org.bytesoft.common.utils.ByteUtils;
+import org.bytesoft.compensable.aware.CompensableEndpointAware;
+import org.bytesoft.transaction.xa.TransactionXid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.support.JdbcUtils;
+
+/**
+ * Transaction lock backed by the tables bytetcc_lock and bytetcc_instance. The instances keep their heartbeat in
+ * bytetcc_instance instead of an ephemeral zookeeper node, an instance whose heartbeat is older than heartbeatTimeout
+ * is considered dead and its locks can be taken over. The version of an instance is increased each time it's restarted.
+ */
+public class JdbcCompensableLock implements CompensableBatchLock, CompensableInstVersionManager,
+		CompensableEndpointAware, SmartInitializingSingleton, Work {
+	static Logger logger = LoggerFactory.getLogger(JdbcCompensableLock.class);
+
+	static final String SQL_INSERT_LOCK = "INSERT INTO bytetcc_lock(gxid, identifier, times, ctime) VALUES (?, ?, ?, ?)";
+	static final String SQL_TAKEOVER_LOCK = "UPDATE bytetcc_lock SET times = CASE WHEN identifier = ? THEN times + 1 "
+			+ "ELSE 1 END, identifier = ? WHERE gxid = ?";
+	static final String SQL_TAKEOVER_LOCKS = "UPDATE bytetcc_lock SET times = 1, identifier = ?, ctime = ? "
+			+ "WHERE gxid = ? AND identifier <> ?";
+	static final String SQL_SELECT_LOCK = "SELECT identifier, ctime FROM bytetcc_lock WHERE gxid = ?";
+	static final String SQL_RELEASE_LOCK = "UPDATE bytetcc_lock SET times = times - 1 WHERE gxid = ? AND identifier = ?";
+	static final String SQL_DELETE_LOCK = "DELETE FROM bytetcc_lock WHERE gxid = ? AND identifier = ? AND times <= 0";
+
+	static final String SQL_UPDATE_INSTANCE = "UPDATE bytetcc_instance SET version = version + 1, heartbeat = ? "
+			+ "WHERE endpoint = ?";
+	static final String SQL_INSERT_INSTANCE = "INSERT INTO bytetcc_instance(endpoint, version, heartbeat) "
+			+ "VALUES (?, ?, ?)";
+	static final String SQL_SELECT_INSTANCE = "SELECT version FROM bytetcc_instance WHERE endpoint = ?";
+	static final String SQL_HEARTBEAT = "UPDATE bytetcc_instance SET heartbeat = ? WHERE endpoint = ?";
+	static final String SQL_SELECT_INSTANCES = "SELECT endpoint, version FROM bytetcc_instance WHERE heartbeat >= ?";
+
+	@javax.annotation.Resource(name = "bytetccDataSource")
+	private DataSource dataSource;
+	private String endpoint;
+
+	private long heartbeatInterval = 1000L * 5;
+	private long heartbeatTimeout = 1000L * 30;
+
+	private volatile Map<String, Long> instances = new HashMap<String, Long>();
+	private transient volatile long instanceVersion;
+	private volatile boolean released;
+
+	public void afterSingletonsInstantiated() {
+		try {
+			this.afterPropertiesSet();
+		} catch (Exception error) {
+			throw new RuntimeException(error);
+		}
+	}
+
+	public void afterPropertiesSet() throws Exception {
+		this.initializeInstanceVersion();
+		this.reloadInstances();
+	}
+
+	private void initializeInstanceVersion() throws SQLException {
+		Connection conn = null;
+		PreparedStatement stmt = null;
+		ResultSet rs = null;
+		try {
+			conn = this.dataSource.getConnection();
+
+			long current = System.currentTimeMillis();
+			stmt = conn.prepareStatement(SQL_UPDATE_INSTANCE);
+			stmt.setLong(1, current);
+			stmt.setString(2, this.endpoint);
+			int value = stmt.executeUpdate();
+			JdbcUtils.closeStatement(stmt);
+			stmt = null;
+
+			if (value == 0) {
+				stmt = conn.prepareStatement(SQL_INSERT_INSTANCE);
+				stmt.setString(1, this.endpoint);
+				stmt.setLong(2, 1L);
+				stmt.setLong(3, current);
+				stmt.executeUpdate();
+				JdbcUtils.closeStatement(stmt);
+				stmt = null;
+			} // end-if (value == 0)
+
+			stmt = conn.prepareStatement(SQL_SELECT_INSTANCE);
+			stmt.setString(1, this.endpoint);
+			rs = stmt.executeQuery();
+			if (rs.next() == false) {
+				throw new IllegalStateException(String.format("Instance(%s) is not registered!", this.endpoint));
+			}
+			this.instanceVersion = rs.getLong("version");
+		} finally {
+			JdbcUtils.closeResultSet(rs);
+			JdbcUtils.closeStatement(stmt);
+			JdbcUtils.closeConnection(conn);
+		}
+	}
+
+	private void reloadInstances() throws SQLException {
+		Map<String, Long> instances = new HashMap<String, Long>();
+
+		Connection conn = null;
+		PreparedStatement stmt = null;
+		ResultSet rs = null;
+		try {
+			conn = this.dataSource.getConnection();
+			stmt = conn.prepareStatement(SQL_SELECT_INSTANCES);
+			stmt.setLong(1, System.currentTimeMillis() - this.heartbeatTimeout);
+			rs = stmt.executeQuery();
+			while (rs.next()) {
+				instances.put(rs.getString("endpoint"), rs.getLong("version"));
+			}
+		} finally {
+			JdbcUtils.closeResultSet(rs);
+			JdbcUtils.closeStatement(stmt);
+			JdbcUtils.closeConnection(conn);
+		}
+
+		instances.put(this.endpoint, this.instanceVersion);
+		this.instances = instances;
+	}
+
+	private void heartbeat() throws SQLException {
+		Connection conn = null;
+		PreparedStatement stmt = null;
+		try {
+			conn = this.dataSource.getConnection();
+			stmt = conn.prepareStatement(SQL_HEARTBEAT);
+			stmt.setLong(1, System.currentTimeMillis());
+			stmt.setString(2, this.endpoint);
+			stmt.executeUpdate();
+		} finally {
+			JdbcUtils.closeStatement(stmt);
+			JdbcUtils.closeConnection(conn);
+		}
+	}
+
+	public void run() {
+		long nextHeartbeatTime = 0;
+		while (this.released == false) {
+			long current = System.currentTimeMillis();
+			if (current >= nextHeartbeatTime) {
+				nextHeartbeatTime = current + this.heartbeatInterval;
+
+				try {
+					this.heartbeat();
+					this.reloadInstances();
+				} catch (SQLException error) {
+					logger.error("Error occurred while sending heartbeat.", error);
+				} catch (RuntimeException error) {
+					logger.error("Error occurred while sending heartbeat.", error);
+				}
+			}
+
+			this.waitForMillis(100L);
+		} // end-while (this.released == false)
+	}
+
+	private void waitForMillis(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (Exception ignore) {
+			logger.debug(ignore.getMessage(), ignore);
+		}
+	}
+
+	public void release() {
+		this.released = true;
+	}
+
+	public long getInstanceVersion(String instanceId) {
+		Long version = StringUtils.isBlank(instanceId) ? null : this.instances.get(instanceId);
+		return version == null ? -1 : version;
+	}
+
+	public boolean lockTransaction(TransactionXid transactionXid, String identifier) {
+		String global = ByteUtils.byteArrayToString(transactionXid.getGlobalTransactionId());
+
+		Connection conn = null;
+		PreparedStatement stmt = null;
+		try {
+			conn = this.dataSource.getConnection();
+
+			stmt = conn.prepareStatement(SQL_INSERT_LOCK);
+			stmt.setString(1, global);
+			stmt.setString(2, identifier);
+			stmt.setInt(3, 1);
+			stmt.setLong(4, System.currentTimeMillis());
+			try {
+				return stmt.executeUpdate() == 1;
+			} catch (SQLException error) {
+				if (this.isDuplicateKey(error) == false) {
+					throw error;
+				}
+			} finally {
+				JdbcUtils.closeStatement(stmt);
+				stmt = null;
+			}
+
+			List<String> instances = this.getOtherInstances(identifier);
+			stmt = conn.prepareStatement(this.getTakeoverStatement(SQL_TAKEOVER_LOCK, instances.size()));
+			int index = 1;
+			stmt.setString(index++, identifier);
+			stmt.setString(index++, identifier);
+			stmt.setString(index++, global);
+			this.setInstanceParameters(stmt, index, instances);
+			return stmt.executeUpdate() == 1;
+		} catch (SQLException error) {
+			logger.error("{}| Error occurred while locking transaction.", global, error);
+			return false;
+		} catch (RuntimeException error) {
+			logger.error("{}| Error occurred while locking transaction.", global, error);
+			return false;
+		} finally {
+			JdbcUtils.closeStatement(stmt);
+			JdbcUtils.closeConnection(conn);
+		}
+	}
+
+	/**
+	 * The locks are inserted by one batch, the ones which already exist are then taken over by another batch if they're
+	 * held by a dead instance. The locks held by the identifier itself are not acquired again. The takeover stamps the
+	 * ctime of the lock, so that the result can be checked row by row if the driver does not report the update counts.
+	 * If the insert batch fails, its update counts are not trusted since some drivers(e.g. postgresql) roll back the
+	 * whole batch: the rows stamped by this batch are re-read and the others are inserted one by one.
+	 */
+	public Set<TransactionXid> lockTransactions(Collection<TransactionXid> transactionXids, String identifier) {
+		Set<TransactionXid> lockedXids = new HashSet<TransactionXid>();
+		if (transactionXids == null || transactionXids.isEmpty()) {
+			return lockedXids;
+		}
+
+		List<TransactionXid> xidList = new ArrayList<TransactionXid>(transactionXids);
+		List<TransactionXid> existedXids = new ArrayList<TransactionXid>();
+
+		Connection conn = null;
+		PreparedStatement stmt = null;
+		try {
+			conn = this.dataSource.getConnection();
+
+			int[] values = null;
+			boolean batchFailed = false;
+			stmt = conn.prepareStatement(SQL_INSERT_LOCK);
+			long current = System.currentTimeMillis();
+			for (int i = 0; i < xidList.size(); i++) {
+				TransactionXid transactionXid = xidList.get(i);
+				stmt.setString(1, ByteUtils.byteArrayToString(transactionXid.getGlobalTransactionId()));
+				stmt.setString(2, identifier);
+				stmt.setInt(3, 1);
+				stmt.setLong(4, current);
+				stmt.addBatch();
+			}
+			try {
+				values = stmt.executeBatch();
+			} catch (BatchUpdateException error) {
+				batchFailed = true;
+			} finally {
+				JdbcUtils.closeStatement(stmt);
+				stmt = null;
+			}
+
+			for (int i = 0; i < xidList.size(); i++) {
+				TransactionXid transactionXid = xidList.get(i);
+				String global = ByteUtils.byteArrayToString(transactionXid.getGlobalTransactionId());
+				if (batchFailed && this.isLockTakenOver(conn, global, identifier, current)) {
+					lockedXids.add(transactionXid);
+				} else if (batchFailed && this.insertLock(conn, global, identifier, current)) {
+					lockedXids.add(transactionXid);
+				} else if (batchFailed || values[i] == 0) {
+					existedXids.add(transactionXid);
+				} else {
+					lockedXids.add(transactionXid);
+				}
+			}
+
+			if (existedXids.isEmpty()) {
+				return lockedXids;
+			}
+
+			List<String> instances = this.getOtherInstances(identifier);
+			stmt = conn.prepareStatement(this.getTakeoverStatement(SQL_TAKEOVER_LOCKS, instances.size()));
+			for (int i = 0; i < existedXids.size(); i++) {
+				TransactionXid transactionXid = existedXids.get(i);
+				int index = 1;
+				stmt.setString(index++, identifier);
+				stmt.setLong(index++, current);
+				stmt.setString(index++, ByteUtils.byteArrayToString(transactionXid.getGlobalTransactionId()));
+				stmt.setString(index++, identifier);
+				this.setInstanceParameters(stmt, index, instances);
+				stmt.addBatch();
+			}
+			values = stmt.executeBatch();
+			JdbcUtils.closeStatement(stmt);
+			stmt = null;
+
+			for (int i = 0; i < existedXids.size(); i++) {
+				TransactionXid transactionXid = existedXids.get(i);
+				if (values[i] == Statement.SUCCESS_NO_INFO) {
+					String global = ByteUtils.byteArrayToString(transactionXid.getGlobalTransactionId());
+					if (this.isLockTakenOver(conn, global, identifier, current)) {
+						lockedXids.add(transactionXid);
+					}
+				} else if (values[i] > 0) {
+					lockedXids.add(transactionXid);
+				}
+			}
+		} catch (SQLException error) {
+			logger.error("Error occurred while locking transactions.", error);
+		} catch (RuntimeException error) {
+			logger.error("Error occurred while locking transactions.", error);
+		} finally {
+			JdbcUtils.closeStatement(stmt);
+			JdbcUtils.closeConnection(conn);
+		}
+
+		return lockedXids;
+	}
+
+	private List<String> getOtherInstances(String identifier) {
+		List<String> instances = new ArrayList<String>(this.instances.keySet());
+		instances.remove(identifier);
+		return instances;
+	}
+
+	/**
+	 * The lock is taken over only if it's held by the identifier itself or by an instance which is not living, times is
+	 * assigned before identifier since MySQL evaluates the assignments from left to right.
+	 */
+	private String getTakeoverStatement(String sql, int instanceSize) {
+		StringBuilder ber = new StringBuilder(sql);
+		if (instanceSize > 0) {
+			ber.append(" AND (identifier IS NULL OR identifier NOT IN (");
+			for (int i = 0; i < instanceSize; i++) {
+				ber.append(i == 0 ? "?" : ", ?");
+			}
+			ber.append("))");
+		}
+		return ber.toString();
+	}
+
+	private void setInstanceParameters(PreparedStatement stmt, int index, List<String> instances) throws SQLException {
+		for (int i = 0; i < instances.size(); i++) {
+			stmt.setString(index + i, instances.get(i));
+		}
+	}
+
+	/**
+	 * Inserts a single lock, returns false if the lock already exists.
+	 */
+	private boolean insertLock(Connection conn, String global, String identifier, long ctime) throws SQLException {
+		PreparedStatement stmt = null;
+		try {
+			stmt = conn.prepareStatement(SQL_INSERT_LOCK);
+			stmt.setString(1, global);
+			stmt.setString(2, identifier);
+			stmt.setInt(3, 1);
+			stmt.setLong(4, ctime);
+			return stmt.executeUpdate() == 1;
+		} catch (SQLException error) {
+			if (this.isDuplicateKey(error)) {
+				return false;
+			}
+			throw error;
+		} finally {
+			JdbcUtils.closeStatement(stmt);
+		}
+	}
+
+	/**
+	 * Checks whether the lock has been taken over by the batch which stamped it with the ctime.
+	 */
+	private boolean isLockTakenOver(Connection conn, String global, String identifier, long ctime)
+			throws SQLException {
+		PreparedStatement stmt = null;
+		ResultSet rs = null;
+		try {
+			stmt = conn.prepareStatement(SQL_SELECT_LOCK);
+			stmt.setString(1, global);
+			rs = stmt.executeQuery();
+			if (rs.next() == false) {
+				return false;
+			}
+			return StringUtils.equals(rs.getString("identifier"), identifier) && rs.getLong("ctime") == ctime;
+		} finally {
+			JdbcUtils.closeResultSet(rs);
+			JdbcUtils.closeStatement(stmt);
+		}
+	}
+
+	private boolean isDuplicateKey(SQLException error) {
+		String sqlState = error.getSQLState();
+		return SQLIntegrityConstraintViolationException.class.isInstance(error)
+				|| (sqlState != null && sqlState.startsWith("23"));
+	}
+
+	public void unlockTransaction(TransactionXid transactionXid, String identifier) {
+		String global = ByteUtils.byteArrayToString(transactionXid.getGlobalTransactionId());
+
+		Connection conn = null;
+		PreparedStatement stmt = null;
+		try {
+			conn = this.dataSource.getConnection();
+
+			stmt = conn.prepareStatement(SQL_RELEASE_LOCK);
+			stmt.setString(1, global);
+			stmt.setString(2, identifier);
+			int value = stmt.executeUpdate();
+			JdbcUtils.closeStatement(stmt);
+			stmt = null;
+
+			if (value != 1) {
+				logger.warn("{}| Error occurred while unlocking transaction(matched= {}).", global, value);
+				return;
+			} // end-if (value != 1)
+
+			stmt = conn.prepareStatement(SQL_DELETE_LOCK);
+			stmt.setString(1, global);
+			stmt.setString(2, identifier);
+			stmt.executeUpdate();
+		} catch (SQLException error) {
+			logger.error("{}| Error occurred while unlocking transaction.", global, error);
+		} catch (RuntimeException error) {
+			logger.error("{}| Error occurred while unlocking transaction.", global, error);
+		} finally {
+			JdbcUtils.closeStatement(stmt);
+			JdbcUtils.closeConnection(conn);
+		}
+	}
+
+	public DataSource getDataSource() {
+		return dataSource;
+	}
+
+	public void setDataSource(DataSource dataSource) {
+		this.dataSource = dataSource;
+	}
+
+	public long getHeartbeatInterval() {
+		return heartbeatInterval;
+	}
+
+	public void setHeartbeatInterval(long heartbeatInterval) {
+		this.heartbeatInterval = heartbeatInterval;
+	}
+
+	public long getHeartbeatTimeout() {
+		return heartbeatTimeout;
+	}
+
+	public void setHeartbeatTimeout(long heartbeatTimeout) {
+		this.heartbeatTimeout = heartbeatTimeout;
+	}
+
+	public String getEndpoint() {
+		return endpoint;
+	}
+
+	public void setEndpoint(String identifier) {
+		this.endpoint = identifier;
+	}
+
+}
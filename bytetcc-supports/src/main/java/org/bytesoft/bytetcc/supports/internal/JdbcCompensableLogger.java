@@ -0,0 +1,1076 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports.internal;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+import javax.transaction.xa.Xid;
+
+import org.apache.commons.lang3.StringUtils;
+import org.bytesoft.common.utils.ByteUtils;
+import org.bytesoft.common.utils.CommonUtils;
+import org.bytesoft.common.utils.SerializeUtils;
+import org.bytesoft.compensable.CompensableBeanFactory;
+import org.bytesoft.compensable.CompensableInvocation;
+import org.bytesoft.compensable.archive.CompensableArchive;
+import org.bytesoft.compensable.archive.TransactionArchive;
+import org.bytesoft.compensable.aware.CompensableBeanFactoryAware;
+import org.bytesoft.compensable.aware.CompensableEndpointAware;
+import org.bytesoft.compensable.logging.CompensableLogger;
+import org.bytesoft.transaction.archive.XAResourceArchive;
+import org.bytesoft.transaction.recovery.TransactionRecoveryCallback;
+import org.bytesoft.transaction.supports.resource.XAResourceDescriptor;
+import org.bytesoft.transaction.supports.serialize.XAResourceDeserializer;
+import org.bytesoft.transaction.xa.TransactionXid;
+import org.bytesoft.transaction.xa.XidFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.support.JdbcUtils;
+
+/**
+ * Compensable logger backed by a relational database, the tables are defined in bytetcc.sql. A transaction and its
+ * participants/compensables are written in one local transaction, the rows of the participants and compensables are
+ * written by batched statements. The transactions to be recovered are claimed page by page, a row is claimed by a
+ * conditional update so that it's claimed by one instance at most. The claim clause(e.g. FOR UPDATE SKIP LOCKED) may
+ * be configured in addition, so that the instances sharing the tables skip the pages claimed by each other.
+ */
+public class JdbcCompensableLogger implements CompensableLogger, CompensableEndpointAware, CompensableBeanFactoryAware {
+	static Logger logger = LoggerFactory.getLogger(JdbcCompensableLogger.class);
+
+	static final String SQL_INSERT_TRANSACTION = "INSERT INTO bytetcc_transaction(gxid, application, created, modified, "
+			+ "version, propagated, propagated_by, compensable, coordinator, status, error, variables, recovered_at, "
+			+ "recovered_times, ctime) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+	static final String SQL_UPDATE_TRANSACTION = "UPDATE bytetcc_transaction SET modified = ?, status = ?, "
+			+ "variables = ?, recovered_at = ?, recovered_times = ? WHERE gxid = ?";
+	static final String SQL_DELETE_TRANSACTION = "DELETE FROM bytetcc_transaction WHERE gxid = ?";
+	static final String SQL_SELECT_TRANSACTION = "SELECT gxid, propagated, propagated_by, compensable, coordinator, "
+			+ "status, variables, recovered_at, recovered_times FROM bytetcc_transaction";
+
+	static final String SQL_INSERT_PARTICIPANT = "INSERT INTO bytetcc_participant(gxid, bxid, application, type, "
+			+ "resource, vote, committed, rolledback, readonly, completed, heuristic, modified) "
+			+ "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+	static final String SQL_UPDATE_PARTICIPANT = "UPDATE bytetcc_participant SET vote = ?, committed = ?, "
+			+ "rolledback = ?, readonly = ?, completed = ?, heuristic = ?, modified = ? WHERE gxid = ? AND bxid = ?";
+	static final String SQL_DELETE_PARTICIPANT = "DELETE FROM bytetcc_participant WHERE gxid = ? AND bxid = ?";
+	static final String SQL_DELETE_PARTICIPANTS = "DELETE FROM bytetcc_participant WHERE gxid = ?";
+	static final String SQL_SELECT_PARTICIPANT = "SELECT gxid, bxid, type, resource, vote, committed, rolledback, "
+			+ "readonly, completed, heuristic FROM bytetcc_participant";
+
+	static final String SQL_INSERT_COMPENSABLE = "INSERT INTO bytetcc_compensable(gxid, bxid, service_id, simplified, "
+			+ "confirmable_key, cancellable_key, interface, method, args, transaction_key, compensable_key, "
+			+ "transaction_xid, compensable_xid, coordinator, tried, confirmed, cancelled, modified) "
+			+ "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+	static final String SQL_UPDATE_COMPENSABLE = "UPDATE bytetcc_compensable SET transaction_key = ?, "
+			+ "compensable_key = ?, transaction_xid = ?, compensable_xid = ?, coordinator = ?, tried = ?, "
+			+ "confirmed = ?, cancelled = ?, modified = ? WHERE gxid = ? AND bxid = ?";
+	static final String SQL_DELETE_COMPENSABLES = "DELETE FROM bytetcc_compensable WHERE gxid = ?";
+	static final String SQL_SELECT_COMPENSABLE = "SELECT gxid, bxid, service_id, simplified, confirmable_key, "
+			+ "cancellable_key, interface, method, args, transaction_key, compensable_key, transaction_xid, "
+			+ "compensable_xid, coordinator, tried, confirmed, cancelled FROM bytetcc_compensable";
+
+	static final String SQL_CLAIM_TRANSACTION = "UPDATE bytetcc_transaction SET claimed_by = ?, claimed_until = ? "
+			+ "WHERE gxid = ? AND (claimed_until IS NULL OR claimed_until < ? OR claimed_by = ?)";
+
+	@javax.annotation.Resource(name = "bytetccDataSource")
+	private DataSource dataSource;
+	private String endpoint;
+	@javax.inject.Inject
+	private CompensableInstVersionManager versionManager;
+	@javax.inject.Inject
+	private CompensableBeanFactory beanFactory;
+
+	private int recoverPageSize = 500;
+	private long recoverClaimMillis = 1000L * 60;
+	/**
+	 * Appended to the ordered select of the recovery, empty by default so that it works on any database, the page is
+	 * bounded by the max rows of the statement. Use "FOR UPDATE SKIP LOCKED" for MySQL 8, PostgreSQL and Oracle.
+	 */
+	private String recoverClaimClause = StringUtils.EMPTY;
+
+	public void createTransaction(TransactionArchive archive) {
+		Connection conn = null;
+		try {
+			long version = this.versionManager.getInstanceVersion(this.endpoint);
+			if (version <= 0) {
+				throw new IllegalStateException(String.format("Invalid version(%s)!", this.endpoint));
+			}
+
+			conn = this.dataSource.getConnection();
+			conn.setAutoCommit(false);
+
+			this.insertTransaction(conn, archive, version);
+			this.insertParticipants(conn, archive.getRemoteResources());
+			this.insertCompensables(conn, archive.getCompensableResourceList());
+
+			conn.commit();
+		} catch (SQLException error) {
+			this.rollbackQuietly(conn);
+			logger.error("Error occurred while creating transaction.", error);
+			this.beanFactory.getCompensableManager().setRollbackOnlyQuietly();
+		} catch (IOException error) {
+			this.rollbackQuietly(conn);
+			logger.error("Error occurred while creating transaction.", error);
+			this.beanFactory.getCompensableManager().setRollbackOnlyQuietly();
+		} catch (RuntimeException error) {
+			this.rollbackQuietly(conn);
+			logger.error("Error occurred while creating transaction.", error);
+			this.beanFactory.getCompensableManager().setRollbackOnlyQuietly();
+		} finally {
+			this.closeQuietly(conn);
+		}
+	}
+
+	private void insertTransaction(Connection conn, TransactionArchive archive, long version)
+			throws SQLException, IOException {
+		TransactionXid globalXid = (TransactionXid) archive.getXid();
+		Object propagatedBy = archive.getPropagatedBy();
+
+		PreparedStatement stmt = null;
+		try {
+			stmt = conn.prepareStatement(SQL_INSERT_TRANSACTION);
+			stmt.setString(1, ByteUtils.byteArrayToString(globalXid.getGlobalTransactionId()));
+			stmt.setString(2, CommonUtils.getApplication(this.endpoint));
+			stmt.setString(3, this.endpoint);
+			stmt.setString(4, this.endpoint);
+			stmt.setLong(5, version);
+			stmt.setBoolean(6, archive.isPropagated());
+			stmt.setString(7, propagatedBy == null ? null : String.valueOf(propagatedBy));
+			stmt.setBoolean(8, archive.isCompensable());
+			stmt.setBoolean(9, archive.isCoordinator());
+			stmt.setInt(10, archive.getCompensableStatus());
+			stmt.setBoolean(11, false);
+			this.setBytes(stmt, 12, this.serializeVariables(archive));
+			this.setMillis(stmt, 13, archive.getRecoveredAt());
+			stmt.setInt(14, archive.getRecoveredTimes());
+			stmt.setLong(15, System.currentTimeMillis());
+			stmt.executeUpdate();
+		} finally {
+			JdbcUtils.closeStatement(stmt);
+		}
+	}
+
+	public void updateTransactionVariables(TransactionArchive archive) {
+		this.updateTransaction(archive);
+	}
+
+	public void updateTransactionStatus(TransactionArchive archive) {
+		this.updateTransaction(archive);
+	}
+
+	public void updateTransactionRecoveryStatus(TransactionArchive archive) {
+		this.updateTransaction(archive);
+	}
+
+	/**
+	 * Updates the transaction row, the participants and compensables are updated by batches, the ones which have not
+	 * been written yet are inserted by another batch.
+	 */
+	public void updateTransaction(TransactionArchive archive) {
+		Connection conn = null;
+		try {
+			TransactionXid globalXid = (TransactionXid) archive.getXid();
+			String identifier = ByteUtils.byteArrayToString(globalXid.getGlobalTransactionId());
+
+			conn = this.dataSource.getConnection();
+			conn.setAutoCommit(false);
+
+			PreparedStatement stmt = null;
+			try {
+				stmt = conn.prepareStatement(SQL_UPDATE_TRANSACTION);
+				stmt.setString(1, this.endpoint);
+				stmt.setInt(2, archive.getCompensableStatus());
+				this.setBytes(stmt, 3, this.serializeVariables(archive));
+				this.setMillis(stmt, 4, archive.getRecoveredAt());
+				stmt.setInt(5, archive.getRecoveredTimes());
+				stmt.setString(6, identifier);
+				int value = stmt.executeUpdate();
+				if (value != 1) {
+					throw new IllegalStateException(
+							String.format("Error occurred while updating transaction(matched= %s).", value));
+				}
+			} finally {
+				JdbcUtils.closeStatement(stmt);
+			}
+
+			this.upsertParticipants(conn, archive.getRemoteResources());
+			this.upsertCompensables(conn, archive.getCompensableResourceList());
+
+			conn.commit();
+		} catch (SQLException error) {
+			this.rollbackQuietly(conn);
+			logger.error("Error occurred while updating transaction.", error);
+		} catch (IOException error) {
+			this.rollbackQuietly(conn);
+			logger.error("Error occurred while updating transaction.", error);
+		} catch (RuntimeException error) {
+			this.rollbackQuietly(conn);
+			logger.error("Error occurred while updating transaction.", error);
+		} finally {
+			this.closeQuietly(conn);
+		}
+	}
+
+	public void deleteTransaction(TransactionArchive archive) {
+		Connection conn = null;
+		try {
+			TransactionXid globalXid = (TransactionXid) archive.getXid();
+			String identifier = ByteUtils.byteArrayToString(globalXid.getGlobalTransactionId());
+
+			conn = this.dataSource.getConnection();
+			conn.setAutoCommit(false);
+
+			this.executeUpdate(conn, SQL_DELETE_COMPENSABLES, identifier);
+			this.executeUpdate(conn, SQL_DELETE_PARTICIPANTS, identifier);
+			int value = this.executeUpdate(conn, SQL_DELETE_TRANSACTION, identifier);
+
+			conn.commit();
+
+			if (value != 1) {
+				logger.error("Error occurred while deleting transaction(deleted= {}).", value);
+			}
+		} catch (SQLException error) {
+			this.rollbackQuietly(conn);
+			logger.error("Error occurred while deleting transaction!", error);
+		} catch (RuntimeException error) {
+			this.rollbackQuietly(conn);
+			logger.error("Error occurred while deleting transaction!", error);
+		} finally {
+			this.closeQuietly(conn);
+		}
+	}
+
+	public void createParticipant(XAResourceArchive archive) {
+		this.updateParticipant(archive);
+	}
+
+	public void updateParticipantStatus(XAResourceArchive archive) {
+		this.updateParticipant(archive);
+	}
+
+	public void updateParticipant(XAResourceArchive archive) {
+		Connection conn = null;
+		try {
+			conn = this.dataSource.getConnection();
+
+			List<XAResourceArchive> participants = new ArrayList<XAResourceArchive>();
+			participants.add(archive);
+			this.upsertParticipants(conn, participants);
+		} catch (SQLException error) {
+			logger.error("Error occurred while creating/updating participant.", error);
+			this.beanFactory.getCompensableManager().setRollbackOnlyQuietly();
+		} catch (RuntimeException error) {
+			logger.error("Error occurred while creating/updating participant.", error);
+			this.beanFactory.getCompensableManager().setRollbackOnlyQuietly();
+		} finally {
+			this.closeQuietly(conn);
+		}
+	}
+
+	public void deleteParticipant(XAResourceArchive archive) {
+		Connection conn = null;
+		PreparedStatement stmt = null;
+		try {
+			TransactionXid transactionXid = (TransactionXid) archive.getXid();
+
+			conn = this.dataSource.getConnection();
+			stmt = conn.prepareStatement(SQL_DELETE_PARTICIPANT);
+			stmt.setString(1, ByteUtils.byteArrayToString(transactionXid.getGlobalTransactionId()));
+			stmt.setString(2, ByteUtils.byteArrayToString(transactionXid.getBranchQualifier()));
+			stmt.executeUpdate();
+		} catch (SQLException error) {
+			logger.error("Error occurred while deleting participant.", error);
+			this.beanFactory.getCompensableManager().setRollbackOnlyQuietly();
+		} catch (RuntimeException error) {
+			logger.error("Error occurred while deleting participant.", error);
+			this.beanFactory.getCompensableManager().setRollbackOnlyQuietly();
+		} finally {
+			JdbcUtils.closeStatement(stmt);
+			this.closeQuietly(conn);
+		}
+	}
+
+	private void insertParticipants(Connection conn, List<XAResourceArchive> participants) throws SQLException {
+		if (participants == null || participants.isEmpty()) {
+			return;
+		}
+
+		String application = CommonUtils.getApplication(this.endpoint);
+		PreparedStatement stmt = null;
+		try {
+			stmt = conn.prepareStatement(SQL_INSERT_PARTICIPANT);
+			for (int i = 0; i < participants.size(); i++) {
+				XAResourceArchive participant = participants.get(i);
+				TransactionXid resourceXid = (TransactionXid) participant.getXid();
+				XAResourceDescriptor descriptor = participant.getDescriptor();
+
+				stmt.setString(1, ByteUtils.byteArrayToString(resourceXid.getGlobalTransactionId()));
+				stmt.setString(2, ByteUtils.byteArrayToString(resourceXid.getBranchQualifier()));
+				stmt.setString(3, application);
+				stmt.setString(4, descriptor.getClass().getName());
+				stmt.setString(5, descriptor.getIdentifier());
+				stmt.setInt(6, participant.getVote());
+				stmt.setBoolean(7, participant.isCommitted());
+				stmt.setBoolean(8, participant.isRolledback());
+				stmt.setBoolean(9, participant.isReadonly());
+				stmt.setBoolean(10, participant.isCompleted());
+				stmt.setBoolean(11, participant.isHeuristic());
+				stmt.setString(12, this.endpoint);
+				stmt.addBatch();
+			}
+			stmt.executeBatch();
+		} finally {
+			JdbcUtils.closeStatement(stmt);
+		}
+	}
+
+	private void upsertParticipants(Connection conn, List<XAResourceArchive> participants) throws SQLException {
+		if (participants == null || participants.isEmpty()) {
+			return;
+		}
+
+		int[] values = null;
+		PreparedStatement stmt = null;
+		try {
+			stmt = conn.prepareStatement(SQL_UPDATE_PARTICIPANT);
+			for (int i = 0; i < participants.size(); i++) {
+				this.setParticipantStatus(stmt, participants.get(i));
+				stmt.addBatch();
+			}
+			values = stmt.executeBatch();
+
+			// the rows whose update counts are not reported by the driver are updated one by one, it's idempotent.
+			for (int i = 0; i < participants.size(); i++) {
+				if (values[i] == Statement.SUCCESS_NO_INFO) {
+					this.setParticipantStatus(stmt, participants.get(i));
+					values[i] = stmt.executeUpdate();
+				}
+			}
+		} finally {
+			JdbcUtils.closeStatement(stmt);
+		}
+
+		List<XAResourceArchive> missing = new ArrayList<XAResourceArchive>();
+		for (int i = 0; i < participants.size(); i++) {
+			if (values[i] == 0) {
+				missing.add(participants.get(i));
+			}
+		}
+		this.insertParticipants(conn, missing);
+	}
+
+	private void setParticipantStatus(PreparedStatement stmt, XAResourceArchive participant) throws SQLException {
+		TransactionXid resourceXid = (TransactionXid) participant.getXid();
+		stmt.setInt(1, participant.getVote());
+		stmt.setBoolean(2, participant.isCommitted());
+		stmt.setBoolean(3, participant.isRolledback());
+		stmt.setBoolean(4, participant.isReadonly());
+		stmt.setBoolean(5, participant.isCompleted());
+		stmt.setBoolean(6, participant.isHeuristic());
+		stmt.setString(7, this.endpoint);
+		stmt.setString(8, ByteUtils.byteArrayToString(resourceXid.getGlobalTransactionId()));
+		stmt.setString(9, ByteUtils.byteArrayToString(resourceXid.getBranchQualifier()));
+	}
+
+	public void createCompensable(CompensableArchive archive) {
+		this.updateCompensable(archive);
+	}
+
+	public void updateCompensableInvocationResource(CompensableArchive archive) {
+	}
+
+	public void updateCompensableInvocationStatus(CompensableArchive archive) {
+	}
+
+	public void updateCompensableCompletionResource(CompensableArchive archive) {
+	}
+
+	public void updateCompensableCompletionStatus(CompensableArchive archive) {
+	}
+
+	public void updateCompensable(CompensableArchive archive) {
+		Connection conn = null;
+		try {
+			conn = this.dataSource.getConnection();
+
+			List<CompensableArchive> compensables = new ArrayList<CompensableArchive>();
+			compensables.add(archive);
+			this.upsertCompensables(conn, compensables);
+		} catch (SQLException error) {
+			logger.error("Error occurred while creating/updating compensable.", error);
+			this.beanFactory.getCompensableManager().setRollbackOnlyQuietly();
+		} catch (IOException error) {
+			logger.error("Error occurred while creating/updating compensable.", error);
+			this.beanFactory.getCompensableManager().setRollbackOnlyQuietly();
+		} catch (RuntimeException error) {
+			logger.error("Error occurred while creating/updating compensable.", error);
+			this.beanFactory.getCompensableManager().setRollbackOnlyQuietly();
+		} finally {
+			this.closeQuietly(conn);
+		}
+	}
+
+	private void insertCompensables(Connection conn, List<CompensableArchive> compensables)
+			throws SQLException, IOException {
+		if (compensables == null || compensables.isEmpty()) {
+			return;
+		}
+
+		PreparedStatement stmt = null;
+		try {
+			stmt = conn.prepareStatement(SQL_INSERT_COMPENSABLE);
+			for (int i = 0; i < compensables.size(); i++) {
+				CompensableArchive compensable = compensables.get(i);
+				Xid resourceXid = compensable.getIdentifier();
+				CompensableInvocation invocation = compensable.getCompensable();
+
+				stmt.setString(1, ByteUtils.byteArrayToString(resourceXid.getGlobalTransactionId()));
+				stmt.setString(2, ByteUtils.byteArrayToString(resourceXid.getBranchQualifier()));
+				stmt.setString(3, (String) invocation.getIdentifier());
+				stmt.setBoolean(4, invocation.isSimplified());
+				stmt.setString(5, invocation.getConfirmableKey());
+				stmt.setString(6, invocation.getCancellableKey());
+				this.setInvocation(stmt, 7, invocation);
+				stmt.setString(10, compensable.getTransactionResourceKey());
+				stmt.setString(11, compensable.getCompensableResourceKey());
+				stmt.setString(12, this.encodeXid(compensable.getTransactionXid()));
+				stmt.setString(13, this.encodeXid(compensable.getCompensableXid()));
+				stmt.setBoolean(14, compensable.isCoordinator());
+				stmt.setBoolean(15, compensable.isTried());
+				stmt.setBoolean(16, compensable.isConfirmed());
+				stmt.setBoolean(17, compensable.isCancelled());
+				stmt.setString(18, this.endpoint);
+				stmt.addBatch();
+			}
+			stmt.executeBatch();
+		} finally {
+			JdbcUtils.closeStatement(stmt);
+		}
+	}
+
+	/**
+	 * Binds the interface, the method and the args of the invocation. An invocation which is recovered but has not been
+	 * decoded yet is written with its original values.
+	 */
+	private void setInvocation(PreparedStatement stmt, int index, CompensableInvocation invocation)
+			throws SQLException, IOException {
+		if (RecoveredCompensableInvocation.class.isInstance(invocation)
+				&& ((RecoveredCompensableInvocation) invocation).isDecoded() == false) {
+			RecoveredCompensableInvocation recovered = (RecoveredCompensableInvocation) invocation;
+			stmt.setString(index, recovered.getClassName());
+			stmt.setString(index + 1, recovered.getMethodDesc());
+			this.setBytes(stmt, index + 2, recovered.getArgsByteArray());
+		} else {
+			Method method = invocation.getMethod();
+			stmt.setString(index, method.getDeclaringClass().getName());
+			stmt.setString(index + 1, SerializeUtils.serializeMethod(method));
+			this.setBytes(stmt, index + 2, SerializeUtils.serializeObject(invocation.getArgs()));
+		}
+	}
+
+	private void upsertCompensables(Connection conn, List<CompensableArchive> compensables)
+			throws SQLException, IOException {
+		if (compensables == null || compensables.isEmpty()) {
+			return;
+		}
+
+		int[] values = null;
+		PreparedStatement stmt = null;
+		try {
+			stmt = conn.prepareStatement(SQL_UPDATE_COMPENSABLE);
+			for (int i = 0; i < compensables.size(); i++) {
+				this.setCompensableStatus(stmt, compensables.get(i));
+				stmt.addBatch();
+			}
+			values = stmt.executeBatch();
+
+			// the rows whose update counts are not reported by the driver are updated one by one, it's idempotent.
+			for (int i = 0; i < compensables.size(); i++) {
+				if (values[i] == Statement.SUCCESS_NO_INFO) {
+					this.setCompensableStatus(stmt, compensables.get(i));
+					values[i] = stmt.executeUpdate();
+				}
+			}
+		} finally {
+			JdbcUtils.closeStatement(stmt);
+		}
+
+		List<CompensableArchive> missing = new ArrayList<CompensableArchive>();
+		for (int i = 0; i < compensables.size(); i++) {
+			if (values[i] == 0) {
+				missing.add(compensables.get(i));
+			}
+		}
+		this.insertCompensables(conn, missing);
+	}
+
+	private void setCompensableStatus(PreparedStatement stmt, CompensableArchive compensable) throws SQLException {
+		Xid resourceXid = compensable.getIdentifier();
+		stmt.setString(1, compensable.getTransactionResourceKey());
+		stmt.setString(2, compensable.getCompensableResourceKey());
+		stmt.setString(3, this.encodeXid(compensable.getTransactionXid()));
+		stmt.setString(4, this.encodeXid(compensable.getCompensableXid()));
+		stmt.setBoolean(5, compensable.isCoordinator());
+		stmt.setBoolean(6, compensable.isTried());
+		stmt.setBoolean(7, compensable.isConfirmed());
+		stmt.setBoolean(8, compensable.isCancelled());
+		stmt.setString(9, this.endpoint);
+		stmt.setString(10, ByteUtils.byteArrayToString(resourceXid.getGlobalTransactionId()));
+		stmt.setString(11, ByteUtils.byteArrayToString(resourceXid.getBranchQualifier()));
+	}
+
+	public void recover(TransactionRecoveryCallback callback) {
+		try {
+			RecoveryPage page = this.claimRecoveryPage(null);
+			while (page.getCandidates() > 0) {
+				List<TransactionArchive> archives = page.getArchives();
+				for (int i = 0; i < archives.size(); i++) {
+					TransactionArchive archive = archives.get(i);
+					try {
+						callback.recover(archive);
+					} catch (RuntimeException error) {
+						String global = ByteUtils.byteArrayToString(archive.getXid().getGlobalTransactionId());
+						logger.error("{}| Error occurred while recovering transaction.", global, error);
+					}
+				}
+
+				page = page.getCandidates() < this.recoverPageSize ? new RecoveryPage()
+						: this.claimRecoveryPage(page.getLastKey());
+			}
+		} catch (SQLException error) {
+			logger.error("Error occurred while recovering transaction.", error);
+		} catch (RuntimeException error) {
+			logger.error("Error occurred while recovering transaction.", error);
+		}
+	}
+
+	/**
+	 * Claims the next page of the coordinator transactions which require recovery, the claim expires after
+	 * recoverClaimMillis unless it's renewed by the same instance. A transaction requires recovery if it's marked as
+	 * error, or it's created by an instance which is not living or has been restarted since then.
+	 *
+	 * @param lastKey the gxid of the last candidate of the previous page, null for the first page.
+	 * @return the claimed transactions ordered by gxid(the ones which can not be reconstructed are skipped), along with
+	 *         the number of candidates and the gxid of the last candidate, which are used to paginate regardless of
+	 *         the candidates claimed by another instance.
+	 */
+	public RecoveryPage claimRecoveryPage(String lastKey) throws SQLException {
+		RecoveryPage page = new RecoveryPage();
+		List<String> identifiers = new ArrayList<String>();
+
+		Connection conn = null;
+		PreparedStatement stmt = null;
+		ResultSet rs = null;
+		try {
+			conn = this.dataSource.getConnection();
+			conn.setAutoCommit(false);
+
+			List<Object> params = new ArrayList<Object>();
+			StringBuilder ber = new StringBuilder();
+			ber.append("SELECT gxid FROM bytetcc_transaction WHERE application = ? AND coordinator = ? AND gxid > ?");
+			ber.append(" AND (claimed_until IS NULL OR claimed_until < ? OR claimed_by = ?) AND ");
+			params.add(CommonUtils.getApplication(this.endpoint));
+			params.add(true);
+			params.add(lastKey == null ? StringUtils.EMPTY : lastKey);
+			params.add(System.currentTimeMillis());
+			params.add(this.endpoint); // the claims of the current instance are renewed
+			ber.append(this.constructRecoveryCondition(conn, params));
+			ber.append(" ORDER BY gxid");
+			if (StringUtils.isNotBlank(this.recoverClaimClause)) {
+				ber.append(" ").append(this.recoverClaimClause);
+			}
+
+			List<String> candidates = new ArrayList<String>();
+			stmt = conn.prepareStatement(ber.toString());
+			stmt.setMaxRows(this.recoverPageSize);
+			for (int i = 0; i < params.size(); i++) {
+				stmt.setObject(i + 1, params.get(i));
+			}
+			rs = stmt.executeQuery();
+			while (rs.next()) {
+				candidates.add(rs.getString("gxid"));
+			}
+			JdbcUtils.closeResultSet(rs);
+			JdbcUtils.closeStatement(stmt);
+			rs = null;
+
+			long current = System.currentTimeMillis();
+			long claimedUntil = current + this.recoverClaimMillis;
+			stmt = conn.prepareStatement(SQL_CLAIM_TRANSACTION);
+			for (int i = 0; i < candidates.size(); i++) {
+				this.setClaimParameters(stmt, candidates.get(i), current, claimedUntil);
+				stmt.addBatch();
+			}
+			int[] values = candidates.isEmpty() ? new int[0] : stmt.executeBatch();
+
+			// the candidates which have been claimed by another instance since the select are skipped.
+			for (int i = 0; i < candidates.size(); i++) {
+				if (values[i] == Statement.SUCCESS_NO_INFO) {
+					this.setClaimParameters(stmt, candidates.get(i), current, claimedUntil);
+					values[i] = stmt.executeUpdate(); // matches the claim of the current instance only
+				}
+				if (values[i] > 0) {
+					identifiers.add(candidates.get(i));
+				}
+			}
+
+			page.setCandidates(candidates.size());
+			page.setLastKey(candidates.isEmpty() ? lastKey : candidates.get(candidates.size() - 1));
+
+			conn.commit();
+		} catch (SQLException error) {
+			this.rollbackQuietly(conn);
+			throw error;
+		} catch (RuntimeException error) {
+			this.rollbackQuietly(conn);
+			throw error;
+		} finally {
+			JdbcUtils.closeResultSet(rs);
+			JdbcUtils.closeStatement(stmt);
+			this.closeQuietly(conn);
+		}
+
+		page.setArchives(this.getTransactionArchives(identifiers, false));
+		return page;
+	}
+
+	private void setClaimParameters(PreparedStatement stmt, String identifier, long current, long claimedUntil)
+			throws SQLException {
+		stmt.setString(1, this.endpoint);
+		stmt.setLong(2, claimedUntil);
+		stmt.setString(3, identifier);
+		stmt.setLong(4, current);
+		stmt.setString(5, this.endpoint);
+	}
+
+	private String constructRecoveryCondition(Connection conn, List<Object> params) throws SQLException {
+		List<String> instances = new ArrayList<String>();
+
+		PreparedStatement stmt = null;
+		ResultSet rs = null;
+		try {
+			stmt = conn.prepareStatement(
+					"SELECT DISTINCT created FROM bytetcc_transaction WHERE application = ? AND coordinator = ?");
+			stmt.setString(1, CommonUtils.getApplication(this.endpoint));
+			stmt.setBoolean(2, true);
+			rs = stmt.executeQuery();
+			while (rs.next()) {
+				String created = rs.getString("created");
+				if (created != null && this.versionManager.getInstanceVersion(created) > 0) {
+					instances.add(created);
+				}
+			}
+		} finally {
+			JdbcUtils.closeResultSet(rs);
+			JdbcUtils.closeStatement(stmt);
+		}
+
+		StringBuilder ber = new StringBuilder();
+		ber.append("(error = ? OR created IS NULL");
+		params.add(true);
+		if (instances.isEmpty() == false) {
+			ber.append(" OR created NOT IN (").append(this.placeholders(instances.size())).append(")");
+			params.addAll(instances);
+		}
+		for (int i = 0; i < instances.size(); i++) {
+			String instanceId = instances.get(i);
+			ber.append(" OR (created = ? AND version < ?)");
+			params.add(instanceId);
+			params.add(this.versionManager.getInstanceVersion(instanceId));
+		}
+		ber.append(")");
+		return ber.toString();
+	}
+
+	/**
+	 * @return the archive of the transaction, or null if it does not exist(or it's not marked as error while
+	 *         errorRequired is true).
+	 */
+	public TransactionArchive getTransactionArchive(TransactionXid xid, boolean errorRequired) throws SQLException {
+		List<String> identifiers = new ArrayList<String>();
+		identifiers.add(ByteUtils.byteArrayToString(xid.getGlobalTransactionId()));
+		List<TransactionArchive> archives = this.getTransactionArchives(identifiers, errorRequired);
+		return archives.isEmpty() ? null : archives.get(0);
+	}
+
+	private List<TransactionArchive> getTransactionArchives(List<String> identifiers, boolean errorRequired)
+			throws SQLException {
+		List<TransactionArchive> archives = new ArrayList<TransactionArchive>();
+		if (identifiers.isEmpty()) {
+			return archives;
+		}
+
+		String condition = String.format(" WHERE gxid IN (%s)", this.placeholders(identifiers.size()));
+		Connection conn = null;
+		PreparedStatement stmt = null;
+		ResultSet rs = null;
+		try {
+			conn = this.dataSource.getConnection();
+
+			Map<String, List<XAResourceArchive>> participants = new HashMap<String, List<XAResourceArchive>>();
+			stmt = this.prepareStatement(conn, SQL_SELECT_PARTICIPANT + condition, identifiers);
+			for (rs = stmt.executeQuery(); rs.next();) {
+				String global = rs.getString("gxid");
+				List<XAResourceArchive> participantList = participants.get(global);
+				if (participantList == null) {
+					participantList = new ArrayList<XAResourceArchive>();
+					participants.put(global, participantList);
+				}
+				participantList.add(this.reconstructParticipant(rs));
+			}
+			JdbcUtils.closeResultSet(rs);
+			JdbcUtils.closeStatement(stmt);
+
+			Map<String, List<CompensableArchive>> compensables = new HashMap<String, List<CompensableArchive>>();
+			stmt = this.prepareStatement(conn, SQL_SELECT_COMPENSABLE + condition, identifiers);
+			for (rs = stmt.executeQuery(); rs.next();) {
+				String global = rs.getString("gxid");
+				List<CompensableArchive> compensableList = compensables.get(global);
+				if (compensableList == null) {
+					compensableList = new ArrayList<CompensableArchive>();
+					compensables.put(global, compensableList);
+				}
+				compensableList.add(this.reconstructCompensable(rs));
+			}
+			JdbcUtils.closeResultSet(rs);
+			JdbcUtils.closeStatement(stmt);
+
+			String sql = SQL_SELECT_TRANSACTION + condition + (errorRequired ? " AND error = ?" : StringUtils.EMPTY);
+			List<Object> params = new ArrayList<Object>(identifiers);
+			if (errorRequired) {
+				params.add(true);
+			}
+			stmt = this.prepareStatement(conn, sql + " ORDER BY gxid", params);
+			for (rs = stmt.executeQuery(); rs.next();) {
+				String global = rs.getString("gxid");
+				try {
+					TransactionArchive archive = this.reconstructTransaction(rs);
+					List<XAResourceArchive> participantList = participants.get(global);
+					List<CompensableArchive> compensableList = compensables.get(global);
+					if (participantList != null) {
+						archive.getRemoteResources().addAll(participantList);
+					}
+					if (compensableList != null) {
+						archive.getCompensableResourceList().addAll(compensableList);
+					}
+					archives.add(archive);
+				} catch (IOException error) {
+					logger.error("{}| Error occurred while reconstructing transaction.", global, error);
+				} catch (RuntimeException error) {
+					logger.error("{}| Error occurred while reconstructing transaction.", global, error);
+				}
+			}
+		} finally {
+			JdbcUtils.closeResultSet(rs);
+			JdbcUtils.closeStatement(stmt);
+			this.closeQuietly(conn);
+		}
+
+		return archives;
+	}
+
+	@SuppressWarnings("unchecked")
+	private TransactionArchive reconstructTransaction(ResultSet rs) throws SQLException, IOException {
+		XidFactory compensableXidFactory = this.beanFactory.getCompensableXidFactory();
+
+		TransactionArchive archive = new TransactionArchive();
+
+		byte[] globalByteArray = ByteUtils.stringToByteArray(rs.getString("gxid"));
+		archive.setXid(compensableXidFactory.createGlobalXid(globalByteArray));
+
+		byte[] variablesByteArray = rs.getBytes("variables");
+		if (variablesByteArray == null || variablesByteArray.length == 0) {
+			archive.setVariables(new HashMap<String, Serializable>());
+		} else {
+			Map<String, Serializable> variables = //
+					(Map<String, Serializable>) SerializeUtils.deserializeObject(variablesByteArray);
+			archive.setVariables(variables);
+		}
+
+		archive.setRecoveredAt(rs.getLong("recovered_at"));
+		archive.setRecoveredTimes(rs.getInt("recovered_times"));
+
+		archive.setCompensable(rs.getBoolean("compensable"));
+		archive.setCoordinator(rs.getBoolean("coordinator"));
+		archive.setCompensableStatus(rs.getInt("status"));
+		archive.setPropagated(rs.getBoolean("propagated"));
+		archive.setPropagatedBy(rs.getString("propagated_by"));
+
+		return archive;
+	}
+
+	private XAResourceArchive reconstructParticipant(ResultSet rs) throws SQLException {
+		XidFactory compensableXidFactory = this.beanFactory.getCompensableXidFactory();
+		XAResourceDeserializer resourceDeserializer = this.beanFactory.getResourceDeserializer();
+
+		String descriptorType = rs.getString("type");
+		String identifier = rs.getString("resource");
+
+		XAResourceArchive participant = new XAResourceArchive();
+
+		byte[] globalTransactionId = ByteUtils.stringToByteArray(rs.getString("gxid"));
+		byte[] branchQualifier = ByteUtils.stringToByteArray(rs.getString("bxid"));
+		TransactionXid globalId = compensableXidFactory.createGlobalXid(globalTransactionId);
+		participant.setXid(compensableXidFactory.createBranchXid(globalId, branchQualifier));
+
+		XAResourceDescriptor descriptor = resourceDeserializer.deserialize(identifier);
+		if (descriptor != null //
+				&& descriptor.getClass().getName().equals(descriptorType) == false) {
+			throw new IllegalStateException();
+		}
+
+		participant.setVote(rs.getInt("vote"));
+		participant.setCommitted(rs.getBoolean("committed"));
+		participant.setRolledback(rs.getBoolean("rolledback"));
+		participant.setReadonly(rs.getBoolean("readonly"));
+		participant.setCompleted(rs.getBoolean("completed"));
+		participant.setHeuristic(rs.getBoolean("heuristic"));
+
+		participant.setDescriptor(descriptor);
+
+		return participant;
+	}
+
+	private CompensableArchive reconstructCompensable(ResultSet rs) throws SQLException {
+		XidFactory transactionXidFactory = this.beanFactory.getTransactionXidFactory();
+
+		CompensableArchive service = new CompensableArchive();
+
+		RecoveredCompensableInvocation invocation = new RecoveredCompensableInvocation(rs.getString("interface"),
+				rs.getString("method"), rs.getBytes("args"), rs.getString("service_id"), rs.getBoolean("simplified"),
+				rs.getString("confirmable_key"), rs.getString("cancellable_key"));
+		service.setCompensable(invocation);
+
+		service.setConfirmed(rs.getBoolean("confirmed"));
+		service.setCancelled(rs.getBoolean("cancelled"));
+		service.setTried(rs.getBoolean("tried"));
+		service.setCoordinator(rs.getBoolean("coordinator"));
+
+		service.setTransactionResourceKey(rs.getString("transaction_key"));
+		service.setCompensableResourceKey(rs.getString("compensable_key"));
+
+		service.setTransactionXid(this.decodeXid(transactionXidFactory, rs.getString("transaction_xid")));
+		service.setCompensableXid(this.decodeXid(transactionXidFactory, rs.getString("compensable_xid")));
+
+		byte[] globalTransactionId = ByteUtils.stringToByteArray(rs.getString("gxid"));
+		byte[] branchQualifier = ByteUtils.stringToByteArray(rs.getString("bxid"));
+		TransactionXid globalId = transactionXidFactory.createGlobalXid(globalTransactionId);
+		service.setIdentifier(transactionXidFactory.createBranchXid(globalId, branchQualifier));
+
+		return service;
+	}
+
+	/**
+	 * The xid is stored as its text(formatId-gxid-bxid), the branch qualifier is empty for a global xid.
+	 */
+	private String encodeXid(Xid xid) {
+		if (xid == null) {
+			return null;
+		}
+
+		byte[] branchQualifier = xid.getBranchQualifier();
+		return String.format("%s-%s-%s", xid.getFormatId(), ByteUtils.byteArrayToString(xid.getGlobalTransactionId()),
+				branchQualifier == null ? StringUtils.EMPTY : ByteUtils.byteArrayToString(branchQualifier));
+	}
+
+	private TransactionXid decodeXid(XidFactory xidFactory, String value) {
+		String[] array = value == null ? new String[0] : value.split("\\-", -1);
+		if (array.length != 3 || StringUtils.isBlank(array[1])) {
+			return null;
+		}
+
+		TransactionXid globalXid = xidFactory.createGlobalXid(ByteUtils.stringToByteArray(array[1]));
+		if (StringUtils.isBlank(array[2])) {
+			return globalXid;
+		}
+		return xidFactory.createBranchXid(globalXid, ByteUtils.stringToByteArray(array[2]));
+	}
+
+	private byte[] serializeVariables(TransactionArchive archive) throws IOException {
+		Map<String, Serializable> variables = archive.getVariables();
+		if (variables == null || variables.isEmpty()) {
+			return null;
+		}
+		return SerializeUtils.serializeObject((Serializable) variables);
+	}
+
+	private void setBytes(PreparedStatement stmt, int index, byte[] value) throws SQLException {
+		if (value == null || value.length == 0) {
+			stmt.setNull(index, Types.BLOB);
+		} else {
+			stmt.setBytes(index, value);
+		}
+	}
+
+	private void setMillis(PreparedStatement stmt, int index, long value) throws SQLException {
+		if (value == 0) {
+			stmt.setNull(index, Types.BIGINT);
+		} else {
+			stmt.setLong(index, value);
+		}
+	}
+
+	private int executeUpdate(Connection conn, String sql, String identifier) throws SQLException {
+		PreparedStatement stmt = null;
+		try {
+			stmt = conn.prepareStatement(sql);
+			stmt.setString(1, identifier);
+			return stmt.executeUpdate();
+		} finally {
+			JdbcUtils.closeStatement(stmt);
+		}
+	}
+
+	private PreparedStatement prepareStatement(Connection conn, String sql, List<?> params) throws SQLException {
+		PreparedStatement stmt = conn.prepareStatement(sql);
+		for (int i = 0; i < params.size(); i++) {
+			stmt.setObject(i + 1, params.get(i));
+		}
+		return stmt;
+	}
+
+	private String placeholders(int size) {
+		StringBuilder ber = new StringBuilder();
+		for (int i = 0; i < size; i++) {
+			ber.append(i == 0 ? "?" : ", ?");
+		}
+		return ber.toString();
+	}
+
+	private void rollbackQuietly(Connection conn) {
+		try {
+			if (conn != null && conn.getAutoCommit() == false) {
+				conn.rollback();
+			}
+		} catch (SQLException ex) {
+			logger.debug("Error occurred while rolling back connection.", ex);
+		}
+	}
+
+	/**
+	 * Restores the auto-commit mode before the connection is returned to the pool.
+	 */
+	private void closeQuietly(Connection conn) {
+		try {
+			if (conn != null && conn.getAutoCommit() == false) {
+				conn.setAutoCommit(true);
+			}
+		} catch (SQLException ex) {
+			logger.debug("Error occurred while resetting connection.", ex);
+		} finally {
+			JdbcUtils.closeConnection(conn);
+		}
+	}
+
+	public DataSource getDataSource() {
+		return dataSource;
+	}
+
+	public void setDataSource(DataSource dataSource) {
+		this.dataSource = dataSource;
+	}
+
+	public int getRecoverPageSize() {
+		return recoverPageSize;
+	}
+
+	public void setRecoverPageSize(int recoverPageSize) {
+		this.recoverPageSize = recoverPageSize;
+	}
+
+	public long getRecoverClaimMillis() {
+		return recoverClaimMillis;
+	}
+
+	public void setRecoverClaimMillis(long recoverClaimMillis) {
+		this.recoverClaimMillis = recoverClaimMillis;
+	}
+
+	public String getRecoverClaimClause() {
+		return recoverClaimClause;
+	}
+
+	public void setRecoverClaimClause(String recoverClaimClause) {
+		this.recoverClaimClause = recoverClaimClause;
+	}
+
+	public CompensableInstVersionManager getVersionManager() {
+		return versionManager;
+	}
+
+	public void setVersionManager(CompensableInstVersionManager versionManager) {
+		this.versionManager = versionManager;
+	}
+
+	public CompensableBeanFactory getBeanFactory() {
+		return beanFactory;
+	}
+
+	public void setBeanFactory(CompensableBeanFactory tbf) {
+		this.beanFactory = tbf;
+	}
+
+	public String getEndpoint() {
+		return endpoint;
+	}
+
+	public void setEndpoint(String identifier) {
+		this.endpoint = identifier;
+	}
+
+	public static class RecoveryPage {
+		private List<TransactionArchive> archives = new ArrayList<TransactionArchive>();
+		private int candidates;
+		private String lastKey;
+
+		public List<TransactionArchive> getArchives() {
+			return archives;
+		}
+
+		public void setArchives(List<TransactionArchive> archives) {
+			this.archives = archives;
+		}
+
+		public int getCandidates() {
+			return candidates;
+		}
+
+		public void setCandidates(int candidates) {
+			this.candidates = candidates;
+		}
+
+		public String getLastKey() {
+			return lastKey;
+		}
+
+		public void setLastKey(String lastKey) {
+			this.lastKey = lastKey;
+		}
+	}
+
+}
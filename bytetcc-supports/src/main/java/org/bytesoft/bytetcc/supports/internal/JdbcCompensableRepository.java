@@ -0,0 +1,231 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports.internal;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+import javax.transaction.Status;
+import javax.transaction.SystemException;
+import javax.transaction.xa.XAException;
+
+import org.bytesoft.bytetcc.CompensableManagerImpl;
+import org.bytesoft.bytetcc.supports.CompensableRolledbackMarker;
+import org.bytesoft.common.utils.ByteUtils;
+import org.bytesoft.compensable.CompensableBeanFactory;
+import org.bytesoft.compensable.archive.TransactionArchive;
+import org.bytesoft.compensable.aware.CompensableBeanFactoryAware;
+import org.bytesoft.compensable.aware.CompensableEndpointAware;
+import org.bytesoft.transaction.Transaction;
+import org.bytesoft.transaction.TransactionException;
+import org.bytesoft.transaction.TransactionRecovery;
+import org.bytesoft.transaction.TransactionRepository;
+import org.bytesoft.transaction.xa.TransactionXid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.support.JdbcUtils;
+
+/**
+ * Transaction repository backed by the tables of JdbcCompensableLogger. The business-stage rollback flag is written to
+ * the transaction row directly, the other instances pick it up the next time the transaction is loaded.
+ */
+public class JdbcCompensableRepository implements TransactionRepository, CompensableRolledbackMarker,
+		CompensableEndpointAware, CompensableBeanFactoryAware {
+	static Logger logger = LoggerFactory.getLogger(JdbcCompensableRepository.class);
+
+	static final String SQL_MARK_ROLLBACK = "UPDATE bytetcc_transaction SET status = ? WHERE gxid = ? AND status = ?";
+	static final String SQL_UPDATE_ERROR = "UPDATE bytetcc_transaction SET modified = ?, status = ?, error = ?, "
+			+ "recovered_at = ?, recovered_times = ?, claimed_by = NULL, claimed_until = NULL WHERE gxid = ?";
+
+	@javax.annotation.Resource(name = "bytetccDataSource")
+	private DataSource dataSource;
+	private String endpoint;
+	@javax.inject.Inject
+	private CompensableBeanFactory beanFactory;
+
+	public void markBusinessStageRollbackOnly(TransactionXid transactionXid) throws SystemException {
+		Connection conn = null;
+		PreparedStatement stmt = null;
+		try {
+			conn = this.dataSource.getConnection();
+			stmt = conn.prepareStatement(SQL_MARK_ROLLBACK);
+			stmt.setInt(1, Status.STATUS_MARKED_ROLLBACK);
+			stmt.setString(2, ByteUtils.byteArrayToString(transactionXid.getGlobalTransactionId()));
+			stmt.setInt(3, Status.STATUS_ACTIVE);
+			stmt.executeUpdate();
+		} catch (SQLException error) {
+			SystemException systemEx = new SystemException(XAException.XAER_RMERR);
+			systemEx.initCause(error);
+			throw systemEx;
+		} catch (RuntimeException error) {
+			SystemException systemEx = new SystemException(XAException.XAER_RMERR);
+			systemEx.initCause(error);
+			throw systemEx;
+		} finally {
+			JdbcUtils.closeStatement(stmt);
+			JdbcUtils.closeConnection(conn);
+		}
+	}
+
+	public void putTransaction(TransactionXid xid, Transaction transaction) {
+	}
+
+	public Transaction getTransaction(TransactionXid xid) throws TransactionException {
+		CompensableManagerImpl compensableManager = //
+				(CompensableManagerImpl) this.beanFactory.getCompensableManager();
+		Transaction transaction = compensableManager.getTransaction(xid);
+		if (transaction != null) {
+			return transaction;
+		}
+
+		return this.getTransactionFromDatabase(xid, false);
+	}
+
+	public Transaction removeTransaction(TransactionXid xid) {
+		return null;
+	}
+
+	public void putErrorTransaction(TransactionXid transactionXid, Transaction transaction) {
+		Connection conn = null;
+		PreparedStatement stmt = null;
+		try {
+			TransactionArchive archive = (TransactionArchive) transaction.getTransactionArchive();
+
+			conn = this.dataSource.getConnection();
+			stmt = conn.prepareStatement(SQL_UPDATE_ERROR);
+			stmt.setString(1, this.endpoint);
+			stmt.setInt(2, archive.getCompensableStatus());
+			stmt.setBoolean(3, true);
+			if (archive.getRecoveredAt() == 0) {
+				stmt.setNull(4, Types.BIGINT);
+			} else {
+				stmt.setLong(4, archive.getRecoveredAt());
+			}
+			stmt.setInt(5, archive.getRecoveredTimes());
+			stmt.setString(6, ByteUtils.byteArrayToString(transactionXid.getGlobalTransactionId()));
+
+			int value = stmt.executeUpdate();
+			if (value != 1) {
+				throw new IllegalStateException(
+						String.format("Error occurred while updating transaction(matched= %s).", value));
+			}
+		} catch (SQLException error) {
+			logger.error("Error occurred while setting the error flag.", error);
+		} catch (RuntimeException error) {
+			logger.error("Error occurred while setting the error flag.", error);
+		} finally {
+			JdbcUtils.closeStatement(stmt);
+			JdbcUtils.closeConnection(conn);
+		}
+	}
+
+	public Transaction getErrorTransaction(TransactionXid xid) throws TransactionException {
+		return this.getTransactionFromDatabase(xid, true);
+	}
+
+	private Transaction getTransactionFromDatabase(TransactionXid xid, boolean errorRequired)
+			throws TransactionException {
+		TransactionRecovery compensableRecovery = this.beanFactory.getCompensableRecovery();
+		JdbcCompensableLogger compensableLogger = (JdbcCompensableLogger) this.beanFactory.getCompensableLogger();
+		try {
+			TransactionArchive archive = compensableLogger.getTransactionArchive(xid, errorRequired);
+			return archive == null ? null : compensableRecovery.reconstruct(archive);
+		} catch (SQLException error) {
+			logger.error("Error occurred while getting transaction.", error);
+			throw new TransactionException(XAException.XAER_RMERR);
+		} catch (RuntimeException error) {
+			logger.error("Error occurred while getting transaction.", error);
+			throw new TransactionException(XAException.XAER_RMERR);
+		}
+	}
+
+	public Transaction removeErrorTransaction(TransactionXid xid) {
+		return null;
+	}
+
+	/**
+	 * Claims the transactions to be recovered page by page, a transaction claimed by another instance is skipped until
+	 * its claim expires. The claim is released once the recovery of the transaction fails(putErrorTransaction), or by
+	 * the deletion of the transaction once it's completed.
+	 */
+	public List<Transaction> getErrorTransactionList() throws TransactionException {
+		TransactionRecovery compensableRecovery = this.beanFactory.getCompensableRecovery();
+		JdbcCompensableLogger compensableLogger = (JdbcCompensableLogger) this.beanFactory.getCompensableLogger();
+
+		List<Transaction> transactionList = new ArrayList<Transaction>();
+		try {
+			int pageSize = compensableLogger.getRecoverPageSize();
+			JdbcCompensableLogger.RecoveryPage page = compensableLogger.claimRecoveryPage(null);
+			while (page.getCandidates() > 0) {
+				List<TransactionArchive> archives = page.getArchives();
+				for (int i = 0; i < archives.size(); i++) {
+					TransactionArchive archive = archives.get(i);
+					try {
+						transactionList.add(compensableRecovery.reconstruct(archive));
+					} catch (RuntimeException error) {
+						String global = ByteUtils.byteArrayToString(archive.getXid().getGlobalTransactionId());
+						logger.error("{}| Error occurred while reconstructing transaction.", global, error);
+					}
+				}
+
+				page = page.getCandidates() < pageSize ? new JdbcCompensableLogger.RecoveryPage()
+						: compensableLogger.claimRecoveryPage(page.getLastKey());
+			}
+
+			return transactionList;
+		} catch (SQLException error) {
+			logger.error("Error occurred while getting error transactions.", error);
+			throw new TransactionException(XAException.XAER_RMERR);
+		} catch (RuntimeException error) {
+			logger.error("Error occurred while getting error transactions.", error);
+			throw new TransactionException(XAException.XAER_RMERR);
+		}
+	}
+
+	public List<Transaction> getActiveTransactionList() {
+		return new ArrayList<Transaction>();
+	}
+
+	public DataSource getDataSource() {
+		return dataSource;
+	}
+
+	public void setDataSource(DataSource dataSource) {
+		this.dataSource = dataSource;
+	}
+
+	public void setEndpoint(String identifier) {
+		this.endpoint = identifier;
+	}
+
+	public String getEndpoint() {
+		return endpoint;
+	}
+
+	public CompensableBeanFactory getBeanFactory() {
+		return beanFactory;
+	}
+
+	public void setBeanFactory(CompensableBeanFactory tbf) {
+		this.beanFactory = tbf;
+	}
+
+}
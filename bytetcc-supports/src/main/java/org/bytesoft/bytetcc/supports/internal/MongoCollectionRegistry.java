@@ -0,0 +1,127 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang3.StringUtils;
+import org.bson.Document;
+import org.bytesoft.common.utils.CommonUtils;
+import org.bytesoft.compensable.aware.CompensableEndpointAware;
+
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+
+/**
+ * Holds the collection handles of the application database, which is resolved once from the endpoint. The write
+ * concern and read preference of a collection can be specified by its name, e.g. compensables=MAJORITY.
+ */
+public class MongoCollectionRegistry implements CompensableEndpointAware {
+
+	@javax.annotation.Resource
+	private MongoClient mongoClient;
+	private String endpoint;
+
+	private Map<String, String> writeConcerns = new HashMap<String, String>();
+	private Map<String, String> readPreferences = new HashMap<String, String>();
+
+	private volatile MongoDatabase database;
+	private final ConcurrentMap<String, MongoCollection<Document>> collections = //
+			new ConcurrentHashMap<String, MongoCollection<Document>>();
+
+	public MongoDatabase getDatabase() {
+		MongoDatabase mdb = this.database;
+		if (mdb == null) {
+			synchronized (this) {
+				if (this.database == null) {
+					String databaseName = CommonUtils.getApplication(this.endpoint).replaceAll("\\W", "_");
+					this.database = this.mongoClient.getDatabase(databaseName);
+				}
+				mdb = this.database;
+			}
+		}
+		return mdb;
+	}
+
+	public MongoCollection<Document> getCollection(String collectionName) {
+		MongoCollection<Document> collection = this.collections.get(collectionName);
+		if (collection == null) {
+			collection = this.createCollection(collectionName);
+			MongoCollection<Document> existed = this.collections.putIfAbsent(collectionName, collection);
+			collection = existed == null ? collection : existed;
+		}
+		return collection;
+	}
+
+	private MongoCollection<Document> createCollection(String collectionName) {
+		MongoCollection<Document> collection = this.getDatabase().getCollection(collectionName);
+
+		String writeConcern = this.writeConcerns.get(collectionName);
+		if (StringUtils.isNotBlank(writeConcern)) {
+			WriteConcern concern = WriteConcern.valueOf(writeConcern.trim());
+			if (concern == null) {
+				throw new IllegalStateException(String.format("Invalid write concern: %s", writeConcern));
+			}
+			collection = collection.withWriteConcern(concern);
+		}
+
+		String readPreference = this.readPreferences.get(collectionName);
+		if (StringUtils.isNotBlank(readPreference)) {
+			collection = collection.withReadPreference(ReadPreference.valueOf(readPreference.trim()));
+		}
+
+		return collection;
+	}
+
+	public Map<String, String> getWriteConcerns() {
+		return writeConcerns;
+	}
+
+	public void setWriteConcerns(Map<String, String> writeConcerns) {
+		this.writeConcerns = writeConcerns;
+	}
+
+	public Map<String, String> getReadPreferences() {
+		return readPreferences;
+	}
+
+	public void setReadPreferences(Map<String, String> readPreferences) {
+		this.readPreferences = readPreferences;
+	}
+
+	public MongoClient getMongoClient() {
+		return mongoClient;
+	}
+
+	public void setMongoClient(MongoClient mongoClient) {
+		this.mongoClient = mongoClient;
+	}
+
+	public String getEndpoint() {
+		return endpoint;
+	}
+
+	public void setEndpoint(String identifier) {
+		this.endpoint = identifier;
+	}
+
+}
@@ -15,6 +15,8 @@
  */
 package org.bytesoft.bytetcc.supports.internal;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -41,30 +43,32 @@ import org.apache.zookeeper.WatchedEvent;
 import org.apache.zookeeper.Watcher.Event.EventType;
 import org.bson.Document;
 import org.bson.conversions.Bson;
+import org.bytesoft.bytetcc.supports.CompensableBatchLock;
 import org.bytesoft.common.utils.ByteUtils;
 import org.bytesoft.common.utils.CommonUtils;
 import org.bytesoft.compensable.CompensableBeanFactory;
 import org.bytesoft.compensable.aware.CompensableBeanFactoryAware;
 import org.bytesoft.compensable.aware.CompensableEndpointAware;
-import org.bytesoft.transaction.TransactionLock;
 import org.bytesoft.transaction.xa.TransactionXid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.SmartInitializingSingleton;
 
-import com.mongodb.client.FindIterable;
+import com.mongodb.bulk.BulkWriteError;
 import com.mongodb.client.ListIndexesIterable;
-import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
-import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.FindOneAndUpdateOptions;
 import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
 import com.mongodb.client.result.DeleteResult;
-import com.mongodb.client.result.UpdateResult;
 
-public class MongoCompensableLock implements TransactionLock, CompensableInstVersionManager, CompensableEndpointAware,
+public class MongoCompensableLock implements CompensableBatchLock, CompensableInstVersionManager, CompensableEndpointAware,
 		CompensableBeanFactoryAware, CuratorWatcher, ConnectionStateListener, BackgroundCallback, SmartInitializingSingleton {
 	static Logger logger = LoggerFactory.getLogger(MongoCompensableLock.class);
 	static final String CONSTANTS_ROOT_PATH = "/org/bytesoft/bytetcc";
@@ -75,8 +79,8 @@ public class MongoCompensableLock implements TransactionLock, CompensableInstVer
 
 	static final int MONGODB_ERROR_DUPLICATE_KEY = 11000;
 
-	@javax.annotation.Resource
-	private MongoClient mongoClient;
+	@javax.inject.Inject
+	private MongoCollectionRegistry collectionRegistry;
 	@javax.annotation.Resource
 	private CuratorFramework curatorFramework;
 	private String endpoint;
@@ -183,9 +187,7 @@ public class MongoCompensableLock implements TransactionLock, CompensableInstVer
 	}
 
 	private void createLocksIndexIfNecessary() {
-		String databaseName = CommonUtils.getApplication(this.endpoint).replaceAll("\\W", "_");
-		MongoDatabase database = this.mongoClient.getDatabase(databaseName);
-		MongoCollection<Document> locks = database.getCollection(CONSTANTS_TB_LOCKS);
+		MongoCollection<Document> locks = this.collectionRegistry.getCollection(CONSTANTS_TB_LOCKS);
 		ListIndexesIterable<Document> lockIndexList = locks.listIndexes();
 		boolean transactionIndexExists = false;
 		MongoCursor<Document> lockCursor = null;
@@ -215,9 +217,7 @@ public class MongoCompensableLock implements TransactionLock, CompensableInstVer
 	}
 
 	private void initializeClusterInstanceVersion() {
-		String databaseName = CommonUtils.getApplication(this.endpoint).replaceAll("\\W", "_");
-		MongoDatabase database = this.mongoClient.getDatabase(databaseName);
-		MongoCollection<Document> instances = database.getCollection(CONSTANTS_TB_INSTS);
+		MongoCollection<Document> instances = this.collectionRegistry.getCollection(CONSTANTS_TB_INSTS);
 
 		Bson condition = Filters.eq("_id", this.endpoint);
 
@@ -232,47 +232,43 @@ public class MongoCompensableLock implements TransactionLock, CompensableInstVer
 	}
 
 	public boolean lockTransaction(TransactionXid transactionXid, String identifier) {
-		if (this.lockTransactionInMongoDB(transactionXid, identifier)) {
-			return true;
-		}
-
-		String instanceId = this.getTransactionOwnerInMongoDB(transactionXid);
-		if (StringUtils.isBlank(instanceId)) {
-			return false;
-		} else if (StringUtils.equals(instanceId, this.endpoint)) {
-			this.relockTransactionInMongoDB(transactionXid, identifier);
-			return true;
-		}
-
-		boolean instanceCrashed = false;
-		synchronized (this) {
-			instanceCrashed = this.instances.containsKey(instanceId) == false;
-		}
-
-		if (instanceCrashed) {
-			return this.takeOverTransactionInMongoDB(transactionXid, instanceId, identifier);
-		}
-
-		return false;
-	}
-
-	private boolean lockTransactionInMongoDB(TransactionXid transactionXid, String identifier) {
 		byte[] global = transactionXid.getGlobalTransactionId();
 		String instanceId = ByteUtils.byteArrayToString(global);
 
 		try {
-			String application = CommonUtils.getApplication(this.endpoint);
-			String databaseName = application.replaceAll("\\W", "_");
-			MongoDatabase mdb = this.mongoClient.getDatabase(databaseName);
-			MongoCollection<Document> collection = mdb.getCollection(CONSTANTS_TB_LOCKS);
+			MongoCollection<Document> collection = this.collectionRegistry.getCollection(CONSTANTS_TB_LOCKS);
+
+			// matches a lock which is owned by the current instance or by a crashed one, if the lock is owned by
+			// another living instance the upsert will be rejected by the unique index of gxid. The key of a lock is
+			// always inserted as text whatever the schema version of the logger is, so that the unique index keeps
+			// the lock exclusive among the instances of both versions.
+			Bson globalFilter = MongoSchemaUtils.keyFilter(CONSTANTS_FD_GLOBAL, global);
+			Bson instIdFilter = Filters.nin("identifier", this.getLivingInstances(identifier));
+
+			Document variables = new Document("identifier", identifier);
+			Document increases = new Document("times", 1);
 
 			Document document = new Document();
-			document.append(CONSTANTS_FD_GLOBAL, instanceId);
-			document.append("identifier", identifier);
-			document.append("times", 0);
+			document.append("$set", variables);
+			document.append("$inc", increases);
+			document.append("$setOnInsert", new Document(CONSTANTS_FD_GLOBAL, instanceId));
+
+			FindOneAndUpdateOptions options = new FindOneAndUpdateOptions().upsert(true);
+			Document original = collection.findOneAndUpdate(Filters.and(globalFilter, instIdFilter), document,
+					options.returnDocument(ReturnDocument.BEFORE));
+
+			if (original != null && StringUtils.equals(original.getString("identifier"), identifier) == false) {
+				// taken over from a crashed instance, the lock-times of the original owner is meaningless.
+				Bson targetFilter = Filters.eq("identifier", identifier);
+				collection.updateOne(Filters.and(globalFilter, targetFilter), new Document("$set", increases));
+			}
 
-			collection.insertOne(document);
 			return true;
+		} catch (com.mongodb.MongoCommandException error) {
+			if (MONGODB_ERROR_DUPLICATE_KEY != error.getErrorCode()) {
+				logger.error("Error occurred while locking transaction(gxid= {}).", instanceId, error);
+			}
+			return false;
 		} catch (com.mongodb.MongoWriteException error) {
 			com.mongodb.WriteError writeError = error.getError();
 			if (MONGODB_ERROR_DUPLICATE_KEY != writeError.getCode()) {
@@ -285,81 +281,78 @@ public class MongoCompensableLock implements TransactionLock, CompensableInstVer
 		}
 	}
 
-	private boolean relockTransactionInMongoDB(TransactionXid transactionXid, String identifier) {
-		byte[] global = transactionXid.getGlobalTransactionId();
-		String instanceId = ByteUtils.byteArrayToString(global);
-
-		try {
-			String application = CommonUtils.getApplication(this.endpoint);
-			String databaseName = application.replaceAll("\\W", "_");
-			MongoDatabase mdb = this.mongoClient.getDatabase(databaseName);
-			MongoCollection<Document> collection = mdb.getCollection(CONSTANTS_TB_LOCKS);
-
-			Bson condition = Filters.eq(CONSTANTS_FD_GLOBAL, instanceId);
-
-			Document increases = new Document();
-			increases.append("times", 1);
-
-			Document document = new Document();
-			document.append("$inc", increases);
-
-			collection.findOneAndUpdate(condition, document, new FindOneAndUpdateOptions().upsert(true));
-
-			return true;
-		} catch (com.mongodb.MongoWriteException error) {
-			logger.error("Error occurred while locking transaction(gxid= {}).", instanceId, error);
-			return false;
-		} catch (RuntimeException rex) {
-			logger.error("Error occurred while locking transaction(gxid= {}).", instanceId, rex);
-			return false;
+	public Set<TransactionXid> lockTransactions(Collection<TransactionXid> transactionXids, String identifier) {
+		Set<TransactionXid> lockedXids = new HashSet<TransactionXid>();
+		if (transactionXids == null || transactionXids.isEmpty()) {
+			return lockedXids;
 		}
-	}
 
-	private boolean takeOverTransactionInMongoDB(TransactionXid transactionXid, String source, String target) {
-		byte[] global = transactionXid.getGlobalTransactionId();
-		String instanceId = ByteUtils.byteArrayToString(global);
+		List<TransactionXid> xidList = new ArrayList<TransactionXid>(transactionXids);
+		List<WriteModel<Document>> requests = new ArrayList<WriteModel<Document>>();
+
+		// the locks owned by the current instance are excluded too, they will be rejected by the unique index and
+		// left to lockTransaction, so that each lock acquired here has exactly one holder.
+		List<String> instanceIds = this.getLivingInstances(identifier);
+		instanceIds.add(identifier);
+		Bson instIdFilter = Filters.nin("identifier", instanceIds);
+
+		Document variables = new Document();
+		variables.append("identifier", identifier);
+		variables.append("times", 1);
+
+		UpdateOptions options = new UpdateOptions().upsert(true);
+		for (int i = 0; i < xidList.size(); i++) {
+			TransactionXid transactionXid = xidList.get(i);
+			byte[] global = transactionXid.getGlobalTransactionId();
+			Bson globalFilter = MongoSchemaUtils.keyFilter(CONSTANTS_FD_GLOBAL, global);
+
+			// the key is inserted as text, see lockTransaction.
+			Document document = new Document("$set", variables);
+			document.append("$setOnInsert", new Document(CONSTANTS_FD_GLOBAL, ByteUtils.byteArrayToString(global)));
+			requests.add(new UpdateOneModel<Document>(Filters.and(globalFilter, instIdFilter), document, options));
+		}
 
+		Set<Integer> failures = new HashSet<Integer>();
 		try {
-			String application = CommonUtils.getApplication(this.endpoint);
-			String databaseName = application.replaceAll("\\W", "_");
-			MongoDatabase mdb = this.mongoClient.getDatabase(databaseName);
-			MongoCollection<Document> collection = mdb.getCollection(CONSTANTS_TB_LOCKS);
-
-			Bson globalFilter = Filters.eq(CONSTANTS_FD_GLOBAL, instanceId);
-			Bson instIdFilter = Filters.eq("identifier", source);
-
-			Document document = new Document("$set", new Document("identifier", target));
+			MongoCollection<Document> collection = this.collectionRegistry.getCollection(CONSTANTS_TB_LOCKS);
+
+			collection.bulkWrite(requests, new BulkWriteOptions().ordered(false));
+		} catch (com.mongodb.MongoBulkWriteException error) {
+			List<BulkWriteError> writeErrors = error.getWriteErrors();
+			for (int i = 0; writeErrors != null && i < writeErrors.size(); i++) {
+				BulkWriteError writeError = writeErrors.get(i);
+				failures.add(writeError.getIndex());
+				if (MONGODB_ERROR_DUPLICATE_KEY != writeError.getCode()) {
+					logger.error("Error occurred while locking transactions: {}", writeError.getMessage());
+				}
+			}
 
-			UpdateResult result = collection.updateOne(Filters.and(globalFilter, instIdFilter), document);
-			return result.getMatchedCount() == 1;
+			if (error.getWriteConcernError() != null) {
+				logger.warn("Error occurred while locking transactions: {}", error.getWriteConcernError().getMessage());
+			}
 		} catch (RuntimeException rex) {
-			logger.error("Error occurred while locking transaction(gxid= {}).", instanceId, rex);
-			return false;
+			logger.error("Error occurred while locking transactions.", rex);
+			return lockedXids;
 		}
-	}
 
-	private String getTransactionOwnerInMongoDB(TransactionXid transactionXid) {
-		byte[] global = transactionXid.getGlobalTransactionId();
-		String instanceId = ByteUtils.byteArrayToString(global);
-
-		try {
-			String application = CommonUtils.getApplication(this.endpoint);
-			String databaseName = application.replaceAll("\\W", "_");
-			MongoDatabase mdb = this.mongoClient.getDatabase(databaseName);
-			MongoCollection<Document> collection = mdb.getCollection(CONSTANTS_TB_LOCKS);
-
-			FindIterable<Document> findIterable = collection.find(Filters.eq(CONSTANTS_FD_GLOBAL, instanceId));
-			MongoCursor<Document> cursor = findIterable.iterator();
-			if (cursor.hasNext()) {
-				Document document = cursor.next();
-				return document.getString("identifier");
-			} else {
-				return null;
+		for (int i = 0; i < xidList.size(); i++) {
+			if (failures.contains(i) == false) {
+				lockedXids.add(xidList.get(i));
 			}
-		} catch (RuntimeException rex) {
-			logger.error("Error occurred while querying the lock-owner of transaction(gxid= {}).", instanceId, rex);
-			return null;
 		}
+
+		return lockedXids;
+	}
+
+	private List<String> getLivingInstances(String excluded) {
+		List<String> instanceIds = new ArrayList<String>();
+		synchronized (this) {
+			instanceIds.addAll(this.instances.keySet());
+		}
+		instanceIds.remove(excluded);
+		instanceIds.add(null); // the identifier is absent
+		instanceIds.add(StringUtils.EMPTY);
+		return instanceIds;
 	}
 
 	public void unlockTransaction(TransactionXid transactionXid, String identifier) {
@@ -373,12 +366,9 @@ public class MongoCompensableLock implements TransactionLock, CompensableInstVer
 		String instanceId = ByteUtils.byteArrayToString(global);
 
 		try {
-			String application = CommonUtils.getApplication(this.endpoint);
-			String databaseName = application.replaceAll("\\W", "_");
-			MongoDatabase mdb = this.mongoClient.getDatabase(databaseName);
-			MongoCollection<Document> collection = mdb.getCollection(CONSTANTS_TB_LOCKS);
+			MongoCollection<Document> collection = this.collectionRegistry.getCollection(CONSTANTS_TB_LOCKS);
 
-			Bson condition = Filters.eq(CONSTANTS_FD_GLOBAL, instanceId);
+			Bson condition = MongoSchemaUtils.keyFilter(CONSTANTS_FD_GLOBAL, global);
 
 			Document increases = new Document();
 			increases.append("times", -1);
@@ -386,7 +376,9 @@ public class MongoCompensableLock implements TransactionLock, CompensableInstVer
 			Document document = new Document();
 			document.append("$inc", increases);
 
-			Document target = collection.findOneAndUpdate(condition, document, new FindOneAndUpdateOptions().upsert(true));
+			// the times field holds the number of lock holders, the lock is released by the last one.
+			FindOneAndUpdateOptions options = new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER);
+			Document target = collection.findOneAndUpdate(condition, document, options);
 			Integer times = target == null ? null : target.getInteger("times");
 
 			return times == null ? true : times <= 0;
@@ -404,12 +396,9 @@ public class MongoCompensableLock implements TransactionLock, CompensableInstVer
 		String instanceId = ByteUtils.byteArrayToString(global);
 
 		try {
-			String application = CommonUtils.getApplication(this.endpoint);
-			String databaseName = application.replaceAll("\\W", "_");
-			MongoDatabase mdb = this.mongoClient.getDatabase(databaseName);
-			MongoCollection<Document> collection = mdb.getCollection(CONSTANTS_TB_LOCKS);
+			MongoCollection<Document> collection = this.collectionRegistry.getCollection(CONSTANTS_TB_LOCKS);
 
-			Bson globalFilter = Filters.eq(CONSTANTS_FD_GLOBAL, instanceId);
+			Bson globalFilter = MongoSchemaUtils.keyFilter(CONSTANTS_FD_GLOBAL, global);
 			Bson instIdFilter = Filters.eq("identifier", identifier);
 
 			DeleteResult result = collection.deleteOne(Filters.and(globalFilter, instIdFilter));
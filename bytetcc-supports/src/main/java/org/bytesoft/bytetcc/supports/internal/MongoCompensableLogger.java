@@ -24,23 +24,36 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import javax.transaction.xa.Xid;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.bson.BsonType;
 import org.bson.Document;
-import org.bytesoft.bytetcc.supports.CompensableInvocationImpl;
+import org.bson.conversions.Bson;
+import org.bytesoft.bytetcc.CompensableManagerImpl;
+import org.bytesoft.bytetcc.CompensableTransactionImpl;
 import org.bytesoft.common.utils.ByteUtils;
 import org.bytesoft.common.utils.CommonUtils;
 import org.bytesoft.common.utils.SerializeUtils;
 import org.bytesoft.compensable.CompensableBeanFactory;
 import org.bytesoft.compensable.CompensableInvocation;
+import org.bytesoft.compensable.archive.ArchiveSnapshot;
 import org.bytesoft.compensable.archive.CompensableArchive;
 import org.bytesoft.compensable.archive.TransactionArchive;
 import org.bytesoft.compensable.aware.CompensableBeanFactoryAware;
 import org.bytesoft.compensable.aware.CompensableEndpointAware;
 import org.bytesoft.compensable.logging.CompensableLogger;
+import org.bytesoft.transaction.Transaction;
+import org.bytesoft.transaction.TransactionRepository;
 import org.bytesoft.transaction.archive.XAResourceArchive;
 import org.bytesoft.transaction.recovery.TransactionRecoveryCallback;
 import org.bytesoft.transaction.supports.resource.XAResourceDescriptor;
@@ -49,21 +62,22 @@ import org.bytesoft.transaction.xa.TransactionXid;
 import org.bytesoft.transaction.xa.XidFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.SmartInitializingSingleton;
 
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.ListIndexesIterable;
-import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
-import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
 import com.mongodb.client.result.DeleteResult;
 import com.mongodb.client.result.UpdateResult;
 
 public class MongoCompensableLogger implements CompensableLogger, CompensableEndpointAware, CompensableBeanFactoryAware,
-		SmartInitializingSingleton {
+		SmartInitializingSingleton, DisposableBean {
 	static Logger logger = LoggerFactory.getLogger(MongoCompensableLogger.class);
 	static final String CONSTANTS_TB_TRANSACTIONS = "compensables";
 	static final String CONSTANTS_FD_GLOBAL = "gxid";
@@ -71,8 +85,21 @@ public class MongoCompensableLogger implements CompensableLogger, CompensableEnd
 
 	static final int MONGODB_ERROR_DUPLICATE_KEY = 11000;
 
-	@javax.annotation.Resource
-	private MongoClient mongoClient;
+	static final Bson RECOVERY_PROJECTION = Projections.fields(Projections.excludeId(),
+			Projections.include(CONSTANTS_FD_GLOBAL, MongoSchemaUtils.CONSTANTS_FD_SCHEMA, "propagated", "propagated_by",
+					"compensable", "coordinator", "status", "modified", "variables", "participants", "compensables",
+					"recovered_at", "recovered_times"));
+
+	/* the fields which may be changed after the transaction has been created, they are tracked by the snapshot. */
+	static final String[] TRANSACTION_FIELDS = new String[] { "status", "modified", "variables", "recovered_at",
+			"recovered_times" };
+	static final String[] PARTICIPANT_STATUS_FIELDS = new String[] { "vote", "committed", "rolledback", "readonly",
+			"completed", "heuristic", "modified" };
+	static final String[] COMPENSABLE_STATUS_FIELDS = new String[] { "transaction_key", "compensable_key",
+			"transaction_xid", "compensable_xid", "coordinator", "tried", "confirmed", "cancelled", "modified" };
+
+	@javax.inject.Inject
+	private MongoCollectionRegistry collectionRegistry;
 	private String endpoint;
 	@javax.inject.Inject
 	private CompensableInstVersionManager versionManager;
@@ -80,6 +107,19 @@ public class MongoCompensableLogger implements CompensableLogger, CompensableEnd
 	private CompensableBeanFactory beanFactory;
 	private volatile boolean initializeEnabled = true;
 
+	private boolean groupCommitEnabled = false;
+	private int groupCommitSize = 128;
+	private long groupCommitInterval = 2L;
+	private long groupCommitTimeout = 30000L;
+	private volatile MongoGroupCommitWriter groupCommitWriter;
+	private volatile Thread groupCommitThread;
+
+	/** the legacy instances are not able to read the binary fields, set it to 2 after all of them have been upgraded. */
+	private int schemaVersion = MongoSchemaUtils.SCHEMA_VERSION_TEXT;
+
+	private int recoverPageSize = 500;
+	private int recoverThreads = Runtime.getRuntime().availableProcessors();
+
 	public void createTransaction(TransactionArchive archive) {
 		try {
 			long version = this.versionManager.getInstanceVersion(this.endpoint);
@@ -87,9 +127,7 @@ public class MongoCompensableLogger implements CompensableLogger, CompensableEnd
 				throw new IllegalStateException(String.format("Invalid version(%s)!", this.endpoint));
 			}
 
-			String databaseName = CommonUtils.getApplication(this.endpoint).replaceAll("\\W", "_");
-			MongoDatabase mdb = this.mongoClient.getDatabase(databaseName);
-			MongoCollection<Document> collection = mdb.getCollection(CONSTANTS_TB_TRANSACTIONS);
+			MongoCollection<Document> collection = this.collectionRegistry.getCollection(CONSTANTS_TB_TRANSACTIONS);
 
 			TransactionXid globalXid = (TransactionXid) archive.getXid();
 			boolean compensable = archive.isCompensable();
@@ -104,11 +142,13 @@ public class MongoCompensableLogger implements CompensableLogger, CompensableEnd
 			Map<String, Serializable> variables = archive.getVariables();
 			byte[] variablesByteArray = variables == null || variables.isEmpty() ? null
 					: SerializeUtils.serializeObject((Serializable) variables);
-			String textVariables = variablesByteArray == null || variablesByteArray.length == 0 ? null
-					: ByteUtils.byteArrayToString(variablesByteArray);
+			Object variablesValue = variablesByteArray == null || variablesByteArray.length == 0 ? null
+					: MongoSchemaUtils.encode(variablesByteArray, this.schemaVersion);
 
 			Document document = new Document();
-			document.append(CONSTANTS_FD_GLOBAL, identifier);
+			document.append(CONSTANTS_FD_GLOBAL, MongoSchemaUtils.encode(globalByteArray, this.schemaVersion));
+			document.append(MongoSchemaUtils.CONSTANTS_FD_SCHEMA, this.schemaVersion);
+			document.append(MongoSchemaUtils.CONSTANTS_FD_REVISION, 0L);
 			document.append("system", application);
 			document.append("propagated", propagated);
 			document.append("propagated_by", propagatedBy);
@@ -119,13 +159,20 @@ public class MongoCompensableLogger implements CompensableLogger, CompensableEnd
 			document.append("created", this.endpoint);
 			document.append("modified", this.endpoint);
 			document.append("error", false);
-			document.append("variables", textVariables);
+			document.append("variables", variablesValue);
 			document.append("participants", this.constructParticipantsDocument(archive));
 			document.append("compensables", this.constructCompensablesDocument(archive));
 			document.append("recovered_at", archive.getRecoveredAt() == 0 ? null : new Date(archive.getRecoveredAt()));
 			document.append("recovered_times", archive.getRecoveredTimes());
 
-			collection.insertOne(document);
+			if (this.groupCommitEnabled) {
+				this.getGroupCommitWriter(collection).insert(identifier, document);
+			} else {
+				collection.insertOne(document);
+			}
+
+			this.resetSnapshot(archive.getSnapshot(), document, document.get("participants", Document.class),
+					document.get("compensables", Document.class));
 		} catch (IOException error) {
 			logger.error("Error occurred while creating transaction.", error);
 			this.beanFactory.getCompensableManager().setRollbackOnlyQuietly();
@@ -147,38 +194,11 @@ public class MongoCompensableLogger implements CompensableLogger, CompensableEnd
 
 	public void updateTransaction(TransactionArchive archive) {
 		try {
-			String application = CommonUtils.getApplication(this.endpoint);
-			String databaseName = application.replaceAll("\\W", "_");
-			MongoDatabase mdb = this.mongoClient.getDatabase(databaseName);
-			MongoCollection<Document> collection = mdb.getCollection(CONSTANTS_TB_TRANSACTIONS);
-
-			TransactionXid globalXid = (TransactionXid) archive.getXid();
-			byte[] global = globalXid.getGlobalTransactionId();
-			String identifier = ByteUtils.byteArrayToString(global);
-
-			Document document = new Document();
-
-			Document target = new Document();
-			Map<String, Serializable> variables = archive.getVariables();
-			byte[] variablesByteArray = variables == null || variables.isEmpty() ? null
-					: SerializeUtils.serializeObject((Serializable) variables);
-			String textVariables = variablesByteArray == null || variablesByteArray.length == 0 ? null
-					: ByteUtils.byteArrayToString(variablesByteArray);
-			target.append("status", archive.getCompensableStatus());
-			target.append("modified", this.endpoint);
-			target.append("variables", textVariables);
-			target.append("participants", this.constructParticipantsDocument(archive));
-			target.append("compensables", this.constructCompensablesDocument(archive));
-			target.append("recovered_at", archive.getRecoveredAt() == 0 ? null : new Date(archive.getRecoveredAt()));
-			target.append("recovered_times", archive.getRecoveredTimes());
-
-			document.append("$set", target);
-
-			UpdateResult result = collection.updateOne(Filters.eq(CONSTANTS_FD_GLOBAL, identifier), document);
-			if (result.getMatchedCount() != 1) {
-				throw new IllegalStateException(
-						String.format("Error occurred while updating transaction(matched= %s, modified= %s).",
-								result.getMatchedCount(), result.getModifiedCount()));
+			ArchiveSnapshot snapshot = archive.getSnapshot();
+			if (snapshot == null || snapshot.isComplete() == false) {
+				this.rewriteTransaction(archive);
+			} else {
+				this.updateTransactionIncrementally(archive, snapshot);
 			}
 		} catch (IOException error) {
 			logger.error("Error occurred while updating transaction.", error);
@@ -186,134 +206,412 @@ public class MongoCompensableLogger implements CompensableLogger, CompensableEnd
 		} catch (RuntimeException error) {
 			logger.error("Error occurred while updating transaction.", error);
 			this.beanFactory.getCompensableManager().setRollbackOnlyQuietly();
+		} finally {
+			this.invalidateTransaction((TransactionXid) archive.getXid());
 		}
 	}
 
-	private Document constructParticipantsDocument(TransactionArchive archive) {
+	/**
+	 * Rewrites the whole document, it's used when the persisted state is unknown to the snapshot, e.g. the transaction
+	 * is recovered from a document of the legacy schema.
+	 */
+	private void rewriteTransaction(TransactionArchive archive) throws IOException {
+		MongoCollection<Document> collection = this.collectionRegistry.getCollection(CONSTANTS_TB_TRANSACTIONS);
+
+		TransactionXid globalXid = (TransactionXid) archive.getXid();
+		byte[] global = globalXid.getGlobalTransactionId();
+
+		Document document = new Document();
+
+		Document transaction = this.constructTransactionFields(archive);
+		Document participants = this.constructParticipantsDocument(archive);
+		Document compensables = this.constructCompensablesDocument(archive);
+
+		Document target = new Document();
+		// the whole document is rewritten, the key is rewritten as well so that a legacy one is migrated.
+		target.append(CONSTANTS_FD_GLOBAL, MongoSchemaUtils.encode(global, this.schemaVersion));
+		target.append(MongoSchemaUtils.CONSTANTS_FD_SCHEMA, this.schemaVersion);
+		target.putAll(transaction);
+		target.append("participants", participants);
+		target.append("compensables", compensables);
+
+		document.append("$set", target);
+		MongoSchemaUtils.revise(document);
+
+		Bson globalFilter = MongoSchemaUtils.keyFilter(CONSTANTS_FD_GLOBAL, global);
+		UpdateResult result = collection.updateOne(globalFilter, document);
+		if (result.getMatchedCount() != 1) {
+			throw new IllegalStateException(
+					String.format("Error occurred while updating transaction(matched= %s, modified= %s).",
+							result.getMatchedCount(), result.getModifiedCount()));
+		}
+
+		this.resetSnapshot(archive.getSnapshot(), transaction, participants, compensables);
+	}
+
+	/**
+	 * Writes the fields which are different from the snapshot only, so that the change of a branch is written as a
+	 * small $set of its own fields. The participants and compensables which are unknown to the snapshot are written
+	 * entirely, and the ones which have been removed from the archive are unset.
+	 */
+	private void updateTransactionIncrementally(TransactionArchive archive, ArchiveSnapshot snapshot)
+			throws IOException {
 		String application = CommonUtils.getApplication(this.endpoint);
 
+		Document target = new Document();
+		Document removed = new Document();
+
+		Document transaction = this.constructTransactionFields(archive);
+		this.appendChangedFields(target, null, transaction, snapshot.getTransaction());
+
+		Map<String, Map<String, Object>> participantMap = new HashMap<String, Map<String, Object>>();
+		Set<String> participantKeys = snapshot.getParticipantKeys();
 		List<XAResourceArchive> participantList = archive.getRemoteResources();
-		Document participants = new Document();
 		for (int i = 0; participantList != null && i < participantList.size(); i++) {
 			XAResourceArchive resource = participantList.get(i);
+			String branchKey = ByteUtils.byteArrayToString(resource.getXid().getBranchQualifier());
+			String fieldName = String.format("participants.%s", branchKey);
+
+			Document participant = this.constructParticipantDocument(resource, application);
+			Map<String, Object> status = this.retainFields(participant, PARTICIPANT_STATUS_FIELDS);
+			Map<String, Object> persisted = snapshot.getParticipant(branchKey);
+			if (persisted == null) {
+				target.append(fieldName, participant);
+			} else {
+				this.appendChangedFields(target, fieldName, status, persisted);
+			}
+
+			participantKeys.remove(branchKey);
+			participantMap.put(branchKey, status);
+		}
+
+		for (Iterator<String> itr = participantKeys.iterator(); itr.hasNext();) {
+			removed.append(String.format("participants.%s", itr.next()), "");
+		}
+
+		Map<String, Map<String, Object>> compensableMap = new HashMap<String, Map<String, Object>>();
+		Set<String> compensableKeys = snapshot.getCompensableKeys();
+		List<CompensableArchive> compensableList = archive.getCompensableResourceList();
+		for (int i = 0; compensableList != null && i < compensableList.size(); i++) {
+			CompensableArchive resource = compensableList.get(i);
+			String branchKey = ByteUtils.byteArrayToString(resource.getIdentifier().getBranchQualifier());
+			String fieldName = String.format("compensables.%s", branchKey);
+
+			Document status = this.constructCompensableStatus(resource);
+			Map<String, Object> persisted = snapshot.getCompensable(branchKey);
+			if (persisted == null) {
+				target.append(fieldName, this.constructCompensableDocument(resource));
+			} else {
+				this.appendChangedFields(target, fieldName, status, persisted);
+			}
+
+			compensableKeys.remove(branchKey);
+			compensableMap.put(branchKey, status);
+		}
+
+		for (Iterator<String> itr = compensableKeys.iterator(); itr.hasNext();) {
+			removed.append(String.format("compensables.%s", itr.next()), "");
+		}
+
+		if (target.isEmpty() && removed.isEmpty()) {
+			return;
+		}
+
+		Document document = new Document();
+		if (target.isEmpty() == false) {
+			document.append("$set", target);
+		}
+		if (removed.isEmpty() == false) {
+			document.append("$unset", removed);
+		}
+		MongoSchemaUtils.revise(document);
+
+		byte[] global = archive.getXid().getGlobalTransactionId();
+		MongoCollection<Document> collection = this.collectionRegistry.getCollection(CONSTANTS_TB_TRANSACTIONS);
+		Bson globalFilter = MongoSchemaUtils.keyFilter(CONSTANTS_FD_GLOBAL, global);
+		UpdateResult result = collection.updateOne(globalFilter, document);
+		if (result.getMatchedCount() != 1) {
+			throw new IllegalStateException(
+					String.format("Error occurred while updating transaction(matched= %s, modified= %s).",
+							result.getMatchedCount(), result.getModifiedCount()));
+		}
+
+		snapshot.putTransaction(transaction);
+		for (Iterator<String> itr = participantMap.keySet().iterator(); itr.hasNext();) {
+			String key = itr.next();
+			snapshot.putParticipant(key, participantMap.get(key));
+		}
+		for (Iterator<String> itr = participantKeys.iterator(); itr.hasNext();) {
+			snapshot.removeParticipant(itr.next());
+		}
+		for (Iterator<String> itr = compensableMap.keySet().iterator(); itr.hasNext();) {
+			String key = itr.next();
+			snapshot.putCompensable(key, compensableMap.get(key));
+		}
+		for (Iterator<String> itr = compensableKeys.iterator(); itr.hasNext();) {
+			snapshot.removeCompensable(itr.next());
+		}
+	}
 
-			TransactionXid resourceXid = (TransactionXid) resource.getXid();
-			byte[] globalByteArray = resourceXid.getGlobalTransactionId();
-			byte[] branchByteArray = resourceXid.getBranchQualifier();
-			String globalKey = ByteUtils.byteArrayToString(globalByteArray);
-			String branchKey = ByteUtils.byteArrayToString(branchByteArray);
+	private void appendChangedFields(Document target, String prefix, Map<String, Object> fields,
+			Map<String, Object> persisted) {
+		for (Iterator<Map.Entry<String, Object>> itr = fields.entrySet().iterator(); itr.hasNext();) {
+			Map.Entry<String, Object> entry = itr.next();
+			String fieldName = entry.getKey();
+			Object value = entry.getValue();
+			if (persisted.containsKey(fieldName) && CommonUtils.equals(value, persisted.get(fieldName))) {
+				continue;
+			}
+			target.append(prefix == null ? fieldName : String.format("%s.%s", prefix, fieldName), value);
+		}
+	}
 
-			XAResourceDescriptor descriptor = resource.getDescriptor();
-			String descriptorType = descriptor.getClass().getName();
-			String descriptorKey = descriptor.getIdentifier();
+	private Map<String, Object> retainFields(Document document, String[] fieldNames) {
+		Map<String, Object> fields = new HashMap<String, Object>();
+		for (int i = 0; document != null && i < fieldNames.length; i++) {
+			if (document.containsKey(fieldNames[i])) {
+				fields.put(fieldNames[i], document.get(fieldNames[i]));
+			}
+		}
+		return fields;
+	}
 
-			int branchVote = resource.getVote();
-			boolean readonly = resource.isReadonly();
-			boolean committed = resource.isCommitted();
-			boolean rolledback = resource.isRolledback();
-			boolean completed = resource.isCompleted();
-			boolean heuristic = resource.isHeuristic();
+	/**
+	 * Records the state of a document which has been written or read entirely.
+	 */
+	private void resetSnapshot(ArchiveSnapshot snapshot, Document transaction, Document participants,
+			Document compensables) {
+		if (snapshot == null) {
+			return;
+		}
 
-			Document participant = new Document();
-			participant.append(CONSTANTS_FD_GLOBAL, globalKey);
-			participant.append(CONSTANTS_FD_BRANCH, branchKey);
+		snapshot.reset(true);
+		snapshot.putTransaction(this.retainFields(transaction, TRANSACTION_FIELDS));
+		for (Iterator<String> itr = participants.keySet().iterator(); itr.hasNext();) {
+			String key = itr.next();
+			Document participant = participants.get(key, Document.class);
+			snapshot.putParticipant(key, this.retainFields(participant, PARTICIPANT_STATUS_FIELDS));
+		}
+		for (Iterator<String> itr = compensables.keySet().iterator(); itr.hasNext();) {
+			String key = itr.next();
+			Document compensable = compensables.get(key, Document.class);
+			snapshot.putCompensable(key, this.retainFields(compensable, COMPENSABLE_STATUS_FIELDS));
+		}
+	}
 
-			participant.append("system", application);
-			participant.append("type", descriptorType);
-			participant.append("resource", descriptorKey);
+	private Document constructTransactionFields(TransactionArchive archive) throws IOException {
+		Map<String, Serializable> variables = archive.getVariables();
+		byte[] variablesByteArray = variables == null || variables.isEmpty() ? null
+				: SerializeUtils.serializeObject((Serializable) variables);
+		Object variablesValue = variablesByteArray == null || variablesByteArray.length == 0 ? null
+				: MongoSchemaUtils.encode(variablesByteArray, this.schemaVersion);
+
+		Document transaction = new Document();
+		transaction.append("status", archive.getCompensableStatus());
+		transaction.append("modified", this.endpoint);
+		transaction.append("variables", variablesValue);
+		transaction.append("recovered_at", archive.getRecoveredAt() == 0 ? null : new Date(archive.getRecoveredAt()));
+		transaction.append("recovered_times", archive.getRecoveredTimes());
+		return transaction;
+	}
 
-			participant.append("vote", branchVote);
-			participant.append("committed", committed);
-			participant.append("rolledback", rolledback);
-			participant.append("readonly", readonly);
-			participant.append("completed", completed);
-			participant.append("heuristic", heuristic);
-			participant.append("modified", this.endpoint);
+	private Document constructParticipantsDocument(TransactionArchive archive) {
+		String application = CommonUtils.getApplication(this.endpoint);
 
-			participants.append(branchKey, participant);
+		List<XAResourceArchive> participantList = archive.getRemoteResources();
+		Document participants = new Document();
+		for (int i = 0; participantList != null && i < participantList.size(); i++) {
+			XAResourceArchive resource = participantList.get(i);
+			String branchKey = ByteUtils.byteArrayToString(resource.getXid().getBranchQualifier());
+			participants.append(branchKey, this.constructParticipantDocument(resource, application));
 		}
 
 		return participants;
 	}
 
+	private Document constructParticipantDocument(XAResourceArchive resource, String application) {
+		TransactionXid resourceXid = (TransactionXid) resource.getXid();
+		byte[] globalByteArray = resourceXid.getGlobalTransactionId();
+		byte[] branchByteArray = resourceXid.getBranchQualifier();
+
+		XAResourceDescriptor descriptor = resource.getDescriptor();
+		String descriptorType = descriptor.getClass().getName();
+		String descriptorKey = descriptor.getIdentifier();
+
+		int branchVote = resource.getVote();
+		boolean readonly = resource.isReadonly();
+		boolean committed = resource.isCommitted();
+		boolean rolledback = resource.isRolledback();
+		boolean completed = resource.isCompleted();
+		boolean heuristic = resource.isHeuristic();
+
+		Document participant = new Document();
+		participant.append(CONSTANTS_FD_GLOBAL, MongoSchemaUtils.encode(globalByteArray, this.schemaVersion));
+		participant.append(CONSTANTS_FD_BRANCH, MongoSchemaUtils.encode(branchByteArray, this.schemaVersion));
+
+		participant.append("system", application);
+		participant.append("type", descriptorType);
+		participant.append("resource", descriptorKey);
+
+		participant.append("vote", branchVote);
+		participant.append("committed", committed);
+		participant.append("rolledback", rolledback);
+		participant.append("readonly", readonly);
+		participant.append("completed", completed);
+		participant.append("heuristic", heuristic);
+		participant.append("modified", this.endpoint);
+
+		return participant;
+	}
+
 	private Document constructCompensablesDocument(TransactionArchive archive) throws IOException {
 		List<CompensableArchive> compensableList = archive.getCompensableResourceList();
 		Document compensables = new Document();
 		for (int i = 0; compensableList != null && i < compensableList.size(); i++) {
 			CompensableArchive resource = compensableList.get(i);
+			String branchKey = ByteUtils.byteArrayToString(resource.getIdentifier().getBranchQualifier());
+			compensables.put(branchKey, this.constructCompensableDocument(resource));
+		}
 
-			Xid resourceXid = resource.getIdentifier();
-			byte[] globalByteArray = resourceXid.getGlobalTransactionId();
-			byte[] branchByteArray = resourceXid.getBranchQualifier();
-			String globalKey = ByteUtils.byteArrayToString(globalByteArray);
-			String branchKey = ByteUtils.byteArrayToString(branchByteArray);
-
-			CompensableInvocation invocation = resource.getCompensable();
-			String beanId = (String) invocation.getIdentifier();
-
-			Method method = invocation.getMethod();
-			Object[] args = invocation.getArgs();
-
-			String methodDesc = SerializeUtils.serializeMethod(invocation.getMethod());
-			byte[] argsByteArray = SerializeUtils.serializeObject(args);
-			String argsValue = ByteUtils.byteArrayToString(argsByteArray);
+		return compensables;
+	}
 
-			Document service = new Document();
-			service.append(CONSTANTS_FD_GLOBAL, globalKey);
-			service.append(CONSTANTS_FD_BRANCH, branchKey);
+	private Document constructCompensableDocument(CompensableArchive resource) throws IOException {
+		Xid resourceXid = resource.getIdentifier();
+		byte[] globalByteArray = resourceXid.getGlobalTransactionId();
+		byte[] branchByteArray = resourceXid.getBranchQualifier();
 
-			// service.append("system", application);
-			// service.append("created", this.endpoint);
+		CompensableInvocation invocation = resource.getCompensable();
+		String beanId = (String) invocation.getIdentifier();
 
-			service.append("transaction_key", resource.getTransactionResourceKey());
-			service.append("compensable_key", resource.getCompensableResourceKey());
+		Document service = new Document();
+		service.append(CONSTANTS_FD_GLOBAL, MongoSchemaUtils.encode(globalByteArray, this.schemaVersion));
+		service.append(CONSTANTS_FD_BRANCH, MongoSchemaUtils.encode(branchByteArray, this.schemaVersion));
 
-			Xid transactionXid = resource.getTransactionXid();
-			Xid compensableXid = resource.getCompensableXid();
+		// service.append("system", application);
+		// service.append("created", this.endpoint);
 
-			service.append("transaction_xid", String.valueOf(transactionXid));
-			service.append("compensable_xid", String.valueOf(compensableXid));
+		service.putAll(this.constructCompensableStatus(resource));
 
-			service.append("coordinator", resource.isCoordinator());
-			service.append("tried", resource.isTried());
-			service.append("confirmed", resource.isConfirmed());
-			service.append("cancelled", resource.isCancelled());
-			service.append("modified", this.endpoint);
+		service.append("serviceId", beanId);
+		service.append("simplified", invocation.isSimplified());
+		service.append("confirmable_key", invocation.getConfirmableKey());
+		service.append("cancellable_key", invocation.getCancellableKey());
+		this.appendInvocation(service, invocation);
 
-			service.append("serviceId", beanId);
-			service.append("simplified", invocation.isSimplified());
-			service.append("confirmable_key", invocation.getConfirmableKey());
-			service.append("cancellable_key", invocation.getCancellableKey());
-			service.append("args", argsValue);
-			service.append("interface", method.getDeclaringClass().getName());
-			service.append("method", methodDesc);
+		return service;
+	}
 
-			compensables.put(branchKey, service);
+	/**
+	 * Appends the args, the interface and the method of the invocation. An invocation which is recovered but has not
+	 * been decoded yet is written with its original fields, so that the args are not decoded and encoded again.
+	 */
+	private void appendInvocation(Document target, CompensableInvocation invocation) throws IOException {
+		String clazzName = null;
+		String methodDesc = null;
+		byte[] argsByteArray = null;
+		if (RecoveredCompensableInvocation.class.isInstance(invocation)
+				&& ((RecoveredCompensableInvocation) invocation).isDecoded() == false) {
+			RecoveredCompensableInvocation recovered = (RecoveredCompensableInvocation) invocation;
+			clazzName = recovered.getClassName();
+			methodDesc = recovered.getMethodDesc();
+			argsByteArray = recovered.getArgsByteArray();
+		} else {
+			Method method = invocation.getMethod();
+			clazzName = method.getDeclaringClass().getName();
+			methodDesc = SerializeUtils.serializeMethod(method);
+			argsByteArray = SerializeUtils.serializeObject(invocation.getArgs());
 		}
 
-		return compensables;
+		target.append("args", MongoSchemaUtils.encode(argsByteArray, this.schemaVersion));
+		target.append("interface", clazzName);
+		target.append("method", methodDesc);
 	}
 
+	/**
+	 * @return the fields of the compensable which may be changed after it has been created.
+	 */
+	private Document constructCompensableStatus(CompensableArchive resource) {
+		Document service = new Document();
+		service.append("transaction_key", resource.getTransactionResourceKey());
+		service.append("compensable_key", resource.getCompensableResourceKey());
+
+		Xid transactionXid = resource.getTransactionXid();
+		Xid compensableXid = resource.getCompensableXid();
+
+		service.append("transaction_xid", this.encodeXid(transactionXid));
+		service.append("compensable_xid", this.encodeXid(compensableXid));
+
+		service.append("coordinator", resource.isCoordinator());
+		service.append("tried", resource.isTried());
+		service.append("confirmed", resource.isConfirmed());
+		service.append("cancelled", resource.isCancelled());
+		service.append("modified", this.endpoint);
+		return service;
+	}
+
+	/**
+	 * Writes the status fields of the participant which differ from the snapshot as a single $set of
+	 * participants.<bxid>.<field>, and refreshes the snapshot once it has been written, so that the following
+	 * updateTransaction does not write them again. A participant unknown to the snapshot is written entirely.
+	 */
 	public void updateParticipantStatus(XAResourceArchive archive) {
+		try {
+			TransactionXid transactionXid = (TransactionXid) archive.getXid();
+			byte[] global = transactionXid.getGlobalTransactionId();
+			String branchKey = ByteUtils.byteArrayToString(transactionXid.getBranchQualifier());
+			String fieldName = String.format("participants.%s", branchKey);
+
+			String application = CommonUtils.getApplication(this.endpoint);
+			Document participant = this.constructParticipantDocument(archive, application);
+			Map<String, Object> status = this.retainFields(participant, PARTICIPANT_STATUS_FIELDS);
+
+			ArchiveSnapshot snapshot = this.getArchiveSnapshot(transactionXid);
+			Map<String, Object> persisted = snapshot == null ? null : snapshot.getParticipant(branchKey);
+
+			Document target = new Document();
+			if (persisted == null) {
+				target.append(fieldName, participant);
+			} else {
+				this.appendChangedFields(target, fieldName, status, persisted);
+			}
+
+			if (target.isEmpty()) {
+				return;
+			}
+
+			Document document = new Document();
+			document.append("$set", target);
+			MongoSchemaUtils.revise(document);
+
+			this.updateTransactionDocument(global, document, "updating participant status");
+
+			if (snapshot != null) {
+				snapshot.putParticipant(branchKey, status);
+			} // end-if (snapshot != null)
+		} catch (RuntimeException error) {
+			logger.error("Error occurred while updating participant status.", error);
+			this.beanFactory.getCompensableManager().setRollbackOnlyQuietly();
+		} finally {
+			this.invalidateTransaction((TransactionXid) archive.getXid());
+		}
 	}
 
 	public void deleteTransaction(TransactionArchive archive) {
 		try {
 			TransactionXid transactionXid = (TransactionXid) archive.getXid();
 			byte[] global = transactionXid.getGlobalTransactionId();
-			String identifier = ByteUtils.byteArrayToString(global);
 
-			String application = CommonUtils.getApplication(this.endpoint);
-			String databaseName = application.replaceAll("\\W", "_");
-			MongoDatabase mdb = this.mongoClient.getDatabase(databaseName);
-			MongoCollection<Document> transactions = mdb.getCollection(CONSTANTS_TB_TRANSACTIONS);
+			MongoCollection<Document> transactions = this.collectionRegistry.getCollection(CONSTANTS_TB_TRANSACTIONS);
 
-			DeleteResult result = transactions.deleteOne(Filters.eq(CONSTANTS_FD_GLOBAL, identifier));
+			DeleteResult result = transactions.deleteOne(MongoSchemaUtils.keyFilter(CONSTANTS_FD_GLOBAL, global));
 			if (result.getDeletedCount() != 1) {
 				logger.error("Error occurred while deleting transaction(deleted= {}).", result.getDeletedCount());
 			}
 		} catch (RuntimeException error) {
 			logger.error("Error occurred while deleting transaction!", error);
+		} finally {
+			this.invalidateTransaction((TransactionXid) archive.getXid());
 		}
 	}
 
@@ -323,6 +621,8 @@ public class MongoCompensableLogger implements CompensableLogger, CompensableEnd
 		} catch (RuntimeException error) {
 			logger.error("Error occurred while creating participant!", error);
 			this.beanFactory.getCompensableManager().setRollbackOnlyQuietly();
+		} finally {
+			this.invalidateTransaction((TransactionXid) archive.getXid());
 		}
 	}
 
@@ -332,58 +632,33 @@ public class MongoCompensableLogger implements CompensableLogger, CompensableEnd
 		} catch (RuntimeException error) {
 			logger.error("Error occurred while updating participant.", error);
 			this.beanFactory.getCompensableManager().setRollbackOnlyQuietly();
+		} finally {
+			this.invalidateTransaction((TransactionXid) archive.getXid());
 		}
 	}
 
 	private void upsertParticipant(XAResourceArchive archive) {
 		TransactionXid transactionXid = (TransactionXid) archive.getXid();
 		byte[] global = transactionXid.getGlobalTransactionId();
-		byte[] branch = transactionXid.getBranchQualifier();
 		String globalKey = ByteUtils.byteArrayToString(global);
-		String branchKey = ByteUtils.byteArrayToString(branch);
-		XAResourceDescriptor descriptor = archive.getDescriptor();
-		String descriptorType = descriptor.getClass().getName();
-		String descriptorKey = descriptor.getIdentifier();
-
-		int branchVote = archive.getVote();
-		boolean readonly = archive.isReadonly();
-		boolean committed = archive.isCommitted();
-		boolean rolledback = archive.isRolledback();
-		boolean completed = archive.isCompleted();
-		boolean heuristic = archive.isHeuristic();
+		String branchKey = ByteUtils.byteArrayToString(transactionXid.getBranchQualifier());
 
 		String application = CommonUtils.getApplication(this.endpoint);
-
-		Document participant = new Document();
-		participant.append(CONSTANTS_FD_GLOBAL, globalKey);
-		participant.append(CONSTANTS_FD_BRANCH, branchKey);
-
-		participant.append("type", descriptorType);
-		participant.append("resource", descriptorKey);
-
-		participant.append("vote", branchVote);
-		participant.append("committed", committed);
-		participant.append("rolledback", rolledback);
-		participant.append("readonly", readonly);
-		participant.append("completed", completed);
-		participant.append("heuristic", heuristic);
-
-		String databaseName = application.replaceAll("\\W", "_");
-		MongoDatabase mdb = this.mongoClient.getDatabase(databaseName);
-		MongoCollection<Document> collection = mdb.getCollection(CONSTANTS_TB_TRANSACTIONS);
+		Document participant = this.constructParticipantDocument(archive, application);
 
 		Document participants = new Document();
 		participants.append(String.format("participants.%s", branchKey), participant);
 
 		Document document = new Document();
 		document.append("$set", participants);
+		MongoSchemaUtils.revise(document);
 
-		UpdateResult result = collection.updateOne(Filters.eq(CONSTANTS_FD_GLOBAL, globalKey), document);
-		if (result.getMatchedCount() != 1) {
-			throw new IllegalStateException(
-					String.format("Error occurred while creating/updating participant(matched= %s, modified= %s).",
-							result.getMatchedCount(), result.getModifiedCount()));
-		}
+		this.updateTransactionDocument(global, document, "creating/updating participant");
+
+		ArchiveSnapshot snapshot = this.getArchiveSnapshot(transactionXid);
+		if (snapshot != null) {
+			snapshot.putParticipant(branchKey, this.retainFields(participant, PARTICIPANT_STATUS_FIELDS));
+		} // end-if (snapshot != null)
 	}
 
 	public void deleteParticipant(XAResourceArchive archive) {
@@ -391,30 +666,34 @@ public class MongoCompensableLogger implements CompensableLogger, CompensableEnd
 			TransactionXid transactionXid = (TransactionXid) archive.getXid();
 			byte[] global = transactionXid.getGlobalTransactionId();
 			byte[] branch = transactionXid.getBranchQualifier();
-			String globalKey = ByteUtils.byteArrayToString(global);
 			String branchKey = ByteUtils.byteArrayToString(branch);
 
-			String application = CommonUtils.getApplication(this.endpoint);
-
-			String databaseName = application.replaceAll("\\W", "_");
-			MongoDatabase mdb = this.mongoClient.getDatabase(databaseName);
-			MongoCollection<Document> collection = mdb.getCollection(CONSTANTS_TB_TRANSACTIONS);
+			MongoCollection<Document> collection = this.collectionRegistry.getCollection(CONSTANTS_TB_TRANSACTIONS);
 
 			Document participants = new Document();
 			participants.append(String.format("participants.%s", branchKey), null);
 
 			Document document = new Document();
 			document.append("$unset", participants);
+			MongoSchemaUtils.revise(document);
 
-			UpdateResult result = collection.updateOne(Filters.eq(CONSTANTS_FD_GLOBAL, globalKey), document);
+			Bson globalFilter = MongoSchemaUtils.keyFilter(CONSTANTS_FD_GLOBAL, global);
+			UpdateResult result = collection.updateOne(globalFilter, document);
 			if (result.getMatchedCount() != 1) {
 				throw new IllegalStateException(
 						String.format("Error occurred while deleting participant(matched= %s, modified= %s).",
 								result.getMatchedCount(), result.getModifiedCount()));
 			}
+
+			ArchiveSnapshot snapshot = this.getArchiveSnapshot(transactionXid);
+			if (snapshot != null) {
+				snapshot.removeParticipant(branchKey);
+			} // end-if (snapshot != null)
 		} catch (RuntimeException error) {
 			logger.error("Error occurred while deleting participant.", error);
 			this.beanFactory.getCompensableManager().setRollbackOnlyQuietly();
+		} finally {
+			this.invalidateTransaction((TransactionXid) archive.getXid());
 		}
 	}
 
@@ -427,6 +706,8 @@ public class MongoCompensableLogger implements CompensableLogger, CompensableEnd
 		} catch (RuntimeException error) {
 			logger.error("Error occurred while creating compensable.", error);
 			this.beanFactory.getCompensableManager().setRollbackOnlyQuietly();
+		} finally {
+			this.invalidateTransaction((TransactionXid) archive.getIdentifier());
 		}
 	}
 
@@ -451,103 +732,224 @@ public class MongoCompensableLogger implements CompensableLogger, CompensableEnd
 		} catch (RuntimeException error) {
 			logger.error("Error occurred while updating compensable.", error);
 			this.beanFactory.getCompensableManager().setRollbackOnlyQuietly();
+		} finally {
+			this.invalidateTransaction((TransactionXid) archive.getIdentifier());
 		}
 	}
 
 	private void upsertCompensable(CompensableArchive archive) throws IOException {
 		TransactionXid xid = (TransactionXid) archive.getIdentifier();
 		byte[] global = xid.getGlobalTransactionId();
-		byte[] branch = xid.getBranchQualifier();
-		String globalKey = ByteUtils.byteArrayToString(global);
-		String branchKey = ByteUtils.byteArrayToString(branch);
-		CompensableInvocation invocation = archive.getCompensable();
-		String beanId = (String) invocation.getIdentifier();
-
-		Method method = invocation.getMethod();
-		Object[] args = invocation.getArgs();
+		String branchKey = ByteUtils.byteArrayToString(xid.getBranchQualifier());
 
-		String methodDesc = SerializeUtils.serializeMethod(invocation.getMethod());
-		byte[] argsByteArray = SerializeUtils.serializeObject(args);
-		String argsValue = ByteUtils.byteArrayToString(argsByteArray);
+		Document compensable = this.constructCompensableDocument(archive);
 
-		String application = CommonUtils.getApplication(this.endpoint);
+		Document compensables = new Document();
+		compensables.append(String.format("compensables.%s", branchKey), compensable);
 
-		Document compensable = new Document();
-		compensable.append(CONSTANTS_FD_GLOBAL, globalKey);
-		compensable.append(CONSTANTS_FD_BRANCH, branchKey);
+		Document document = new Document();
+		document.append("$set", compensables);
+		MongoSchemaUtils.revise(document);
 
-		compensable.append("transaction_key", archive.getTransactionResourceKey());
-		compensable.append("compensable_key", archive.getCompensableResourceKey());
+		this.updateTransactionDocument(global, document, "creating/updating compensable");
 
-		Xid transactionXid = archive.getTransactionXid();
-		Xid compensableXid = archive.getCompensableXid();
+		ArchiveSnapshot snapshot = this.getArchiveSnapshot(xid);
+		if (snapshot != null) {
+			snapshot.putCompensable(branchKey, this.retainFields(compensable, COMPENSABLE_STATUS_FIELDS));
+		} // end-if (snapshot != null)
+	}
 
-		compensable.append("transaction_xid", String.valueOf(transactionXid));
-		compensable.append("compensable_xid", String.valueOf(compensableXid));
+	/**
+	 * Applies the update to the transaction document, through the group-commit writer if it's enabled.
+	 */
+	private void updateTransactionDocument(byte[] global, Document document, String operation) {
+		MongoCollection<Document> collection = this.collectionRegistry.getCollection(CONSTANTS_TB_TRANSACTIONS);
+		if (this.groupCommitEnabled) {
+			this.getGroupCommitWriter(collection).update(ByteUtils.byteArrayToString(global), document);
+			return;
+		}
 
-		compensable.append("coordinator", archive.isCoordinator());
-		compensable.append("tried", archive.isTried());
-		compensable.append("confirmed", archive.isConfirmed());
-		compensable.append("cancelled", archive.isCancelled());
+		Bson globalFilter = MongoSchemaUtils.keyFilter(CONSTANTS_FD_GLOBAL, global);
+		UpdateResult result = collection.updateOne(globalFilter, document);
+		if (result.getMatchedCount() != 1) {
+			throw new IllegalStateException(String.format("Error occurred while %s(matched= %s, modified= %s).",
+					operation, result.getMatchedCount(), result.getModifiedCount()));
+		}
+	}
 
-		compensable.append("serviceId", beanId);
-		compensable.append("simplified", invocation.isSimplified());
-		compensable.append("confirmable_key", invocation.getConfirmableKey());
-		compensable.append("cancellable_key", invocation.getCancellableKey());
-		compensable.append("args", argsValue);
-		compensable.append("interface", method.getDeclaringClass().getName());
-		compensable.append("method", methodDesc);
+	/**
+	 * @return the snapshot of the transaction which the branch belongs to, or null if the transaction is not being
+	 *         processed by the current instance.
+	 */
+	private ArchiveSnapshot getArchiveSnapshot(TransactionXid branchXid) {
+		XidFactory xidFactory = this.beanFactory.getCompensableXidFactory();
+		TransactionXid globalXid = xidFactory.createGlobalXid(branchXid.getGlobalTransactionId());
+
+		CompensableManagerImpl compensableManager = (CompensableManagerImpl) this.beanFactory.getCompensableManager();
+		Transaction transaction = compensableManager.getCompensableTransactionQuietly();
+		if (transaction == null || globalXid.equals(transaction.getTransactionContext().getXid()) == false) {
+			transaction = compensableManager.getTransaction(globalXid);
+		}
 
-		String databaseName = application.replaceAll("\\W", "_");
-		MongoDatabase mdb = this.mongoClient.getDatabase(databaseName);
-		MongoCollection<Document> collection = mdb.getCollection(CONSTANTS_TB_TRANSACTIONS);
+		return CompensableTransactionImpl.class.isInstance(transaction)
+				? ((CompensableTransactionImpl) transaction).getArchiveSnapshot() : null;
+	}
 
-		Document compensables = new Document();
-		compensables.append(String.format("compensables.%s", branchKey), compensable);
+	/**
+	 * Discards the transaction cached by the repository, it's invoked after the document has been written.
+	 */
+	private void invalidateTransaction(TransactionXid xid) {
+		TransactionRepository compensableRepository = this.beanFactory.getCompensableRepository();
+		if (MongoCompensableRepository.class.isInstance(compensableRepository)) {
+			((MongoCompensableRepository) compensableRepository).invalidateTransaction(xid);
+		}
+	}
 
-		Document document = new Document();
-		document.append("$set", compensables);
+	private MongoGroupCommitWriter getGroupCommitWriter(MongoCollection<Document> collection) {
+		if (this.groupCommitWriter == null) {
+			synchronized (this) {
+				if (this.groupCommitWriter == null) {
+					MongoGroupCommitWriter writer = new MongoGroupCommitWriter(collection, CONSTANTS_FD_GLOBAL,
+							this.groupCommitSize, this.groupCommitInterval, this.groupCommitTimeout);
+					Thread thread = new Thread(writer, "bytetcc-group-commit");
+					thread.setDaemon(true);
+					thread.start();
+					this.groupCommitThread = thread;
+					this.groupCommitWriter = writer;
+				}
+			}
+		}
+		return this.groupCommitWriter;
+	}
 
-		UpdateResult result = collection.updateOne(Filters.eq(CONSTANTS_FD_GLOBAL, globalKey), document);
-		if (result.getMatchedCount() != 1) {
-			throw new IllegalStateException(
-					String.format("Error occurred while creating/updating compensable(matched= %s, modified= %s).",
-							result.getMatchedCount(), result.getModifiedCount()));
+	public void destroy() throws InterruptedException {
+		MongoGroupCommitWriter writer = null;
+		Thread thread = null;
+		synchronized (this) {
+			writer = this.groupCommitWriter;
+			thread = this.groupCommitThread;
+			this.groupCommitWriter = null;
+			this.groupCommitThread = null;
 		}
+
+		if (writer != null) {
+			writer.release();
+			thread.join(this.groupCommitTimeout);
+		} // end-if (writer != null)
 	}
 
 	public void recover(TransactionRecoveryCallback callback) {
-		MongoCursor<Document> transactionCursor = null;
+		ExecutorService executor = this.recoverThreads > 1 ? Executors.newFixedThreadPool(this.recoverThreads) : null;
 		try {
-			String application = CommonUtils.getApplication(this.endpoint);
-			String databaseName = application.replaceAll("\\W", "_");
-			MongoDatabase mdb = this.mongoClient.getDatabase(databaseName);
-			MongoCollection<Document> transactions = mdb.getCollection(CONSTANTS_TB_TRANSACTIONS);
-
-			FindIterable<Document> transactionItr = transactions.find(Filters.eq("coordinator", true));
-			for (transactionCursor = transactionItr.iterator(); transactionCursor.hasNext();) {
-				Document document = transactionCursor.next();
-				boolean error = document.getBoolean("error");
-
-				String targetApplication = document.getString("system");
-				long expectVersion = document.getLong("version");
-				long actualVersion = this.versionManager.getInstanceVersion(targetApplication);
-
-				if (error == false && actualVersion > 0 && actualVersion <= expectVersion) {
-					continue; // ignore
+			MongoCollection<Document> transactions = this.collectionRegistry.getCollection(CONSTANTS_TB_TRANSACTIONS);
+
+			Bson condition = this.constructRecoveryCondition(transactions);
+			List<Document> documents = this.findRecoveryPage(transactions, condition, null);
+			while (documents.isEmpty() == false) {
+				List<Future<TransactionArchive>> archives = this.reconstructTransactionArchives(executor, documents);
+
+				// the next page is fetched while the current one is being reconstructed, no more than two pages are
+				// held in memory since the next fetch waits for the callback to consume the current page.
+				Object lastKey = documents.get(documents.size() - 1).get(CONSTANTS_FD_GLOBAL);
+				List<Document> nextDocuments = documents.size() < this.recoverPageSize ? new ArrayList<Document>()
+						: this.findRecoveryPage(transactions, condition, lastKey);
+
+				for (int i = 0; i < archives.size(); i++) {
+					Future<TransactionArchive> future = archives.get(i);
+					try {
+						callback.recover(future.get());
+					} catch (ExecutionException error) {
+						String global = MongoSchemaUtils.toText(documents.get(i).get(CONSTANTS_FD_GLOBAL));
+						logger.error("{}| Error occurred while recovering transaction.", global, error.getCause());
+					}
 				}
 
-				callback.recover(this.reconstructTransactionArchive(document));
+				documents = nextDocuments;
 			}
-		} catch (RuntimeException error) {
+		} catch (InterruptedException error) {
+			Thread.currentThread().interrupt();
 			logger.error("Error occurred while recovering transaction.", error);
-		} catch (Exception error) {
+		} catch (RuntimeException error) {
 			logger.error("Error occurred while recovering transaction.", error);
 		} finally {
-			IOUtils.closeQuietly(transactionCursor);
+			if (executor != null) {
+				executor.shutdownNow();
+			}
 		}
 	}
 
+	/**
+	 * A coordinator transaction is skipped by the recovery if it's not marked as error and it's created by a living
+	 * instance whose version is not newer than the one recorded in the document.
+	 */
+	private Bson constructRecoveryCondition(MongoCollection<Document> transactions) {
+		Bson coordinatorFilter = Filters.eq("coordinator", true);
+
+		List<Bson> conditions = new ArrayList<Bson>();
+		conditions.add(Filters.eq("error", true));
+
+		List<String> systems = new ArrayList<String>();
+		MongoCursor<String> systemCursor = null;
+		try {
+			systemCursor = transactions.distinct("system", coordinatorFilter, String.class).iterator();
+			while (systemCursor.hasNext()) {
+				String system = systemCursor.next();
+				long version = system == null ? -1 : this.versionManager.getInstanceVersion(system);
+				if (version > 0) {
+					systems.add(system);
+					conditions.add(Filters.and(Filters.eq("system", system), Filters.lt("version", version)));
+				}
+			}
+		} finally {
+			IOUtils.closeQuietly(systemCursor);
+		}
+
+		conditions.add(Filters.nin("system", systems));
+
+		return Filters.and(coordinatorFilter, Filters.or(conditions));
+	}
+
+	/**
+	 * The keys of both schema versions are sorted by type first, the legacy string keys precede the binary ones. Since
+	 * the comparison of a query only matches the values of the same type, the binary keys are appended explicitly to
+	 * the condition of a page which follows a string key.
+	 */
+	private List<Document> findRecoveryPage(MongoCollection<Document> transactions, Bson condition, Object lastKey) {
+		Bson filter = condition;
+		if (String.class.isInstance(lastKey)) {
+			Bson binaryFilter = Filters.type(CONSTANTS_FD_GLOBAL, BsonType.BINARY);
+			filter = Filters.and(condition, Filters.or(Filters.gt(CONSTANTS_FD_GLOBAL, lastKey), binaryFilter));
+		} else if (lastKey != null) {
+			filter = Filters.and(condition, Filters.gt(CONSTANTS_FD_GLOBAL, lastKey));
+		}
+
+		FindIterable<Document> transactionItr = transactions.find(filter).projection(RECOVERY_PROJECTION)
+				.sort(Sorts.ascending(CONSTANTS_FD_GLOBAL)).limit(this.recoverPageSize);
+		return transactionItr.into(new ArrayList<Document>());
+	}
+
+	private List<Future<TransactionArchive>> reconstructTransactionArchives(ExecutorService executor,
+			List<Document> documents) {
+		List<Future<TransactionArchive>> archives = new ArrayList<Future<TransactionArchive>>();
+		for (int i = 0; i < documents.size(); i++) {
+			final Document document = documents.get(i);
+			Callable<TransactionArchive> callable = new Callable<TransactionArchive>() {
+				public TransactionArchive call() throws Exception {
+					return reconstructTransactionArchive(document);
+				}
+			};
+
+			if (executor == null) {
+				FutureTask<TransactionArchive> future = new FutureTask<TransactionArchive>(callable);
+				future.run();
+				archives.add(future);
+			} else {
+				archives.add(executor.submit(callable));
+			}
+		}
+		return archives;
+	}
+
 	@SuppressWarnings("unchecked")
 	public TransactionArchive reconstructTransactionArchive(Document document) throws Exception {
 		XidFactory compensableXidFactory = this.beanFactory.getCompensableXidFactory();
@@ -563,16 +965,11 @@ public class MongoCompensableLogger implements CompensableLogger, CompensableEnd
 
 		TransactionArchive archive = new TransactionArchive();
 
-		String global = document.getString(CONSTANTS_FD_GLOBAL);
-		byte[] globalByteArray = ByteUtils.stringToByteArray(global);
+		byte[] globalByteArray = MongoSchemaUtils.decode(document.get(CONSTANTS_FD_GLOBAL));
 		TransactionXid globalXid = compensableXidFactory.createGlobalXid(globalByteArray);
 		archive.setXid(globalXid);
 
-		String textVariables = document.getString("variables");
-		byte[] variablesByteArray = null;
-		if (StringUtils.isNotBlank(textVariables) && StringUtils.equals(textVariables, "null") == false) {
-			variablesByteArray = ByteUtils.stringToByteArray(textVariables);
-		}
+		byte[] variablesByteArray = MongoSchemaUtils.decode(document.get("variables"));
 
 		if (variablesByteArray == null || variablesByteArray.length == 0) {
 			archive.setVariables(new HashMap<String, Serializable>());
@@ -594,6 +991,15 @@ public class MongoCompensableLogger implements CompensableLogger, CompensableEnd
 		archive.getRemoteResources().addAll(this.constructParticipantList(document));
 		archive.getCompensableResourceList().addAll(this.constructCompensableList(document));
 
+		// the snapshot of a legacy document is left incomplete, so that it's rewritten(migrated) by the next update.
+		ArchiveSnapshot snapshot = new ArchiveSnapshot();
+		Integer schema = document.getInteger(MongoSchemaUtils.CONSTANTS_FD_SCHEMA);
+		if (schema != null && schema.intValue() == this.schemaVersion) {
+			this.resetSnapshot(snapshot, document, document.get("participants", Document.class),
+					document.get("compensables", Document.class));
+		}
+		archive.setSnapshot(snapshot);
+
 		return archive;
 	}
 
@@ -608,8 +1014,8 @@ public class MongoCompensableLogger implements CompensableLogger, CompensableEnd
 
 			XAResourceArchive participant = new XAResourceArchive();
 
-			String gxid = element.getString(CONSTANTS_FD_GLOBAL);
-			String bxid = element.getString(CONSTANTS_FD_BRANCH);
+			Object gxid = element.get(CONSTANTS_FD_GLOBAL);
+			Object bxid = element.get(CONSTANTS_FD_BRANCH);
 
 			String descriptorType = element.getString("type");
 			String identifier = element.getString("resource");
@@ -621,8 +1027,8 @@ public class MongoCompensableLogger implements CompensableLogger, CompensableEnd
 			boolean completed = element.getBoolean("completed");
 			boolean heuristic = element.getBoolean("heuristic");
 
-			byte[] globalTransactionId = ByteUtils.stringToByteArray(gxid);
-			byte[] branchQualifier = ByteUtils.stringToByteArray(bxid);
+			byte[] globalTransactionId = MongoSchemaUtils.decode(gxid);
+			byte[] branchQualifier = MongoSchemaUtils.decode(bxid);
 			TransactionXid globalId = compensableXidFactory.createGlobalXid(globalTransactionId);
 			TransactionXid branchId = compensableXidFactory.createBranchXid(globalId, branchQualifier);
 			participant.setXid(branchId);
@@ -651,7 +1057,6 @@ public class MongoCompensableLogger implements CompensableLogger, CompensableEnd
 
 	private List<CompensableArchive> constructCompensableList(Document document) throws Exception {
 		XidFactory transactionXidFactory = this.beanFactory.getTransactionXidFactory();
-		ClassLoader cl = Thread.currentThread().getContextClassLoader();
 
 		List<CompensableArchive> resourceList = new ArrayList<CompensableArchive>();
 
@@ -661,8 +1066,8 @@ public class MongoCompensableLogger implements CompensableLogger, CompensableEnd
 			Document element = compensables.get(key, Document.class);
 			CompensableArchive service = new CompensableArchive();
 
-			String gxid = element.getString(CONSTANTS_FD_GLOBAL);
-			String bxid = element.getString(CONSTANTS_FD_BRANCH);
+			Object gxid = element.get(CONSTANTS_FD_GLOBAL);
+			Object bxid = element.get(CONSTANTS_FD_BRANCH);
 
 			boolean coordinatorFlag = element.getBoolean("coordinator");
 			boolean tried = element.getBoolean("tried");
@@ -672,31 +1077,19 @@ public class MongoCompensableLogger implements CompensableLogger, CompensableEnd
 			boolean simplified = element.getBoolean("simplified");
 			String confirmableKey = element.getString("confirmable_key");
 			String cancellableKey = element.getString("cancellable_key");
-			String argsValue = element.getString("args");
+			Object argsValue = element.get("args");
 			String clazzName = element.getString("interface");
 			String methodDesc = element.getString("method");
 
 			String transactionKey = element.getString("transaction_key");
 			String compensableKey = element.getString("compensable_key");
 
-			String transactionXid = element.getString("transaction_xid");
-			String compensableXid = element.getString("compensable_xid");
-
-			CompensableInvocationImpl invocation = new CompensableInvocationImpl();
-			invocation.setIdentifier(serviceId);
-			invocation.setSimplified(simplified);
-
-			Class<?> clazz = cl.loadClass(clazzName);
-			Method method = SerializeUtils.deserializeMethod(clazz, methodDesc);
-			invocation.setMethod(method);
-
-			byte[] argsByteArray = ByteUtils.stringToByteArray(argsValue);
-			Object[] args = (Object[]) SerializeUtils.deserializeObject(argsByteArray);
-			invocation.setArgs(args);
-
-			invocation.setConfirmableKey(confirmableKey);
-			invocation.setCancellableKey(cancellableKey);
+			Object transactionXid = element.get("transaction_xid");
+			Object compensableXid = element.get("compensable_xid");
 
+			byte[] argsByteArray = MongoSchemaUtils.decode(argsValue);
+			RecoveredCompensableInvocation invocation = new RecoveredCompensableInvocation(clazzName, methodDesc,
+					argsByteArray, serviceId, simplified, confirmableKey, cancellableKey);
 			service.setCompensable(invocation);
 
 			service.setConfirmed(confirmed);
@@ -707,38 +1100,11 @@ public class MongoCompensableLogger implements CompensableLogger, CompensableEnd
 			service.setTransactionResourceKey(transactionKey);
 			service.setCompensableResourceKey(compensableKey);
 
-			String[] transactionArray = transactionXid.split("\\s*\\-\\s*");
-			if (transactionArray.length == 3) {
-				String transactionGlobalId = transactionArray[1];
-				String transactionBranchId = transactionArray[2];
-				TransactionXid transactionGlobalXid = transactionXidFactory
-						.createGlobalXid(ByteUtils.stringToByteArray(transactionGlobalId));
-				if (StringUtils.isNotBlank(transactionBranchId)) {
-					TransactionXid transactionBranchXid = transactionXidFactory.createBranchXid(transactionGlobalXid,
-							ByteUtils.stringToByteArray(transactionBranchId));
-					service.setTransactionXid(transactionBranchXid);
-				} else {
-					service.setTransactionXid(transactionGlobalXid);
-				}
-			}
-
-			String[] compensableArray = compensableXid.split("\\s*\\-\\s*");
-			if (compensableArray.length == 3) {
-				String compensableGlobalId = compensableArray[1];
-				String compensableBranchId = compensableArray[2];
-				TransactionXid compensableGlobalXid = transactionXidFactory
-						.createGlobalXid(ByteUtils.stringToByteArray(compensableGlobalId));
-				if (StringUtils.isNotBlank(compensableBranchId)) {
-					TransactionXid compensableBranchXid = transactionXidFactory.createBranchXid(compensableGlobalXid,
-							ByteUtils.stringToByteArray(compensableBranchId));
-					service.setCompensableXid(compensableBranchXid);
-				} else {
-					service.setCompensableXid(compensableGlobalXid);
-				}
-			}
+			service.setTransactionXid(this.decodeXid(transactionXidFactory, transactionXid));
+			service.setCompensableXid(this.decodeXid(transactionXidFactory, compensableXid));
 
-			byte[] globalTransactionId = ByteUtils.stringToByteArray(gxid);
-			byte[] branchQualifier = ByteUtils.stringToByteArray(bxid);
+			byte[] globalTransactionId = MongoSchemaUtils.decode(gxid);
+			byte[] branchQualifier = MongoSchemaUtils.decode(bxid);
 			TransactionXid globalId = transactionXidFactory.createGlobalXid(globalTransactionId);
 			TransactionXid branchId = transactionXidFactory.createBranchXid(globalId, branchQualifier);
 			service.setIdentifier(branchId);
@@ -749,6 +1115,50 @@ public class MongoCompensableLogger implements CompensableLogger, CompensableEnd
 		return resourceList;
 	}
 
+	/**
+	 * The xid is stored as an embedded document in schema version 2, and as its text(formatId-gxid-bxid) in version 1.
+	 */
+	private Object encodeXid(Xid xid) {
+		if (this.schemaVersion < MongoSchemaUtils.SCHEMA_VERSION_BINARY) {
+			return String.valueOf(xid);
+		} else if (xid == null) {
+			return null;
+		}
+
+		Document document = new Document();
+		document.append("format", xid.getFormatId());
+		document.append(CONSTANTS_FD_GLOBAL, MongoSchemaUtils.encode(xid.getGlobalTransactionId(), this.schemaVersion));
+		document.append(CONSTANTS_FD_BRANCH, MongoSchemaUtils.encode(xid.getBranchQualifier(), this.schemaVersion));
+		return document;
+	}
+
+	private TransactionXid decodeXid(XidFactory xidFactory, Object value) {
+		byte[] globalByteArray = null;
+		byte[] branchByteArray = null;
+		if (Document.class.isInstance(value)) {
+			Document document = (Document) value;
+			globalByteArray = MongoSchemaUtils.decode(document.get(CONSTANTS_FD_GLOBAL));
+			branchByteArray = MongoSchemaUtils.decode(document.get(CONSTANTS_FD_BRANCH));
+		} else if (value != null) {
+			String[] array = String.valueOf(value).split("\\s*\\-\\s*");
+			if (array.length != 3) {
+				return null;
+			}
+			globalByteArray = ByteUtils.stringToByteArray(array[1]);
+			branchByteArray = StringUtils.isBlank(array[2]) ? null : ByteUtils.stringToByteArray(array[2]);
+		}
+
+		if (globalByteArray == null) {
+			return null;
+		}
+
+		TransactionXid globalXid = xidFactory.createGlobalXid(globalByteArray);
+		if (branchByteArray == null || branchByteArray.length == 0) {
+			return globalXid;
+		}
+		return xidFactory.createBranchXid(globalXid, branchByteArray);
+	}
+
 	public void afterSingletonsInstantiated() {
 		try {
 			this.afterPropertiesSet();
@@ -764,9 +1174,7 @@ public class MongoCompensableLogger implements CompensableLogger, CompensableEnd
 	}
 
 	private void createTransactionsGlobalTxKeyIndexIfNecessary() {
-		String databaseName = CommonUtils.getApplication(this.endpoint).replaceAll("\\W", "_");
-		MongoDatabase database = this.mongoClient.getDatabase(databaseName);
-		MongoCollection<Document> transactions = database.getCollection(CONSTANTS_TB_TRANSACTIONS);
+		MongoCollection<Document> transactions = this.collectionRegistry.getCollection(CONSTANTS_TB_TRANSACTIONS);
 		ListIndexesIterable<Document> transactionIndexList = transactions.listIndexes();
 		boolean transactionIndexExists = false;
 		MongoCursor<Document> transactionCursor = null;
@@ -803,6 +1211,62 @@ public class MongoCompensableLogger implements CompensableLogger, CompensableEnd
 		this.initializeEnabled = initializeEnabled;
 	}
 
+	public int getSchemaVersion() {
+		return schemaVersion;
+	}
+
+	public void setSchemaVersion(int schemaVersion) {
+		this.schemaVersion = schemaVersion;
+	}
+
+	public boolean isGroupCommitEnabled() {
+		return groupCommitEnabled;
+	}
+
+	public void setGroupCommitEnabled(boolean groupCommitEnabled) {
+		this.groupCommitEnabled = groupCommitEnabled;
+	}
+
+	public int getGroupCommitSize() {
+		return groupCommitSize;
+	}
+
+	public void setGroupCommitSize(int groupCommitSize) {
+		this.groupCommitSize = groupCommitSize;
+	}
+
+	public long getGroupCommitInterval() {
+		return groupCommitInterval;
+	}
+
+	public void setGroupCommitInterval(long groupCommitInterval) {
+		this.groupCommitInterval = groupCommitInterval;
+	}
+
+	public long getGroupCommitTimeout() {
+		return groupCommitTimeout;
+	}
+
+	public void setGroupCommitTimeout(long groupCommitTimeout) {
+		this.groupCommitTimeout = groupCommitTimeout;
+	}
+
+	public int getRecoverPageSize() {
+		return recoverPageSize;
+	}
+
+	public void setRecoverPageSize(int recoverPageSize) {
+		this.recoverPageSize = recoverPageSize;
+	}
+
+	public int getRecoverThreads() {
+		return recoverThreads;
+	}
+
+	public void setRecoverThreads(int recoverThreads) {
+		this.recoverThreads = recoverThreads;
+	}
+
 	public CompensableBeanFactory getBeanFactory() {
 		return this.beanFactory;
 	}
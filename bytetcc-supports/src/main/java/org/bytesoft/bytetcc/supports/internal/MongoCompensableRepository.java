@@ -58,11 +58,10 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.SmartInitializingSingleton;
 
 import com.mongodb.client.FindIterable;
-import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
-import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
 import com.mongodb.client.result.UpdateResult;
 
 public class MongoCompensableRepository implements TransactionRepository, CompensableRolledbackMarker, CompensableEndpointAware,
@@ -75,8 +74,8 @@ public class MongoCompensableRepository implements TransactionRepository, Compen
 
 	@javax.annotation.Resource
 	private CuratorFramework curatorFramework;
-	@javax.annotation.Resource
-	private MongoClient mongoClient;
+	@javax.inject.Inject
+	private MongoCollectionRegistry collectionRegistry;
 	private String endpoint;
 	@javax.inject.Inject
 	private CompensableInstVersionManager versionManager;
@@ -87,6 +86,11 @@ public class MongoCompensableRepository implements TransactionRepository, Compen
 
 	private long rollbackEntryExpireTime = 1000L * 60 * 5;
 
+	private int transactionCacheSize = 0;
+	private long transactionCacheExpireMillis = 10000L;
+	private final MongoTransactionCache transactionCache = //
+			new MongoTransactionCache(this.transactionCacheSize, this.transactionCacheExpireMillis);
+
 	public void afterSingletonsInstantiated() {
 		try {
 			this.afterPropertiesSet();
@@ -151,6 +155,8 @@ public class MongoCompensableRepository implements TransactionRepository, Compen
 			byte[] globalByteArray = ByteUtils.stringToByteArray(global);
 			final TransactionXid transactionXid = xidFactory.createGlobalXid(globalByteArray);
 
+			this.invalidateTransaction(transactionXid); // marked as rollback-only by another instance
+
 			CompensableManagerImpl compensableManager = (CompensableManagerImpl) this.beanFactory.getCompensableManager();
 			CompensableTransactionImpl transaction = //
 					(CompensableTransactionImpl) compensableManager.getTransaction(transactionXid);
@@ -235,23 +241,21 @@ public class MongoCompensableRepository implements TransactionRepository, Compen
 	private void markTransactionRollback(TransactionXid transactionXid) {
 		try {
 			byte[] global = transactionXid.getGlobalTransactionId();
-			String identifier = ByteUtils.byteArrayToString(global);
 
-			String application = CommonUtils.getApplication(this.endpoint);
-
-			String databaseName = application.replaceAll("\\W", "_");
-			MongoDatabase mdb = this.mongoClient.getDatabase(databaseName);
-			MongoCollection<Document> collection = mdb.getCollection(CONSTANTS_TB_TRANSACTIONS);
+			MongoCollection<Document> collection = this.collectionRegistry.getCollection(CONSTANTS_TB_TRANSACTIONS);
 
 			Document document = new Document();
 			document.append("$set", new Document("status", Status.STATUS_MARKED_ROLLBACK));
+			MongoSchemaUtils.revise(document);
 
-			Bson globalFilter = Filters.eq(CONSTANTS_FD_GLOBAL, identifier);
+			Bson globalFilter = MongoSchemaUtils.keyFilter(CONSTANTS_FD_GLOBAL, global);
 			Bson statusFilter = Filters.eq("status", Status.STATUS_ACTIVE);
 
 			collection.updateOne(Filters.and(globalFilter, statusFilter), document);
 		} catch (RuntimeException error) {
 			logger.error("Error occurred while setting the error flag.", error);
+		} finally {
+			this.invalidateTransaction(transactionXid);
 		}
 	}
 
@@ -266,34 +270,91 @@ public class MongoCompensableRepository implements TransactionRepository, Compen
 			return transaction;
 		}
 
-		return this.getTransactionFromMongoDB(xid);
+		if (this.transactionCacheSize <= 0) {
+			return this.reconstructTransaction(this.getDocumentFromMongoDB(xid));
+		}
+
+		// the document is cached rather than the transaction, since the transaction and its snapshot are mutable and
+		// may be changed by the caller, each hit gets a transaction of its own. A hit is validated against the revision
+		// of the persisted document, so that the writes of the other instances are not missed.
+		String identifier = ByteUtils.byteArrayToString(xid.getGlobalTransactionId());
+		Document document = this.transactionCache.get(identifier);
+		if (document != null && this.isDocumentUpToDate(xid, document)) {
+			return this.reconstructTransaction(document);
+		}
+
+		Object token = this.transactionCache.beginLoad(identifier);
+		try {
+			document = this.getDocumentFromMongoDB(xid);
+		} finally {
+			this.transactionCache.put(identifier, token, document);
+		}
+
+		logger.debug("Transaction cache missed(hits= {}, misses= {}, evictions= {}).",
+				this.transactionCache.getHitCount(), this.transactionCache.getMissCount(),
+				this.transactionCache.getEvictionCount());
+
+		return this.reconstructTransaction(document);
 	}
 
-	private Transaction getTransactionFromMongoDB(TransactionXid xid) throws TransactionException {
-		TransactionRecovery compensableRecovery = this.beanFactory.getCompensableRecovery();
-		CompensableLogger compensableLogger = this.beanFactory.getCompensableLogger();
+	/**
+	 * Discards the cached transaction, which is invoked whenever the document of the transaction is changed.
+	 */
+	public void invalidateTransaction(TransactionXid xid) {
+		String identifier = ByteUtils.byteArrayToString(xid.getGlobalTransactionId());
+		this.transactionCache.invalidate(identifier);
+	}
+
+	private boolean isDocumentUpToDate(TransactionXid xid, Document document) throws TransactionException {
+		Object revision = document.get(MongoSchemaUtils.CONSTANTS_FD_REVISION);
+		if (revision == null) {
+			return false; // written by a legacy instance, which does not maintain the revision
+		}
 
 		MongoCursor<Document> transactionCursor = null;
 		try {
-			String application = CommonUtils.getApplication(this.endpoint);
+			MongoCollection<Document> transactions = this.collectionRegistry.getCollection(CONSTANTS_TB_TRANSACTIONS);
+			Bson globalFilter = MongoSchemaUtils.keyFilter(CONSTANTS_FD_GLOBAL, xid.getGlobalTransactionId());
+			transactionCursor = transactions.find(globalFilter)
+					.projection(Projections.include(MongoSchemaUtils.CONSTANTS_FD_REVISION)).iterator();
+			Document current = transactionCursor.hasNext() ? transactionCursor.next() : null;
+			return current != null && revision.equals(current.get(MongoSchemaUtils.CONSTANTS_FD_REVISION));
+		} catch (RuntimeException error) {
+			logger.error("Error occurred while getting transaction.", error);
+			throw new TransactionException(XAException.XAER_RMERR);
+		} finally {
+			IOUtils.closeQuietly(transactionCursor);
+		}
+	}
 
-			String databaseName = application.replaceAll("\\W", "_");
-			MongoDatabase mdb = this.mongoClient.getDatabase(databaseName);
-			MongoCollection<Document> transactions = mdb.getCollection(CONSTANTS_TB_TRANSACTIONS);
+	private Document getDocumentFromMongoDB(TransactionXid xid) throws TransactionException {
+		MongoCursor<Document> transactionCursor = null;
+		try {
+			MongoCollection<Document> transactions = this.collectionRegistry.getCollection(CONSTANTS_TB_TRANSACTIONS);
 
 			byte[] global = xid.getGlobalTransactionId();
-			String globalKey = ByteUtils.byteArrayToString(global);
 
-			FindIterable<Document> transactionItr = transactions.find(Filters.eq(CONSTANTS_FD_GLOBAL, globalKey));
+			Bson globalFilter = MongoSchemaUtils.keyFilter(CONSTANTS_FD_GLOBAL, global);
+			FindIterable<Document> transactionItr = transactions.find(globalFilter);
 			transactionCursor = transactionItr.iterator();
-			if (transactionCursor.hasNext() == false) {
-				return null;
-			}
-			Document document = transactionCursor.next();
+			return transactionCursor.hasNext() ? transactionCursor.next() : null;
+		} catch (RuntimeException error) {
+			logger.error("Error occurred while getting transaction.", error);
+			throw new TransactionException(XAException.XAER_RMERR);
+		} finally {
+			IOUtils.closeQuietly(transactionCursor);
+		}
+	}
 
-			MongoCompensableLogger mongoCompensableLogger = (MongoCompensableLogger) compensableLogger;
-			TransactionArchive archive = mongoCompensableLogger.reconstructTransactionArchive(document);
+	private Transaction reconstructTransaction(Document document) throws TransactionException {
+		if (document == null) {
+			return null;
+		}
 
+		TransactionRecovery compensableRecovery = this.beanFactory.getCompensableRecovery();
+		MongoCompensableLogger compensableLogger = (MongoCompensableLogger) this.beanFactory.getCompensableLogger();
+		try {
+			TransactionArchive archive = compensableLogger.reconstructTransactionArchive(document);
 			return compensableRecovery.reconstruct(archive);
 		} catch (RuntimeException error) {
 			logger.error("Error occurred while getting transaction.", error);
@@ -301,12 +362,11 @@ public class MongoCompensableRepository implements TransactionRepository, Compen
 		} catch (Exception error) {
 			logger.error("Error occurred while getting transaction.", error);
 			throw new TransactionException(XAException.XAER_RMERR);
-		} finally {
-			IOUtils.closeQuietly(transactionCursor);
 		}
 	}
 
 	public Transaction removeTransaction(TransactionXid xid) {
+		this.invalidateTransaction(xid);
 		return null;
 	}
 
@@ -314,13 +374,10 @@ public class MongoCompensableRepository implements TransactionRepository, Compen
 		try {
 			TransactionArchive archive = (TransactionArchive) transaction.getTransactionArchive();
 			byte[] global = transactionXid.getGlobalTransactionId();
-			String identifier = ByteUtils.byteArrayToString(global);
 
 			int status = archive.getCompensableStatus();
 
-			String databaseName = CommonUtils.getApplication(this.endpoint).replaceAll("\\W", "_");
-			MongoDatabase mdb = this.mongoClient.getDatabase(databaseName);
-			MongoCollection<Document> collection = mdb.getCollection(CONSTANTS_TB_TRANSACTIONS);
+			MongoCollection<Document> collection = this.collectionRegistry.getCollection(CONSTANTS_TB_TRANSACTIONS);
 
 			Document target = new Document();
 			target.append("modified", this.endpoint);
@@ -331,9 +388,10 @@ public class MongoCompensableRepository implements TransactionRepository, Compen
 
 			Document document = new Document();
 			document.append("$set", target);
-			// document.append("$inc", new BasicDBObject("modified_time", 1));
+			MongoSchemaUtils.revise(document);
 
-			UpdateResult result = collection.updateOne(Filters.eq(CONSTANTS_FD_GLOBAL, identifier), document);
+			Bson globalFilter = MongoSchemaUtils.keyFilter(CONSTANTS_FD_GLOBAL, global);
+			UpdateResult result = collection.updateOne(globalFilter, document);
 			if (result.getMatchedCount() != 1) {
 				throw new IllegalStateException(
 						String.format("Error occurred while updating transaction(matched= %s, modified= %s).",
@@ -341,6 +399,8 @@ public class MongoCompensableRepository implements TransactionRepository, Compen
 			}
 		} catch (RuntimeException error) {
 			logger.error("Error occurred while setting the error flag.", error);
+		} finally {
+			this.invalidateTransaction(transactionXid);
 		}
 	}
 
@@ -350,14 +410,11 @@ public class MongoCompensableRepository implements TransactionRepository, Compen
 
 		MongoCursor<Document> transactionCursor = null;
 		try {
-			String application = CommonUtils.getApplication(this.endpoint);
-			String databaseName = application.replaceAll("\\W", "_");
-			MongoDatabase mdb = this.mongoClient.getDatabase(databaseName);
-			MongoCollection<Document> transactions = mdb.getCollection(CONSTANTS_TB_TRANSACTIONS);
+			MongoCollection<Document> transactions = this.collectionRegistry.getCollection(CONSTANTS_TB_TRANSACTIONS);
 
 			byte[] global = xid.getGlobalTransactionId();
 
-			Bson globalFilter = Filters.eq(CONSTANTS_FD_GLOBAL, ByteUtils.byteArrayToString(global));
+			Bson globalFilter = MongoSchemaUtils.keyFilter(CONSTANTS_FD_GLOBAL, global);
 			Bson errorFilter = Filters.eq("error", true);
 
 			FindIterable<Document> transactionItr = transactions.find(Filters.and(globalFilter, errorFilter));
@@ -395,10 +452,7 @@ public class MongoCompensableRepository implements TransactionRepository, Compen
 
 		MongoCursor<Document> transactionCursor = null;
 		try {
-			String application = CommonUtils.getApplication(this.endpoint);
-			String databaseName = application.replaceAll("\\W", "_");
-			MongoDatabase mdb = this.mongoClient.getDatabase(databaseName);
-			MongoCollection<Document> transactions = mdb.getCollection(CONSTANTS_TB_TRANSACTIONS);
+			MongoCollection<Document> transactions = this.collectionRegistry.getCollection(CONSTANTS_TB_TRANSACTIONS);
 
 			FindIterable<Document> transactionItr = transactions.find(Filters.eq("coordinator", true));
 			for (transactionCursor = transactionItr.iterator(); transactionCursor.hasNext();) {
@@ -448,6 +502,39 @@ public class MongoCompensableRepository implements TransactionRepository, Compen
 		this.rollbackEntryExpireTime = rollbackEntryExpireTime;
 	}
 
+	public int getTransactionCacheSize() {
+		return transactionCacheSize;
+	}
+
+	public void setTransactionCacheSize(int transactionCacheSize) {
+		this.transactionCacheSize = transactionCacheSize;
+		this.transactionCache.setMaxSize(transactionCacheSize);
+		if (transactionCacheSize <= 0) {
+			this.transactionCache.clear();
+		}
+	}
+
+	public long getTransactionCacheExpireMillis() {
+		return transactionCacheExpireMillis;
+	}
+
+	public void setTransactionCacheExpireMillis(long transactionCacheExpireMillis) {
+		this.transactionCacheExpireMillis = transactionCacheExpireMillis;
+		this.transactionCache.setExpireMillis(transactionCacheExpireMillis);
+	}
+
+	public long getTransactionCacheHitCount() {
+		return this.transactionCache.getHitCount();
+	}
+
+	public long getTransactionCacheMissCount() {
+		return this.transactionCache.getMissCount();
+	}
+
+	public long getTransactionCacheEvictionCount() {
+		return this.transactionCache.getEvictionCount();
+	}
+
 	public List<Transaction> getActiveTransactionList() {
 		return new ArrayList<Transaction>();
 	}
@@ -0,0 +1,305 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+
+/**
+ * Coalesces the archive writes of concurrent transactions into ordered bulkWrite batches. The calling thread is blocked
+ * until the batch which contains its write has been acknowledged by mongodb. A write whose caller has timed out before
+ * the write is taken by a batch is cancelled, so that it's never applied after the caller has failed.
+ */
+class MongoGroupCommitWriter implements Runnable {
+	static final Logger logger = LoggerFactory.getLogger(MongoGroupCommitWriter.class);
+
+	private final BlockingQueue<GroupCommitRequest> requestQueue = new LinkedBlockingQueue<GroupCommitRequest>();
+	private final MongoCollection<Document> collection;
+	private final String globalKey;
+	private final int batchSize;
+	private final long interval;
+	private final long timeout;
+
+	private volatile boolean released;
+
+	public MongoGroupCommitWriter(MongoCollection<Document> collection, String globalKey, int batchSize, long interval,
+			long timeout) {
+		this.collection = collection;
+		this.globalKey = globalKey;
+		this.batchSize = batchSize;
+		this.interval = interval;
+		this.timeout = timeout;
+	}
+
+	public void insert(String identifier, Document document) {
+		this.execute(new GroupCommitRequest(identifier, new InsertOneModel<Document>(document), false));
+	}
+
+	public void update(String identifier, Document document) {
+		UpdateOneModel<Document> model = new UpdateOneModel<Document>(
+				MongoSchemaUtils.keyFilter(this.globalKey, identifier), document);
+		this.execute(new GroupCommitRequest(identifier, model, true));
+	}
+
+	private void execute(GroupCommitRequest request) {
+		if (this.released) {
+			throw new IllegalStateException("The group-commit writer has been released!");
+		}
+
+		this.requestQueue.offer(request);
+		if (this.released && this.requestQueue.remove(request)) {
+			this.flush(Collections.singletonList(request)); // the flusher has been released, write it by the caller
+		} // end-if (this.released && this.requestQueue.remove(request))
+
+		try {
+			if (request.latch.await(this.timeout, TimeUnit.MILLISECONDS) == false) {
+				this.cancel(request);
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			this.cancel(request);
+		}
+
+		if (request.error != null) {
+			throw request.error;
+		}
+	}
+
+	public void run() {
+		while (this.released == false) {
+			List<GroupCommitRequest> batch = new ArrayList<GroupCommitRequest>();
+			try {
+				GroupCommitRequest first = this.requestQueue.poll(100L, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				batch.add(first);
+
+				long deadline = System.currentTimeMillis() + this.interval;
+				while (batch.size() < this.batchSize) {
+					this.requestQueue.drainTo(batch, this.batchSize - batch.size());
+					long millis = deadline - System.currentTimeMillis();
+					if (batch.size() >= this.batchSize || millis <= 0) {
+						break;
+					}
+					GroupCommitRequest request = this.requestQueue.poll(millis, TimeUnit.MILLISECONDS);
+					if (request == null) {
+						break;
+					}
+					batch.add(request);
+				}
+			} catch (InterruptedException ex) {
+				logger.debug(ex.getMessage(), ex);
+			}
+
+			try {
+				this.flush(batch);
+			} catch (RuntimeException ex) {
+				logger.error("Error occurred while flushing the group-commit batch.", ex);
+				this.complete(batch, new IllegalStateException("Error occurred while writing transaction.", ex));
+			}
+		} // end-while (this.released == false)
+
+		while (this.requestQueue.isEmpty() == false) {
+			List<GroupCommitRequest> remains = new ArrayList<GroupCommitRequest>();
+			this.requestQueue.drainTo(remains);
+			this.flush(remains);
+		} // end-while (this.requestQueue.isEmpty() == false)
+	}
+
+	/**
+	 * Gives up the request whose caller has stopped waiting. A request which has not been taken by a batch yet is
+	 * cancelled, otherwise its write is in flight and its acknowledgement is awaited once more, since it may have been
+	 * applied already.
+	 */
+	private void cancel(GroupCommitRequest request) {
+		if (request.state.compareAndSet(GroupCommitRequest.STATE_PENDING, GroupCommitRequest.STATE_CANCELLED)) {
+			this.requestQueue.remove(request);
+			throw new IllegalStateException(String.format(
+					"Timed out waiting for the group-commit acknowledgement, the write is cancelled(timeout= %s).",
+					this.timeout));
+		}
+
+		boolean interrupted = Thread.interrupted();
+		try {
+			if (request.latch.await(this.timeout, TimeUnit.MILLISECONDS) == false) {
+				throw new IllegalStateException(String.format(
+						"Timed out waiting for the group-commit acknowledgement, the result is unknown(timeout= %s).",
+						this.timeout));
+			}
+		} catch (InterruptedException ex) {
+			interrupted = true;
+			throw new IllegalStateException("Interrupted while waiting for the group-commit acknowledgement.", ex);
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private void flush(List<GroupCommitRequest> batch) {
+		List<GroupCommitRequest> remains = new ArrayList<GroupCommitRequest>();
+		for (int i = 0; i < batch.size(); i++) {
+			GroupCommitRequest request = batch.get(i);
+			if (request.state.compareAndSet(GroupCommitRequest.STATE_PENDING, GroupCommitRequest.STATE_TAKEN)) {
+				remains.add(request);
+			} // the cancelled ones are skipped
+		}
+
+		while (remains.isEmpty() == false) {
+			List<WriteModel<Document>> models = new ArrayList<WriteModel<Document>>();
+			for (int i = 0; i < remains.size(); i++) {
+				models.add(remains.get(i).model);
+			}
+
+			try {
+				BulkWriteResult result = this.collection.bulkWrite(models, new BulkWriteOptions().ordered(true));
+				this.checkMatchedCount(remains, result.getMatchedCount());
+				this.complete(remains, null);
+				remains = new ArrayList<GroupCommitRequest>();
+			} catch (MongoBulkWriteException ex) {
+				List<BulkWriteError> errors = ex.getWriteErrors();
+				if (errors.isEmpty()) {
+					// write concern error, the durability of none of the requests is guaranteed.
+					this.complete(remains, new IllegalStateException(
+							String.format("Error occurred while writing transaction(code= %s).", ex.getCode()), ex));
+					remains = new ArrayList<GroupCommitRequest>();
+					continue;
+				}
+
+				int index = errors.get(0).getIndex();
+
+				List<GroupCommitRequest> executed = remains.subList(0, index);
+				this.checkMatchedCount(executed, ex.getWriteResult().getMatchedCount());
+				this.complete(executed, null);
+
+				this.complete(remains.subList(index, index + 1), new IllegalStateException(
+						String.format("Error occurred while writing transaction(code= %s).", ex.getCode()), ex));
+
+				// the requests after the failed one have not been executed, since the bulk write is ordered.
+				remains = new ArrayList<GroupCommitRequest>(remains.subList(index + 1, remains.size()));
+			} catch (RuntimeException ex) {
+				this.complete(remains, new IllegalStateException("Error occurred while writing transaction.", ex));
+				remains = new ArrayList<GroupCommitRequest>();
+			}
+		} // end-while (remains.isEmpty() == false)
+	}
+
+	/**
+	 * The bulk result only reports the total matched count, locate the update requests whose document does not exist
+	 * when the total does not match.
+	 */
+	private void checkMatchedCount(List<GroupCommitRequest> requests, int matchedCount) {
+		Set<String> identifiers = new HashSet<String>();
+		int expectedCount = 0;
+		for (int i = 0; i < requests.size(); i++) {
+			GroupCommitRequest request = requests.get(i);
+			if (request.update) {
+				expectedCount++;
+				identifiers.add(request.identifier);
+			}
+		}
+
+		if (matchedCount >= expectedCount) {
+			return;
+		}
+
+		Set<String> existsSet = new HashSet<String>();
+		MongoCursor<Document> cursor = null;
+		try {
+			cursor = this.collection.find(MongoSchemaUtils.keysFilter(this.globalKey, identifiers))
+					.projection(Projections.include(this.globalKey)).iterator();
+			while (cursor.hasNext()) {
+				existsSet.add(MongoSchemaUtils.toText(cursor.next().get(this.globalKey)));
+			}
+		} catch (RuntimeException ex) {
+			logger.error("Error occurred while checking the matched count of the group-commit batch.", ex);
+			existsSet.clear(); // unable to locate the unmatched requests, treat all of them as failed.
+		} finally {
+			IOUtils.closeQuietly(cursor);
+		}
+
+		for (int i = 0; i < requests.size(); i++) {
+			GroupCommitRequest request = requests.get(i);
+			if (request.update && existsSet.contains(request.identifier) == false) {
+				request.error = new IllegalStateException(
+						String.format("Error occurred while updating transaction(matched= 0, identifier= %s).",
+								request.identifier));
+			}
+		}
+	}
+
+	private void complete(List<GroupCommitRequest> requests, RuntimeException error) {
+		for (int i = 0; i < requests.size(); i++) {
+			GroupCommitRequest request = requests.get(i);
+			if (error != null) {
+				request.error = error;
+			}
+			request.latch.countDown();
+		}
+	}
+
+	/**
+	 * Stops the flusher, the requests which have been queued are flushed before it exits.
+	 */
+	public void release() {
+		this.released = true;
+	}
+
+	static class GroupCommitRequest {
+		static final int STATE_PENDING = 0;
+		static final int STATE_TAKEN = 1;
+		static final int STATE_CANCELLED = 2;
+
+		final AtomicInteger state = new AtomicInteger(STATE_PENDING);
+		final String identifier;
+		final WriteModel<Document> model;
+		final boolean update;
+		final CountDownLatch latch = new CountDownLatch(1);
+		volatile RuntimeException error;
+
+		GroupCommitRequest(String identifier, WriteModel<Document> model, boolean update) {
+			this.identifier = identifier;
+			this.model = model;
+			this.update = update;
+		}
+	}
+
+}
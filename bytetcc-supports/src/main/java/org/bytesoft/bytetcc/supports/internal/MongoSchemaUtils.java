@@ -0,0 +1,114 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.Binary;
+import org.bytesoft.common.utils.ByteUtils;
+
+import com.mongodb.client.model.Filters;
+
+/**
+ * Encoding of the byte array fields(gxid, bxid, args, variables) of the mongodb documents. Schema version 1 stores them
+ * as hex strings, version 2 stores them as BSON binary. Both of them are accepted when reading, the documents of version
+ * 1 are migrated to version 2 once they are rewritten by an instance whose schema version is 2.
+ */
+public final class MongoSchemaUtils {
+	public static final String CONSTANTS_FD_SCHEMA = "schema";
+	public static final String CONSTANTS_FD_REVISION = "revision";
+
+	public static final int SCHEMA_VERSION_TEXT = 1;
+	public static final int SCHEMA_VERSION_BINARY = 2;
+
+	private MongoSchemaUtils() {
+	}
+
+	public static Object encode(byte[] byteArray, int schemaVersion) {
+		if (byteArray == null) {
+			return null;
+		} else if (schemaVersion >= SCHEMA_VERSION_BINARY) {
+			return new Binary(byteArray);
+		} else {
+			return ByteUtils.byteArrayToString(byteArray);
+		}
+	}
+
+	public static byte[] decode(Object value) {
+		if (value == null) {
+			return null;
+		} else if (Binary.class.isInstance(value)) {
+			return ((Binary) value).getData();
+		} else if (byte[].class.isInstance(value)) {
+			return (byte[]) value;
+		} else {
+			String text = String.valueOf(value);
+			if (StringUtils.isBlank(text) || StringUtils.equals(text, "null")) {
+				return null;
+			}
+			return ByteUtils.stringToByteArray(text);
+		}
+	}
+
+	/**
+	 * @return the hex string of the value, used as the map key of the embedded documents and in the log messages.
+	 */
+	public static String toText(Object value) {
+		if (value == null) {
+			return null;
+		} else if (String.class.isInstance(value)) {
+			return (String) value;
+		} else {
+			byte[] byteArray = decode(value);
+			return byteArray == null ? null : ByteUtils.byteArrayToString(byteArray);
+		}
+	}
+
+	/**
+	 * Increases the revision of the transaction document by the update, each write of the document does so, so that a
+	 * copy of the document can be validated by reading its revision only.
+	 */
+	public static Document revise(Document update) {
+		update.append("$inc", new Document(CONSTANTS_FD_REVISION, 1L));
+		return update;
+	}
+
+	/**
+	 * Matches the key written in either of the schema versions, both of them are served by the index of the field.
+	 */
+	public static Bson keyFilter(String fieldName, byte[] byteArray) {
+		return Filters.in(fieldName, new Binary(byteArray), ByteUtils.byteArrayToString(byteArray));
+	}
+
+	public static Bson keyFilter(String fieldName, String identifier) {
+		return keyFilter(fieldName, ByteUtils.stringToByteArray(identifier));
+	}
+
+	public static Bson keysFilter(String fieldName, Collection<String> identifiers) {
+		List<Object> values = new ArrayList<Object>();
+		for (String identifier : identifiers) {
+			values.add(new Binary(ByteUtils.stringToByteArray(identifier)));
+			values.add(identifier);
+		}
+		return Filters.in(fieldName, values);
+	}
+
+}
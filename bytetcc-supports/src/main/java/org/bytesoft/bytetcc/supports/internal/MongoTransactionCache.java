@@ -0,0 +1,147 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports.internal;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bson.Document;
+
+/**
+ * LRU cache of the transaction documents loaded from mongodb, keyed by the global transaction id. An entry expires
+ * after expireMillis, and is discarded as soon as the document is changed locally. A load which is overlapped by an
+ * invalidation of the same key is not cached, so that a stale document is never put back. The repository validates a
+ * hit against the revision of the persisted document, and reconstructs a transaction of its own from it.
+ */
+class MongoTransactionCache {
+
+	private final Map<String, CacheEntry> entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+			boolean removeRequired = this.size() > maxSize;
+			if (removeRequired) {
+				evictionCount.incrementAndGet();
+			}
+			return removeRequired;
+		}
+	};
+	private final Map<String, Object> loadings = new HashMap<String, Object>();
+
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	private volatile int maxSize;
+	private volatile long expireMillis;
+
+	public MongoTransactionCache(int maxSize, long expireMillis) {
+		this.maxSize = maxSize;
+		this.expireMillis = expireMillis;
+	}
+
+	public synchronized Document get(String key) {
+		CacheEntry entry = this.entries.get(key);
+		if (entry != null && entry.expiredAt <= System.currentTimeMillis()) {
+			this.entries.remove(key);
+			this.evictionCount.incrementAndGet();
+			entry = null;
+		}
+
+		if (entry == null) {
+			this.missCount.incrementAndGet();
+			return null;
+		}
+
+		this.hitCount.incrementAndGet();
+		return entry.document;
+	}
+
+	/**
+	 * @return the token which should be passed to put once the document has been loaded.
+	 */
+	public synchronized Object beginLoad(String key) {
+		Object token = new Object();
+		this.loadings.put(key, token);
+		return token;
+	}
+
+	public synchronized void put(String key, Object token, Document document) {
+		if (this.loadings.get(key) != token) {
+			return; // invalidated or reloaded while loading
+		}
+
+		this.loadings.remove(key);
+		if (document != null && this.maxSize > 0) {
+			this.entries.put(key, new CacheEntry(document, System.currentTimeMillis() + this.expireMillis));
+		}
+	}
+
+	public synchronized void invalidate(String key) {
+		this.loadings.remove(key);
+		this.entries.remove(key);
+	}
+
+	public synchronized void clear() {
+		this.loadings.clear();
+		this.entries.clear();
+	}
+
+	public synchronized int size() {
+		return this.entries.size();
+	}
+
+	public long getHitCount() {
+		return this.hitCount.get();
+	}
+
+	public long getMissCount() {
+		return this.missCount.get();
+	}
+
+	public long getEvictionCount() {
+		return this.evictionCount.get();
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	public long getExpireMillis() {
+		return expireMillis;
+	}
+
+	public void setExpireMillis(long expireMillis) {
+		this.expireMillis = expireMillis;
+	}
+
+	static class CacheEntry {
+		final Document document;
+		final long expiredAt;
+
+		CacheEntry(Document document, long expiredAt) {
+			this.document = document;
+			this.expiredAt = expiredAt;
+		}
+	}
+
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports.internal;
+
+import java.lang.reflect.Method;
+
+import org.apache.commons.lang3.StringUtils;
+import org.bytesoft.bytetcc.supports.CompensableInvocationImpl;
+import org.bytesoft.common.utils.SerializeUtils;
+import org.bytesoft.compensable.CompensableInvocation;
+import org.bytesoft.compensable.logging.LazyCompensableInvocation;
+
+/**
+ * Compensable invocation read from the database(mongodb or jdbc), the plain fields are available at once while the
+ * class, the method and the args are resolved when they are accessed for the first time. Until then the original fields
+ * are written back as is. They are resolved by the context class loader of the thread which read the record, rather
+ * than the one of the thread which happens to access them.
+ */
+class RecoveredCompensableInvocation extends LazyCompensableInvocation {
+	private static final long serialVersionUID = 1L;
+
+	private final String className;
+	private final String methodDesc;
+	private final byte[] argsByteArray;
+	private final Object identifier;
+	private final boolean simplified;
+	private final String confirmableKey;
+	private final String cancellableKey;
+	private transient final ClassLoader classLoader;
+
+	public RecoveredCompensableInvocation(String className, String methodDesc, byte[] argsByteArray, Object identifier,
+			boolean simplified, String confirmableKey, String cancellableKey) {
+		this.className = className;
+		this.methodDesc = methodDesc;
+		this.argsByteArray = argsByteArray;
+		this.identifier = identifier;
+		this.simplified = simplified;
+		this.confirmableKey = confirmableKey;
+		this.cancellableKey = cancellableKey;
+		this.classLoader = Thread.currentThread().getContextClassLoader();
+	}
+
+	protected CompensableInvocation decode() throws Exception {
+		Thread current = Thread.currentThread();
+		ClassLoader original = current.getContextClassLoader();
+		ClassLoader cl = this.classLoader == null ? original : this.classLoader;
+
+		CompensableInvocationImpl invocation = new CompensableInvocationImpl();
+		invocation.setIdentifier(this.identifier);
+		invocation.setSimplified(this.simplified);
+
+		current.setContextClassLoader(cl); // the args are deserialized by the context class loader too
+		try {
+			Class<?> clazz = cl.loadClass(this.className);
+			Method method = SerializeUtils.deserializeMethod(clazz, this.methodDesc);
+			invocation.setMethod(method);
+
+			Object[] args = (Object[]) SerializeUtils.deserializeObject(this.argsByteArray);
+			invocation.setArgs(args);
+		} finally {
+			current.setContextClassLoader(original);
+		}
+
+		invocation.setConfirmableKey(this.confirmableKey);
+		invocation.setCancellableKey(this.cancellableKey);
+
+		return invocation;
+	}
+
+	public String getDeclaringClass() {
+		return this.isDecoded() ? super.getDeclaringClass() : this.className;
+	}
+
+	public String getMethodName() {
+		return this.isDecoded() ? super.getMethodName() : StringUtils.substringBefore(this.methodDesc, "(");
+	}
+
+	public String getConfirmableKey() {
+		return this.isDecoded() ? super.getConfirmableKey() : this.confirmableKey;
+	}
+
+	public String getCancellableKey() {
+		return this.isDecoded() ? super.getCancellableKey() : this.cancellableKey;
+	}
+
+	public boolean isSimplified() {
+		return this.isDecoded() ? super.isSimplified() : this.simplified;
+	}
+
+	public Object getIdentifier() {
+		return this.isDecoded() ? super.getIdentifier() : this.identifier;
+	}
+
+	public String getClassName() {
+		return className;
+	}
+
+	public String getMethodDesc() {
+		return methodDesc;
+	}
+
+	public byte[] getArgsByteArray() {
+		return argsByteArray;
+	}
+
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports.rpc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureCallback;
+import org.springframework.web.client.AsyncRestTemplate;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+/**
+ * Sends the coordinator requests of AsyncRemoteCoordinator through an AsyncRestTemplate, the calling thread is released
+ * as soon as the request has been written. The failures are translated the same way as the blocking coordinators do.
+ */
+@SuppressWarnings("deprecation")
+public final class CoordinatorAsyncInvoker {
+	static final Logger logger = LoggerFactory.getLogger(CoordinatorAsyncInvoker.class);
+
+	private CoordinatorAsyncInvoker() {
+	}
+
+	/**
+	 * @return the XAResource method invoked by the given commitAsync/rollbackAsync/forgetAsync/recoverAsync method.
+	 */
+	public static Method getBlockingMethod(Method method) throws NoSuchMethodException {
+		String methodName = StringUtils.removeEnd(method.getName(), "Async");
+		return XAResource.class.getMethod(methodName, method.getParameterTypes());
+	}
+
+	/**
+	 * Executes the blocking invocation in the current thread, used when no AsyncRestTemplate is available.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> CompletableFuture<T> invokeBlocking(InvocationHandler handler, Object proxy, Method method,
+			Object[] args) {
+		CompletableFuture<T> future = new CompletableFuture<T>();
+		try {
+			Method blockingMethod = getBlockingMethod(method);
+			future.complete((T) handler.invoke(proxy, blockingMethod, args));
+		} catch (Throwable error) {
+			future.completeExceptionally(toXAException(error));
+		}
+		return future;
+	}
+
+	public static <T> CompletableFuture<T> invoke(AsyncRestTemplate restTemplate, HttpMethod httpMethod, String url,
+			Class<T> responseType) {
+		final CompletableFuture<T> future = new CompletableFuture<T>();
+
+		ListenableFuture<ResponseEntity<T>> response = null;
+		try {
+			response = restTemplate.exchange(url, httpMethod, null, responseType, new Object[0]);
+		} catch (RuntimeException rex) {
+			future.completeExceptionally(toXAException(rex));
+			return future;
+		}
+
+		response.addCallback(new ListenableFutureCallback<ResponseEntity<T>>() {
+			public void onSuccess(ResponseEntity<T> result) {
+				future.complete(result == null ? null : result.getBody());
+			}
+
+			public void onFailure(Throwable error) {
+				future.completeExceptionally(toXAException(error));
+			}
+		});
+
+		return future;
+	}
+
+	public static XAException toXAException(Throwable error) {
+		Throwable cause = ExecutionException.class.isInstance(error) && error.getCause() != null ? error.getCause() : error;
+		if (XAException.class.isInstance(cause)) {
+			return (XAException) cause;
+		} else if (HttpClientErrorException.class.isInstance(cause)) {
+			XAException xaEx = new XAException(XAException.XAER_RMFAIL);
+			xaEx.initCause(cause);
+			return xaEx;
+		} else if (HttpServerErrorException.class.isInstance(cause)) {
+			HttpHeaders headers = ((HttpServerErrorException) cause).getResponseHeaders();
+			String failureText = headers == null ? null : StringUtils.trimToNull(headers.getFirst("failure"));
+			String errorText = headers == null ? null : StringUtils.trimToNull(headers.getFirst("XA_XAER"));
+
+			Boolean failure = failureText == null ? null : Boolean.parseBoolean(failureText);
+			Integer errorCode = null;
+			try {
+				errorCode = errorText == null ? null : Integer.parseInt(errorText);
+			} catch (Exception ignore) {
+				logger.debug(ignore.getMessage());
+			}
+
+			XAException xaEx = new XAException(failure != null && errorCode != null ? errorCode : XAException.XAER_RMERR);
+			xaEx.initCause(cause);
+			return xaEx;
+		} else {
+			XAException xaEx = new XAException(XAException.XAER_RMERR);
+			xaEx.initCause(cause);
+			return xaEx;
+		}
+	}
+
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports.rpc;
+
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.env.PropertyResolver;
+import org.springframework.http.client.HttpComponentsAsyncClientHttpRequestFactory;
+import org.springframework.web.client.AsyncRestTemplate;
+
+/**
+ * Non-blocking rest template of the coordinator traffic, the requests and responses are handled by the io reactor of
+ * the http async client, so that the in-flight requests do not hold any thread. The connections are pooled per remote
+ * host:port(route) and reused across the requests. The timeouts and the pool limits are shared with
+ * CoordinatorRequestFactory.
+ */
+@SuppressWarnings("deprecation")
+public class CoordinatorAsyncRestTemplate extends AsyncRestTemplate implements DisposableBean {
+
+	private final HttpComponentsAsyncClientHttpRequestFactory requestFactory;
+
+	public CoordinatorAsyncRestTemplate(HttpComponentsAsyncClientHttpRequestFactory requestFactory) {
+		super(requestFactory);
+		this.requestFactory = requestFactory;
+	}
+
+	public static CoordinatorAsyncRestTemplate create(PropertyResolver resolver) {
+		int connectTimeout = CoordinatorRequestFactory.DEFAULT_CONNECT_TIMEOUT;
+		int readTimeout = CoordinatorRequestFactory.DEFAULT_READ_TIMEOUT;
+		int maxConnections = CoordinatorRequestFactory.DEFAULT_MAX_CONNECTIONS;
+		int maxConnectionsPerRoute = CoordinatorRequestFactory.DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+		if (resolver != null) {
+			connectTimeout = resolver.getProperty(CoordinatorRequestFactory.CONSTANT_CONNECT_TIMEOUT, Integer.class,
+					connectTimeout);
+			readTimeout = resolver.getProperty(CoordinatorRequestFactory.CONSTANT_READ_TIMEOUT, Integer.class,
+					readTimeout);
+			maxConnections = resolver.getProperty(CoordinatorRequestFactory.CONSTANT_MAX_CONNECTIONS, Integer.class,
+					maxConnections);
+			maxConnectionsPerRoute = resolver.getProperty(CoordinatorRequestFactory.CONSTANT_MAX_PER_ROUTE,
+					Integer.class, maxConnectionsPerRoute);
+		} // end-if (resolver != null)
+
+		CloseableHttpAsyncClient asyncClient = HttpAsyncClients.custom() //
+				.setMaxConnTotal(maxConnections).setMaxConnPerRoute(maxConnectionsPerRoute).build();
+
+		HttpComponentsAsyncClientHttpRequestFactory requestFactory = //
+				new HttpComponentsAsyncClientHttpRequestFactory(asyncClient);
+		requestFactory.setConnectTimeout(connectTimeout);
+		requestFactory.setReadTimeout(readTimeout);
+		return new CoordinatorAsyncRestTemplate(requestFactory);
+	}
+
+	public void destroy() throws Exception {
+		this.requestFactory.destroy();
+	}
+
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports.rpc;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.Xid;
+
+/**
+ * Binary body of the batch coordinator endpoint(/org/bytesoft/bytetcc/batch):
+ *
+ * <pre>
+ * request : version(1) | count(4) | { operation(1) | onePhase(1) | gtrid(1+n) } * count
+ * response: version(1) | count(4) | { errorCode(4) } * count, in the order of the request, 0 means success.
+ * </pre>
+ */
+public final class CoordinatorBatch {
+	static final byte VERSION_1 = 0x10;
+
+	public static final int OPERATION_COMMIT = 1;
+	public static final int OPERATION_ROLLBACK = 2;
+	public static final int OPERATION_FORGET = 3;
+
+	private CoordinatorBatch() {
+	}
+
+	public static byte[] encodeRequest(List<Operation> operations) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream(5 + operations.size() * 32);
+		DataOutputStream output = new DataOutputStream(baos);
+		output.writeByte(VERSION_1);
+		output.writeInt(operations.size());
+		for (int i = 0; i < operations.size(); i++) {
+			Operation operation = operations.get(i);
+			byte[] globalTransactionId = operation.getGlobalTransactionId();
+			output.writeByte(operation.getOperation());
+			output.writeBoolean(operation.isOnePhase());
+			output.writeByte(globalTransactionId.length);
+			output.write(globalTransactionId);
+		}
+		output.flush();
+		return baos.toByteArray();
+	}
+
+	public static List<Operation> decodeRequest(byte[] byteArray) throws IOException {
+		DataInputStream input = new DataInputStream(new ByteArrayInputStream(byteArray));
+		if (input.readByte() != VERSION_1) {
+			throw new IOException("Unsupported batch version!");
+		}
+		int count = input.readInt();
+		List<Operation> operations = new ArrayList<Operation>(count);
+		for (int i = 0; i < count; i++) {
+			int operation = input.readUnsignedByte();
+			boolean onePhase = input.readBoolean();
+			byte[] globalTransactionId = new byte[input.readUnsignedByte()];
+			input.readFully(globalTransactionId);
+			operations.add(new Operation(operation, globalTransactionId, onePhase));
+		}
+		return operations;
+	}
+
+	public static byte[] encodeResponse(List<Operation> operations) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream(5 + operations.size() * 4);
+		DataOutputStream output = new DataOutputStream(baos);
+		output.writeByte(VERSION_1);
+		output.writeInt(operations.size());
+		for (int i = 0; i < operations.size(); i++) {
+			output.writeInt(operations.get(i).getErrorCode());
+		}
+		output.flush();
+		return baos.toByteArray();
+	}
+
+	public static void decodeResponse(byte[] byteArray, List<Operation> operations) throws IOException {
+		DataInputStream input = new DataInputStream(new ByteArrayInputStream(byteArray));
+		if (input.readByte() != VERSION_1) {
+			throw new IOException("Unsupported batch version!");
+		} else if (input.readInt() != operations.size()) {
+			throw new IOException("The batch response does not match the request!");
+		}
+		for (int i = 0; i < operations.size(); i++) {
+			operations.get(i).setErrorCode(input.readInt());
+		}
+	}
+
+	public static class Operation {
+		private final int operation;
+		private final byte[] globalTransactionId;
+		private final boolean onePhase;
+
+		private int errorCode;
+
+		public Operation(int operation, Xid xid, boolean onePhase) {
+			this(operation, xid.getGlobalTransactionId(), onePhase);
+		}
+
+		public Operation(int operation, byte[] globalTransactionId, boolean onePhase) {
+			this.operation = operation;
+			this.globalTransactionId = globalTransactionId;
+			this.onePhase = onePhase;
+		}
+
+		public XAException getFailure() {
+			return this.errorCode == 0 ? null : new XAException(this.errorCode);
+		}
+
+		public int getOperation() {
+			return operation;
+		}
+
+		public byte[] getGlobalTransactionId() {
+			return globalTransactionId;
+		}
+
+		public boolean isOnePhase() {
+			return onePhase;
+		}
+
+		public int getErrorCode() {
+			return errorCode;
+		}
+
+		public void setErrorCode(int errorCode) {
+			this.errorCode = errorCode;
+		}
+	}
+
+}
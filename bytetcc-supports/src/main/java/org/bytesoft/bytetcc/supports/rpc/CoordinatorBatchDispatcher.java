@@ -0,0 +1,214 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports.rpc;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.transaction.xa.XAException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Coalesces the coordinator operations sent to the same peer: an operation is sent at once if there is no batch in
+ * flight, otherwise it waits and is sent with the others in the next batch, so that N concurrent operations of the
+ * recovery threads cost one round trip per batch rather than N, without delaying an idle caller. It's used by the
+ * recovery only, the second phase of a live transaction is sent directly so that it's never queued behind a batch.
+ */
+public class CoordinatorBatchDispatcher {
+	static final Logger logger = LoggerFactory.getLogger(CoordinatorBatchDispatcher.class);
+	static final long UNSUPPORTED_RETRY_MILLIS = 1000L * 60 * 5;
+
+	static final ConcurrentMap<String, CoordinatorBatchDispatcher> dispatchers = //
+			new ConcurrentHashMap<String, CoordinatorBatchDispatcher>();
+
+	private final String identifier;
+	private final Lock lock = new ReentrantLock();
+	private final Condition condition = this.lock.newCondition();
+	private final LinkedList<PendingOperation> pending = new LinkedList<PendingOperation>();
+	private boolean sending;
+	private volatile long unsupportedUntil;
+	private int maxBatchSize = 256;
+	/* the longest time an operation waits for the batch in flight, it's failed with XAER_RMFAIL then. */
+	private long waitTimeout = CoordinatorRequestFactory.DEFAULT_READ_TIMEOUT;
+
+	public CoordinatorBatchDispatcher(String identifier) {
+		this.identifier = identifier;
+	}
+
+	public static CoordinatorBatchDispatcher getInstance(String identifier) {
+		CoordinatorBatchDispatcher dispatcher = dispatchers.get(identifier);
+		if (dispatcher == null) {
+			dispatcher = new CoordinatorBatchDispatcher(identifier);
+			CoordinatorBatchDispatcher existed = dispatchers.putIfAbsent(identifier, dispatcher);
+			dispatcher = existed == null ? dispatcher : existed;
+		}
+		return dispatcher;
+	}
+
+	/**
+	 * @return false if the peer does not support the batch endpoint, the operation should be sent by itself then.
+	 */
+	public boolean invoke(CoordinatorBatch.Operation operation, BatchTransport transport) throws XAException {
+		if (System.currentTimeMillis() < this.unsupportedUntil) {
+			return false;
+		}
+
+		PendingOperation current = new PendingOperation(operation);
+		List<PendingOperation> batch = null;
+		try {
+			this.lock.lock();
+			this.pending.add(current);
+			long nanos = TimeUnit.MILLISECONDS.toNanos(this.waitTimeout);
+			while (current.completed == false && current.leader == false && this.sending) {
+				if (nanos <= 0) {
+					this.pending.remove(current); // no-op if it has been taken by the batch in flight
+					XAException xaEx = new XAException(XAException.XAER_RMFAIL);
+					xaEx.initCause(new IllegalStateException(String.format(
+							"Timed out waiting for the coordinator batch(peer= %s, timeout= %s).", this.identifier,
+							this.waitTimeout)));
+					throw xaEx;
+				}
+
+				try {
+					nanos = this.condition.awaitNanos(nanos);
+				} catch (InterruptedException ex) {
+					this.pending.remove(current);
+					Thread.currentThread().interrupt();
+					XAException xaEx = new XAException(XAException.XAER_RMFAIL);
+					xaEx.initCause(ex);
+					throw xaEx;
+				}
+			} // end-while (current.completed == false && current.leader == false && this.sending)
+
+			if (current.completed == false) {
+				this.sending = true;
+				batch = new ArrayList<PendingOperation>();
+				while (this.pending.isEmpty() == false && batch.size() < this.maxBatchSize) {
+					batch.add(this.pending.poll());
+				}
+			} // end-if (current.completed == false)
+		} finally {
+			this.lock.unlock();
+		}
+
+		if (batch != null) {
+			this.execute(batch, transport);
+		} // end-if (batch != null)
+
+		if (current.unsupported) {
+			return false;
+		} else if (current.failure != null) {
+			throw current.failure;
+		}
+
+		XAException failure = operation.getFailure();
+		if (failure != null) {
+			throw failure;
+		}
+		return true;
+	}
+
+	private void execute(List<PendingOperation> batch, BatchTransport transport) {
+		List<CoordinatorBatch.Operation> operations = new ArrayList<CoordinatorBatch.Operation>(batch.size());
+		for (int i = 0; i < batch.size(); i++) {
+			operations.add(batch.get(i).operation);
+		}
+
+		boolean unsupported = false;
+		XAException failure = null;
+		try {
+			byte[] response = transport.execute(CoordinatorBatch.encodeRequest(operations));
+			if (response == null) {
+				unsupported = true;
+				this.unsupportedUntil = System.currentTimeMillis() + UNSUPPORTED_RETRY_MILLIS;
+				logger.info("The peer {} does not support the batch coordinator endpoint.", this.identifier);
+			} else {
+				CoordinatorBatch.decodeResponse(response, operations);
+			}
+		} catch (XAException ex) {
+			failure = ex;
+		} catch (Exception ex) {
+			failure = new XAException(XAException.XAER_RMERR);
+			failure.initCause(ex);
+		}
+
+		try {
+			this.lock.lock();
+			for (int i = 0; i < batch.size(); i++) {
+				PendingOperation element = batch.get(i);
+				element.unsupported = unsupported;
+				element.failure = failure;
+				element.completed = true;
+			}
+
+			if (this.pending.isEmpty()) {
+				this.sending = false;
+			} else {
+				this.pending.peek().leader = true;
+			}
+			this.condition.signalAll();
+		} finally {
+			this.lock.unlock();
+		}
+	}
+
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+
+	public void setMaxBatchSize(int maxBatchSize) {
+		this.maxBatchSize = maxBatchSize;
+	}
+
+	public long getWaitTimeout() {
+		return waitTimeout;
+	}
+
+	public void setWaitTimeout(long waitTimeout) {
+		this.waitTimeout = waitTimeout;
+	}
+
+	public interface BatchTransport {
+
+		/**
+		 * @return the response body, or null if the peer does not support the batch endpoint.
+		 */
+		public byte[] execute(byte[] request) throws XAException;
+
+	}
+
+	static class PendingOperation {
+		final CoordinatorBatch.Operation operation;
+		boolean completed;
+		boolean leader;
+		boolean unsupported;
+		XAException failure;
+
+		PendingOperation(CoordinatorBatch.Operation operation) {
+			this.operation = operation;
+		}
+	}
+
+}
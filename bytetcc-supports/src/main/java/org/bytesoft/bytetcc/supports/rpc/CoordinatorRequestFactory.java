@@ -0,0 +1,118 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports.rpc;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.core.env.PropertyResolver;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Request factory of the coordinator traffic(commit/rollback/forget/recover) between the participants. The connections
+ * are pooled per remote host:port(route), so the bursts of the coordinator requests reuse the established connections
+ * instead of opening a new one for each request, and the number of connections to a single participant is bounded.
+ * This factory is only used by the coordinator rest template, the request factory of the application is untouched.
+ */
+public class CoordinatorRequestFactory extends HttpComponentsClientHttpRequestFactory {
+	public static final String CONSTANT_CONNECT_TIMEOUT = "org.bytesoft.bytetcc.coordinator.connecttimeout";
+	public static final String CONSTANT_READ_TIMEOUT = "org.bytesoft.bytetcc.coordinator.readtimeout";
+	public static final String CONSTANT_MAX_CONNECTIONS = "org.bytesoft.bytetcc.coordinator.maxconnections";
+	public static final String CONSTANT_MAX_PER_ROUTE = "org.bytesoft.bytetcc.coordinator.maxperroute";
+
+	static final int DEFAULT_CONNECT_TIMEOUT = 3000;
+	static final int DEFAULT_READ_TIMEOUT = 30000;
+	static final int DEFAULT_MAX_CONNECTIONS = 200;
+	static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 20;
+	static final long DEFAULT_IDLE_TIMEOUT = 60L;
+
+	private static volatile RestTemplate restTemplate;
+
+	private final PoolingHttpClientConnectionManager connectionManager;
+
+	public CoordinatorRequestFactory() {
+		this(DEFAULT_MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS_PER_ROUTE);
+	}
+
+	public CoordinatorRequestFactory(int maxConnections, int maxConnectionsPerRoute) {
+		this(createConnectionManager(maxConnections, maxConnectionsPerRoute));
+	}
+
+	private CoordinatorRequestFactory(PoolingHttpClientConnectionManager connectionManager) {
+		super(createHttpClient(connectionManager));
+		this.connectionManager = connectionManager;
+		this.setConnectTimeout(DEFAULT_CONNECT_TIMEOUT);
+		this.setReadTimeout(DEFAULT_READ_TIMEOUT);
+	}
+
+	private static PoolingHttpClientConnectionManager createConnectionManager(int maxConnections,
+			int maxConnectionsPerRoute) {
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(maxConnections);
+		connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+		return connectionManager;
+	}
+
+	private static CloseableHttpClient createHttpClient(PoolingHttpClientConnectionManager connectionManager) {
+		return HttpClients.custom().setConnectionManager(connectionManager) //
+				.evictExpiredConnections().evictIdleConnections(DEFAULT_IDLE_TIMEOUT, TimeUnit.SECONDS).build();
+	}
+
+	public static CoordinatorRequestFactory create(PropertyResolver resolver) {
+		if (resolver == null) {
+			return new CoordinatorRequestFactory();
+		} // end-if (resolver == null)
+
+		int maxConnections = resolver.getProperty(CONSTANT_MAX_CONNECTIONS, Integer.class, DEFAULT_MAX_CONNECTIONS);
+		int maxConnectionsPerRoute = resolver.getProperty(CONSTANT_MAX_PER_ROUTE, Integer.class,
+				DEFAULT_MAX_CONNECTIONS_PER_ROUTE);
+
+		CoordinatorRequestFactory requestFactory = //
+				new CoordinatorRequestFactory(maxConnections, maxConnectionsPerRoute);
+		int connectTimeout = resolver.getProperty(CONSTANT_CONNECT_TIMEOUT, Integer.class, DEFAULT_CONNECT_TIMEOUT);
+		requestFactory.setConnectTimeout(connectTimeout);
+		requestFactory.setReadTimeout(resolver.getProperty(CONSTANT_READ_TIMEOUT, Integer.class, DEFAULT_READ_TIMEOUT));
+		return requestFactory;
+	}
+
+	/**
+	 * @return the shared rest template used by the coordinators when no one has been registered.
+	 */
+	public static RestTemplate getRestTemplate() {
+		RestTemplate template = restTemplate;
+		if (template == null) {
+			synchronized (CoordinatorRequestFactory.class) {
+				if (restTemplate == null) {
+					restTemplate = new RestTemplate(new CoordinatorRequestFactory());
+				}
+				template = restTemplate;
+			}
+		}
+		return template;
+	}
+
+	public int getMaxConnections() {
+		return this.connectionManager.getMaxTotal();
+	}
+
+	public int getMaxConnectionsPerRoute() {
+		return this.connectionManager.getDefaultMaxPerRoute();
+	}
+
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright 2014-2018 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports.rpc;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.env.PropertyResolver;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Rest template of the coordinator traffic, which owns its pooled CoordinatorRequestFactory and releases the pooled
+ * connections when it is destroyed.
+ */
+public class CoordinatorRestTemplate extends RestTemplate implements DisposableBean {
+
+	private final CoordinatorRequestFactory requestFactory;
+
+	public CoordinatorRestTemplate(CoordinatorRequestFactory requestFactory) {
+		super(requestFactory);
+		this.requestFactory = requestFactory;
+	}
+
+	public static CoordinatorRestTemplate create(PropertyResolver resolver) {
+		return new CoordinatorRestTemplate(CoordinatorRequestFactory.create(resolver));
+	}
+
+	public void destroy() throws Exception {
+		this.requestFactory.destroy();
+	}
+
+}
@@ -104,6 +104,8 @@ public class CompensableAnnotationConfigValidator
 				this.validateSimplifiedCompensable(method, clazz);
 				this.validateDeclaredRemotingException(method, clazz);
 				this.validateTransactionalPropagation(method, clazz);
+
+				CompensableMethodDescriptorRegistry.getInstance().register(CompensableMethodDescriptor.create(method, clazz));
 			}
 
 			compensables.put(beanName, compensable);
@@ -0,0 +1,157 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports.spring;
+
+import java.lang.reflect.Method;
+
+import org.bytesoft.bytetcc.supports.CompensableInvocationImpl;
+import org.bytesoft.compensable.Compensable;
+import org.bytesoft.compensable.CompensableCancel;
+import org.bytesoft.compensable.CompensableConfirm;
+import org.bytesoft.compensable.CompensableInvocation;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Immutable metadata of a compensable method, resolved once so that the try phase does not have to look up the
+ * annotations and the interface method on every call.
+ */
+public final class CompensableMethodDescriptor {
+
+	private final Method method;
+	private final Class<?> targetClass;
+	private final Method interfaceMethod;
+	private final Transactional transactional;
+	private final Propagation propagation;
+	private final boolean simplified;
+	private final String confirmableKey;
+	private final String cancellableKey;
+	private final boolean confirmable;
+	private final boolean cancellable;
+
+	/* the method recorded by the invocation: class-method if simplified, otherwise interface-method. */
+	private final Method invocationMethod;
+	private final String[] parameterTypeArray;
+
+	private CompensableMethodDescriptor(Method method, Class<?> targetClass) {
+		Compensable annotation = method.getDeclaringClass().getAnnotation(Compensable.class);
+		Class<?> interfaceClass = annotation.interfaceClass();
+
+		Method interfaceMethod = null;
+		try {
+			interfaceMethod = interfaceClass.getMethod(method.getName(), method.getParameterTypes());
+		} catch (NoSuchMethodException ex) {
+			interfaceMethod = null; // non-TCC operation
+		}
+
+		Transactional clazzAnnotation = method.getDeclaringClass().getAnnotation(Transactional.class);
+		Transactional methodAnnotation = method.getAnnotation(Transactional.class);
+
+		this.method = method;
+		this.interfaceMethod = interfaceMethod;
+		this.transactional = methodAnnotation == null ? clazzAnnotation : methodAnnotation;
+		this.propagation = this.transactional == null ? null : this.transactional.propagation();
+		this.simplified = annotation.simplified();
+		this.confirmableKey = annotation.confirmableKey();
+		this.cancellableKey = annotation.cancellableKey();
+
+		boolean confirmFlag = false;
+		boolean cancelFlag = false;
+		if (this.simplified && targetClass != null) {
+			Method[] methodArray = targetClass.getDeclaredMethods();
+			for (int i = 0; (confirmFlag == false || cancelFlag == false) && i < methodArray.length; i++) {
+				Method element = methodArray[i];
+				confirmFlag = confirmFlag || element.getAnnotation(CompensableConfirm.class) != null;
+				cancelFlag = cancelFlag || element.getAnnotation(CompensableCancel.class) != null;
+			}
+		}
+		this.targetClass = this.simplified ? targetClass : null;
+		this.confirmable = confirmFlag;
+		this.cancellable = cancelFlag;
+
+		this.invocationMethod = this.simplified ? method : interfaceMethod;
+		if (this.invocationMethod == null) {
+			this.parameterTypeArray = null;
+		} else {
+			Class<?>[] parameterTypes = this.invocationMethod.getParameterTypes();
+			String[] parameterTypeArray = new String[parameterTypes.length];
+			for (int i = 0; i < parameterTypes.length; i++) {
+				parameterTypeArray[i] = parameterTypes[i].getName();
+			}
+			this.parameterTypeArray = parameterTypeArray;
+		}
+	}
+
+	public static CompensableMethodDescriptor create(Method method, Class<?> targetClass) {
+		return new CompensableMethodDescriptor(method, targetClass);
+	}
+
+	/**
+	 * The confirm/cancel flags of a simplified compensable-service depend on the target class, the descriptor can only be
+	 * reused for the same one.
+	 */
+	public boolean isApplicable(Class<?> clazz) {
+		return this.simplified == false || this.targetClass == clazz;
+	}
+
+	public CompensableInvocation createInvocation(String identifier, Object[] args) {
+		CompensableInvocationImpl invocation = new CompensableInvocationImpl();
+		invocation.setArgs(args);
+
+		invocation.setIdentifier(identifier);
+		invocation.setSimplified(this.simplified);
+
+		invocation.setMethod(this.invocationMethod, this.parameterTypeArray);
+		if (this.simplified) {
+			invocation.setConfirmableKey(this.confirmable ? identifier : null);
+			invocation.setCancellableKey(this.cancellable ? identifier : null);
+		} else {
+			invocation.setConfirmableKey(this.confirmableKey);
+			invocation.setCancellableKey(this.cancellableKey);
+		}
+
+		return invocation;
+	}
+
+	public boolean isCompensable() {
+		return this.interfaceMethod != null;
+	}
+
+	public Method getMethod() {
+		return method;
+	}
+
+	public Class<?> getTargetClass() {
+		return targetClass;
+	}
+
+	public Method getInterfaceMethod() {
+		return interfaceMethod;
+	}
+
+	public Transactional getTransactional() {
+		return transactional;
+	}
+
+	public Propagation getPropagation() {
+		return propagation;
+	}
+
+	public boolean isSimplified() {
+		return simplified;
+	}
+
+}
@@ -0,0 +1,41 @@
+/**
+ * Copyright 2014-2016 yangming.liu<bytefox@126.com>.
+ *
+ * This copyrighted material is made available to anyone wishing to use, modify,
+ * copy, or redistribute it subject to the terms and conditions of the GNU
+ * Lesser General Public License, as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this distribution; if not, see <http://www.gnu.org/licenses/>.
+ */
+package org.bytesoft.bytetcc.supports.spring;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class CompensableMethodDescriptorRegistry {
+	static final CompensableMethodDescriptorRegistry instance = new CompensableMethodDescriptorRegistry();
+
+	private final Map<Method, CompensableMethodDescriptor> descriptors = new ConcurrentHashMap<Method, CompensableMethodDescriptor>();
+
+	private CompensableMethodDescriptorRegistry() {
+	}
+
+	public void register(CompensableMethodDescriptor descriptor) {
+		this.descriptors.put(descriptor.getMethod(), descriptor);
+	}
+
+	public CompensableMethodDescriptor getDescriptor(Method method) {
+		return this.descriptors.get(method);
+	}
+
+	public static CompensableMethodDescriptorRegistry getInstance() {
+		return instance;
+	}
+}
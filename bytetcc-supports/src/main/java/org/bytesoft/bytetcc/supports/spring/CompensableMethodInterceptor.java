@@ -24,13 +24,9 @@ import org.aopalliance.intercept.MethodInvocation;
 import org.apache.commons.lang3.StringUtils;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.reflect.MethodSignature;
-import org.bytesoft.bytetcc.supports.CompensableInvocationImpl;
 import org.bytesoft.bytetcc.supports.CompensableSynchronization;
 import org.bytesoft.bytetcc.supports.spring.aware.CompensableBeanNameAware;
-import org.bytesoft.compensable.Compensable;
 import org.bytesoft.compensable.CompensableBeanFactory;
-import org.bytesoft.compensable.CompensableCancel;
-import org.bytesoft.compensable.CompensableConfirm;
 import org.bytesoft.compensable.CompensableInvocation;
 import org.bytesoft.compensable.CompensableInvocationRegistry;
 import org.bytesoft.compensable.CompensableManager;
@@ -119,33 +115,26 @@ public class CompensableMethodInterceptor
 		TransactionManager transactionManager = this.beanFactory.getTransactionManager();
 		CompensableManager compensableManager = this.beanFactory.getCompensableManager();
 
-		Compensable annotation = method.getDeclaringClass().getAnnotation(Compensable.class);
-		Class<?> interfaceClass = annotation.interfaceClass();
-		String methodName = method.getName();
-		Class<?>[] parameterTypes = method.getParameterTypes();
+		CompensableMethodDescriptorRegistry descriptorRegistry = CompensableMethodDescriptorRegistry.getInstance();
+		CompensableMethodDescriptor descriptor = descriptorRegistry.getDescriptor(method);
+		Class<?> targetClass = descriptor == null || descriptor.isSimplified() ? AopUtils.getTargetClass(point.getThis()) : null;
+		if (descriptor == null || descriptor.isApplicable(targetClass) == false) {
+			descriptor = CompensableMethodDescriptor.create(method, targetClass);
+			descriptorRegistry.register(descriptor);
+		} // end-if (descriptor == null || descriptor.isApplicable(targetClass) == false)
 
-		Method interfaceMethod = null;
-		try {
-			interfaceMethod = interfaceClass.getMethod(methodName, parameterTypes);
-		} catch (NoSuchMethodException ex) {
+		if (descriptor.isCompensable() == false) {
 			logger.warn("Current compensable-service {} is invoking a non-TCC operation!", method);
 			return point.proceed(); // ignore
 		}
 
-		Transactional clazzAnnotation = method.getDeclaringClass().getAnnotation(Transactional.class);
-		Transactional methodAnnotation = method.getAnnotation(Transactional.class);
-		Transactional transactional = methodAnnotation == null ? clazzAnnotation : methodAnnotation;
+		Transactional transactional = descriptor.getTransactional();
 		if (transactional == null) {
 			throw new IllegalStateException(
 					String.format("Compensable-service(%s) does not have a Transactional annotation!", method));
 		}
 
-		CompensableInvocation invocation = null;
-		if (annotation.simplified()) {
-			invocation = this.getCompensableInvocation(identifier, method, args, annotation, point.getThis());
-		} else {
-			invocation = this.getCompensableInvocation(identifier, interfaceMethod, args, annotation);
-		}
+		CompensableInvocation invocation = descriptor.createInvocation(identifier, args);
 
 		Transaction transaction = transactionManager.getTransactionQuietly();
 		CompensableTransaction compensable = compensableManager.getCompensableTransactionQuietly();
@@ -165,7 +154,7 @@ public class CompensableMethodInterceptor
 			}
 
 			if (transactional != null && compensable != null && transaction != null) {
-				Propagation propagation = transactional == null ? null : transactional.propagation();
+				Propagation propagation = descriptor.getPropagation();
 				if (propagation == null) {
 					compensable.registerCompensable(invocation);
 				} else if (Propagation.REQUIRED.equals(propagation)) {
@@ -193,54 +182,6 @@ public class CompensableMethodInterceptor
 		}
 	}
 
-	/* simplified. */
-	private CompensableInvocation getCompensableInvocation(String identifier, Method method, Object[] args,
-			Compensable annotation, Object target) {
-		CompensableInvocationImpl invocation = new CompensableInvocationImpl();
-		invocation.setArgs(args);
-
-		invocation.setIdentifier(identifier);
-		invocation.setSimplified(annotation.simplified());
-
-		invocation.setMethod(method); // class-method
-
-		Class<?> currentClazz = AopUtils.getTargetClass(target);
-
-		Method[] methodArray = currentClazz.getDeclaredMethods();
-		boolean confirmFlag = false;
-		boolean cancelFlag = false;
-
-		for (int i = 0; (confirmFlag == false || cancelFlag == false) && i < methodArray.length; i++) {
-			Method element = methodArray[i];
-			if (element.getAnnotation(CompensableConfirm.class) != null) {
-				confirmFlag = true;
-				invocation.setConfirmableKey(identifier);
-			}
-			if (element.getAnnotation(CompensableCancel.class) != null) {
-				cancelFlag = true;
-				invocation.setCancellableKey(identifier);
-			}
-		}
-
-		return invocation;
-	}
-
-	/* default. */
-	private CompensableInvocation getCompensableInvocation(String identifier, Method interfaceMethod, Object[] args,
-			Compensable annotation) {
-		CompensableInvocationImpl invocation = new CompensableInvocationImpl();
-		invocation.setArgs(args);
-
-		invocation.setIdentifier(identifier);
-		invocation.setSimplified(annotation.simplified());
-
-		invocation.setMethod(interfaceMethod);
-		invocation.setConfirmableKey(annotation.confirmableKey());
-		invocation.setCancellableKey(annotation.cancellableKey());
-
-		return invocation;
-	}
-
 	private String getBeanName(Object bean) throws IllegalStateException {
 		String identifier = null;
 		if (CompensableBeanNameAware.class.isInstance(bean)) {
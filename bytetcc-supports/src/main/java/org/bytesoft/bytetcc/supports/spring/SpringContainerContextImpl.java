@@ -15,9 +15,13 @@
  */
 package org.bytesoft.bytetcc.supports.spring;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.bytesoft.compensable.CompensableCancel;
 import org.bytesoft.compensable.CompensableConfirm;
@@ -31,8 +35,15 @@ import org.springframework.context.ApplicationContextAware;
 public class SpringContainerContextImpl implements ContainerContext, ApplicationContextAware {
 	static Logger logger = LoggerFactory.getLogger(SpringContainerContextImpl.class);
 
+	static final MethodType DISPATCH_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+
 	private ApplicationContext applicationContext;
 
+	private final Map<DispatchKey, MethodHandle> confirmables = new ConcurrentHashMap<DispatchKey, MethodHandle>();
+	private final Map<DispatchKey, MethodHandle> cancellables = new ConcurrentHashMap<DispatchKey, MethodHandle>();
+	private final Map<DispatchKey, MethodHandle> complicateds = new ConcurrentHashMap<DispatchKey, MethodHandle>();
+	private final Map<String, Method> methods = new ConcurrentHashMap<String, Method>();
+
 	public void confirm(CompensableInvocation invocation) throws RuntimeException {
 		String identifier = (String) invocation.getIdentifier();
 		String confirmableKey = invocation.getConfirmableKey();
@@ -49,7 +60,17 @@ public class SpringContainerContextImpl implements ContainerContext, Application
 	}
 
 	private void confirmSimplified(Method method, Object instance, Object[] args) throws RuntimeException {
-		Class<?> clazz = instance.getClass();
+		DispatchKey key = new DispatchKey(instance.getClass(), method);
+		MethodHandle confirmable = this.confirmables.get(key);
+		if (confirmable == null) {
+			confirmable = this.resolveMethodHandle(this.getConfirmableMethod(method, instance.getClass()));
+			this.confirmables.put(key, confirmable);
+		}
+
+		this.invoke(confirmable, instance, args);
+	}
+
+	private Method getConfirmableMethod(Method method, Class<?> clazz) throws RuntimeException {
 		Class<?> targetClazz = method.getDeclaringClass();
 
 		Method[] methodArray = clazz.getMethods();
@@ -73,28 +94,11 @@ public class SpringContainerContextImpl implements ContainerContext, Application
 			throw new RuntimeException("Not supported yet!");
 		}
 
-		try {
-			confirmable.invoke(instance, args);
-		} catch (InvocationTargetException itex) {
-			throw new RuntimeException(itex.getTargetException());
-		} catch (RuntimeException rex) {
-			throw rex;
-		} catch (Throwable throwable) {
-			throw new RuntimeException(throwable);
-		}
-
+		return confirmable;
 	}
 
 	public void confirmComplicated(Method method, Object instance, Object[] args) throws RuntimeException {
-		try {
-			method.invoke(instance, args);
-		} catch (InvocationTargetException itex) {
-			throw new RuntimeException(itex.getTargetException());
-		} catch (RuntimeException rex) {
-			throw rex;
-		} catch (Throwable throwable) {
-			throw new RuntimeException(throwable);
-		}
+		this.invoke(this.getComplicatedMethodHandle(method, instance), instance, args);
 	}
 
 	public void cancel(CompensableInvocation invocation) throws RuntimeException {
@@ -115,7 +119,17 @@ public class SpringContainerContextImpl implements ContainerContext, Application
 	}
 
 	private void cancelSimplified(Method method, Object instance, Object[] args) throws RuntimeException {
-		Class<?> clazz = instance.getClass();
+		DispatchKey key = new DispatchKey(instance.getClass(), method);
+		MethodHandle cancellable = this.cancellables.get(key);
+		if (cancellable == null) {
+			cancellable = this.resolveMethodHandle(this.getCancellableMethod(method, instance.getClass()));
+			this.cancellables.put(key, cancellable);
+		}
+
+		this.invoke(cancellable, instance, args);
+	}
+
+	private Method getCancellableMethod(Method method, Class<?> clazz) throws RuntimeException {
 		Class<?> targetClazz = method.getDeclaringClass();
 
 		Method[] methodArray = clazz.getDeclaredMethods();
@@ -139,25 +153,45 @@ public class SpringContainerContextImpl implements ContainerContext, Application
 			throw new RuntimeException("Not supported yet!");
 		}
 
+		return cancellable;
+	}
+
+	public void cancelComplicated(Method method, Object instance, Object[] args) throws RuntimeException {
+		this.invoke(this.getComplicatedMethodHandle(method, instance), instance, args);
+	}
+
+	private MethodHandle getComplicatedMethodHandle(Method method, Object instance) {
+		DispatchKey key = new DispatchKey(instance.getClass(), method);
+		MethodHandle handle = this.complicateds.get(key);
+		if (handle == null) {
+			handle = this.resolveMethodHandle(method);
+			this.complicateds.put(key, handle);
+		}
+		return handle;
+	}
+
+	/**
+	 * Adapts the method to (Object, Object[])Object, so that every target is invoked in the same way.
+	 */
+	private MethodHandle resolveMethodHandle(Method method) throws RuntimeException {
 		try {
-			cancellable.invoke(instance, args);
-		} catch (InvocationTargetException itex) {
-			throw new RuntimeException(itex.getTargetException());
-		} catch (RuntimeException rex) {
-			throw rex;
-		} catch (Throwable throwable) {
-			throw new RuntimeException(throwable);
+			method.setAccessible(true);
+		} catch (SecurityException ex) {
+			logger.debug("Error occurred while accessing method: {}.", method, ex);
 		}
 
+		try {
+			MethodHandle handle = MethodHandles.lookup().unreflect(method);
+			return handle.asSpreader(Object[].class, method.getParameterTypes().length).asType(DISPATCH_TYPE);
+		} catch (IllegalAccessException ex) {
+			throw new RuntimeException(String.format("Error occurred while resolving method: %s", method), ex);
+		}
 	}
 
-	public void cancelComplicated(Method method, Object instance, Object[] args) throws RuntimeException {
+	private void invoke(MethodHandle handle, Object instance, Object[] args) throws RuntimeException {
 		try {
-			method.invoke(instance, args);
-		} catch (InvocationTargetException itex) {
-			throw new RuntimeException(itex.getTargetException());
-		} catch (RuntimeException rex) {
-			throw rex;
+			Object result = handle.invokeExact(instance, args == null ? new Object[0] : args);
+			logger.trace("Invoked: result= {}", result);
 		} catch (Throwable throwable) {
 			throw new RuntimeException(throwable);
 		}
@@ -176,6 +210,13 @@ public class SpringContainerContextImpl implements ContainerContext, Application
 		String methodName = invocation.getMethodName();
 		String[] parameterTypeArray = invocation.getParameterTypeArray();
 
+		String methodKey = String.format("%s#%s%s", declaringClass, methodName, Arrays.toString(parameterTypeArray));
+		Method method = this.methods.get(methodKey);
+		if (method != null) {
+			invocation.setMethod(method);
+			return;
+		} // end-if (method != null)
+
 		ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
 
 		Class<?> clazz = null;
@@ -224,6 +265,7 @@ public class SpringContainerContextImpl implements ContainerContext, Application
 					, declaringClass, methodName, Arrays.toString(parameterTypeArray)), ex);
 		}
 
+		this.methods.put(methodKey, targetMethod);
 		invocation.setMethod(targetMethod);
 	}
 
@@ -234,4 +276,27 @@ public class SpringContainerContextImpl implements ContainerContext, Application
 	public void setApplicationContext(ApplicationContext applicationContext) {
 		this.applicationContext = applicationContext;
 	}
+
+	static class DispatchKey {
+		private final Class<?> clazz;
+		private final Method method;
+
+		public DispatchKey(Class<?> clazz, Method method) {
+			this.clazz = clazz;
+			this.method = method;
+		}
+
+		public int hashCode() {
+			return 31 * this.clazz.hashCode() + this.method.hashCode();
+		}
+
+		public boolean equals(Object obj) {
+			if (DispatchKey.class.isInstance(obj) == false) {
+				return false;
+			}
+			DispatchKey that = (DispatchKey) obj;
+			return this.clazz.equals(that.clazz) && this.method.equals(that.method);
+		}
+	}
+
 }
@@ -6,6 +6,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import javax.resource.spi.work.Work;
 import javax.transaction.xa.XAException;
@@ -17,10 +19,10 @@ import org.bson.Document;
 import org.bson.conversions.Bson;
 import org.bytesoft.bytejta.supports.jdbc.RecoveredResource;
 import org.bytesoft.bytejta.supports.resource.LocalXAResourceDescriptor;
+import org.bytesoft.bytetcc.supports.internal.MongoCollectionRegistry;
 import org.bytesoft.bytetcc.supports.internal.MongoCompensableLogger;
+import org.bytesoft.bytetcc.supports.internal.MongoSchemaUtils;
 import org.bytesoft.bytetcc.supports.resource.LocalResourceCleaner;
-import org.bytesoft.common.utils.ByteUtils;
-import org.bytesoft.common.utils.CommonUtils;
 import org.bytesoft.compensable.CompensableBeanFactory;
 import org.bytesoft.compensable.aware.CompensableBeanFactoryAware;
 import org.bytesoft.compensable.aware.CompensableEndpointAware;
@@ -31,11 +33,12 @@ import org.bytesoft.transaction.xa.XidFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
-import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Aggregates;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
 
 public class CompensableCleanupWork
 		implements Work, LocalResourceCleaner, CompensableEndpointAware, CompensableBeanFactoryAware {
@@ -47,28 +50,30 @@ public class CompensableCleanupWork
 	static final long CONSTANTS_SECOND_MILLIS = 1000L;
 	static final int CONSTANTS_MAX_HANDLE_RECORDS = 1000;
 
-	@javax.annotation.Resource
-	private MongoClient mongoClient;
+	@javax.inject.Inject
+	private MongoCollectionRegistry collectionRegistry;
 	@javax.inject.Inject
 	private CommandDispatcher commandDispatcher;
 	private String endpoint;
-	private boolean released;
+	private volatile boolean released;
+	private boolean changeStreamEnabled = false;
+	private long changeStreamAwaitMillis = 1000L;
+	/* the resources which failed to be forgotten, and the time until which their records are not read again */
+	private final Map<String, Long> backedOffResources = new ConcurrentHashMap<String, Long>();
+	private int schemaVersion = MongoSchemaUtils.SCHEMA_VERSION_TEXT;
 	@javax.inject.Inject
 	private CompensableBeanFactory beanFactory;
 
 	public void forget(Xid xid, String resourceId) throws RuntimeException {
 		try {
-			String application = CommonUtils.getApplication(this.endpoint);
-			String databaseName = application.replaceAll("\\W", "_");
-			MongoDatabase mdb = this.mongoClient.getDatabase(databaseName);
-			MongoCollection<Document> collection = mdb.getCollection(CONSTANTS_TB_REMOVEDRESES);
+			MongoCollection<Document> collection = this.collectionRegistry.getCollection(CONSTANTS_TB_REMOVEDRESES);
 
 			byte[] global = xid.getGlobalTransactionId();
 			byte[] branch = xid.getBranchQualifier();
 
 			Document document = new Document();
-			document.append(CONSTANTS_FD_GLOBAL, ByteUtils.byteArrayToString(global));
-			document.append(CONSTANTS_FD_BRANCH, ByteUtils.byteArrayToString(branch));
+			document.append(CONSTANTS_FD_GLOBAL, MongoSchemaUtils.encode(global, this.schemaVersion));
+			document.append(CONSTANTS_FD_BRANCH, MongoSchemaUtils.encode(branch, this.schemaVersion));
 			document.append("resource_id", resourceId);
 			document.append("created", this.endpoint);
 
@@ -80,95 +85,186 @@ public class CompensableCleanupWork
 
 	public void run() {
 		long nextMillis = System.currentTimeMillis() + CONSTANTS_SECOND_MILLIS * 60;
-		while (this.released == false) {
-			if (System.currentTimeMillis() < nextMillis) {
-				this.waitForMillis(100);
-			} else {
-				int number = 0;
-				try {
-					number = (Integer) this.commandDispatcher.dispatch(new Callable<Object>() {
-						public Object call() throws Exception {
-							return timingExecution(CONSTANTS_MAX_HANDLE_RECORDS);
-						}
-					});
-				} catch (SecurityException rex) {
-					logger.debug(rex.getMessage());
-				} catch (Exception rex) {
-					logger.error("Error occurred while cleaning up resources.", rex);
-					nextMillis = System.currentTimeMillis() + CONSTANTS_SECOND_MILLIS * 30;
-					continue;
+		long retryMillis = 0; // the change events do not trigger an execution until the failure backoff has elapsed
+		long watchMillis = 0;
+		MongoCursor<ChangeStreamDocument<Document>> changeCursor = null;
+		try {
+			while (this.released == false) {
+				if (this.changeStreamEnabled && changeCursor == null && System.currentTimeMillis() >= watchMillis) {
+					try {
+						changeCursor = this.watchRemovedResources();
+					} catch (RuntimeException rex) {
+						logger.warn("Error occurred while watching removed resources, fall back to polling.", rex);
+						watchMillis = System.currentTimeMillis() + CONSTANTS_SECOND_MILLIS * 60;
+					}
+				}
+
+				boolean changed = false;
+				if (changeCursor == null) {
+					this.waitForMillis(100);
+				} else {
+					try {
+						changed = this.awaitRemovedResources(changeCursor);
+					} catch (RuntimeException rex) {
+						logger.warn("Error occurred while watching removed resources, fall back to polling.", rex);
+						IOUtils.closeQuietly(changeCursor);
+						changeCursor = null;
+						watchMillis = System.currentTimeMillis() + CONSTANTS_SECOND_MILLIS * 60;
+					}
+				}
+
+				long current = System.currentTimeMillis();
+				if ((changed && current >= retryMillis) || current >= nextMillis) {
+					int number = this.dispatchExecution();
+					if (number < 0) {
+						retryMillis = System.currentTimeMillis() + CONSTANTS_SECOND_MILLIS * 30;
+						nextMillis = retryMillis;
+					} else if (number < CONSTANTS_MAX_HANDLE_RECORDS) {
+						nextMillis = System.currentTimeMillis() + CONSTANTS_SECOND_MILLIS * 30;
+					} // end-if (number < 0)
+				} // end-if ((changed && current >= retryMillis) || current >= nextMillis)
+			}
+		} finally {
+			IOUtils.closeQuietly(changeCursor);
+		}
+	}
+
+	/**
+	 * @return the number of the records which have been handled, or -1 if the execution failed.
+	 */
+	private int dispatchExecution() {
+		try {
+			return (Integer) this.commandDispatcher.dispatch(new Callable<Object>() {
+				public Object call() throws Exception {
+					return timingExecution(CONSTANTS_MAX_HANDLE_RECORDS);
 				}
+			});
+		} catch (SecurityException rex) {
+			logger.debug(rex.getMessage());
+			return 0;
+		} catch (Exception rex) {
+			logger.error("Error occurred while cleaning up resources.", rex);
+			return -1;
+		}
+	}
 
-				if (number < CONSTANTS_MAX_HANDLE_RECORDS) {
-					nextMillis = System.currentTimeMillis() + CONSTANTS_SECOND_MILLIS * 30;
-				} // end-if (number < CONSTANTS_MAX_HANDLE_RECORDS)
+	/**
+	 * Tails the insertions of the removedreses collection, which requires a replica set or a sharded cluster.
+	 */
+	private MongoCursor<ChangeStreamDocument<Document>> watchRemovedResources() {
+		MongoCollection<Document> collection = this.collectionRegistry.getCollection(CONSTANTS_TB_REMOVEDRESES);
+		List<Bson> pipeline = new ArrayList<Bson>();
+		pipeline.add(Aggregates.match(Filters.eq("operationType", "insert")));
+		return collection.watch(pipeline).maxAwaitTime(this.changeStreamAwaitMillis, TimeUnit.MILLISECONDS).iterator();
+	}
+
+	/**
+	 * @return true if new resources have been forgotten, the following insertions are drained until the stream is idle
+	 *         for changeStreamAwaitMillis, so that they are handled by one execution.
+	 */
+	private boolean awaitRemovedResources(MongoCursor<ChangeStreamDocument<Document>> changeCursor) {
+		ChangeStreamDocument<Document> change = changeCursor.tryNext();
+		if (change == null) {
+			return false;
+		}
+
+		for (int i = 1; i < CONSTANTS_MAX_HANDLE_RECORDS && this.released == false; i++) {
+			if (changeCursor.tryNext() == null) {
+				break;
 			}
 		}
+		return true;
 	}
 
 	public int timingExecution(int batchSize) {
-		String databaseName = CommonUtils.getApplication(this.endpoint).replaceAll("\\W", "_");
-		MongoDatabase mdb = this.mongoClient.getDatabase(databaseName);
-		MongoCollection<Document> collection = mdb.getCollection(CONSTANTS_TB_REMOVEDRESES);
+		MongoCollection<Document> collection = this.collectionRegistry.getCollection(CONSTANTS_TB_REMOVEDRESES);
 
 		int length = 0;
 
 		XidFactory xidFactory = this.beanFactory.getCompensableXidFactory();
 
 		Map<String, List<Xid>> resource2XidListMap = new HashMap<String, List<Xid>>();
+		Map<String, List<Object>> resource2IdListMap = new HashMap<String, List<Object>>();
+		List<Object> removedIdList = new ArrayList<Object>();
 		MongoCursor<Document> cursor = null;
 		try {
-			cursor = collection.find().limit(batchSize).iterator();
+			Bson projection = Projections.include(CONSTANTS_FD_GLOBAL, CONSTANTS_FD_BRANCH, "resource_id");
+			List<String> backedOff = this.getBackedOffResources();
+			Bson filter = backedOff.isEmpty() ? new Document() : Filters.nin("resource_id", backedOff);
+			cursor = collection.find(filter).projection(projection).limit(batchSize).iterator();
 			for (; cursor.hasNext(); length++) {
 				Document document = cursor.next();
-				String globalValue = document.getString(CONSTANTS_FD_GLOBAL);
-				String branchValue = document.getString(CONSTANTS_FD_BRANCH);
-				byte[] global = ByteUtils.stringToByteArray(globalValue);
-				byte[] branch = ByteUtils.stringToByteArray(branchValue);
+				Object globalValue = document.get(CONSTANTS_FD_GLOBAL);
+				Object branchValue = document.get(CONSTANTS_FD_BRANCH);
+				byte[] global = MongoSchemaUtils.decode(globalValue);
+				byte[] branch = MongoSchemaUtils.decode(branchValue);
 
 				TransactionXid globalXid = xidFactory.createGlobalXid(global);
 				TransactionXid branchXid = xidFactory.createBranchXid(globalXid, branch);
 
 				String resourceId = document.getString("resource_id");
 				if (StringUtils.isBlank(resourceId)) {
+					logger.warn("Invalid resource, the record(gxid= {}, bxid= {}) will be removed.",
+							MongoSchemaUtils.toText(globalValue), MongoSchemaUtils.toText(branchValue));
+					removedIdList.add(document.get("_id"));
 					continue;
 				}
 
 				List<Xid> xidList = resource2XidListMap.get(resourceId);
+				List<Object> idList = resource2IdListMap.get(resourceId);
 				if (xidList == null) {
 					xidList = new ArrayList<Xid>();
+					idList = new ArrayList<Object>();
 					resource2XidListMap.put(resourceId, xidList);
+					resource2IdListMap.put(resourceId, idList);
 				}
 
 				xidList.add(branchXid);
+				idList.add(document.get("_id"));
 			}
 		} finally {
 			IOUtils.closeQuietly(cursor);
 		}
 
+		RuntimeException failure = null;
 		for (Iterator<Map.Entry<String, List<Xid>>> itr = resource2XidListMap.entrySet().iterator(); itr.hasNext();) {
 			Map.Entry<String, List<Xid>> entry = itr.next();
 			String resourceId = entry.getKey();
 			List<Xid> xidList = entry.getValue();
-			this.cleanupByResource(resourceId, xidList);
+			try {
+				this.cleanupByResource(resourceId, xidList);
+				removedIdList.addAll(resource2IdListMap.get(resourceId));
+			} catch (RuntimeException rex) {
+				logger.error("Error occurred while forgetting resource: {}.", resourceId, rex);
+				// skip the records of the failed resource for a while, so that they do not fill every batch
+				this.backedOffResources.put(resourceId, System.currentTimeMillis() + CONSTANTS_SECOND_MILLIS * 30);
+				failure = rex;
+			}
 		}
 
-		for (Iterator<Map.Entry<String, List<Xid>>> itr = resource2XidListMap.entrySet().iterator(); itr.hasNext();) {
-			Map.Entry<String, List<Xid>> entry = itr.next();
-			List<Xid> xidList = entry.getValue();
-			for (int i = 0; i < xidList.size(); i++) {
-				Xid transactionXid = xidList.get(i);
-				byte[] global = transactionXid.getGlobalTransactionId();
-				byte[] branch = transactionXid.getBranchQualifier();
+		if (removedIdList.isEmpty() == false) {
+			collection.deleteMany(Filters.in("_id", removedIdList));
+		} // end-if (removedIdList.isEmpty() == false)
 
-				Bson globalFilter = Filters.eq(CONSTANTS_FD_GLOBAL, ByteUtils.byteArrayToString(global));
-				Bson branchFilter = Filters.eq(CONSTANTS_FD_BRANCH, ByteUtils.byteArrayToString(branch));
+		if (failure != null) {
+			throw failure;
+		} // end-if (failure != null)
+
+		return length;
+	}
 
-				collection.deleteOne(Filters.and(globalFilter, branchFilter));
+	private List<String> getBackedOffResources() {
+		List<String> resourceList = new ArrayList<String>();
+		long current = System.currentTimeMillis();
+		for (Iterator<Map.Entry<String, Long>> itr = this.backedOffResources.entrySet().iterator(); itr.hasNext();) {
+			Map.Entry<String, Long> entry = itr.next();
+			if (entry.getValue() <= current) {
+				itr.remove();
+			} else {
+				resourceList.add(entry.getKey());
 			}
 		}
-
-		return length;
+		return resourceList;
 	}
 
 	private void cleanupByResource(String resourceId, List<Xid> xidList) throws RuntimeException {
@@ -226,6 +322,30 @@ public class CompensableCleanupWork
 		this.endpoint = identifier;
 	}
 
+	public boolean isChangeStreamEnabled() {
+		return changeStreamEnabled;
+	}
+
+	public void setChangeStreamEnabled(boolean changeStreamEnabled) {
+		this.changeStreamEnabled = changeStreamEnabled;
+	}
+
+	public long getChangeStreamAwaitMillis() {
+		return changeStreamAwaitMillis;
+	}
+
+	public void setChangeStreamAwaitMillis(long changeStreamAwaitMillis) {
+		this.changeStreamAwaitMillis = changeStreamAwaitMillis;
+	}
+
+	public int getSchemaVersion() {
+		return schemaVersion;
+	}
+
+	public void setSchemaVersion(int schemaVersion) {
+		this.schemaVersion = schemaVersion;
+	}
+
 	public CommandDispatcher getCommandDispatcher() {
 		return commandDispatcher;
 	}
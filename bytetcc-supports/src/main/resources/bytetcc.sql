@@ -4,4 +4,82 @@ CREATE TABLE bytejta (
   bxid varchar(40),
   ctime bigint(20),
   PRIMARY KEY (xid)
-);
\ No newline at end of file
+);
+
+-- tables of JdbcCompensableLogger/JdbcCompensableRepository/JdbcCompensableLock, only the standard types are used so
+-- that they can be created on MySQL, H2, Derby(10.7+) as is. Use bytea instead of blob for PostgreSQL.
+CREATE TABLE bytetcc_transaction (
+  gxid varchar(40) NOT NULL,
+  application varchar(128),
+  created varchar(256),
+  modified varchar(256),
+  version bigint,
+  propagated boolean,
+  propagated_by varchar(256),
+  compensable boolean,
+  coordinator boolean,
+  status integer,
+  error boolean,
+  variables blob,
+  recovered_at bigint,
+  recovered_times integer,
+  claimed_by varchar(256),
+  claimed_until bigint,
+  ctime bigint,
+  PRIMARY KEY (gxid)
+);
+CREATE INDEX idx_bytetcc_transaction_recovery ON bytetcc_transaction (application, coordinator, gxid);
+CREATE INDEX idx_bytetcc_transaction_claimed ON bytetcc_transaction (claimed_until);
+
+CREATE TABLE bytetcc_participant (
+  gxid varchar(40) NOT NULL,
+  bxid varchar(40) NOT NULL,
+  application varchar(128),
+  type varchar(256),
+  resource varchar(256),
+  vote integer,
+  committed boolean,
+  rolledback boolean,
+  readonly boolean,
+  completed boolean,
+  heuristic boolean,
+  modified varchar(256),
+  PRIMARY KEY (gxid, bxid)
+);
+
+CREATE TABLE bytetcc_compensable (
+  gxid varchar(40) NOT NULL,
+  bxid varchar(40) NOT NULL,
+  service_id varchar(256),
+  simplified boolean,
+  confirmable_key varchar(256),
+  cancellable_key varchar(256),
+  interface varchar(256),
+  method varchar(1024),
+  args blob,
+  transaction_key varchar(256),
+  compensable_key varchar(256),
+  transaction_xid varchar(128),
+  compensable_xid varchar(128),
+  coordinator boolean,
+  tried boolean,
+  confirmed boolean,
+  cancelled boolean,
+  modified varchar(256),
+  PRIMARY KEY (gxid, bxid)
+);
+
+CREATE TABLE bytetcc_lock (
+  gxid varchar(40) NOT NULL,
+  identifier varchar(256),
+  times integer,
+  ctime bigint,
+  PRIMARY KEY (gxid)
+);
+
+CREATE TABLE bytetcc_instance (
+  endpoint varchar(256) NOT NULL,
+  version bigint,
+  heartbeat bigint,
+  PRIMARY KEY (endpoint)
+);